@@ -1,21 +1,45 @@
 package io.arivera.oss.embedded.rabbitmq;
 
+import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCommandException;
+import io.arivera.oss.embedded.rabbitmq.bin.plugins.EnabledPluginsWriter;
+import io.arivera.oss.embedded.rabbitmq.cache.ArtifactCache;
+import io.arivera.oss.embedded.rabbitmq.conf.RabbitMqConfException;
+import io.arivera.oss.embedded.rabbitmq.conf.RabbitMqConfWriter;
+import io.arivera.oss.embedded.rabbitmq.definitions.DefinitionsException;
+import io.arivera.oss.embedded.rabbitmq.definitions.DefinitionsInstaller;
 import io.arivera.oss.embedded.rabbitmq.download.DownloadException;
 import io.arivera.oss.embedded.rabbitmq.download.Downloader;
 import io.arivera.oss.embedded.rabbitmq.download.DownloaderFactory;
+import io.arivera.oss.embedded.rabbitmq.extract.ExtractionCounter;
 import io.arivera.oss.embedded.rabbitmq.extract.ExtractionException;
 import io.arivera.oss.embedded.rabbitmq.extract.Extractor;
 import io.arivera.oss.embedded.rabbitmq.extract.ExtractorFactory;
+import io.arivera.oss.embedded.rabbitmq.extract.InstanceMaterializer;
+import io.arivera.oss.embedded.rabbitmq.extract.PluginsExpander;
 import io.arivera.oss.embedded.rabbitmq.helpers.ErlangVersionChecker;
 import io.arivera.oss.embedded.rabbitmq.helpers.ErlangVersionException;
+import io.arivera.oss.embedded.rabbitmq.helpers.PortInUseException;
+import io.arivera.oss.embedded.rabbitmq.helpers.RamDataException;
+import io.arivera.oss.embedded.rabbitmq.helpers.RamDataFolder;
 import io.arivera.oss.embedded.rabbitmq.helpers.ShutDownException;
 import io.arivera.oss.embedded.rabbitmq.helpers.ShutdownHelper;
 import io.arivera.oss.embedded.rabbitmq.helpers.StartupException;
 import io.arivera.oss.embedded.rabbitmq.helpers.StartupHelper;
+import io.arivera.oss.embedded.rabbitmq.lifecycle.LifecycleEvent;
+import io.arivera.oss.embedded.rabbitmq.lifecycle.LifecycleEventPublisher;
+import io.arivera.oss.embedded.rabbitmq.lifecycle.LifecyclePhase;
+import io.arivera.oss.embedded.rabbitmq.util.AsyncExecutors;
+import io.arivera.oss.embedded.rabbitmq.util.ListenableFuture;
+import io.arivera.oss.embedded.rabbitmq.util.PortBlock;
+import io.arivera.oss.embedded.rabbitmq.util.SettableFuture;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.zeroturnaround.exec.ProcessResult;
 
+import java.io.File;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is the main class to interact with RabbitMQ.
@@ -30,16 +54,30 @@ import java.util.concurrent.Future;
  *   rabbitMq.stop();
  * }
  * </pre>
+ * <p>
+ * Alternatively, {@link #startAsync()} and {@link #stopAsync()} return right away, which allows starting many brokers
+ * from a single thread.
+ * <p>
+ * Brokers whose {@link EmbeddedRabbitMqConfig#getPorts() ports were reserved} are started again on a new block of ports
+ * if they find theirs taken. The block is closed once the broker stops, or fails to start, so the ports can be handed
+ * out again.
  *
  * @see EmbeddedRabbitMqConfig
  */
 public class EmbeddedRabbitMq {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedRabbitMq.class);
+
+  private static final int MAX_SPAWN_ATTEMPTS = 3;
+
   private EmbeddedRabbitMqConfig config;
-  private Future<ProcessResult> rabbitMqProcess;
+  private LifecycleEventPublisher publisher;
+  private volatile Future<ProcessResult> rabbitMqProcess;
+  private volatile boolean startPending;
 
   public EmbeddedRabbitMq(EmbeddedRabbitMqConfig config) {
     this.config = config;
+    this.publisher = new LifecycleEventPublisher(config);
   }
 
   /**
@@ -51,32 +89,297 @@ public class EmbeddedRabbitMq {
    * @throws StartupException     when there's an issue starting the RabbitMQ server
    */
   public void start() throws ErlangVersionException, DownloadException, ExtractionException, StartupException {
-    if (rabbitMqProcess != null) {
+    checkCanStart();
+
+    LifecycleEventPublisher.Phase startup = publisher.start(LifecyclePhase.STARTUP);
+    try {
+      StartupTasks tasks = newStartupTasks();
+      if (config.shouldStartInParallel()) {
+        tasks.runConcurrently();
+      } else {
+        tasks.runSerially();
+      }
+      run();
+      startupSucceeded(startup, tasks);
+    } catch (RuntimeException e) {
+      new RamDataFolder(config).delete();
+      freePorts();
+      startup.failed(e);
+      throw e;
+    }
+    evictFromCache();
+  }
+
+  /**
+   * Starts the RabbitMQ server process without blocking the current thread.
+   * <p>
+   * The Erlang version check, download and extraction are run by a bounded pool of threads shared by all brokers,
+   * while the initialization is confirmed from the process output and events. Cancelling the returned future stops
+   * the preparation steps still running, but not a server process that was already launched.
+   *
+   * @return a future completed once the initialization is completed, or completed with any of the exceptions thrown
+   *     by {@link #start()}.
+   */
+  public ListenableFuture<Void> startAsync() {
+    checkCanStart();
+    startPending = true;
+
+    final LifecycleEventPublisher.Phase startup = publisher.start(LifecyclePhase.STARTUP);
+    final SettableFuture<Void> startupFuture = new SettableFuture<>();
+    final StartupTasks tasks = newStartupTasks();
+    final ListenableFuture<Void> preparation = tasks.runAsync(AsyncExecutors.blockingTasks(),
+        config.shouldStartInParallel());
+
+    final ListenableFuture.Callback<Object> failureCallback = new ListenableFuture.Callback<Object>() {
+      @Override
+      public void onSuccess(Object result) {
+      }
+
+      @Override
+      public void onFailure(Throwable failure) {
+        startPending = false;
+        new RamDataFolder(config).delete();
+        freePorts();
+        startup.failed(failure);
+        startupFuture.setException(failure);
+      }
+    };
+    preparation.addCallback(new ListenableFuture.Callback<Void>() {
+      @Override
+      public void onSuccess(Void result) {
+        spawnAsync(1)
+            .addCallback(new ListenableFuture.Callback<ListenableFuture<ProcessResult>>() {
+              @Override
+              public void onSuccess(ListenableFuture<ProcessResult> process) {
+                rabbitMqProcess = process;
+                startPending = false;
+                startupSucceeded(startup, tasks);
+                startupFuture.set(null);
+                AsyncExecutors.blockingTasks().execute(new Runnable() {
+                  @Override
+                  public void run() {
+                    evictFromCache();
+                  }
+                });
+              }
+
+              @Override
+              public void onFailure(Throwable failure) {
+                failureCallback.onFailure(failure);
+              }
+            });
+      }
+
+      @Override
+      public void onFailure(Throwable failure) {
+        failureCallback.onFailure(failure);
+      }
+    });
+    startupFuture.addCallback(new ListenableFuture.Callback<Void>() {
+      @Override
+      public void onSuccess(Void result) {
+      }
+
+      @Override
+      public void onFailure(Throwable failure) {
+        preparation.cancel(true);
+      }
+    });
+    return startupFuture;
+  }
+
+  /**
+   * Same as {@link StartupHelper#callAsync()}, but starting the server again on a new block of ports if it finds its
+   * ports in use.
+   */
+  private ListenableFuture<ListenableFuture<ProcessResult>> spawnAsync(final int attempt) {
+    final SettableFuture<ListenableFuture<ProcessResult>> spawnFuture = new SettableFuture<>();
+    new StartupHelper(config, publisher).callAsync()
+        .addCallback(new ListenableFuture.Callback<ListenableFuture<ProcessResult>>() {
+          @Override
+          public void onSuccess(ListenableFuture<ProcessResult> process) {
+            spawnFuture.set(process);
+          }
+
+          @Override
+          public void onFailure(Throwable failure) {
+            if (!(failure instanceof PortInUseException) || !renewPorts(attempt, (PortInUseException) failure)) {
+              spawnFuture.setException(failure);
+              return;
+            }
+            spawnAsync(attempt + 1).addCallback(new ListenableFuture.Callback<ListenableFuture<ProcessResult>>() {
+              @Override
+              public void onSuccess(ListenableFuture<ProcessResult> process) {
+                spawnFuture.set(process);
+              }
+
+              @Override
+              public void onFailure(Throwable failure) {
+                spawnFuture.setException(failure);
+              }
+            });
+          }
+        });
+    return spawnFuture;
+  }
+
+  /**
+   * @return {@code true} if the server can be started again, on the new ports.
+   */
+  private boolean renewPorts(int attempt, PortInUseException failure) {
+    PortBlock ports = config.getPorts();
+    if (ports == null || attempt >= MAX_SPAWN_ATTEMPTS) {
+      return false;
+    }
+    try {
+      ports.renew();
+    } catch (IllegalStateException e) {
+      LOGGER.warn("Could not reserve new ports to start RabbitMQ Server again", e);
+      return false;
+    }
+    LOGGER.warn("{} Starting it again on {} (attempt {} of {})", failure.getMessage(), ports, attempt + 1,
+        MAX_SPAWN_ATTEMPTS);
+    return true;
+  }
+
+  private void freePorts() {
+    PortBlock ports = config.getPorts();
+    if (ports != null) {
+      ports.close();
+    }
+  }
+
+  private void checkCanStart() {
+    if (rabbitMqProcess != null || startPending) {
       throw new IllegalStateException("Start shouldn't be called more than once unless stop() has been called before.");
     }
+  }
+
+  private StartupTasks newStartupTasks() {
+    return new StartupTasks()
+        .add(new Runnable() {
+          @Override
+          public void run() {
+            check();
+          }
+        })
+        .add(new Runnable() {
+          @Override
+          public void run() {
+            prepareArtifact();
+          }
+        });
+  }
 
-    check();
-    download();
-    extract();
-    run();
+  private static void startupSucceeded(LifecycleEventPublisher.Phase startup, StartupTasks tasks) {
+    startup.measure(LifecycleEvent.CRITICAL_PATH_MILLIS, TimeUnit.NANOSECONDS.toMillis(tasks.getCriticalPathTimeInNanos()))
+        .measure(LifecycleEvent.SERIAL_MILLIS, TimeUnit.NANOSECONDS.toMillis(tasks.getSerialTimeInNanos()))
+        .succeeded();
+  }
+
+  private void prepareArtifact()
+      throws DownloadException, ExtractionException, DefinitionsException, RabbitMqConfException,
+      RabbitMqCommandException, RamDataException {
+    accessCache();
+    ExtractionCounter extractionCounter = new ExtractionCounter();
+    download(extractionCounter);
+    extract(extractionCounter);
+    new DefinitionsInstaller(config).run();
+    new RabbitMqConfWriter(config).run();
+    new EnabledPluginsWriter(config).run();
+    new RamDataFolder(config).create();
   }
 
   private void check() throws ErlangVersionException {
-    new ErlangVersionChecker(config).check();
+    LifecycleEventPublisher.Phase phase = publisher.start(LifecyclePhase.ERLANG_CHECK);
+    try {
+      new ErlangVersionChecker(config).check();
+      phase.succeeded();
+    } catch (RuntimeException e) {
+      phase.failed(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Looks for previously downloaded and extracted files and records their use before they're downloaded or extracted
+   * (which may happen at the same time), so they aren't removed from the cache while in use.
+   */
+  private void accessCache() {
+    LifecycleEventPublisher.Phase phase = publisher.start(LifecyclePhase.CACHE_LOOKUP);
+    ArtifactCache cache = config.getArtifactCache();
+    boolean archiveCached = config.getDownloadTarget().isFile();
+    boolean extractionCached = config.getTemplateFolder().isDirectory();
+    if (cache != null) {
+      archiveCached = cache.accessArchive(config.getDownloadTarget());
+      extractionCached = cache.accessTree(config.getTemplateFolder());
+    }
+    phase.measure(LifecycleEvent.ARCHIVE_CACHED, archiveCached ? 1 : 0)
+        .measure(LifecycleEvent.EXTRACTION_CACHED, extractionCached ? 1 : 0)
+        .succeeded();
   }
 
-  private void download() throws DownloadException {
-    Downloader downloader = new DownloaderFactory(config).getNewInstance();
-    downloader.run();
+  /**
+   * Measures the bytes downloaded from the changes to the download target, since cached downloaders may skip or resume
+   * the download.
+   */
+  private void download(ExtractionCounter extractionCounter) throws DownloadException {
+    LifecycleEventPublisher.Phase phase = publisher.start(LifecyclePhase.DOWNLOAD);
+    File target = config.getDownloadTarget();
+    long lengthBefore = target.length();
+    long lastModifiedBefore = target.lastModified();
+    try {
+      Downloader downloader = new DownloaderFactory(config, extractionCounter).getNewInstance();
+      downloader.run();
+      boolean downloaded = target.length() != lengthBefore || target.lastModified() != lastModifiedBefore;
+      long bytes = downloaded ? target.length() : 0;
+      long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(phase.getElapsedNanos()));
+      phase.measure(LifecycleEvent.BYTES, bytes)
+          .measure(LifecycleEvent.BYTES_PER_SECOND, bytes * 1000 / elapsedMillis)
+          .succeeded();
+    } catch (RuntimeException e) {
+      phase.failed(e);
+      throw e;
+    }
   }
 
-  private void extract() throws ExtractionException {
-    Extractor extractor = new ExtractorFactory(config).getNewInstance();
-    extractor.run();
+  /**
+   * Measures the files recorded by the given counter, which includes the files extracted while downloading, if any.
+   */
+  private void extract(ExtractionCounter extractionCounter) throws ExtractionException {
+    LifecycleEventPublisher.Phase phase = publisher.start(LifecyclePhase.EXTRACTION);
+    try {
+      Extractor extractor = new ExtractorFactory(config, extractionCounter).getNewInstance();
+      extractor.run();
+      new InstanceMaterializer(config).run();
+      new PluginsExpander(config).run();
+      phase.measure(LifecycleEvent.FILES, extractionCounter.getFilesExtracted())
+          .measure(LifecycleEvent.BYTES, extractionCounter.getBytesExtracted())
+          .succeeded();
+    } catch (RuntimeException e) {
+      phase.failed(e);
+      throw e;
+    }
   }
 
   private void run() throws StartupException {
-    rabbitMqProcess = new StartupHelper(config).call();
+    for (int attempt = 1; ; attempt++) {
+      try {
+        rabbitMqProcess = new StartupHelper(config, publisher).call();
+        return;
+      } catch (PortInUseException e) {
+        if (!renewPorts(attempt, e)) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  private void evictFromCache() {
+    ArtifactCache cache = config.getArtifactCache();
+    if (cache != null) {
+      cache.evict();
+    }
   }
 
   /**
@@ -88,8 +391,48 @@ public class EmbeddedRabbitMq {
     if (rabbitMqProcess == null) {
       throw new IllegalStateException("Stop shouldn't be called unless 'start()' was successful.");
     }
-    new ShutdownHelper(config, rabbitMqProcess).run();
+    LifecycleEventPublisher.Phase phase = publisher.start(LifecyclePhase.SHUTDOWN);
+    try {
+      new ShutdownHelper(config, rabbitMqProcess).run();
+      new RamDataFolder(config).delete();
+      freePorts();
+      phase.succeeded();
+    } catch (RuntimeException e) {
+      phase.failed(e);
+      throw e;
+    }
     rabbitMqProcess = null;
   }
 
+  /**
+   * Submits the command to stop RabbitMQ without blocking the current thread.
+   *
+   * @return a future completed once the shutdown is completed, or completed with a {@link ShutDownException} if
+   *     there's an issue shutting down the RabbitMQ server.
+   */
+  public ListenableFuture<Void> stopAsync() {
+    if (rabbitMqProcess == null) {
+      throw new IllegalStateException("Stop shouldn't be called unless 'start()' was successful.");
+    }
+    final LifecycleEventPublisher.Phase phase = publisher.start(LifecyclePhase.SHUTDOWN);
+    final SettableFuture<Void> shutdownFuture = new SettableFuture<>();
+    new ShutdownHelper(config, rabbitMqProcess).runAsync().addCallback(new ListenableFuture.Callback<Void>() {
+      @Override
+      public void onSuccess(Void result) {
+        rabbitMqProcess = null;
+        new RamDataFolder(config).delete();
+        freePorts();
+        phase.succeeded();
+        shutdownFuture.set(null);
+      }
+
+      @Override
+      public void onFailure(Throwable failure) {
+        phase.failed(failure);
+        shutdownFuture.setException(failure);
+      }
+    });
+    return shutdownFuture;
+  }
+
 }
@@ -5,16 +5,35 @@ import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCommand;
 import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCtl;
 import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqPlugins;
 import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqServer;
+import io.arivera.oss.embedded.rabbitmq.bin.plugins.EnabledPluginsWriter;
+import io.arivera.oss.embedded.rabbitmq.cache.ArtifactCache;
+import io.arivera.oss.embedded.rabbitmq.conf.RabbitMqConf;
+import io.arivera.oss.embedded.rabbitmq.conf.RabbitMqConfWriter;
+import io.arivera.oss.embedded.rabbitmq.definitions.Definitions;
+import io.arivera.oss.embedded.rabbitmq.definitions.DefinitionsInstaller;
+import io.arivera.oss.embedded.rabbitmq.extract.PluginsExpander;
+import io.arivera.oss.embedded.rabbitmq.helpers.RamDataFolder;
+import io.arivera.oss.embedded.rabbitmq.lifecycle.LifecycleListener;
+import io.arivera.oss.embedded.rabbitmq.readiness.PredefinedReadinessStrategy;
+import io.arivera.oss.embedded.rabbitmq.readiness.ReadinessStrategy;
 import io.arivera.oss.embedded.rabbitmq.util.OperatingSystem;
-import io.arivera.oss.embedded.rabbitmq.util.RandomPortSupplier;
+import io.arivera.oss.embedded.rabbitmq.util.PortAllocator;
+import io.arivera.oss.embedded.rabbitmq.util.PortBlock;
 
 import java.io.File;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 /**
  * Immutable configuration used to control all interactions with RabbitMQ broker and respective commands.
@@ -33,23 +52,46 @@ import java.util.concurrent.TimeUnit;
  */
 public class EmbeddedRabbitMqConfig {
 
+  private static final Pattern MANAGEMENT_LISTENER_ARG = Pattern.compile("-rabbitmq_management\\s+listener\\b");
+
   private final Version version;
 
   private final URL downloadSource;
   private final File downloadTarget;
   private final File extractionFolder;
   private final File appFolder;
+  private final File templateFolder;
 
   private final long downloadReadTimeoutInMillis;
   private final long downloadConnectionTimeoutInMillis;
   private final long defaultRabbitMqCtlTimeoutInMillis;
   private final long rabbitMqServerInitializationTimeoutInMillis;
   private final long erlangCheckTimeoutInMillis;
+  private final long clusterJoinTimeoutInMillis;
 
   private final boolean shouldCacheDownload;
   private final boolean deleteCachedFileOnErrors;
+  private final boolean useExtractionManifest;
+  private final boolean extractWhileDownloading;
+  private final int downloadConnections;
+  private final String downloadChecksum;
+  private final ArtifactCache artifactCache;
+  private final ReadinessStrategy readinessStrategy;
+  private final long readinessInitialPollIntervalInMillis;
+  private final long readinessMaxPollIntervalInMillis;
+  private final List<LifecycleListener> lifecycleListeners;
+  private final boolean parallelStartup;
+  private final boolean cacheErlangVersion;
+  private final boolean preExpandPlugins;
+  private final Definitions definitions;
+  private final Set<String> enabledPlugins;
+  private final TuningProfile tuningProfile;
+  private final RabbitMqConf rabbitMqConf;
+  private final File ramDataFolder;
+  private final long ramDataRequiredFreeSpaceInBytes;
 
   private final Map<String, String> envVars;
+  private final PortBlock ports;
   private final RabbitMqCommand.ProcessExecutorFactory processExecutorFactory;
   private final Proxy downloadProxy;
 
@@ -58,13 +100,32 @@ public class EmbeddedRabbitMqConfig {
                                    File downloadTarget,
                                    File extractionFolder,
                                    File appFolder,
+                                   File templateFolder,
                                    long downloadReadTimeoutInMillis,
                                    long downloadConnectionTimeoutInMillis,
                                    long defaultRabbitMqCtlTimeoutInMillis,
                                    long rabbitMqServerInitializationTimeoutInMillis,
                                    long erlangCheckTimeoutInMillis,
+                                   long clusterJoinTimeoutInMillis,
                                    boolean cacheDownload, boolean deleteCachedFile,
+                                   boolean useExtractionManifest, boolean extractWhileDownloading,
+                                   int downloadConnections, String downloadChecksum,
+                                   ArtifactCache artifactCache,
+                                   ReadinessStrategy readinessStrategy,
+                                   long readinessInitialPollIntervalInMillis,
+                                   long readinessMaxPollIntervalInMillis,
+                                   List<LifecycleListener> lifecycleListeners,
+                                   boolean parallelStartup,
+                                   boolean cacheErlangVersion,
+                                   boolean preExpandPlugins,
+                                   Definitions definitions,
+                                   Set<String> enabledPlugins,
+                                   TuningProfile tuningProfile,
+                                   RabbitMqConf rabbitMqConf,
+                                   File ramDataFolder,
+                                   long ramDataRequiredFreeSpaceInBytes,
                                    Map<String, String> envVars,
+                                   PortBlock ports,
                                    RabbitMqCommand.ProcessExecutorFactory processExecutorFactory,
                                    Proxy downloadProxy ) {
     this.version = version;
@@ -72,14 +133,35 @@ public class EmbeddedRabbitMqConfig {
     this.downloadTarget = downloadTarget;
     this.extractionFolder = extractionFolder;
     this.appFolder = appFolder;
+    this.templateFolder = templateFolder;
     this.downloadReadTimeoutInMillis = downloadReadTimeoutInMillis;
     this.downloadConnectionTimeoutInMillis = downloadConnectionTimeoutInMillis;
     this.defaultRabbitMqCtlTimeoutInMillis = defaultRabbitMqCtlTimeoutInMillis;
     this.rabbitMqServerInitializationTimeoutInMillis = rabbitMqServerInitializationTimeoutInMillis;
     this.erlangCheckTimeoutInMillis = erlangCheckTimeoutInMillis;
+    this.clusterJoinTimeoutInMillis = clusterJoinTimeoutInMillis;
     this.shouldCacheDownload = cacheDownload;
     this.deleteCachedFileOnErrors = deleteCachedFile;
+    this.useExtractionManifest = useExtractionManifest;
+    this.extractWhileDownloading = extractWhileDownloading;
+    this.downloadConnections = downloadConnections;
+    this.downloadChecksum = downloadChecksum;
+    this.artifactCache = artifactCache;
+    this.readinessStrategy = readinessStrategy;
+    this.readinessInitialPollIntervalInMillis = readinessInitialPollIntervalInMillis;
+    this.readinessMaxPollIntervalInMillis = readinessMaxPollIntervalInMillis;
+    this.lifecycleListeners = lifecycleListeners;
+    this.parallelStartup = parallelStartup;
+    this.cacheErlangVersion = cacheErlangVersion;
+    this.preExpandPlugins = preExpandPlugins;
+    this.definitions = definitions;
+    this.enabledPlugins = enabledPlugins;
+    this.tuningProfile = tuningProfile;
+    this.rabbitMqConf = rabbitMqConf;
+    this.ramDataFolder = ramDataFolder;
+    this.ramDataRequiredFreeSpaceInBytes = ramDataRequiredFreeSpaceInBytes;
     this.envVars = envVars;
+    this.ports = ports;
     this.processExecutorFactory = processExecutorFactory;
     this.downloadProxy = downloadProxy;
   }
@@ -104,6 +186,14 @@ public class EmbeddedRabbitMqConfig {
     return erlangCheckTimeoutInMillis;
   }
 
+  /**
+   * @return time given to each node of an {@link io.arivera.oss.embedded.rabbitmq.cluster.EmbeddedRabbitMqCluster} to
+   *     join the cluster.
+   */
+  public long getClusterJoinTimeoutInMillis() {
+    return clusterJoinTimeoutInMillis;
+  }
+
   public URL getDownloadSource() {
     return downloadSource;
   }
@@ -124,12 +214,160 @@ public class EmbeddedRabbitMqConfig {
     return deleteCachedFileOnErrors;
   }
 
+  public boolean shouldUseExtractionManifest() {
+    return useExtractionManifest;
+  }
+
+  public boolean shouldExtractWhileDownloading() {
+    return extractWhileDownloading;
+  }
+
+  public int getDownloadConnections() {
+    return downloadConnections;
+  }
+
+  /**
+   * @return expected SHA-256 digest of the downloaded artifact as a lower case hexadecimal String, or {@code null}
+   *     if the artifact can't be verified.
+   */
+  public String getDownloadChecksum() {
+    return downloadChecksum;
+  }
+
+  /**
+   * @return cache where the artifact is downloaded to and extracted into, or {@code null} if none is managed.
+   */
+  public ArtifactCache getArtifactCache() {
+    return artifactCache;
+  }
+
+  public ReadinessStrategy getReadinessStrategy() {
+    return readinessStrategy;
+  }
+
+  public long getReadinessInitialPollIntervalInMillis() {
+    return readinessInitialPollIntervalInMillis;
+  }
+
+  public long getReadinessMaxPollIntervalInMillis() {
+    return readinessMaxPollIntervalInMillis;
+  }
+
+  /**
+   * @return an unmodifiable list of the listeners notified of each phase of the broker's startup and shutdown.
+   */
+  public List<LifecycleListener> getLifecycleListeners() {
+    return lifecycleListeners;
+  }
+
+  public boolean shouldStartInParallel() {
+    return parallelStartup;
+  }
+
+  public boolean shouldCacheErlangVersion() {
+    return cacheErlangVersion;
+  }
+
+  public boolean shouldPreExpandPlugins() {
+    return preExpandPlugins;
+  }
+
+  /**
+   * @return definitions loaded by the broker as it boots, or {@code null} if there are none.
+   */
+  public Definitions getDefinitions() {
+    return definitions;
+  }
+
+  /**
+   * @return an unmodifiable set of the plugins enabled before the broker boots, which may be empty.
+   */
+  public Set<String> getEnabledPlugins() {
+    return enabledPlugins;
+  }
+
+  /**
+   * @return profile whose arguments were added to {@link RabbitMqEnvVar#SERVER_ADDITIONAL_ERL_ARGS}, or {@code null}
+   *     if there's none.
+   */
+  public TuningProfile getTuningProfile() {
+    return tuningProfile;
+  }
+
+  /**
+   * @return settings written to the configuration file set as {@link RabbitMqEnvVar#CONFIG_FILE}, or {@code null} if
+   *     there are none.
+   */
+  public RabbitMqConf getRabbitMqConf() {
+    return rabbitMqConf;
+  }
+
+  /**
+   * @return folder, private to this broker, on a file system backed by memory where the broker keeps its data, or
+   *     {@code null} if it's kept in the app folder.
+   */
+  public File getRamDataFolder() {
+    return ramDataFolder;
+  }
+
+  /**
+   * @return free space required on the file system of the {@link #getRamDataFolder() RAM data folder}.
+   */
+  public long getRamDataRequiredFreeSpaceInBytes() {
+    return ramDataRequiredFreeSpaceInBytes;
+  }
+
   public File getAppFolder() {
     return appFolder;
   }
 
+  /**
+   * @return folder where the artifact's files are extracted to. It's the same as the {@link #getAppFolder() app folder}
+   *     unless the broker runs from an {@link Builder#instanceFolder(File) instance folder} of its own.
+   */
+  public File getTemplateFolder() {
+    return templateFolder;
+  }
+
+  public boolean shouldUseBrokerInstance() {
+    return !appFolder.equals(templateFolder);
+  }
+
+  /**
+   * The management port of {@link #getPorts()} is added in front of {@link RabbitMqEnvVar#SERVER_ADDITIONAL_ERL_ARGS}
+   * as the {@code rabbitmq_management} listener, unless those arguments already define one. Since it's an application
+   * setting, it's ignored when the management plugin isn't enabled.
+   *
+   * @return environment variables to use for the execution of all RabbitMQ commands, including the ports of
+   *     {@link #getPorts()}, if any, as they are at the time of the call.
+   */
   public Map<String, String> getEnvVars() {
-    return envVars;
+    if (ports == null) {
+      return envVars;
+    }
+    Map<String, String> withPorts = new HashMap<>(envVars);
+    withPorts.put(RabbitMqEnvVar.NODE_PORT.getEnvVarName(), String.valueOf(ports.getAmqpPort()));
+    if (!envVars.containsKey(RabbitMqEnvVar.DIST_PORT.getEnvVarName())) {
+      withPorts.put(RabbitMqEnvVar.DIST_PORT.getEnvVarName(), String.valueOf(ports.getDistributionPort()));
+    }
+    String erlArgsVar = RabbitMqEnvVar.SERVER_ADDITIONAL_ERL_ARGS.getEnvVarName();
+    String erlArgs = envVars.get(erlArgsVar);
+    if (erlArgs == null || !MANAGEMENT_LISTENER_ARG.matcher(erlArgs).find()) {
+      withPorts.put(erlArgsVar, "-rabbitmq_management listener [{port," + ports.getManagementPort() + "}]"
+          + (erlArgs == null ? "" : " " + erlArgs));
+    }
+    return Collections.unmodifiableMap(withPorts);
+  }
+
+  /**
+   * The block belongs to the broker started with this configuration, which closes it once it stops or fails to start.
+   * A configuration that's never started holds on to the ports until the block is closed by whoever built it.
+   *
+   * @return ports reserved for this broker by {@link Builder#randomPort()} or {@link Builder#ports(PortBlock)}, or
+   *     {@code null} if the ports are defined by the environment variables alone.
+   */
+  public PortBlock getPorts() {
+    return ports;
   }
 
   public RabbitMqCommand.ProcessExecutorFactory getProcessExecutorFactory() {
@@ -146,7 +384,7 @@ public class EmbeddedRabbitMqConfig {
    * This method will return the correct port even if the {@link Builder#randomPort()} method was used.
    */
   public int getRabbitMqPort() {
-    String portValue = this.envVars.get(RabbitMqEnvVar.NODE_PORT.getEnvVarName());
+    String portValue = getEnvVars().get(RabbitMqEnvVar.NODE_PORT.getEnvVarName());
     if (portValue == null) {
       return RabbitMqEnvVar.DEFAULT_NODE_PORT;
     } else {
@@ -182,13 +420,34 @@ public class EmbeddedRabbitMqConfig {
     private long defaultRabbitMqCtlTimeoutInMillis;
     private long rabbitMqServerInitializationTimeoutInMillis;
     private long erlangCheckTimeoutInMillis;
+    private long clusterJoinTimeoutInMillis;
     private File downloadFolder;
     private File downloadTarget;
     private File extractionFolder;
+    private File instanceFolder;
     private boolean cacheDownload;
     private boolean deleteCachedFile;
+    private boolean useExtractionManifest;
+    private boolean extractWhileDownloading;
+    private int downloadConnections;
+    private String downloadChecksum;
+    private ArtifactCache artifactCache;
+    private ReadinessStrategy readinessStrategy;
+    private long readinessInitialPollIntervalInMillis;
+    private long readinessMaxPollIntervalInMillis;
+    private List<LifecycleListener> lifecycleListeners;
+    private boolean parallelStartup;
+    private boolean cacheErlangVersion;
+    private boolean preExpandPlugins;
+    private Definitions definitions;
+    private Set<String> enabledPlugins;
+    private TuningProfile tuningProfile;
+    private RabbitMqConf rabbitMqConf;
+    private File ramFileSystem;
+    private long ramDataRequiredFreeSpaceInBytes;
     private Version version;
     private Map<String, String> envVars;
+    private PortBlock ports;
     private ArtifactRepository artifactRepository;
     private RabbitMqCommand.ProcessExecutorFactory processExecutorFactory;
     private Proxy downloadProxy = null;
@@ -204,11 +463,22 @@ public class EmbeddedRabbitMqConfig {
       this.defaultRabbitMqCtlTimeoutInMillis = TimeUnit.SECONDS.toMillis(2);
       this.rabbitMqServerInitializationTimeoutInMillis = TimeUnit.SECONDS.toMillis(3);
       this.erlangCheckTimeoutInMillis = TimeUnit.SECONDS.toMillis(1);
+      this.clusterJoinTimeoutInMillis = TimeUnit.SECONDS.toMillis(30);
       this.cacheDownload = true;
       this.deleteCachedFile = true;
+      this.useExtractionManifest = true;
+      this.extractWhileDownloading = false;
+      this.downloadConnections = 1;
+      this.readinessStrategy = PredefinedReadinessStrategy.LOG_PATTERN;
+      this.readinessInitialPollIntervalInMillis = 10;
+      this.readinessMaxPollIntervalInMillis = 500;
       this.downloadFolder = new File(System.getProperty("user.home"), DOWNLOAD_FOLDER);
       this.artifactRepository = OfficialArtifactRepository.GITHUB;
       this.envVars = new HashMap<>();
+      this.lifecycleListeners = new ArrayList<>();
+      this.enabledPlugins = new LinkedHashSet<>();
+      this.parallelStartup = true;
+      this.cacheErlangVersion = true;
       this.processExecutorFactory = new RabbitMqCommand.ProcessExecutorFactory();
     }
 
@@ -236,12 +506,54 @@ public class EmbeddedRabbitMqConfig {
       return this;
     }
 
+    /**
+     * Defines how to determine that the RabbitMQ Server finished starting up and can be used. The strategy is given
+     * up to the {@link #rabbitMqServerInitializationTimeoutInMillis(long) initialization timeout} to succeed.
+     * <p>
+     * Default value is {@link PredefinedReadinessStrategy#LOG_PATTERN}
+     *
+     * @see PredefinedReadinessStrategy
+     */
+    public Builder readinessStrategy(ReadinessStrategy readinessStrategy) {
+      this.readinessStrategy = readinessStrategy;
+      return this;
+    }
+
+    /**
+     * Defines how often the {@link #readinessStrategy(ReadinessStrategy) readiness strategy} is checked. The interval
+     * starts at the initial value and doubles after every unsuccessful check, up to the maximum value. Output written
+     * by the server triggers a check right away.
+     * <p>
+     * Default values are {@code 10} and {@code 500} milliseconds
+     */
+    public Builder readinessPollIntervalInMillis(long initialIntervalInMillis, long maxIntervalInMillis) {
+      if (initialIntervalInMillis < 1 || maxIntervalInMillis < initialIntervalInMillis) {
+        throw new IllegalArgumentException("Expected a positive initial interval no greater than the maximum but got: "
+            + initialIntervalInMillis + " and " + maxIntervalInMillis);
+      }
+      this.readinessInitialPollIntervalInMillis = initialIntervalInMillis;
+      this.readinessMaxPollIntervalInMillis = maxIntervalInMillis;
+      return this;
+    }
+
     @Beta
     public Builder erlangCheckTimeoutInMillis(long erlangCheckTimeoutInMillis) {
       this.erlangCheckTimeoutInMillis = erlangCheckTimeoutInMillis;
       return this;
     }
 
+    /**
+     * Defines how long each node of an {@link io.arivera.oss.embedded.rabbitmq.cluster.EmbeddedRabbitMqCluster} is
+     * given to join the cluster, which takes a {@code rabbitmqctl} command to stop its application, another to join
+     * the cluster and another to start the application again.
+     * <p>
+     * Default value is {@code 30} seconds
+     */
+    public Builder clusterJoinTimeoutInMillis(long clusterJoinTimeoutInMillis) {
+      this.clusterJoinTimeoutInMillis = clusterJoinTimeoutInMillis;
+      return this;
+    }
+
     /**
      * Defines where the artifact should be downloaded from and characteristics of the downloaded artifact.
      * <p>
@@ -335,6 +647,21 @@ public class EmbeddedRabbitMqConfig {
       return this;
     }
 
+    /**
+     * Define a folder, private to this broker, where it runs from. The files extracted to the
+     * {@link #extractionFolder(File) extraction folder} are then kept untouched and used as a template shared by all
+     * brokers of the same version: the instance folder is created out of hard links to them, except for the
+     * {@code etc} and {@code var} folders which are copied, so each new broker takes very little time and disk space.
+     * <p>
+     * By default, the broker runs straight from the extraction folder.
+     *
+     * @see io.arivera.oss.embedded.rabbitmq.extract.InstanceMaterializer
+     */
+    public Builder instanceFolder(File instanceFolder) {
+      this.instanceFolder = instanceFolder;
+      return this;
+    }
+
     /**
      * If the artifact is already present in the filesystem, setting this as {code true} will prevent re-downloading it.
      * <p>
@@ -349,6 +676,9 @@ public class EmbeddedRabbitMqConfig {
      * If there's an issue downloading or extracting the artifact, automatically delete from downloaded file to prevent
      * future re-use.
      * <p>
+     * When using a {@link #useCachedDownload(boolean) cached download}, an interrupted download is kept apart from
+     * the download target and continued by the next attempt, so it's never mistaken for a complete artifact.
+     * <p>
      * Default value is {@code true}
      */
     public Builder deleteDownloadedFileOnErrors(boolean deleteCachedFile) {
@@ -356,6 +686,88 @@ public class EmbeddedRabbitMqConfig {
       return this;
     }
 
+    /**
+     * When using a {@link #useCachedDownload(boolean) cached download}, setting this to {@code true} will record a
+     * manifest of the extracted files next to the extraction folder. On following executions, the extracted files
+     * are compared to the manifest (without decompressing the artifact again) and the extraction is skipped if they
+     * are intact, or only the missing or modified files are extracted again.
+     * <p>
+     * Default value is {@code true}
+     *
+     * @see io.arivera.oss.embedded.rabbitmq.extract.ExtractionMetrics
+     */
+    public Builder useExtractionManifest(boolean useExtractionManifest) {
+      this.useExtractionManifest = useExtractionManifest;
+      return this;
+    }
+
+    /**
+     * Setting this to {@code true} will extract the artifact as it's being downloaded instead of waiting for the
+     * download to finish, so extraction completes shortly after the last byte arrives. The artifact is still saved
+     * to the {@link #downloadTarget(File) download target} for future re-use.
+     * <p>
+     * This only applies to TAR based artifacts when using a {@link #useCachedDownload(boolean) cached download} and
+     * an {@link #useExtractionManifest(boolean) extraction manifest}. Otherwise the artifact is extracted after it's
+     * downloaded.
+     * <p>
+     * Default value is {@code false}
+     */
+    public Builder extractWhileDownloading(boolean extractWhileDownloading) {
+      this.extractWhileDownloading = extractWhileDownloading;
+      return this;
+    }
+
+    /**
+     * Defines how many concurrent connections are used to download the artifact, each one fetching a different range
+     * of bytes. This helps when the throughput of a single connection is limited (for example, by a proxy).
+     * <p>
+     * If the server doesn't support ranged requests, the artifact is downloaded using a single connection.
+     * Extracting {@link #extractWhileDownloading(boolean) while downloading} takes precedence over this setting,
+     * since it requires the bytes to arrive in order.
+     * <p>
+     * Default value is {@code 1}
+     */
+    public Builder downloadConnections(int downloadConnections) {
+      if (downloadConnections < 1) {
+        throw new IllegalArgumentException("At least one download connection is required but got: " + downloadConnections);
+      }
+      this.downloadConnections = downloadConnections;
+      return this;
+    }
+
+    /**
+     * Defines the expected SHA-256 digest of the artifact. The digest is calculated while the artifact is downloaded
+     * and the download fails if it doesn't match. Previously downloaded artifacts are only re-used if they match too.
+     * <p>
+     * Default value is the one provided by the artifact repository when it's a {@link VerifiableArtifactRepository}.
+     * Otherwise, the downloaded artifact isn't verified.
+     *
+     * @param sha256 a hexadecimal String of 64 characters.
+     */
+    public Builder downloadChecksum(String sha256) {
+      if (sha256 == null || !sha256.matches("[0-9a-fA-F]{64}")) {
+        throw new IllegalArgumentException("Expected a hexadecimal SHA-256 digest but got: " + sha256);
+      }
+      this.downloadChecksum = sha256.toLowerCase(Locale.US);
+      return this;
+    }
+
+    /**
+     * Defines a cache, bounded in size, where the artifact is downloaded to and extracted into. Artifacts and extracted
+     * files that haven't been used recently are removed from it after the broker starts, whenever the cache grows past
+     * its maximum size.
+     * <p>
+     * The cache replaces the {@link #downloadFolder(File) download folder} and the
+     * {@link #extractionFolder(File) extraction folder}, unless a {@link #downloadTarget(File) download target} or an
+     * extraction folder are explicitly defined.
+     * <p>
+     * Default value is {@code null} (no managed cache)
+     */
+    public Builder artifactCache(ArtifactCache artifactCache) {
+      this.artifactCache = artifactCache;
+      return this;
+    }
+
     /**
      * Defines an environment variable value to use for the execution of all RabbitMQ commands.
      *
@@ -364,6 +776,9 @@ public class EmbeddedRabbitMqConfig {
      * @see #envVar(RabbitMqEnvVar, String)
      */
     public Builder envVar(String key, String value) {
+      if (RabbitMqEnvVar.NODE_PORT.getEnvVarName().equals(key)) {
+        replacePorts(null);
+      }
       this.envVars.put(key, value);
       return this;
     }
@@ -381,7 +796,8 @@ public class EmbeddedRabbitMqConfig {
     /**
      * Defines the port that this RabbitMQ broker node will run on.
      * <p>
-     * The port is defined by setting the environment variable {@link RabbitMqEnvVar#NODE_PORT}
+     * The port is defined by setting the environment variable {@link RabbitMqEnvVar#NODE_PORT}, which closes the ports
+     * reserved before, if any.
      *
      * @param port any valid port number or {@code -1} to use any random available port (same as {@link #randomPort()})
      */
@@ -395,13 +811,34 @@ public class EmbeddedRabbitMqConfig {
     }
 
     /**
-     * Defines the port that this RabbitMQ broker node will run on.
+     * Defines the port that this RabbitMQ broker node will run on, along with its distribution and management ports,
+     * as a new {@link PortBlock} reserved by the {@link PortAllocator} shared by this JVM.
      * <p>
-     * The port is defined by setting the environment variable {@link RabbitMqEnvVar#NODE_PORT}
+     * The block is closed by the broker once it stops or fails to start. Configurations that are never started should
+     * close it through {@link EmbeddedRabbitMqConfig#getPorts()}, or their ports stay reserved.
+     *
+     * @see #ports(PortBlock)
      */
     public Builder randomPort() {
-      int randomPort = new RandomPortSupplier().get();
-      return port(randomPort);
+      return ports(PortAllocator.getInstance().reserveBlock());
+    }
+
+    /**
+     * Defines the ports this RabbitMQ broker node will run on, which are held until the broker is about to be
+     * spawned. If the broker still finds them taken, it's started again on a new block of ports.
+     * <p>
+     * The AMQP port is defined as {@link RabbitMqEnvVar#NODE_PORT}, and the distribution port as
+     * {@link RabbitMqEnvVar#DIST_PORT} unless defined. The management port is defined through
+     * {@link RabbitMqEnvVar#SERVER_ADDITIONAL_ERL_ARGS} unless they define a {@code rabbitmq_management} listener of
+     * their own, and is used if the management plugin is enabled.
+     * <p>
+     * Brokers built from this builder share the block, until another port is defined, which closes it. Since the
+     * block is closed by the first broker to stop, use {@link #copy()} to configure more than one broker.
+     */
+    public Builder ports(PortBlock ports) {
+      this.envVars.remove(RabbitMqEnvVar.NODE_PORT.getEnvVarName());
+      replacePorts(ports);
+      return this;
     }
 
     /**
@@ -411,7 +848,155 @@ public class EmbeddedRabbitMqConfig {
      * @see #envVar(RabbitMqEnvVar, String)
      */
     public Builder envVars(Map<String, String> map) {
-      this.envVars.putAll(map);
+      for (Map.Entry<String, String> envVar : map.entrySet()) {
+        this.envVar(envVar.getKey(), envVar.getValue());
+      }
+      return this;
+    }
+
+    /**
+     * Adds a listener notified, with structured timings and measurements, every time the broker finishes a phase of
+     * its startup or shutdown (like the download, the extraction or the wait until it's ready).
+     *
+     * @see io.arivera.oss.embedded.rabbitmq.lifecycle.LifecyclePhase
+     */
+    public Builder lifecycleListener(LifecycleListener listener) {
+      this.lifecycleListeners.add(listener);
+      return this;
+    }
+
+    /**
+     * Setting this to {@code true} will check the system's Erlang version while the artifact is looked up, downloaded
+     * and extracted, instead of before. If either of them fails, the other one is cancelled.
+     * <p>
+     * Default value is {@code true}
+     *
+     * @see io.arivera.oss.embedded.rabbitmq.lifecycle.LifecycleEvent#CRITICAL_PATH_MILLIS
+     */
+    public Builder parallelStartup(boolean parallelStartup) {
+      this.parallelStartup = parallelStartup;
+      return this;
+    }
+
+    /**
+     * Setting this to {@code true} will determine the system's Erlang version from the files of the Erlang installation
+     * found in the {@code PATH}, launching Erlang only if that's not possible, and will remember it across executions
+     * until the installation changes.
+     * <p>
+     * Default value is {@code true}
+     *
+     * @see io.arivera.oss.embedded.rabbitmq.bin.CachedErlangShell
+     */
+    public Builder cacheErlangVersion(boolean cacheErlangVersion) {
+      this.cacheErlangVersion = cacheErlangVersion;
+      return this;
+    }
+
+    /**
+     * Setting this to {@code true} will expand the plugin archives once, into a folder shared by all brokers of the
+     * same version, and use it as {@link RabbitMqEnvVar#PLUGINS_DIR}, so that brokers don't unpack their plugins on
+     * every boot. The folder is expanded again whenever the archives change.
+     * <p>
+     * Ignored if {@link RabbitMqEnvVar#PLUGINS_DIR} is defined.
+     * <p>
+     * Default value is {@code false}
+     *
+     * @see PluginsExpander
+     */
+    public Builder preExpandPlugins(boolean preExpandPlugins) {
+      this.preExpandPlugins = preExpandPlugins;
+      return this;
+    }
+
+    /**
+     * Defines users, virtual hosts, permissions, exchanges, queues, bindings and policies for the broker to load as it
+     * boots, so it's ready to use without running any command.
+     * <p>
+     * The definitions are loaded through a configuration file written next to them, or the one written with the
+     * {@link #rabbitMqConf(RabbitMqConf) broker settings}, which is set as {@link RabbitMqEnvVar#CONFIG_FILE}, so that
+     * variable can't be defined as well.
+     * <p>
+     * Default value is {@code null} (no definitions)
+     */
+    public Builder definitions(Definitions definitions) {
+      this.definitions = definitions;
+      return this;
+    }
+
+    /**
+     * Adds plugins to enable before the broker boots, so they're all loaded once, during boot, instead of enabling
+     * them one by one with {@link RabbitMqPlugins#enable(String)} once it's running. Their dependencies are enabled
+     * as well.
+     * <p>
+     * The plugins are listed in a file of their own, set as {@link RabbitMqEnvVar#ENABLED_PLUGINS_FILE}, unless that
+     * variable is defined, in which case that file is overwritten.
+     */
+    public Builder enabledPlugins(String... plugins) {
+      Collections.addAll(this.enabledPlugins, plugins);
+      return this;
+    }
+
+    /**
+     * Tunes the Erlang VM and the broker for a kind of workload, instead of crafting
+     * {@link RabbitMqEnvVar#SERVER_ADDITIONAL_ERL_ARGS} by hand. Arguments defined through that variable are kept,
+     * after the profile's, so they take precedence.
+     * <p>
+     * Default value is {@code null} (the broker's own defaults)
+     *
+     * @see TuningProfile
+     */
+    public Builder tuningProfile(TuningProfile tuningProfile) {
+      this.tuningProfile = tuningProfile;
+      return this;
+    }
+
+    /**
+     * Defines settings of the broker, such as its memory and disk limits, to write to a configuration file in the
+     * format the {@link #version(Version) version} reads. The file is set as {@link RabbitMqEnvVar#CONFIG_FILE}, so that
+     * variable can't be defined as well.
+     * <p>
+     * Default value is {@code null} (the broker's own defaults)
+     *
+     * @see RabbitMqConfWriter
+     */
+    public Builder rabbitMqConf(RabbitMqConf rabbitMqConf) {
+      this.rabbitMqConf = rabbitMqConf;
+      return this;
+    }
+
+    /**
+     * Keeps the broker's database, message stores and logs in memory, in a folder of its own on
+     * {@link RamDataFolder#DEFAULT_FILE_SYSTEM /dev/shm}. Meant for disposable brokers, since the data is deleted once
+     * the broker stops.
+     *
+     * @see #ramDataFolder(File, long)
+     */
+    public Builder ramDataFolder(long requiredFreeSpaceInBytes) {
+      return ramDataFolder(RamDataFolder.DEFAULT_FILE_SYSTEM, requiredFreeSpaceInBytes);
+    }
+
+    /**
+     * Keeps the broker's database and message stores, defined as {@link RabbitMqEnvVar#MNESIA_BASE}, and its logs,
+     * defined as {@link RabbitMqEnvVar#LOG_BASE}, in a folder of its own on the given file system, which should be
+     * backed by memory. Variables already defined are left as they are.
+     * <p>
+     * The broker fails to start unless the file system has at least the given free space, which is only checked
+     * then. The folder is deleted once the broker stops or fails to start.
+     * <p>
+     * Default value is {@code null} (data is kept in the app folder)
+     *
+     * @param fileSystem               folder of a file system backed by memory, like {@code /dev/shm} or a
+     *                                 {@code tmpfs} mount.
+     * @param requiredFreeSpaceInBytes free space required on the file system before the broker boots.
+     * @see RamDataFolder
+     */
+    public Builder ramDataFolder(File fileSystem, long requiredFreeSpaceInBytes) {
+      if (requiredFreeSpaceInBytes < 1) {
+        throw new IllegalArgumentException("Expected a positive required free space but got: "
+            + requiredFreeSpaceInBytes);
+      }
+      this.ramFileSystem = fileSystem;
+      this.ramDataRequiredFreeSpaceInBytes = requiredFreeSpaceInBytes;
       return this;
     }
 
@@ -429,6 +1014,72 @@ public class EmbeddedRabbitMqConfig {
       return this;
     }
 
+    /**
+     * Creates a new builder with the same settings as this one, so either can be changed without affecting the other.
+     * <p>
+     * Ports reserved by {@link #randomPort()} or {@link #ports(PortBlock)} aren't copied, since a block of ports belongs
+     * to a single broker.
+     */
+    public Builder copy() {
+      Builder copy = new Builder();
+      copy.downloadReadTimeoutInMillis = downloadReadTimeoutInMillis;
+      copy.downloadConnectionTimeoutInMillis = downloadConnectionTimeoutInMillis;
+      copy.defaultRabbitMqCtlTimeoutInMillis = defaultRabbitMqCtlTimeoutInMillis;
+      copy.rabbitMqServerInitializationTimeoutInMillis = rabbitMqServerInitializationTimeoutInMillis;
+      copy.erlangCheckTimeoutInMillis = erlangCheckTimeoutInMillis;
+      copy.clusterJoinTimeoutInMillis = clusterJoinTimeoutInMillis;
+      copy.downloadFolder = downloadFolder;
+      copy.downloadTarget = downloadTarget;
+      copy.extractionFolder = extractionFolder;
+      copy.instanceFolder = instanceFolder;
+      copy.cacheDownload = cacheDownload;
+      copy.deleteCachedFile = deleteCachedFile;
+      copy.useExtractionManifest = useExtractionManifest;
+      copy.extractWhileDownloading = extractWhileDownloading;
+      copy.downloadConnections = downloadConnections;
+      copy.downloadChecksum = downloadChecksum;
+      copy.artifactCache = artifactCache;
+      copy.readinessStrategy = readinessStrategy;
+      copy.readinessInitialPollIntervalInMillis = readinessInitialPollIntervalInMillis;
+      copy.readinessMaxPollIntervalInMillis = readinessMaxPollIntervalInMillis;
+      copy.lifecycleListeners.addAll(lifecycleListeners);
+      copy.parallelStartup = parallelStartup;
+      copy.cacheErlangVersion = cacheErlangVersion;
+      copy.preExpandPlugins = preExpandPlugins;
+      copy.definitions = definitions;
+      copy.enabledPlugins.addAll(enabledPlugins);
+      copy.tuningProfile = tuningProfile;
+      copy.rabbitMqConf = rabbitMqConf;
+      copy.ramFileSystem = ramFileSystem;
+      copy.ramDataRequiredFreeSpaceInBytes = ramDataRequiredFreeSpaceInBytes;
+      copy.version = version;
+      copy.envVars.putAll(envVars);
+      copy.artifactRepository = artifactRepository;
+      copy.processExecutorFactory = processExecutorFactory;
+      copy.downloadProxy = downloadProxy;
+      return copy;
+    }
+
+    /**
+     * @return folder that brokers built with the current settings will run from, as in
+     *     {@link EmbeddedRabbitMqConfig#getAppFolder()}, without building them.
+     */
+    public File getAppFolder() {
+      Version version = this.version == null ? PredefinedVersion.LATEST : this.version;
+      File templateFolder = new File(resolveExtractionFolder(version, OperatingSystem.detect()).toString(),
+          version.getExtractionFolder());
+      return resolveAppFolder(version, templateFolder);
+    }
+
+    /**
+     * @return file system where brokers built with the current settings keep their data, each one in a folder of its
+     *     own, or {@code null} if they keep it in the app folder.
+     * @see #ramDataFolder(File, long)
+     */
+    public File getRamFileSystem() {
+      return ramFileSystem;
+    }
+
     /**
      * Builds an immutable instance of {@link EmbeddedRabbitMqConfig} using smart defaults.
      */
@@ -445,30 +1096,118 @@ public class EmbeddedRabbitMqConfig {
 
       URL downloadSource = artifactRepository.getUrl(version, os);
 
+      String checksum = downloadChecksum;
+      if (checksum == null && artifactRepository instanceof VerifiableArtifactRepository) {
+        checksum = ((VerifiableArtifactRepository) artifactRepository).getSha256(version, os);
+        if (checksum != null) {
+          checksum = checksum.toLowerCase(Locale.US);
+        }
+      }
+
+      if (downloadTarget == null && artifactCache != null) {
+        String filename = downloadSource.getPath().substring(downloadSource.getPath().lastIndexOf("/") + 1);
+        this.downloadTarget = new File(artifactCache.getArchiveFolder(downloadSource, checksum), filename);
+      }
+
+      this.extractionFolder = resolveExtractionFolder(version, os);
+
       if (downloadTarget == null) {
         String filename = downloadSource.getPath().substring(downloadSource.getPath().lastIndexOf("/"));
         this.downloadTarget = new File(downloadFolder, filename);
       }
 
-      if (extractionFolder == null) {
-        this.extractionFolder = new File(SystemUtils.JAVA_IO_TMPDIR);
-      }
+      File templateAbsPath = new File(extractionFolder.toString(), version.getExtractionFolder());
+      File appAbsPath = resolveAppFolder(version, templateAbsPath);
 
-      File appAbsPath = new File(extractionFolder.toString(), version.getExtractionFolder());
+      Map<String, String> builtEnvVars = new HashMap<>(envVars);
+      if (definitions != null || rabbitMqConf != null) {
+        String configFileVar = RabbitMqEnvVar.CONFIG_FILE.getEnvVarName();
+        if (builtEnvVars.containsKey(configFileVar)) {
+          throw new IllegalStateException("Definitions and broker settings are loaded through " + configFileVar
+              + ", which can't be defined as well");
+        }
+        File configFileBase = rabbitMqConf == null
+            ? DefinitionsInstaller.getConfigFileBase(appAbsPath, definitions)
+            : RabbitMqConfWriter.getConfigFileBase(appAbsPath, version, rabbitMqConf, definitions);
+        builtEnvVars.put(configFileVar, configFileBase.getPath());
+      }
+      String pluginsDirVar = RabbitMqEnvVar.PLUGINS_DIR.getEnvVarName();
+      if (preExpandPlugins && !builtEnvVars.containsKey(pluginsDirVar)) {
+        builtEnvVars.put(pluginsDirVar, PluginsExpander.getExpandedPluginsFolder(templateAbsPath).getPath());
+      }
+      String enabledPluginsFileVar = RabbitMqEnvVar.ENABLED_PLUGINS_FILE.getEnvVarName();
+      if (!enabledPlugins.isEmpty() && !builtEnvVars.containsKey(enabledPluginsFileVar)) {
+        builtEnvVars.put(enabledPluginsFileVar,
+            EnabledPluginsWriter.getEnabledPluginsFile(appAbsPath, enabledPlugins).getPath());
+      }
+      File ramDataFolder = null;
+      if (ramFileSystem != null) {
+        ramDataFolder = RamDataFolder.newBrokerFolder(ramFileSystem);
+        if (!builtEnvVars.containsKey(RabbitMqEnvVar.MNESIA_BASE.getEnvVarName())) {
+          builtEnvVars.put(RabbitMqEnvVar.MNESIA_BASE.getEnvVarName(), new File(ramDataFolder, "mnesia").getPath());
+        }
+        if (!builtEnvVars.containsKey(RabbitMqEnvVar.LOG_BASE.getEnvVarName())) {
+          builtEnvVars.put(RabbitMqEnvVar.LOG_BASE.getEnvVarName(), new File(ramDataFolder, "log").getPath());
+        }
+      }
+      if (tuningProfile != null) {
+        String erlArgsVar = RabbitMqEnvVar.SERVER_ADDITIONAL_ERL_ARGS.getEnvVarName();
+        String erlArgs = builtEnvVars.get(erlArgsVar);
+        builtEnvVars.put(erlArgsVar, tuningProfile.toErlArgs() + (erlArgs == null ? "" : " " + erlArgs));
+      }
 
       return new EmbeddedRabbitMqConfig(
           version,
-          downloadSource, downloadTarget, extractionFolder, appAbsPath,
+          downloadSource, downloadTarget, extractionFolder, appAbsPath, templateAbsPath,
           downloadConnectionTimeoutInMillis, downloadReadTimeoutInMillis,
           defaultRabbitMqCtlTimeoutInMillis,
           rabbitMqServerInitializationTimeoutInMillis,
           erlangCheckTimeoutInMillis,
+          clusterJoinTimeoutInMillis,
           cacheDownload, deleteCachedFile,
-          envVars,
+          useExtractionManifest, extractWhileDownloading,
+          downloadConnections, checksum,
+          artifactCache,
+          readinessStrategy, readinessInitialPollIntervalInMillis, readinessMaxPollIntervalInMillis,
+          Collections.unmodifiableList(new ArrayList<>(lifecycleListeners)),
+          parallelStartup,
+          cacheErlangVersion,
+          preExpandPlugins,
+          definitions,
+          Collections.unmodifiableSet(new LinkedHashSet<>(enabledPlugins)),
+          tuningProfile,
+          rabbitMqConf,
+          ramDataFolder,
+          ramDataRequiredFreeSpaceInBytes,
+          builtEnvVars,
+          ports,
           processExecutorFactory,
           downloadProxy);
     }
 
+    private void replacePorts(PortBlock ports) {
+      if (this.ports != null && this.ports != ports) {
+        this.ports.close();
+      }
+      this.ports = ports;
+    }
+
+    private File resolveExtractionFolder(Version version, OperatingSystem os) {
+      if (extractionFolder != null) {
+        return extractionFolder;
+      }
+      if (artifactCache != null) {
+        return artifactCache.getTreeFolder(version, os);
+      }
+      return new File(SystemUtils.JAVA_IO_TMPDIR);
+    }
+
+    private File resolveAppFolder(Version version, File templateFolder) {
+      return instanceFolder == null
+          ? templateFolder
+          : new File(instanceFolder.getAbsoluteFile(), version.getExtractionFolder());
+    }
+
   }
 
 }
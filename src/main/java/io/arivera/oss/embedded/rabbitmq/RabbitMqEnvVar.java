@@ -129,7 +129,42 @@ public enum RabbitMqEnvVar {
    *
    * <p>The value should not contain the suffix {@code .config} since Erlang will append it automatically.</p>
    */
-  CONFIG_FILE;
+  CONFIG_FILE,
+
+  /**
+   * Location of the file that lists the plugins enabled explicitly. Their dependencies are enabled as well.
+   *
+   * <p>Default for Generic UNIX: {@code $RABBITMQ_HOME/etc/rabbitmq/enabled_plugins}</p>
+   */
+  ENABLED_PLUGINS_FILE,
+
+  /**
+   * Location of the folder where plugins are found, either as {@code .ez} archives or as folders.
+   *
+   * <p>Default for Generic UNIX: {@code $RABBITMQ_HOME/plugins}</p>
+   */
+  PLUGINS_DIR,
+
+  /**
+   * Location of the folder where enabled {@code .ez} plugin archives are unpacked to, again on every boot.
+   *
+   * <p>Default for Generic UNIX: {@code $RABBITMQ_MNESIA_BASE/$RABBITMQ_NODENAME-plugins-expand}</p>
+   */
+  PLUGINS_EXPAND_DIR,
+
+  /**
+   * Location of the folder where the database of each node is kept, in a sub-folder named after the node.
+   *
+   * <p>Default for Generic UNIX: {@code $RABBITMQ_HOME/var/lib/rabbitmq/mnesia}</p>
+   */
+  MNESIA_BASE,
+
+  /**
+   * Location of the folder where log files are written.
+   *
+   * <p>Default for Generic UNIX: {@code $RABBITMQ_HOME/var/log/rabbitmq}</p>
+   */
+  LOG_BASE;
 
   public static final int DEFAULT_NODE_PORT = 5672;
 
@@ -0,0 +1,226 @@
+package io.arivera.oss.embedded.rabbitmq;
+
+import io.arivera.oss.embedded.rabbitmq.helpers.StartupException;
+import io.arivera.oss.embedded.rabbitmq.util.ListenableFuture;
+import io.arivera.oss.embedded.rabbitmq.util.SettableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the independent branches of the startup, either one after the other or concurrently, and measures how long
+ * each one took.
+ * <p>
+ * When running concurrently, the first branch to fail cancels (interrupting) the rest and its exception is rethrown.
+ * Blocking I/O, like a download in progress, might not react to the interruption until it completes or times out.
+ * <p>
+ * Branches can also be {@link #runAsync(Executor, boolean) run asynchronously} by a given executor, in which case the
+ * calling thread isn't blocked at all.
+ */
+class StartupTasks {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StartupTasks.class);
+
+  private final List<Runnable> branches;
+  private long serialTimeInNanos;
+  private long criticalPathTimeInNanos;
+
+  StartupTasks() {
+    this.branches = new ArrayList<>();
+  }
+
+  StartupTasks add(Runnable branch) {
+    branches.add(branch);
+    return this;
+  }
+
+  /**
+   * @return sum of the time taken by every branch, which is how long running them one after the other takes.
+   */
+  synchronized long getSerialTimeInNanos() {
+    return serialTimeInNanos;
+  }
+
+  /**
+   * @return time taken by the slowest branch, which is how long running them concurrently ideally takes.
+   */
+  synchronized long getCriticalPathTimeInNanos() {
+    return criticalPathTimeInNanos;
+  }
+
+  void runSerially() {
+    for (Runnable branch : branches) {
+      record(new TimedBranch(branch).call());
+    }
+  }
+
+  void runConcurrently() throws StartupException {
+    ExecutorService executor = Executors.newFixedThreadPool(branches.size(), new StartupThreadFactory());
+    List<Future<Long>> futures = new ArrayList<>();
+    try {
+      CompletionService<Long> completionService = new ExecutorCompletionService<>(executor);
+      for (Runnable branch : branches) {
+        futures.add(completionService.submit(new TimedBranch(branch)));
+      }
+      for (int i = 0; i < branches.size(); i++) {
+        Future<Long> completed = completionService.take();
+        try {
+          record(completed.get());
+        } catch (ExecutionException e) {
+          LOGGER.debug("Startup branch failed. Cancelling the rest...");
+          cancel(futures);
+          throw rethrow(e.getCause());
+        }
+      }
+      LOGGER.debug("Startup branches took {}ms running concurrently instead of {}ms one after the other",
+          TimeUnit.NANOSECONDS.toMillis(criticalPathTimeInNanos), TimeUnit.NANOSECONDS.toMillis(serialTimeInNanos));
+    } catch (InterruptedException e) {
+      cancel(futures);
+      Thread.currentThread().interrupt();
+      throw new StartupException("Interrupted while preparing to start RabbitMQ Server", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Same as {@link #runConcurrently()} or {@link #runSerially()}, but the branches are run by the given executor.
+   * Cancelling the returned future cancels (interrupting) the branches still running.
+   *
+   * @return a future completed once every branch finished, or with the failure of the first one to fail.
+   */
+  ListenableFuture<Void> runAsync(Executor executor, boolean concurrently) {
+    final SettableFuture<Void> completion = new SettableFuture<>();
+    List<Callable<Long>> callables = new ArrayList<>();
+    if (concurrently) {
+      for (Runnable branch : branches) {
+        callables.add(new TimedBranch(branch));
+      }
+    } else {
+      callables.add(new Callable<Long>() {
+        @Override
+        public Long call() {
+          runSerially();
+          return 0L;
+        }
+      });
+    }
+
+    final AtomicInteger pending = new AtomicInteger(callables.size());
+    final List<Future<Long>> futures = new ArrayList<>();
+    for (Callable<Long> callable : callables) {
+      futures.add(new FutureTask<Long>(callable) {
+        @Override
+        protected void done() {
+          if (isCancelled()) {
+            return;
+          }
+          try {
+            record(get());
+            if (pending.decrementAndGet() == 0) {
+              completion.set(null);
+            }
+          } catch (ExecutionException e) {
+            LOGGER.debug("Startup branch failed. Cancelling the rest...");
+            StartupTasks.cancel(futures);
+            completion.setException(toStartupFailure(e.getCause()));
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+    }
+    completion.addCallback(new ListenableFuture.Callback<Void>() {
+      @Override
+      public void onSuccess(Void result) {
+      }
+
+      @Override
+      public void onFailure(Throwable failure) {
+        cancel(futures);
+      }
+    });
+
+    if (futures.isEmpty()) {
+      completion.set(null);
+    }
+    try {
+      for (Future<Long> future : futures) {
+        executor.execute((Runnable) future);
+      }
+    } catch (RejectedExecutionException e) {
+      completion.setException(new StartupException("Could not prepare to start RabbitMQ Server", e));
+    }
+    return completion;
+  }
+
+  private synchronized void record(long timeInNanos) {
+    serialTimeInNanos += timeInNanos;
+    criticalPathTimeInNanos = Math.max(criticalPathTimeInNanos, timeInNanos);
+  }
+
+  private static void cancel(List<Future<Long>> futures) {
+    for (Future<Long> future : futures) {
+      future.cancel(true);
+    }
+  }
+
+  private static RuntimeException rethrow(Throwable cause) {
+    Throwable failure = toStartupFailure(cause);
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    return (RuntimeException) failure;
+  }
+
+  private static Throwable toStartupFailure(Throwable cause) {
+    if (cause instanceof RuntimeException || cause instanceof Error) {
+      return cause;
+    }
+    return new StartupException("Could not prepare to start RabbitMQ Server", cause);
+  }
+
+  private static class TimedBranch implements Callable<Long> {
+
+    private final Runnable branch;
+
+    TimedBranch(Runnable branch) {
+      this.branch = branch;
+    }
+
+    @Override
+    public Long call() {
+      long start = System.nanoTime();
+      branch.run();
+      return System.nanoTime() - start;
+    }
+  }
+
+  private static class StartupThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "RabbitMQ-Startup-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package io.arivera.oss.embedded.rabbitmq;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sets of Erlang VM flags and {@code rabbit} application settings that suit the broker to a kind of workload.
+ * <p>
+ * Profiles are added to {@link RabbitMqEnvVar#SERVER_ADDITIONAL_ERL_ARGS}, which come after the default
+ * {@link RabbitMqEnvVar#SERVER_ERL_ARGS} of the broker's scripts, so they override the defaults without dropping
+ * those they don't mention. Arguments defined through that variable come after the profile's, so they take precedence.
+ *
+ * @see EmbeddedRabbitMqConfig.Builder#tuningProfile(TuningProfile)
+ * @see <a href="http://erlang.org/doc/man/erl.html#emulator-flags">Erlang Emulator Flags</a>
+ * @see <a href="https://www.rabbitmq.com/runtime.html">RabbitMQ Runtime Tuning</a>
+ */
+public enum TuningProfile {
+
+  /**
+   * For tests that start many brokers at once, each one handling few messages: a single scheduler that sleeps as soon
+   * as it runs out of work, a small async thread pool, lower process and atom limits, and garbage collection of idle
+   * processes in the background.
+   */
+  LOW_FOOTPRINT(
+      flags("+S 1:1", "+A 4", "+P 65536", "+t 262144", "+sbwt none"),
+      appEnv("background_gc_enabled", "true")),
+
+  /**
+   * For brokers moving as many messages as they can: schedulers bound to cores, spinning a while before they sleep, a
+   * larger async thread pool, and more flow control credit so publishers are throttled less often.
+   */
+  THROUGHPUT(
+      flags("+sbt db", "+sbwt long", "+A 128"),
+      appEnv("credit_flow_default_credit", "{800,400}")),
+
+  /**
+   * For brokers measured on how fast each message goes through: schedulers spinning the longest before they sleep, and
+   * sleeping schedulers woken up as soon as there's work for them.
+   */
+  LATENCY(
+      flags("+sbwt very_long", "+swt very_low", "+A 64"),
+      Collections.<String, String>emptyMap());
+
+  private final List<String> erlFlags;
+  private final Map<String, String> rabbitAppEnv;
+
+  TuningProfile(List<String> erlFlags, Map<String, String> rabbitAppEnv) {
+    this.erlFlags = erlFlags;
+    this.rabbitAppEnv = rabbitAppEnv;
+  }
+
+  /**
+   * @return an unmodifiable list of the Erlang VM flags, each one along with its value. For example: {@code +A 4}
+   */
+  public List<String> getErlFlags() {
+    return erlFlags;
+  }
+
+  /**
+   * @return an unmodifiable map of {@code rabbit} application settings, with values as Erlang terms.
+   */
+  public Map<String, String> getRabbitAppEnv() {
+    return rabbitAppEnv;
+  }
+
+  /**
+   * @return flags and application settings as arguments of the {@code erl} command. For example:
+   *     {@code +A 4 -rabbit background_gc_enabled true}
+   */
+  public String toErlArgs() {
+    StringBuilder args = new StringBuilder();
+    for (String flag : erlFlags) {
+      args.append(args.length() == 0 ? "" : " ").append(flag);
+    }
+    for (Map.Entry<String, String> setting : rabbitAppEnv.entrySet()) {
+      args.append(" -rabbit ").append(setting.getKey()).append(' ').append(setting.getValue());
+    }
+    return args.toString();
+  }
+
+  private static List<String> flags(String... flags) {
+    return Collections.unmodifiableList(Arrays.asList(flags));
+  }
+
+  private static Map<String, String> appEnv(String key, String value) {
+    Map<String, String> appEnv = new LinkedHashMap<>();
+    appEnv.put(key, value);
+    return Collections.unmodifiableMap(appEnv);
+  }
+}
@@ -11,7 +11,7 @@ import java.util.List;
  * The only thing we care about from the custom download artifact is the folder name where the RabbitMQ installation
  * can be found. We don't care about the version number, the Erlang version required, etc.
  */
-class UnknownVersion implements Version {
+public class UnknownVersion implements Version {
 
   private final String appFolderName;
 
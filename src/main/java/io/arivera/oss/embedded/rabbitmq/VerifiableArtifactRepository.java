@@ -0,0 +1,20 @@
+package io.arivera.oss.embedded.rabbitmq;
+
+import io.arivera.oss.embedded.rabbitmq.util.OperatingSystem;
+
+/**
+ * An {@link ArtifactRepository} which also knows the checksum of the artifacts it provides, so that downloaded
+ * artifacts can be verified.
+ *
+ * @see EmbeddedRabbitMqConfig.Builder#downloadFrom(ArtifactRepository)
+ * @see EmbeddedRabbitMqConfig.Builder#downloadChecksum(String)
+ */
+public interface VerifiableArtifactRepository extends ArtifactRepository {
+
+  /**
+   * @return hexadecimal SHA-256 digest of the artifact specific to the Version and Operating System, or
+   *     {@code null} if unknown.
+   */
+  String getSha256(Version version, OperatingSystem operatingSystem);
+
+}
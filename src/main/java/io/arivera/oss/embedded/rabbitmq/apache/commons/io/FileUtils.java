@@ -100,6 +100,40 @@ public class FileUtils {
    */
   public static void copyUrlToFile(URL source, File destination,
                                   int connectionTimeout, int readTimeout, Proxy proxy) throws IOException {
+    InputStream input = openUrlStream(source, connectionTimeout, readTimeout, proxy);
+    copyInputStreamToFile(input, destination);
+  }
+
+  /**
+   * Opens a connection to the URL <code>source</code> and returns its content as a stream.
+   *
+   * @param source            the <code>URL</code> to read bytes from, must not be {@code null}
+   * @param connectionTimeout the number of milliseconds until this method
+   *                          will timeout if no connection could be established to the <code>source</code>
+   * @param readTimeout       the number of milliseconds until reading from the returned stream will
+   *                          timeout if no data could be read from the <code>source</code>
+   * @param proxy             the proxy to use to open connection, or {@code null} to connect directly
+   * @throws IOException if <code>source</code> URL cannot be opened
+   */
+  public static InputStream openUrlStream(URL source, int connectionTimeout, int readTimeout, Proxy proxy)
+      throws IOException {
+    return openUrlConnection(source, connectionTimeout, readTimeout, proxy).getInputStream();
+  }
+
+  /**
+   * Creates a connection to the URL <code>source</code> without connecting yet, so that request properties can
+   * still be set.
+   *
+   * @param source            the <code>URL</code> to connect to, must not be {@code null}
+   * @param connectionTimeout the number of milliseconds until connecting
+   *                          will timeout if no connection could be established to the <code>source</code>
+   * @param readTimeout       the number of milliseconds until reading from the connection will
+   *                          timeout if no data could be read from the <code>source</code>
+   * @param proxy             the proxy to use to open connection, or {@code null} to connect directly
+   * @throws IOException if <code>source</code> URL cannot be opened
+   */
+  public static URLConnection openUrlConnection(URL source, int connectionTimeout, int readTimeout, Proxy proxy)
+      throws IOException {
     URLConnection connection;
     if (proxy == null) {
       connection = source.openConnection();
@@ -108,8 +142,7 @@ public class FileUtils {
     }
     connection.setConnectTimeout(connectionTimeout);
     connection.setReadTimeout(readTimeout);
-    InputStream input = connection.getInputStream();
-    copyInputStreamToFile(input, destination);
+    return connection;
   }
 
   /**
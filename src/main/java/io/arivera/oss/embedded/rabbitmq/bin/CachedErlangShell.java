@@ -0,0 +1,228 @@
+package io.arivera.oss.embedded.rabbitmq.bin;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.util.InterProcessLock;
+import io.arivera.oss.embedded.rabbitmq.util.OperatingSystem;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolves the Erlang version without launching an Erlang VM whenever possible.
+ * <p>
+ * The {@code erl} executable is looked up in the {@code PATH} its commands run with and followed through any symbolic
+ * links to the Erlang installation it belongs to. The version is then the name of the installation's release, as in
+ * {@code releases/<release>/OTP_VERSION} (present since OTP 17), which is what {@code erl} reports as its
+ * {@code otp_release}, such as {@code "19"}. Only when that fails is {@code erl} launched, like {@link ErlangShell}
+ * does.
+ * <p>
+ * Resolved versions are remembered for the rest of the JVM's life and recorded in a file shared by all processes,
+ * keyed by the path and modification time of the {@code erl} executable, so upgrading Erlang invalidates them.
+ *
+ * @see EmbeddedRabbitMqConfig.Builder#cacheErlangVersion(boolean)
+ */
+public class CachedErlangShell extends ErlangShell {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CachedErlangShell.class);
+
+  private static final String CACHE_FILE_NAME = "erlang-versions.properties";
+  private static final String OTP_VERSION_FILE = "OTP_VERSION";
+  private static final String START_ERL_DATA_FILE = "start_erl.data";
+  private static final String PATH_VAR = "PATH";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final ConcurrentMap<String, String> RESOLVED_VERSIONS = new ConcurrentHashMap<>();
+
+  private final String path;
+  private final File cacheFile;
+
+  /**
+   * Uses the {@code PATH} that commands run with, and records versions in the user's
+   * {@link EmbeddedRabbitMqConfig.Builder#DOWNLOAD_FOLDER download folder}.
+   */
+  public CachedErlangShell(EmbeddedRabbitMqConfig config) {
+    this(config, getPath(config), new File(
+        new File(System.getProperty("user.home"), EmbeddedRabbitMqConfig.Builder.DOWNLOAD_FOLDER), CACHE_FILE_NAME));
+  }
+
+  CachedErlangShell(EmbeddedRabbitMqConfig config, String path, File cacheFile) {
+    super(config);
+    this.path = path;
+    this.cacheFile = cacheFile;
+  }
+
+  @Override
+  public String getErlangVersion() throws ErlangShellException {
+    Path executable = findExecutable();
+    if (executable == null) {
+      LOGGER.debug("Could not find '{}' in PATH. Will launch it to find its version.", UNIX_ERL_COMMAND);
+      return super.getErlangVersion();
+    }
+
+    String key;
+    try {
+      key = executable + "@" + Files.getLastModifiedTime(executable).toMillis();
+    } catch (IOException e) {
+      LOGGER.debug("Could not read modification time of '{}'", executable, e);
+      return super.getErlangVersion(executable.toString());
+    }
+
+    String version = RESOLVED_VERSIONS.get(key);
+    if (version != null) {
+      return version;
+    }
+    version = readRecordedVersion(key);
+    if (version == null) {
+      version = readOtpRelease(executable);
+      if (version == null) {
+        LOGGER.debug("Could not find OTP release of '{}'. Will launch it to find its version.", executable);
+        version = super.getErlangVersion(executable.toString());
+      }
+      recordVersion(key, version);
+    }
+    RESOLVED_VERSIONS.put(key, version);
+    LOGGER.debug("Erlang version of '{}' is {}", executable, version);
+    return version;
+  }
+
+  /**
+   * Forgets the versions resolved by this JVM, but not the ones recorded in the shared file.
+   */
+  static void forgetResolvedVersions() {
+    RESOLVED_VERSIONS.clear();
+  }
+
+  /**
+   * @return {@code PATH} defined by the environment variables of the configuration or else by the executors of its
+   *     {@link EmbeddedRabbitMqConfig#getProcessExecutorFactory() factory}, or the one of the current process.
+   */
+  static String getPath(EmbeddedRabbitMqConfig config) {
+    String path = config.getEnvVars().get(PATH_VAR);
+    if (path == null) {
+      Map<String, String> environment = config.getProcessExecutorFactory().createInstance().getEnvironment();
+      path = environment.get(PATH_VAR);
+    }
+    return path == null ? System.getenv(PATH_VAR) : path;
+  }
+
+  /**
+   * @return real path of the first {@code erl} executable in the PATH or {@code null} if there's none.
+   */
+  private Path findExecutable() {
+    if (path == null) {
+      return null;
+    }
+    String[] names = OperatingSystem.detect() == OperatingSystem.WINDOWS
+        ? new String[] {UNIX_ERL_COMMAND + ".exe", UNIX_ERL_COMMAND + ".cmd", UNIX_ERL_COMMAND + ".bat"}
+        : new String[] {UNIX_ERL_COMMAND};
+    for (String folder : path.split(File.pathSeparator)) {
+      if (folder.isEmpty()) {
+        continue;
+      }
+      for (String name : names) {
+        File candidate = new File(folder, name);
+        if (candidate.isFile() && candidate.canExecute()) {
+          try {
+            return candidate.toPath().toRealPath();
+          } catch (IOException e) {
+            LOGGER.debug("Could not resolve real path of '{}'", candidate, e);
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Finds the release of the installation the given {@code <root>/bin/erl} executable belongs to, which has a
+   * {@code <root>/releases/<release>/OTP_VERSION} file. The release is the one named in
+   * {@code releases/start_erl.data}, or the only one available.
+   *
+   * @return the release, same as the {@code otp_release} reported by {@code erl}, or {@code null} if it can't be
+   *     determined.
+   */
+  static String readOtpRelease(Path executable) {
+    Path bin = executable.getParent();
+    Path root = bin == null ? null : bin.getParent();
+    if (root == null) {
+      return null;
+    }
+    File releases = root.resolve("releases").toFile();
+    String release = readReleaseName(releases);
+    if (release == null) {
+      return null;
+    }
+    return new File(new File(releases, release), OTP_VERSION_FILE).isFile() ? release : null;
+  }
+
+  private static String readReleaseName(File releases) {
+    File startErlData = new File(releases, START_ERL_DATA_FILE);
+    if (startErlData.isFile()) {
+      try {
+        List<String> lines = Files.readAllLines(startErlData.toPath(), UTF_8);
+        String[] fields = lines.isEmpty() ? new String[0] : lines.get(0).trim().split("\\s+");  // "ERTS_VSN REL_VSN"
+        if (fields.length == 2) {
+          return fields[1];
+        }
+      } catch (IOException e) {
+        LOGGER.debug("Could not read '{}'", startErlData, e);
+      }
+    }
+    File[] candidates = releases.listFiles();
+    String release = null;
+    for (File candidate : candidates == null ? new File[0] : candidates) {
+      if (new File(candidate, OTP_VERSION_FILE).isFile()) {
+        if (release != null) {
+          return null;      // ambiguous
+        }
+        release = candidate.getName();
+      }
+    }
+    return release;
+  }
+
+  private String readRecordedVersion(String key) {
+    if (!cacheFile.isFile()) {
+      return null;
+    }
+    Properties versions = new Properties();
+    try (InputStream input = new FileInputStream(cacheFile)) {
+      versions.load(input);
+      return versions.getProperty(key);
+    } catch (IOException e) {
+      LOGGER.debug("Could not read recorded Erlang versions '{}'. Ignoring them.", cacheFile, e);
+      return null;
+    }
+  }
+
+  private void recordVersion(String key, String version) {
+    try (InterProcessLock ignored = InterProcessLock.acquire(cacheFile)) {
+      Properties versions = new Properties();
+      if (cacheFile.isFile()) {
+        try (InputStream input = new FileInputStream(cacheFile)) {
+          versions.load(input);
+        }
+      }
+      versions.setProperty(key, version);
+      try (OutputStream output = new FileOutputStream(cacheFile)) {
+        versions.store(output, "Erlang versions, keyed by path and modification time of the erl executable");
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Could not record Erlang version in '{}'. It will be determined again next time.", cacheFile, e);
+    }
+  }
+}
@@ -0,0 +1,351 @@
+package io.arivera.oss.embedded.rabbitmq.bin;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar;
+import io.arivera.oss.embedded.rabbitmq.util.ListenableFuture;
+import io.arivera.oss.embedded.rabbitmq.util.SettableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeroturnaround.exec.ProcessOutput;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A long-lived, hidden Erlang node connected to a running RabbitMQ node, used to run management commands without
+ * launching {@code rabbitmqctl} every time.
+ * <p>
+ * Each {@code rabbitmqctl} invocation boots its own Erlang VM, which takes between half a second and a couple of
+ * seconds. The session pays that price once, in {@link #open()}, and then takes commands over its standard input,
+ * turning them into RPC calls to the RabbitMQ node. Replies come back as {@link ProcessResult}s, like the ones of
+ * {@link RabbitMqCommand}, with the exit values {@code rabbitmqctl} uses: 69 when the node is down, 70 on errors.
+ * <p>
+ * Commands are sent in order and replied to in order, so the session can be shared by several threads. Once the
+ * session ends, because it was closed or its Erlang VM died, every command fails with a
+ * {@link RabbitMqCommandException}. See {@link RabbitMqCtl#RabbitMqCtl(EmbeddedRabbitMqConfig, ControlSession)} to
+ * fall back to launching {@code rabbitmqctl} instead.
+ */
+public class ControlSession implements Closeable {
+
+  static final String READY = "! ready";
+
+  /**
+   * Read from standard input, one Erlang term at a time. Each reply is made of the output lines, prefixed by
+   * {@value #OUTPUT_PREFIX}, followed by the exit value, prefixed by {@value #EXIT_PREFIX}. Anything else written by
+   * the VM, such as crash reports, is logged.
+   * <p>
+   * Remote calls inherit the group leader of the caller, so whatever they print is collected by a temporary group
+   * leader and put in front of the result, as {@code rabbitmqctl eval} does, instead of being written between replies.
+   */
+  private static final String SESSION_PROGRAM = ""
+      + "Target = case lists:member($@, Name) of "
+      + "  true -> list_to_atom(Name); "
+      + "  false -> [_, Host] = string:tokens(atom_to_list(node()), \"@\"), list_to_atom(Name ++ \"@\" ++ Host) "
+      + "end, "
+      + "Emit = fun(Text) -> io:put_chars(unicode:characters_to_binary(Text)) end, "
+      + "Reply = fun(Exit, Text) -> "
+      + "  [Emit([\". \", Line, \"\\n\"]) || Line <- string:tokens(lists:flatten(Text), \"\\n\")], "
+      + "  Emit([\"$ \", integer_to_list(Exit), \"\\n\"]) "
+      + "end, "
+      + "Chars = fun(Encoding, Data) -> "
+      + "  case unicode:characters_to_list(Data, Encoding) of Printed when is_list(Printed) -> Printed; _ -> [] end "
+      + "end, "
+      + "IoRequest = fun(_, {put_chars, Encoding, Data}, Acc) -> {ok, [Chars(Encoding, Data) | Acc]}; "
+      + "               (_, {put_chars, Encoding, M, F, A}, Acc) -> {ok, [Chars(Encoding, apply(M, F, A)) | Acc]}; "
+      + "               (_, {put_chars, Data}, Acc) -> {ok, [Chars(latin1, Data) | Acc]}; "
+      + "               (_, {put_chars, M, F, A}, Acc) -> {ok, [Chars(latin1, apply(M, F, A)) | Acc]}; "
+      + "               (Self, {requests, Requests}, Acc) -> "
+      + "                 lists:foldl(fun(Request, {_, Before}) -> Self(Self, Request, Before) end, {ok, Acc}, Requests); "
+      + "               (_, _, Acc) -> {{error, enotsup}, Acc} "
+      + "            end, "
+      + "Collect = fun(Self, Acc) -> "
+      + "  receive "
+      + "    {io_request, From, ReplyAs, Request} -> "
+      + "      {IoReply, After} = IoRequest(IoRequest, Request, Acc), "
+      + "      From ! {io_reply, ReplyAs, IoReply}, "
+      + "      Self(Self, After); "
+      + "    {collect, From} -> From ! {collected, self(), lists:append(lists:reverse(Acc))} "
+      + "  end "
+      + "end, "
+      + "Capture = fun(Call) -> "
+      + "  Leader = spawn(fun() -> Collect(Collect, []) end), "
+      + "  Previous = group_leader(), "
+      + "  group_leader(Leader, self()), "
+      + "  Value = try Call() catch Class:Error -> {badrpc, {Class, Error}} after group_leader(Previous, self()) end, "
+      + "  Leader ! {collect, self()}, "
+      + "  receive {collected, Leader, Output} -> {Output, Value} end "
+      + "end, "
+      + "Result = fun({badrpc, nodedown}) -> {69, \"Error: unable to connect to node \" ++ atom_to_list(Target)}; "
+      + "            ({badrpc, Reason}) -> {70, io_lib:format(\"Error: ~p\", [Reason])}; "
+      + "            ({error, Reason}) -> {70, io_lib:format(\"Error: ~p\", [Reason])}; "
+      + "            ({evaluated, Value}) -> {0, io_lib:format(\"~p\", [Value])}; "
+      + "            (stopped) -> {0, \"\"}; "
+      + "            (Value) -> {0, io_lib:format(\"~p\", [Value])} "
+      + "         end, "
+      + "Run = fun({eval, Expr}) -> "
+      + "          Capture(fun() -> "
+      + "            {ok, Tokens, _} = erl_scan:string(Expr), "
+      + "            {ok, Parsed} = erl_parse:parse_exprs(Tokens), "
+      + "            case rpc:call(Target, erl_eval, exprs, [Parsed, []]) of "
+      + "              {value, Value, _} -> {evaluated, Value}; "
+      + "              Other -> Other "
+      + "            end "
+      + "          end); "
+      + "         ({call, M, F}) -> Capture(fun() -> rpc:call(Target, M, F, []) end); "
+      + "         (stop) -> Capture(fun() -> rpc:call(Target, rabbit, stop_and_halt, []), stopped end) "
+      + "      end, "
+      + "Loop = fun(Self) -> "
+      + "  case io:read('') of "
+      + "    {ok, Request} -> "
+      + "      {Exit, Text} = try Run(Request) of "
+      + "                       {Output, Value} -> {Code, Printed} = Result(Value), {Code, [Output, Printed]} "
+      + "                     catch Class:Error -> {70, io_lib:format(\"Error: ~p:~p\", [Class, Error])} end, "
+      + "      Reply(Exit, Text), "
+      + "      Self(Self); "
+      + "    eof -> halt(0); "
+      + "    Other -> Reply(64, io_lib:format(\"Error: ~p\", [Other])), Self(Self) "
+      + "  end "
+      + "end, "
+      + "case net_adm:ping(Target) of "
+      + "  pong -> Emit(\"" + READY + "\\n\"), Loop(Loop); "
+      + "  pang -> Emit(\"! nodedown\\n\"), halt(69) "
+      + "end.";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ControlSession.class);
+
+  private static final String DEFAULT_NODE_NAME = "rabbit";
+  private static final String SESSION_NAME_PREFIX = "embedded-rabbitmq-ctl-";
+  private static final String OUTPUT_PREFIX = ". ";
+  private static final String EXIT_PREFIX = "$ ";
+  private static final String STATUS_PREFIX = "! ";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  private final EmbeddedRabbitMqConfig config;
+  private final String erlCommand;
+  private final Queue<SettableFuture<ProcessResult>> pendingReplies;
+  private final SettableFuture<Void> ready;
+
+  private Process process;
+  private Writer input;
+  private volatile boolean open;
+
+  /**
+   * Constructs a new session to the RabbitMQ node of the given configuration. Use {@link #open()} to connect.
+   */
+  public ControlSession(EmbeddedRabbitMqConfig config) {
+    this(config, ErlangShell.UNIX_ERL_COMMAND);
+  }
+
+  ControlSession(EmbeddedRabbitMqConfig config, String erlCommand) {
+    this.config = config;
+    this.erlCommand = erlCommand;
+    this.pendingReplies = new ConcurrentLinkedQueue<>();
+    this.ready = new SettableFuture<>();
+  }
+
+  /**
+   * Boots the Erlang VM of this session and waits for it to connect to the RabbitMQ node, for as long as
+   * {@link EmbeddedRabbitMqConfig#getDefaultRabbitMqCtlTimeoutInMillis()}.
+   *
+   * @throws RabbitMqCommandException if the VM couldn't be launched or couldn't connect to the RabbitMQ node in time.
+   */
+  public synchronized void open() throws RabbitMqCommandException {
+    if (process != null) {
+      throw new IllegalStateException("Control session was already opened");
+    }
+    ProcessBuilder builder = new ProcessBuilder(getCommand()).redirectErrorStream(true);
+    builder.environment().putAll(config.getEnvVars());
+    try {
+      process = builder.start();
+    } catch (IOException e) {
+      throw new RabbitMqCommandException("Could not launch Erlang VM for control session", e);
+    }
+    input = new OutputStreamWriter(process.getOutputStream(), UTF_8);
+    open = true;
+
+    Thread reader = new Thread(new ReplyReader(process), "RabbitMQ-Control-Session-" + THREAD_COUNT.incrementAndGet());
+    reader.setDaemon(true);
+    reader.start();
+
+    long timeout = config.getDefaultRabbitMqCtlTimeoutInMillis();
+    try {
+      ready.get(timeout, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      close();
+      Thread.currentThread().interrupt();
+      throw new RabbitMqCommandException("Interrupted while opening control session", e);
+    } catch (ExecutionException e) {
+      close();
+      throw new RabbitMqCommandException("Control session could not connect to RabbitMQ node", e.getCause());
+    } catch (TimeoutException e) {
+      close();
+      throw new RabbitMqCommandException("Control session did not connect to RabbitMQ node within " + timeout + "ms", e);
+    }
+    LOGGER.debug("Control session connected to RabbitMQ node.");
+  }
+
+  /**
+   * @return whether commands can be sent, which is the case from the moment the session is opened until it ends.
+   */
+  public boolean isOpen() {
+    return open;
+  }
+
+  /**
+   * Evaluates an arbitrary Erlang expression on the RabbitMQ node, like {@link RabbitMqCtl#eval(String)}.
+   */
+  public ListenableFuture<ProcessResult> eval(String expression) {
+    return send("{eval, " + quote(expression, '"') + "}.");
+  }
+
+  /**
+   * Calls a function that takes no arguments on the RabbitMQ node, such as {@code rabbit:stop}. Replies with a non-zero
+   * exit value if the function returns {@code {error, Reason}}.
+   */
+  public ListenableFuture<ProcessResult> call(String module, String function) {
+    return send("{call, " + quote(module, '\'') + ", " + quote(function, '\'') + "}.");
+  }
+
+  /**
+   * Stops the Erlang node on which RabbitMQ is running, like {@link RabbitMqCtl#stop()}.
+   */
+  public ListenableFuture<ProcessResult> stop() {
+    return send("stop.");
+  }
+
+  /**
+   * Ends the session. Commands waiting for a reply fail.
+   */
+  @Override
+  public synchronized void close() {
+    if (process == null) {
+      return;
+    }
+    open = false;
+    try {
+      input.close();
+    } catch (IOException e) {
+      LOGGER.debug("Could not close input of control session", e);
+    }
+    process.destroy();
+    failPendingReplies();
+  }
+
+  List<String> getCommand() {
+    String nodeName = config.getEnvVars().get(RabbitMqEnvVar.NODENAME.getEnvVarName());
+    String useLongName = config.getEnvVars().get(RabbitMqEnvVar.USE_LONGNAME.getEnvVarName());
+    String sessionName = SESSION_NAME_PREFIX + UUID.randomUUID().toString().substring(0, 8);
+    return Arrays.asList(erlCommand, "-noshell", "-hidden",
+        "true".equals(useLongName) ? "-name" : "-sname", sessionName,
+        "-eval", "Name = " + quote(nodeName == null ? DEFAULT_NODE_NAME : nodeName, '"') + ", " + SESSION_PROGRAM);
+  }
+
+  private synchronized ListenableFuture<ProcessResult> send(String request) {
+    SettableFuture<ProcessResult> reply = new SettableFuture<>();
+    if (!open) {
+      reply.setException(new RabbitMqCommandException("Control session is not open"));
+      return reply;
+    }
+    pendingReplies.add(reply);
+    try {
+      input.write(request);
+      input.write('\n');
+      input.flush();
+    } catch (IOException e) {
+      pendingReplies.remove(reply);
+      reply.setException(new RabbitMqCommandException("Could not send command to control session", e));
+    }
+    return reply;
+  }
+
+  private void failPendingReplies() {
+    SettableFuture<ProcessResult> reply;
+    while ((reply = pendingReplies.poll()) != null) {
+      reply.setException(new RabbitMqCommandException("Control session ended before replying"));
+    }
+  }
+
+  /**
+   * Quotes the text as an Erlang string or atom, escaping anything that isn't printable ASCII.
+   */
+  static String quote(String text, char quote) {
+    StringBuilder quoted = new StringBuilder(text.length() + 2).append(quote);
+    for (int i = 0; i < text.length(); i++) {
+      char character = text.charAt(i);
+      if (character == quote || character == '\\') {
+        quoted.append('\\').append(character);
+      } else if (character == '\n') {
+        quoted.append("\\n");
+      } else if (character < ' ' || character > '~') {
+        quoted.append("\\x{").append(Integer.toHexString(character)).append('}');
+      } else {
+        quoted.append(character);
+      }
+    }
+    return quoted.append(quote).toString();
+  }
+
+  private class ReplyReader implements Runnable {
+
+    private final Process process;
+
+    ReplyReader(Process process) {
+      this.process = process;
+    }
+
+    @Override
+    public void run() {
+      StringBuilder output = new StringBuilder();
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (line.startsWith(OUTPUT_PREFIX)) {
+            output.append(line.substring(OUTPUT_PREFIX.length())).append('\n');
+          } else if (line.startsWith(EXIT_PREFIX)) {
+            reply(Integer.parseInt(line.substring(EXIT_PREFIX.length()).trim()), output.toString());
+            output.setLength(0);
+          } else if (line.equals(READY)) {
+            ready.set(null);
+          } else if (line.startsWith(STATUS_PREFIX)) {
+            ready.setException(new RabbitMqCommandException("Control session reported: "
+                + line.substring(STATUS_PREFIX.length())));
+          } else {
+            LOGGER.warn("Control session: {}", line);
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        LOGGER.debug("Could not read from control session", e);
+      }
+      open = false;
+      ready.setException(new RabbitMqCommandException("Control session ended before connecting"));
+      failPendingReplies();
+      LOGGER.debug("Control session ended.");
+    }
+
+    private void reply(int exitValue, String output) {
+      SettableFuture<ProcessResult> reply = pendingReplies.poll();
+      if (reply == null) {
+        LOGGER.warn("Control session replied to an unknown command with exit value {}: {}", exitValue, output);
+        return;
+      }
+      reply.set(new ProcessResult(exitValue, new ProcessOutput(output.getBytes(UTF_8))));
+    }
+  }
+}
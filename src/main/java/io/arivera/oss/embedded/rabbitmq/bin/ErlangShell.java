@@ -17,9 +17,9 @@ import java.util.concurrent.TimeoutException;
  * A wrapper for the command "<code>{@value ErlangShell#UNIX_ERL_COMMAND}</code>", used for checking/testing the Erlang version.
  */
 public class ErlangShell {
-  private static final String LOGGER_TEMPLATE = "%s.Process.%s";
+  static final String UNIX_ERL_COMMAND = "erl";
 
-  private static final String UNIX_ERL_COMMAND = "erl";
+  private static final String LOGGER_TEMPLATE = "%s.Process.%s";
 
   private final EmbeddedRabbitMqConfig config;
 
@@ -36,10 +36,17 @@ public class ErlangShell {
    * @throws ErlangShellException if the Erlang command can't be executed or if it exits unexpectedly.
    */
   public String getErlangVersion() throws ErlangShellException {
-    String erlangShell = UNIX_ERL_COMMAND;
+    return getErlangVersion(UNIX_ERL_COMMAND);
+  }
 
+  /**
+   * @param erlangShell the command (or path to the executable) used to launch the Erlang shell.
+   * @return a String representing the Erlang version, such as {@code "18.2.1"}
+   * @throws ErlangShellException if the Erlang command can't be executed or if it exits unexpectedly.
+   */
+  protected String getErlangVersion(String erlangShell) throws ErlangShellException {
     Logger processOutputLogger = LoggerFactory.getLogger(
-        String.format(LOGGER_TEMPLATE, this.getClass().getName(), erlangShell));
+        String.format(LOGGER_TEMPLATE, ErlangShell.class.getName(), UNIX_ERL_COMMAND));
 
     Slf4jStream stream = Slf4jStream.of(processOutputLogger);
 
@@ -13,6 +13,10 @@ import java.util.concurrent.Future;
  * This is a helper class meant to facilitate invoking commands from {@code rabbitmqctl}.
  * <p>
  * The methods contained in this class aren't exhaustive. Please refer to the manual for a complete list.
+ * <p>
+ * When constructed with an open {@link ControlSession}, the methods below, except for the generic
+ * {@link #execute(String...)}, are run through it instead of launching {@code rabbitmqctl}, which takes milliseconds
+ * instead of seconds. Once the session ends, they go back to launching {@code rabbitmqctl}.
  *
  * @see <a href="https://www.rabbitmq.com/rabbitmqctl.8.html">rabbitmqctl(8) manual page</a>
  */
@@ -20,27 +24,60 @@ public class RabbitMqCtl extends RabbitMqDiagnostics {
 
   public static final String COMMAND = "rabbitmqctl";
 
+  /**
+   * Start of an {@link #eval(String) expression} binding {@code Call(Module, Function, Args)}, which applies a
+   * function of RabbitMQ's internal API the same way whether it's the API of RabbitMQ 3.6 or of a later version, which
+   * takes the "acting user" as an extra argument.
+   */
+  public static final String CALL_PROLOGUE = ""
+      + "Acting = <<\"embedded-rabbitmq\">>, "
+      + "Call = fun(M, F, Args) -> "
+      + "  code:ensure_loaded(M), "
+      + "  case erlang:function_exported(M, F, length(Args) + 1) of "
+      + "    true -> apply(M, F, Args ++ [Acting]); "
+      + "    false -> apply(M, F, Args) "
+      + "  end "
+      + "end, ";
+
+  private final ControlSession controlSession;
+
   public RabbitMqCtl(EmbeddedRabbitMqConfig config) {
+    this(config, (ControlSession) null);
+  }
+
+  /**
+   * A constructor that routes commands through the given session for as long as it's open.
+   *
+   * @param controlSession may be {@code null}, in which case every command launches {@code rabbitmqctl}.
+   */
+  public RabbitMqCtl(EmbeddedRabbitMqConfig config, ControlSession controlSession) {
     super(config);
+    this.controlSession = controlSession;
   }
 
   public RabbitMqCtl(EmbeddedRabbitMqConfig config, Map<String, String> extraEnvVars) {
     super(config, extraEnvVars);
+    this.controlSession = null;
   }
 
   public RabbitMqCtl(EmbeddedRabbitMqConfig config, Set<String> envVarsToDiscard, Map<String, String> envVarsToAdd) {
     super(config, envVarsToDiscard, envVarsToAdd);
+    this.controlSession = null;
   }
 
   public RabbitMqCtl(RabbitMqCommand.ProcessExecutorFactory processExecutorFactory, File appFolder,
                      Map<String, String> envVars) {
     super(processExecutorFactory, appFolder, envVars);
+    this.controlSession = null;
   }
 
   /**
    * Stops the Erlang node on which RabbitMQ is running.
    */
   public Future<ProcessResult> stop() throws RabbitMqCommandException {
+    if (isControlSessionOpen()) {
+      return controlSession.stop();
+    }
     return execute("stop");
   }
 
@@ -51,6 +88,9 @@ public class RabbitMqCtl extends RabbitMqDiagnostics {
    * RabbitMQ application to be stopped, e.g. {@link #reset()}.
    */
   public Future<ProcessResult> stopApp() throws RabbitMqCommandException {
+    if (isControlSessionOpen()) {
+      return controlSession.call("rabbit", "stop");
+    }
     return execute("stop_app");
   }
 
@@ -61,6 +101,9 @@ public class RabbitMqCtl extends RabbitMqDiagnostics {
    * RabbitMQ application to be stopped, e.g. {@link #reset()}.
    */
   public Future<ProcessResult> startApp() throws RabbitMqCommandException {
+    if (isControlSessionOpen()) {
+      return controlSession.call("rabbit", "start");
+    }
     return execute("start_app");
   }
 
@@ -73,6 +116,9 @@ public class RabbitMqCtl extends RabbitMqDiagnostics {
    * For reset and force_reset to succeed the RabbitMQ application must have been stopped, e.g. with {@link #stopApp()}
    */
   public Future<ProcessResult> reset() throws RabbitMqCommandException {
+    if (isControlSessionOpen()) {
+      return controlSession.call("rabbit_mnesia", "reset");
+    }
     return execute("reset");
   }
 
@@ -86,9 +132,46 @@ public class RabbitMqCtl extends RabbitMqDiagnostics {
    * For reset and force_reset to succeed the RabbitMQ application must have been stopped, e.g. with {@link #stopApp()}
    */
   public Future<ProcessResult> forceReset() throws RabbitMqCommandException {
+    if (isControlSessionOpen()) {
+      return controlSession.call("rabbit_mnesia", "force_reset");
+    }
     return execute("force_reset");
   }
 
+  /**
+   * Evaluates an arbitrary Erlang expression on the node RabbitMQ is running on.
+   * <p>
+   * For example: {@code eval("node().")}
+   */
+  public Future<ProcessResult> eval(String expression) throws RabbitMqCommandException {
+    if (isControlSessionOpen()) {
+      return controlSession.eval(expression);
+    }
+    return execute("eval", expression);
+  }
+
+  /**
+   * Makes the node join the cluster the given node, such as {@code rabbit@hostname}, is part of. The node loses its
+   * own data.
+   * <p>
+   * For join_cluster to succeed the RabbitMQ application must have been stopped, e.g. with {@link #stopApp()}
+   */
+  public Future<ProcessResult> joinCluster(String clusterNode) throws RabbitMqCommandException {
+    return execute("join_cluster", clusterNode);
+  }
+
+  /**
+   * Starts a batch of user, virtual host and permission operations, to be submitted in a single {@link #eval(String)}
+   * call.
+   */
+  public RabbitMqCtlBatch batch() {
+    return new RabbitMqCtlBatch(this);
+  }
+
+  private boolean isControlSessionOpen() {
+    return controlSession != null && controlSession.isOpen();
+  }
+
   @Override
   protected String getCommand() {
     return COMMAND;
@@ -0,0 +1,316 @@
+package io.arivera.oss.embedded.rabbitmq.bin;
+
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Accumulates user, virtual host and permission operations to submit them all at once, in a single
+ * {@link RabbitMqCtl#eval(String)} call, instead of launching {@code rabbitmqctl} once per operation.
+ * <p>
+ * Operations run in the order they were added. A failed operation doesn't stop the ones after it: each gets its own
+ * {@link OperationResult}.
+ * <p>
+ * Example use:
+ * <pre>
+ * {@code
+ *   RabbitMqCtlBatch.Result result = new RabbitMqCtl(config).batch()
+ *       .addVhost("orders")
+ *       .addUser("orders-service", "secret")
+ *       .setPermissions("orders", "orders-service", ".*", ".*", ".*")
+ *       .submit()
+ *       .get();
+ * }
+ * </pre>
+ */
+public class RabbitMqCtlBatch {
+
+  /**
+   * Operations use the {@link RabbitMqCtl#CALL_PROLOGUE Call} function. Every operation is reported as a line, either
+   * "ok" or "error" followed by the reason, and the report is returned hex-encoded so it comes out of {@code eval} as a
+   * single string that's easy to tell apart.
+   */
+  private static final String EXPRESSION_PROLOGUE = RabbitMqCtl.CALL_PROLOGUE
+      + "Run = fun(Op) -> "
+      + "  try Op() of "
+      + "    {error, Reason} -> {error, Reason}; "
+      + "    _ -> ok "
+      + "  catch Class:Error -> {error, {Class, Error}} "
+      + "  end "
+      + "end, "
+      + "Report = fun(ok) -> \"ok\\n\"; "
+      + "            ({error, Reason}) -> "
+      + "              [\"error \", re:replace(io_lib:format(\"~p\", [Reason]), \"\\\\s+\", \" \", "
+      + "                                      [global, unicode, {return, list}]), \"\\n\"] "
+      + "         end, "
+      + "Hex = fun(Text) -> lists:flatten([io_lib:format(\"~2.16.0b\", [B]) "
+      + "                                 || <<B>> <= unicode:characters_to_binary(Text)]) end, "
+      + "Hex([Report(Run(Op)) || Op <- [";
+  private static final String EXPRESSION_EPILOGUE = "]]).";
+
+  private static final String INTERNAL_AUTH = "rabbit_auth_backend_internal";
+  private static final String VHOSTS = "rabbit_vhost";
+  private static final String OK = "ok";
+  private static final String ERROR_PREFIX = "error ";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final RabbitMqCtl rabbitMqCtl;
+  private final List<String> descriptions;
+  private final List<String> operations;
+
+  RabbitMqCtlBatch(RabbitMqCtl rabbitMqCtl) {
+    this.rabbitMqCtl = rabbitMqCtl;
+    this.descriptions = new ArrayList<>();
+    this.operations = new ArrayList<>();
+  }
+
+  public RabbitMqCtlBatch addUser(String username, String password) {
+    return add("add_user " + username, INTERNAL_AUTH, "add_user", binary(username), binary(password));
+  }
+
+  public RabbitMqCtlBatch deleteUser(String username) {
+    return add("delete_user " + username, INTERNAL_AUTH, "delete_user", binary(username));
+  }
+
+  public RabbitMqCtlBatch changePassword(String username, String password) {
+    return add("change_password " + username, INTERNAL_AUTH, "change_password", binary(username), binary(password));
+  }
+
+  /**
+   * Replaces the tags of the user, such as {@code administrator} or {@code management}.
+   */
+  public RabbitMqCtlBatch setUserTags(String username, String... tags) {
+    StringBuilder tagList = new StringBuilder("[");
+    for (String tag : tags) {
+      tagList.append(tagList.length() > 1 ? ", " : "").append(ControlSession.quote(tag, '\''));
+    }
+    return add("set_user_tags " + username, INTERNAL_AUTH, "set_tags", binary(username), tagList.append(']').toString());
+  }
+
+  public RabbitMqCtlBatch addVhost(String vhost) {
+    return add("add_vhost " + vhost, VHOSTS, "add", binary(vhost));
+  }
+
+  public RabbitMqCtlBatch deleteVhost(String vhost) {
+    return add("delete_vhost " + vhost, VHOSTS, "delete", binary(vhost));
+  }
+
+  /**
+   * Same as {@code rabbitmqctl set_permissions -p vhost username configure write read}.
+   */
+  public RabbitMqCtlBatch setPermissions(String vhost, String username, String configure, String write, String read) {
+    return add("set_permissions -p " + vhost + " " + username, INTERNAL_AUTH, "set_permissions",
+        binary(username), binary(vhost), binary(configure), binary(write), binary(read));
+  }
+
+  public RabbitMqCtlBatch clearPermissions(String vhost, String username) {
+    return add("clear_permissions -p " + vhost + " " + username, INTERNAL_AUTH, "clear_permissions",
+        binary(username), binary(vhost));
+  }
+
+  /**
+   * @return number of operations added so far.
+   */
+  public int size() {
+    return operations.size();
+  }
+
+  /**
+   * @return Erlang expression that runs every operation added so far.
+   */
+  public String toExpression() {
+    StringBuilder expression = new StringBuilder(EXPRESSION_PROLOGUE);
+    for (int i = 0; i < operations.size(); i++) {
+      expression.append(i > 0 ? ", " : "").append("fun() -> ").append(operations.get(i)).append(" end");
+    }
+    return expression.append(EXPRESSION_EPILOGUE).toString();
+  }
+
+  /**
+   * Runs every operation added so far, in a single {@link RabbitMqCtl#eval(String)} call.
+   * <p>
+   * The returned future fails with a {@link RabbitMqCommandException} if the batch as a whole couldn't be evaluated.
+   *
+   * @throws IllegalStateException if no operation was added.
+   */
+  public Future<Result> submit() throws RabbitMqCommandException {
+    if (operations.isEmpty()) {
+      throw new IllegalStateException("No operation was added to the batch");
+    }
+    return new ResultFuture(rabbitMqCtl.eval(toExpression()), new ArrayList<>(descriptions));
+  }
+
+  private RabbitMqCtlBatch add(String description, String module, String function, String... arguments) {
+    StringBuilder operation = new StringBuilder("Call(").append(module).append(", ").append(function).append(", [");
+    for (int i = 0; i < arguments.length; i++) {
+      operation.append(i > 0 ? ", " : "").append(arguments[i]);
+    }
+    descriptions.add(description);
+    operations.add(operation.append("])").toString());
+    return this;
+  }
+
+  private static String binary(String text) {
+    return "unicode:characters_to_binary(" + ControlSession.quote(text, '"') + ")";
+  }
+
+  static Result parse(ProcessResult processResult, List<String> descriptions) throws RabbitMqCommandException {
+    String output = processResult.outputUTF8();
+    if (processResult.getExitValue() != 0) {
+      throw new RabbitMqCommandException("Batch failed with exit value " + processResult.getExitValue() + ": " + output);
+    }
+    int start = output.indexOf('"');
+    int end = output.lastIndexOf('"');
+    if (start < 0 || end <= start) {
+      throw new RabbitMqCommandException("Unexpected output from batch: " + output);
+    }
+    // Long strings may be printed as several strings, split over several lines
+    String encodedReport = output.substring(start + 1, end).replaceAll("[^0-9a-f]", "");
+    byte[] report = new byte[encodedReport.length() / 2];
+    for (int i = 0; i < report.length; i++) {
+      report[i] = (byte) Integer.parseInt(encodedReport.substring(2 * i, 2 * i + 2), 16);
+    }
+    String[] lines = new String(report, UTF_8).split("\n");
+    if (lines.length != descriptions.size()) {
+      throw new RabbitMqCommandException("Batch reported " + lines.length + " results for " + descriptions.size()
+          + " operations: " + output);
+    }
+
+    List<OperationResult> operationResults = new ArrayList<>(lines.length);
+    for (int i = 0; i < lines.length; i++) {
+      String error = lines[i].equals(OK) ? null
+          : lines[i].startsWith(ERROR_PREFIX) ? lines[i].substring(ERROR_PREFIX.length()) : lines[i];
+      operationResults.add(new OperationResult(descriptions.get(i), error));
+    }
+    return new Result(processResult, operationResults);
+  }
+
+  private static class ResultFuture implements Future<Result> {
+
+    private final Future<ProcessResult> processResult;
+    private final List<String> descriptions;
+
+    ResultFuture(Future<ProcessResult> processResult, List<String> descriptions) {
+      this.processResult = processResult;
+      this.descriptions = descriptions;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return processResult.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return processResult.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+      return processResult.isDone();
+    }
+
+    @Override
+    public Result get() throws InterruptedException, ExecutionException {
+      return toResult(processResult.get());
+    }
+
+    @Override
+    public Result get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      return toResult(processResult.get(timeout, unit));
+    }
+
+    private Result toResult(ProcessResult result) throws ExecutionException {
+      try {
+        return parse(result, descriptions);
+      } catch (RabbitMqCommandException e) {
+        throw new ExecutionException(e);
+      }
+    }
+  }
+
+  public static final class Result {
+
+    private final ProcessResult processResult;
+    private final List<OperationResult> operations;
+
+    Result(ProcessResult processResult, List<OperationResult> operations) {
+      this.processResult = processResult;
+      this.operations = Collections.unmodifiableList(operations);
+    }
+
+    /**
+     * @return results of every operation, in the order they were added.
+     */
+    public List<OperationResult> getOperations() {
+      return operations;
+    }
+
+    /**
+     * @return whether every operation succeeded.
+     */
+    public boolean isSuccessful() {
+      for (OperationResult operation : operations) {
+        if (!operation.isSuccessful()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    public ProcessResult getProcessResult() {
+      return processResult;
+    }
+
+    @Override
+    public String toString() {
+      return "Result{"
+          + "operations=" + operations
+          + '}';
+    }
+  }
+
+  public static final class OperationResult {
+
+    private final String description;
+    private final String error;
+
+    OperationResult(String description, String error) {
+      this.description = description;
+      this.error = error;
+    }
+
+    /**
+     * @return operation, written like the equivalent {@code rabbitmqctl} command, leaving out passwords.
+     */
+    public String getDescription() {
+      return description;
+    }
+
+    public boolean isSuccessful() {
+      return error == null;
+    }
+
+    /**
+     * @return reason why the operation failed, as printed by Erlang, or {@code null} if it succeeded.
+     */
+    public String getError() {
+      return error;
+    }
+
+    @Override
+    public String toString() {
+      return "OperationResult{"
+          + "description='" + description + '\''
+          + ", error=" + (error == null ? null : "'" + error + "'")
+          + '}';
+    }
+  }
+}
@@ -3,6 +3,7 @@ package io.arivera.oss.embedded.rabbitmq.bin;
 import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
 
 import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.listener.ProcessListener;
 
 import java.io.File;
 import java.util.Arrays;
@@ -96,6 +97,17 @@ public class RabbitMqDiagnostics {
         .getFuture();
   }
 
+  /**
+   * Same as {@link #execute(String...)} but notifying the given listener of the process events, such as its finish,
+   * so the result doesn't have to be waited for.
+   */
+  public Future<ProcessResult> execute(ProcessListener listener, String... arguments) throws RabbitMqCommandException {
+    return new RabbitMqCommand(peFactory, envVars, appFolder, getCommand(), arguments)
+        .listenToEvents(listener)
+        .call()
+        .getFuture();
+  }
+
   protected String getCommand() {
     return COMMAND;
   }
@@ -0,0 +1,78 @@
+package io.arivera.oss.embedded.rabbitmq.bin.plugins;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar;
+import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCommandException;
+import io.arivera.oss.embedded.rabbitmq.util.ConfigFolder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Writes the {@code enabled_plugins} file of a broker before it boots, so all of its plugins are loaded once, during
+ * boot, instead of launching {@code rabbitmq-plugins} once per plugin and reloading plugins every time.
+ * <p>
+ * Unless {@link RabbitMqEnvVar#ENABLED_PLUGINS_FILE} was defined, the file is written to the {@link ConfigFolder}.
+ *
+ * @see EmbeddedRabbitMqConfig.Builder#enabledPlugins(String...)
+ */
+public class EnabledPluginsWriter implements Runnable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(EnabledPluginsWriter.class);
+
+  private static final String FILE_PREFIX = "enabled_plugins-";
+
+  private final EmbeddedRabbitMqConfig config;
+
+  public EnabledPluginsWriter(EmbeddedRabbitMqConfig config) {
+    this.config = config;
+  }
+
+  /**
+   * @return default location of the file enabling the given plugins, which is the value expected by
+   *     {@link RabbitMqEnvVar#ENABLED_PLUGINS_FILE}.
+   */
+  public static File getEnabledPluginsFile(File appFolder, Collection<String> plugins) {
+    return ConfigFolder.getFile(appFolder, FILE_PREFIX, ConfigFolder.digest(toErlangTerm(plugins)));
+  }
+
+  /**
+   * Does nothing unless the configuration has plugins to enable.
+   *
+   * @throws RabbitMqCommandException if the file can't be written.
+   */
+  @Override
+  public void run() throws RabbitMqCommandException {
+    Set<String> plugins = config.getEnabledPlugins();
+    if (plugins.isEmpty()) {
+      return;
+    }
+    File file = new File(config.getEnvVars().get(RabbitMqEnvVar.ENABLED_PLUGINS_FILE.getEnvVarName()));
+    try {
+      if (file.equals(getEnabledPluginsFile(config.getAppFolder(), plugins))) {
+        ConfigFolder.writeOnce(file, toErlangTerm(plugins));
+      } else {
+        ConfigFolder.write(file, toErlangTerm(plugins));
+      }
+    } catch (IOException e) {
+      throw new RabbitMqCommandException("Could not write enabled plugins to '" + file + "'", e);
+    }
+    LOGGER.debug("Broker will boot with plugins {} enabled, as listed in '{}'", plugins, file);
+  }
+
+  /**
+   * The file holds a single Erlang term: a list of atoms, one per plugin.
+   */
+  static String toErlangTerm(Collection<String> plugins) {
+    StringBuilder term = new StringBuilder("[");
+    for (String plugin : plugins) {
+      term.append(term.length() > 1 ? "," : "").append('\'').append(plugin.replace("'", "\\'")).append('\'');
+    }
+    return term.append("].\n").toString();
+  }
+}
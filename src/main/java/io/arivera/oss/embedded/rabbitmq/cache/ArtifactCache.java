@@ -0,0 +1,387 @@
+package io.arivera.oss.embedded.rabbitmq.cache;
+
+import io.arivera.oss.embedded.rabbitmq.Version;
+import io.arivera.oss.embedded.rabbitmq.util.DigestUtils;
+import io.arivera.oss.embedded.rabbitmq.util.InterProcessLock;
+import io.arivera.oss.embedded.rabbitmq.util.OperatingSystem;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A folder holding downloaded artifacts and extracted files, bounded by a maximum total size.
+ * <p>
+ * Artifacts are stored under {@code archives/}, in a folder named after their SHA-256 digest when it's known before
+ * downloading them (see {@link io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig.Builder#downloadChecksum(String)}),
+ * or after the digest of their download URL otherwise. Extracted files are stored under {@code trees/}, in a folder
+ * named after the version and Operating System they belong to.
+ * <p>
+ * The last time each entry was used is tracked in an index file. Whenever the total size exceeds the maximum, the
+ * least recently used entries are removed. Entries used by this instance, or being downloaded or extracted by another
+ * process, are never removed. Note that a broker started by another process that's still running from an entry
+ * doesn't prevent its removal.
+ *
+ * @see io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig.Builder#artifactCache(ArtifactCache)
+ */
+public class ArtifactCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactCache.class);
+
+  private static final String ARCHIVES_FOLDER = "archives";
+  private static final String TREES_FOLDER = "trees";
+  private static final String INDEX_FILE = "index.properties";
+  private static final String LOCK_FILE_PREFIX = ".";
+  private static final String LOCK_FILE_SUFFIX = ".lock";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final File root;
+  private final long maxSizeInBytes;
+  private final Set<String> entriesInUse;
+  private final AtomicLong hits;
+  private final AtomicLong misses;
+  private final AtomicLong evictions;
+  private final AtomicLong bytesEvicted;
+
+  /**
+   * @param root           the folder where all artifacts and extracted files are stored.
+   * @param maxSizeInBytes the total size the cache can grow to before the least recently used entries are removed.
+   */
+  public ArtifactCache(File root, long maxSizeInBytes) {
+    if (maxSizeInBytes <= 0) {
+      throw new IllegalArgumentException("Maximum cache size must be positive but got: " + maxSizeInBytes);
+    }
+    this.root = root.getAbsoluteFile();
+    this.maxSizeInBytes = maxSizeInBytes;
+    this.entriesInUse = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    this.hits = new AtomicLong();
+    this.misses = new AtomicLong();
+    this.evictions = new AtomicLong();
+    this.bytesEvicted = new AtomicLong();
+  }
+
+  public File getRoot() {
+    return root;
+  }
+
+  public long getMaxSizeInBytes() {
+    return maxSizeInBytes;
+  }
+
+  /**
+   * Determines the folder where the artifact downloaded from the given URL is stored.
+   *
+   * @param expectedSha256 the artifact's digest, if known beforehand, or {@code null}.
+   */
+  public File getArchiveFolder(URL downloadSource, String expectedSha256) {
+    String key = expectedSha256 != null
+        ? expectedSha256
+        : "url-" + DigestUtils.toHex(DigestUtils.newSha256().digest(downloadSource.toString().getBytes(UTF_8)));
+    return new File(new File(root, ARCHIVES_FOLDER), key);
+  }
+
+  /**
+   * Determines the folder where the files of the given version, for the given Operating System, are extracted to.
+   */
+  public File getTreeFolder(Version version, OperatingSystem operatingSystem) {
+    String key = (version.getExtractionFolder() + "-" + operatingSystem.name()).toLowerCase(Locale.US)
+        .replaceAll("[^a-z0-9._-]", "_");
+    return new File(new File(root, TREES_FOLDER), key);
+  }
+
+  /**
+   * Records the use of the given artifact, which is a hit if it was already downloaded.
+   * <p>
+   * The folder holding the artifact won't be removed by this instance from now on. Artifacts stored elsewhere are
+   * ignored.
+   *
+   * @return whether the artifact was already present.
+   */
+  public boolean accessArchive(File archive) {
+    return access(archive.getAbsoluteFile().getParentFile(), archive.isFile());
+  }
+
+  /**
+   * Records the use of the given extracted application folder, which is a hit if it was already extracted.
+   * <p>
+   * The folder holding the extracted files won't be removed by this instance from now on. Folders stored elsewhere
+   * are ignored.
+   *
+   * @return whether the files were already present.
+   */
+  public boolean accessTree(File appFolder) {
+    return access(appFolder.getAbsoluteFile().getParentFile(), appFolder.isDirectory());
+  }
+
+  private boolean access(File entry, boolean present) {
+    File parent = entry.getParentFile();
+    if (parent == null || !root.equals(parent.getParentFile())) {
+      LOGGER.debug("'{}' is not managed by cache '{}'", entry, root);
+      return present;
+    }
+    String key = keyOf(entry);
+    entriesInUse.add(key);
+    if (present) {
+      hits.incrementAndGet();
+    } else {
+      misses.incrementAndGet();
+    }
+    try (InterProcessLock ignored = InterProcessLock.acquire(indexFile())) {
+      Properties index = readIndex();
+      index.setProperty(key, String.valueOf(System.currentTimeMillis()));
+      writeIndex(index);
+    } catch (IOException e) {
+      LOGGER.warn("Could not record use of cache entry '{}'", entry, e);
+    }
+    return present;
+  }
+
+  /**
+   * Removes the least recently used entries until the cache's total size doesn't exceed the maximum, or there are no
+   * more entries that can be removed.
+   */
+  public void evict() {
+    try (InterProcessLock ignored = InterProcessLock.acquire(indexFile())) {
+      final Properties index = readIndex();
+      List<File> entries = listEntries();
+      long totalSize = 0;
+      for (File entry : entries) {
+        totalSize += sizeOf(entry);
+      }
+      if (totalSize <= maxSizeInBytes) {
+        return;
+      }
+
+      Collections.sort(entries, new Comparator<File>() {
+        @Override
+        public int compare(File entry1, File entry2) {
+          return Long.compare(lastAccessOf(index, entry1), lastAccessOf(index, entry2));
+        }
+      });
+      for (File entry : entries) {
+        if (totalSize <= maxSizeInBytes) {
+          break;
+        }
+        if (entriesInUse.contains(keyOf(entry))) {
+          continue;
+        }
+        long size = sizeOf(entry);
+        if (remove(entry)) {
+          totalSize -= size;
+          evictions.incrementAndGet();
+          bytesEvicted.addAndGet(size);
+          index.remove(keyOf(entry));
+          LOGGER.info("Removed least recently used cache entry '{}' ({} bytes)", entry, size);
+        }
+      }
+      writeIndex(index);
+      if (totalSize > maxSizeInBytes) {
+        LOGGER.warn("Cache '{}' holds {} bytes, more than the maximum of {}, since its entries are in use",
+            root, totalSize, maxSizeInBytes);
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Could not remove least recently used entries from cache '{}'", root, e);
+    }
+  }
+
+  /**
+   * @return a snapshot of how this instance has used the cache so far.
+   */
+  public Statistics getStatistics() {
+    return new Statistics(hits.get(), misses.get(), evictions.get(), bytesEvicted.get());
+  }
+
+  private List<File> listEntries() {
+    List<File> entries = new ArrayList<>();
+    for (String folder : new String[] {ARCHIVES_FOLDER, TREES_FOLDER}) {
+      File[] files = new File(root, folder).listFiles();
+      if (files == null) {
+        continue;
+      }
+      for (File file : files) {
+        if (file.isDirectory()) {
+          entries.add(file);
+        }
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Removes the given entry unless another process holds a lock over any of its files (because it's downloading or
+   * extracting them).
+   */
+  private boolean remove(File entry) throws IOException {
+    List<InterProcessLock> locks = new ArrayList<>();
+    try {
+      File[] files = entry.listFiles();
+      for (File file : files == null ? new File[0] : files) {
+        String name = file.getName();
+        if (name.startsWith(LOCK_FILE_PREFIX) && name.endsWith(LOCK_FILE_SUFFIX)) {
+          String lockedName = name.substring(LOCK_FILE_PREFIX.length(), name.length() - LOCK_FILE_SUFFIX.length());
+          InterProcessLock lock = InterProcessLock.tryAcquire(new File(entry, lockedName));
+          if (lock == null) {
+            LOGGER.debug("Cache entry '{}' is in use. Won't remove it.", entry);
+            return false;
+          }
+          locks.add(lock);
+        }
+      }
+      deleteRecursively(entry.toPath());
+      return true;
+    } finally {
+      for (InterProcessLock lock : locks) {
+        lock.close();
+      }
+    }
+  }
+
+  private String keyOf(File entry) {
+    return entry.getParentFile().getName() + "/" + entry.getName();
+  }
+
+  private long lastAccessOf(Properties index, File entry) {
+    String lastAccess = index.getProperty(keyOf(entry));
+    try {
+      return lastAccess == null ? entry.lastModified() : Long.parseLong(lastAccess);
+    } catch (NumberFormatException e) {
+      return entry.lastModified();
+    }
+  }
+
+  private File indexFile() {
+    return new File(root, INDEX_FILE);
+  }
+
+  private Properties readIndex() throws IOException {
+    Properties index = new Properties();
+    File indexFile = indexFile();
+    if (indexFile.isFile()) {
+      try (InputStream input = new FileInputStream(indexFile)) {
+        index.load(input);
+      }
+    }
+    return index;
+  }
+
+  private void writeIndex(Properties index) throws IOException {
+    Files.createDirectories(root.toPath());
+    try (OutputStream output = new FileOutputStream(indexFile())) {
+      index.store(output, "Last time (in millis) each cache entry was used");
+    }
+  }
+
+  private static long sizeOf(File entry) throws IOException {
+    final AtomicLong size = new AtomicLong();
+    Files.walkFileTree(entry.toPath(), new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        size.addAndGet(attrs.size());
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(Path file, IOException exc) {
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return size.get();
+  }
+
+  private static void deleteRecursively(Path folder) throws IOException {
+    Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        if (exc != null) {
+          throw exc;
+        }
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * How an {@link ArtifactCache} instance has been used.
+   */
+  public static final class Statistics {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long bytesEvicted;
+
+    Statistics(long hits, long misses, long evictions, long bytesEvicted) {
+      this.hits = hits;
+      this.misses = misses;
+      this.evictions = evictions;
+      this.bytesEvicted = bytesEvicted;
+    }
+
+    /**
+     * @return how many times an artifact or extracted files were already present when needed.
+     */
+    public long getHits() {
+      return hits;
+    }
+
+    /**
+     * @return how many times an artifact had to be downloaded or files had to be extracted.
+     */
+    public long getMisses() {
+      return misses;
+    }
+
+    /**
+     * @return how many entries were removed to keep the cache within its maximum size.
+     */
+    public long getEvictions() {
+      return evictions;
+    }
+
+    /**
+     * @return how many bytes were freed by removing entries.
+     */
+    public long getBytesEvicted() {
+      return bytesEvicted;
+    }
+
+    @Override
+    public String toString() {
+      return "Statistics{"
+          + "hits=" + hits
+          + ", misses=" + misses
+          + ", evictions=" + evictions
+          + ", bytesEvicted=" + bytesEvicted
+          + '}';
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package io.arivera.oss.embedded.rabbitmq.cluster;
+
+public class ClusterException extends RuntimeException {
+
+  public ClusterException(String msg) {
+    super(msg);
+  }
+
+  public ClusterException(String msg, Throwable cause) {
+    super(msg, cause);
+  }
+}
@@ -0,0 +1,29 @@
+package io.arivera.oss.embedded.rabbitmq.cluster;
+
+import io.arivera.oss.embedded.rabbitmq.util.ListenableFuture;
+
+/**
+ * How an {@link EmbeddedRabbitMqCluster} starts, joins and stops its nodes.
+ */
+interface ClusterLifecycle {
+
+  ListenableFuture<Void> start(ClusterNode node);
+
+  /**
+   * Asks the started node for its full name, blocking the current thread until it answers.
+   *
+   * @return name other nodes know the node by, such as {@code rabbit@hostname}.
+   * @throws ClusterException if the node couldn't be reached.
+   */
+  String getNodeName(ClusterNode node) throws ClusterException;
+
+  /**
+   * Makes the started node join the cluster of the node with the given full name, blocking the current thread until
+   * it's running again, as part of that cluster.
+   *
+   * @throws ClusterException if the node couldn't join the cluster.
+   */
+  void join(ClusterNode node, String clusterNodeName) throws ClusterException;
+
+  ListenableFuture<Void> stop(ClusterNode node);
+}
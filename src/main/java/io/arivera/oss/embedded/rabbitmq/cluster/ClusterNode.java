@@ -0,0 +1,101 @@
+package io.arivera.oss.embedded.rabbitmq.cluster;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMq;
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+
+/**
+ * A node of an {@link EmbeddedRabbitMqCluster}, along with how long it took to become part of the cluster.
+ */
+public class ClusterNode {
+
+  private final EmbeddedRabbitMqConfig config;
+  private final EmbeddedRabbitMq rabbitMq;
+
+  private volatile boolean started;
+  private volatile String nodeName;
+  private volatile long bootTimeInMillis = -1;
+  private volatile long joinTimeInMillis = -1;
+  private volatile long formationTimeInMillis = -1;
+
+  ClusterNode(EmbeddedRabbitMqConfig config) {
+    this.config = config;
+    this.rabbitMq = new EmbeddedRabbitMq(config);
+  }
+
+  /**
+   * @return configuration of this node, which is useful to run commands against it, like
+   *     {@link io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCtl}.
+   */
+  public EmbeddedRabbitMqConfig getConfig() {
+    return config;
+  }
+
+  /**
+   * @return port to connect to this node.
+   */
+  public int getPort() {
+    return config.getRabbitMqPort();
+  }
+
+  /**
+   * @return name other nodes know this node by, such as {@code rabbit@hostname}, or {@code null} until the cluster is
+   *     formed.
+   */
+  public String getNodeName() {
+    return nodeName;
+  }
+
+  /**
+   * @return time it took to start this node, on its own, or {@code -1} if it hasn't started yet.
+   */
+  public long getBootTimeInMillis() {
+    return bootTimeInMillis;
+  }
+
+  /**
+   * @return time it took this node to join the cluster once started, which is {@code 0} for the node the others
+   *     join, or {@code -1} if it hasn't joined yet.
+   */
+  public long getJoinTimeInMillis() {
+    return joinTimeInMillis;
+  }
+
+  /**
+   * @return time since the cluster started until this node was part of it, which includes the time spent waiting for
+   *     the other nodes, or {@code -1} if it isn't yet.
+   */
+  public long getFormationTimeInMillis() {
+    return formationTimeInMillis;
+  }
+
+  EmbeddedRabbitMq getRabbitMq() {
+    return rabbitMq;
+  }
+
+  boolean isStarted() {
+    return started;
+  }
+
+  void booted(long bootTimeInMillis) {
+    this.started = true;
+    this.bootTimeInMillis = bootTimeInMillis;
+  }
+
+  void stopped() {
+    this.started = false;
+  }
+
+  void joined(String nodeName, long joinTimeInMillis, long formationTimeInMillis) {
+    this.nodeName = nodeName;
+    this.joinTimeInMillis = joinTimeInMillis;
+    this.formationTimeInMillis = formationTimeInMillis;
+  }
+
+  @Override
+  public String toString() {
+    return "ClusterNode{"
+        + "port=" + getPort()
+        + (nodeName == null ? "" : ", nodeName=" + nodeName)
+        + '}';
+  }
+}
@@ -0,0 +1,106 @@
+package io.arivera.oss.embedded.rabbitmq.cluster;
+
+import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCommandException;
+import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCtl;
+import io.arivera.oss.embedded.rabbitmq.util.ListenableFuture;
+
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs cluster nodes as {@link io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMq} instances, clustering them with
+ * {@code rabbitmqctl stop_app}, {@code join_cluster} and {@code start_app}.
+ * <p>
+ * Each of those commands boots an Erlang VM of its own, so they're given the
+ * {@link io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig#getClusterJoinTimeoutInMillis() cluster join timeout}
+ * instead of the default timeout of {@code rabbitmqctl} commands.
+ */
+class EmbeddedClusterLifecycle implements ClusterLifecycle {
+
+  @Override
+  public ListenableFuture<Void> start(ClusterNode node) {
+    return node.getRabbitMq().startAsync();
+  }
+
+  /**
+   * Asking the node itself works whether it uses short or long names, and whatever its host name resolves to.
+   */
+  @Override
+  public String getNodeName(ClusterNode node) throws ClusterException {
+    long deadline = deadlineOf(node);
+    String output = run(node, "get the name of", deadline, new Command() {
+      @Override
+      public Future<ProcessResult> execute(RabbitMqCtl rabbitMqCtl) {
+        return rabbitMqCtl.eval("node().");
+      }
+    }).outputUTF8().trim();
+    return output.replaceAll("^'|'$", "");    // 'rabbit@hostname' -> rabbit@hostname
+  }
+
+  @Override
+  public void join(ClusterNode node, final String clusterNodeName) throws ClusterException {
+    long deadline = deadlineOf(node);
+    run(node, "stop", deadline, new Command() {
+      @Override
+      public Future<ProcessResult> execute(RabbitMqCtl rabbitMqCtl) {
+        return rabbitMqCtl.stopApp();
+      }
+    });
+    run(node, "join " + clusterNodeName + " with", deadline, new Command() {
+      @Override
+      public Future<ProcessResult> execute(RabbitMqCtl rabbitMqCtl) {
+        return rabbitMqCtl.joinCluster(clusterNodeName);
+      }
+    });
+    run(node, "start", deadline, new Command() {
+      @Override
+      public Future<ProcessResult> execute(RabbitMqCtl rabbitMqCtl) {
+        return rabbitMqCtl.startApp();
+      }
+    });
+  }
+
+  @Override
+  public ListenableFuture<Void> stop(ClusterNode node) {
+    return node.getRabbitMq().stopAsync();
+  }
+
+  private static long deadlineOf(ClusterNode node) {
+    return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(node.getConfig().getClusterJoinTimeoutInMillis());
+  }
+
+  /**
+   * @param deadline {@link System#nanoTime()} by which the command must have finished.
+   */
+  private static ProcessResult run(ClusterNode node, String action, long deadline, Command command)
+      throws ClusterException {
+    long timeoutInMillis = node.getConfig().getClusterJoinTimeoutInMillis();
+    ProcessResult result;
+    try {
+      result = command.execute(new RabbitMqCtl(node.getConfig()))
+          .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (RabbitMqCommandException e) {
+      throw new ClusterException("Could not execute command to " + action + " " + node, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ClusterException("Interrupted while waiting for command to " + action + " " + node, e);
+    } catch (ExecutionException | TimeoutException e) {
+      throw new ClusterException("Error while waiting for command to " + action + " " + node + " within the "
+          + timeoutInMillis + "ms cluster join timeout", e);
+    }
+    if (result.getExitValue() != 0) {
+      throw new ClusterException("Command to " + action + " " + node + " failed with exit value: "
+          + result.getExitValue());
+    }
+    return result;
+  }
+
+  private interface Command {
+
+    Future<ProcessResult> execute(RabbitMqCtl rabbitMqCtl) throws RabbitMqCommandException;
+  }
+}
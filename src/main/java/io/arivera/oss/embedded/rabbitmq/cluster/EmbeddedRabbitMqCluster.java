@@ -0,0 +1,257 @@
+package io.arivera.oss.embedded.rabbitmq.cluster;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.helpers.NodeConfigHelper;
+import io.arivera.oss.embedded.rabbitmq.util.AsyncExecutors;
+import io.arivera.oss.embedded.rabbitmq.util.ListenableFuture;
+import io.arivera.oss.embedded.rabbitmq.util.PortAllocator;
+import io.arivera.oss.embedded.rabbitmq.util.SettableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts a cluster of RabbitMQ nodes on this machine, which is useful to test how clients behave when a node of a
+ * cluster goes away, as with mirrored or quorum queues.
+ * <p>
+ * Every node runs on its own ports, reserved by the {@link PortAllocator} of this JVM, with its own node name and its
+ * own folders for data and logs, but they all share the files extracted once from the same artifact. Those folders are
+ * kept in memory if {@link EmbeddedRabbitMqConfig.Builder#ramDataFolder(File, long) configured}, each node in a folder
+ * of its own, or in the app folder otherwise. All nodes boot in parallel. Once they're all started, the others join the
+ * cluster of the first node, one after another.
+ * <p>
+ * Example use:
+ * <pre>
+ * {@code
+ *   EmbeddedRabbitMqCluster cluster = new EmbeddedRabbitMqCluster(new EmbeddedRabbitMqConfig.Builder(), 3);
+ *   cluster.start();
+ *   for (ClusterNode node : cluster.getNodes()) {
+ *     addresses.add(new Address("localhost", node.getPort()));
+ *   }
+ *   // ...
+ *   cluster.stop();
+ * }
+ * </pre>
+ */
+public class EmbeddedRabbitMqCluster implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedRabbitMqCluster.class);
+
+  private static final String NODE_NAME_PREFIX = "rabbit-cluster-";
+  private static final String DATA_FOLDER = "var" + File.separator + "cluster";
+
+  private final List<ClusterNode> nodes;
+  private final ClusterLifecycle lifecycle;
+
+  private volatile boolean startCalled;
+  private volatile boolean ready;
+  private boolean stopCalled;
+
+  /**
+   * Configures the given number of nodes, without starting them.
+   *
+   * @param configBuilder copied to configure every node, with their own ports, node name and folders for data and
+   *                      logs. Ports already reserved by it are left alone.
+   * @param size          number of nodes of the cluster.
+   */
+  public EmbeddedRabbitMqCluster(EmbeddedRabbitMqConfig.Builder configBuilder, int size) {
+    this(configBuilder, size, new EmbeddedClusterLifecycle(), PortAllocator.getInstance());
+  }
+
+  EmbeddedRabbitMqCluster(EmbeddedRabbitMqConfig.Builder configBuilder, int size, ClusterLifecycle lifecycle,
+                          PortAllocator portAllocator) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Cluster size must be positive, but was " + size);
+    }
+    this.lifecycle = lifecycle;
+    EmbeddedRabbitMqConfig.Builder nodeBuilder;
+    synchronized (configBuilder) {
+      nodeBuilder = configBuilder.copy();
+    }
+    File dataFolder = nodeBuilder.getRamFileSystem() == null ? new File(nodeBuilder.getAppFolder(), DATA_FOLDER) : null;
+    List<ClusterNode> nodes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      nodes.add(new ClusterNode(NodeConfigHelper.newConfig(nodeBuilder, portAllocator, NODE_NAME_PREFIX, dataFolder)));
+    }
+    this.nodes = Collections.unmodifiableList(nodes);
+  }
+
+  /**
+   * @return every node of the cluster, starting with the one the others join.
+   */
+  public List<ClusterNode> getNodes() {
+    return nodes;
+  }
+
+  /**
+   * @return {@code true} once every node is started and part of the cluster.
+   */
+  public boolean isReady() {
+    return ready;
+  }
+
+  /**
+   * Starts every node and forms the cluster, blocking the current thread until every node is part of it.
+   *
+   * @throws ClusterException if the cluster couldn't be formed, along with any of the exceptions thrown by
+   *                          {@link io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMq#start()}. Nodes that did start
+   *                          are left running, to be stopped with {@link #stop()}.
+   */
+  public void start() throws ClusterException {
+    try {
+      startAsync().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ClusterException("Interrupted while waiting for RabbitMQ cluster to be formed", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new ClusterException("Could not form RabbitMQ cluster", e.getCause());
+    }
+  }
+
+  /**
+   * Starts every node and forms the cluster without blocking the current thread.
+   *
+   * @return a future completed once every node is part of the cluster, or completed with the first failure.
+   */
+  public ListenableFuture<Void> startAsync() {
+    if (startCalled) {
+      throw new IllegalStateException("Start shouldn't be called more than once.");
+    }
+    startCalled = true;
+
+    final long startTime = System.nanoTime();
+    final SettableFuture<Void> formation = new SettableFuture<>();
+    final AtomicInteger booting = new AtomicInteger(nodes.size());
+    for (final ClusterNode node : nodes) {
+      lifecycle.start(node).addCallback(new ListenableFuture.Callback<Void>() {
+        @Override
+        public void onSuccess(Void result) {
+          if (!booted(node, elapsedMillis(startTime))) {
+            formation.setException(new ClusterException("RabbitMQ cluster was stopped while starting"));
+            return;
+          }
+          if (booting.decrementAndGet() == 0) {
+            AsyncExecutors.blockingTasks().execute(new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  form(startTime);
+                  ready = true;
+                  formation.set(null);
+                } catch (RuntimeException e) {
+                  formation.setException(e);
+                }
+              }
+            });
+          }
+        }
+
+        @Override
+        public void onFailure(Throwable failure) {
+          LOGGER.warn("Could not start {}", node, failure);
+          node.getConfig().getPorts().close();
+          formation.setException(failure);
+        }
+      });
+    }
+    return formation;
+  }
+
+  /**
+   * Stops every node that was started, and waits for them to stop. Nodes still starting are stopped once started.
+   *
+   * @throws ClusterException if any node couldn't be stopped, once the others are.
+   */
+  public void stop() throws ClusterException {
+    List<ListenableFuture<Void>> stops = new ArrayList<>();
+    synchronized (this) {
+      ready = false;
+      stopCalled = true;
+      for (ClusterNode node : nodes) {
+        if (node.isStarted()) {
+          stops.add(stop(node));
+        }
+      }
+    }
+    Throwable failure = null;
+    for (ListenableFuture<Void> stop : stops) {
+      try {
+        stop.get();
+      } catch (ExecutionException e) {
+        LOGGER.warn("Could not stop RabbitMQ cluster node", e.getCause());
+        failure = e.getCause();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ClusterException("Interrupted while waiting for RabbitMQ cluster nodes to stop", e);
+      }
+    }
+    if (failure != null) {
+      throw new ClusterException("Could not stop every RabbitMQ cluster node", failure);
+    }
+  }
+
+  private ListenableFuture<Void> stop(ClusterNode node) {
+    LOGGER.debug("Stopping {}...", node);
+    node.stopped();
+    return NodeConfigHelper.freePortsWhenStopped(lifecycle.stop(node), node.getConfig());
+  }
+
+  /**
+   * Same as {@link #stop()}.
+   */
+  @Override
+  public void close() throws ClusterException {
+    stop();
+  }
+
+  /**
+   * @return {@code false} if the cluster was stopped meanwhile, in which case the node is stopped too.
+   */
+  private synchronized boolean booted(ClusterNode node, long bootTimeInMillis) {
+    node.booted(bootTimeInMillis);
+    LOGGER.debug("Started {} in {}ms", node, bootTimeInMillis);
+    if (stopCalled) {
+      stop(node);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Nodes join one at a time, since joining nodes lock the database of the cluster while they sync with it.
+   */
+  private void form(long startTime) throws ClusterException {
+    ClusterNode seed = nodes.get(0);
+    String seedName = lifecycle.getNodeName(seed);
+    seed.joined(seedName, 0, elapsedMillis(startTime));
+    logFormation(seed);
+    for (ClusterNode node : nodes.subList(1, nodes.size())) {
+      long joinStartTime = System.nanoTime();
+      lifecycle.join(node, seedName);
+      node.joined(lifecycle.getNodeName(node), elapsedMillis(joinStartTime), elapsedMillis(startTime));
+      logFormation(node);
+    }
+    LOGGER.info("RabbitMQ cluster of {} nodes formed in {}ms", nodes.size(), elapsedMillis(startTime));
+  }
+
+  private static void logFormation(ClusterNode node) {
+    LOGGER.info("{} started in {}ms, joined in {}ms and was part of the cluster after {}ms", node,
+        node.getBootTimeInMillis(), node.getJoinTimeInMillis(), node.getFormationTimeInMillis());
+  }
+
+  private static long elapsedMillis(long startTime) {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+  }
+}
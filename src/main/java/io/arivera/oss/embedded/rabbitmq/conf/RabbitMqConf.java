@@ -0,0 +1,245 @@
+package io.arivera.oss.embedded.rabbitmq.conf;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of the broker's core configuration file, which can be rendered both in the format of {@code rabbitmq.conf},
+ * used since RabbitMQ 3.7, and in the classic {@code rabbitmq.config} format of Erlang terms.
+ * <p>
+ * Example use:
+ * <pre>
+ * {@code
+ *   RabbitMqConf conf = new RabbitMqConf.Builder()
+ *       .vmMemoryHighWatermark(0.6)
+ *       .diskFreeLimitInBytes(50 * 1024 * 1024)
+ *       .channelMax(64)
+ *       .build();
+ * }
+ * </pre>
+ *
+ * @see io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig.Builder#rabbitMqConf(RabbitMqConf)
+ * @see <a href="https://www.rabbitmq.com/configure.html#config-items">RabbitMQ Configuration Items</a>
+ */
+public class RabbitMqConf {
+
+  /**
+   * Keyed by the name of the {@code rabbit} application setting.
+   */
+  private final Map<String, Setting> settings;
+
+  private RabbitMqConf(Map<String, Setting> settings) {
+    this.settings = settings;
+  }
+
+  /**
+   * @return settings in the format of {@code rabbitmq.conf}, one {@code key = value} per line.
+   */
+  public String toNewStyle() {
+    StringBuilder conf = new StringBuilder();
+    for (Setting setting : settings.values()) {
+      for (String line : setting.newStyleLines) {
+        conf.append(line).append('\n');
+      }
+    }
+    return conf.toString();
+  }
+
+  /**
+   * @return settings as a classic {@code rabbitmq.config} file of Erlang terms.
+   */
+  public String toClassic() {
+    return toClassic(getClassicTerms(), Collections.<String>emptyList());
+  }
+
+  /**
+   * @param appSections sections of other applications, like {@code {rabbitmq_management, [...]}}
+   */
+  static String toClassic(List<String> rabbitTerms, List<String> appSections) {
+    StringBuilder config = new StringBuilder("[\n  {rabbit, [");
+    for (int i = 0; i < rabbitTerms.size(); i++) {
+      config.append(i == 0 ? "\n" : ",\n").append("    ").append(rabbitTerms.get(i));
+    }
+    config.append(rabbitTerms.isEmpty() ? "]}" : "\n  ]}");
+    for (String appSection : appSections) {
+      config.append(",\n  ").append(appSection);
+    }
+    return config.append("\n].\n").toString();
+  }
+
+  /**
+   * @return settings as {@code {key, value}} terms of the {@code rabbit} application.
+   */
+  List<String> getClassicTerms() {
+    List<String> terms = new ArrayList<>(settings.size());
+    for (Map.Entry<String, Setting> setting : settings.entrySet()) {
+      terms.add("{" + setting.getKey() + ", " + setting.getValue().classicValue + "}");
+    }
+    return terms;
+  }
+
+  @Override
+  public String toString() {
+    return "RabbitMqConf{"
+        + "settings=" + settings.keySet()
+        + '}';
+  }
+
+  private static class Setting {
+
+    private final String classicValue;
+    private final List<String> newStyleLines;
+
+    Setting(String classicValue, String... newStyleLines) {
+      this.classicValue = classicValue;
+      this.newStyleLines = Arrays.asList(newStyleLines);
+    }
+  }
+
+  public static class Builder {
+
+    private final Map<String, Setting> settings;
+
+    /**
+     * Creates a new builder, with no settings, so the broker's defaults apply.
+     */
+    public Builder() {
+      this.settings = new LinkedHashMap<>();
+    }
+
+    /**
+     * Memory used by the broker, as a fraction of the memory available, above which publishers are blocked.
+     * <p>
+     * RabbitMQ's default value is {@code 0.4}
+     *
+     * @see <a href="https://www.rabbitmq.com/memory.html">RabbitMQ Memory Alarms</a>
+     */
+    public Builder vmMemoryHighWatermark(double fraction) {
+      requirePositive("vm_memory_high_watermark", fraction);
+      settings.put("vm_memory_high_watermark", new Setting(toErlangFloat(fraction),
+          "vm_memory_high_watermark.relative = " + toErlangFloat(fraction)));
+      return this;
+    }
+
+    /**
+     * Same as {@link #vmMemoryHighWatermark(double)}, but as a number of bytes, whatever the memory available.
+     */
+    public Builder vmMemoryHighWatermarkInBytes(long bytes) {
+      requirePositive("vm_memory_high_watermark", bytes);
+      settings.put("vm_memory_high_watermark", new Setting("{absolute, " + bytes + "}",
+          "vm_memory_high_watermark.absolute = " + bytes));
+      return this;
+    }
+
+    /**
+     * Free disk space, where the broker keeps its data, below which publishers are blocked.
+     * <p>
+     * RabbitMQ's default value is {@code 50000000} (50MB)
+     *
+     * @see <a href="https://www.rabbitmq.com/disk-alarms.html">RabbitMQ Free Disk Space Alarms</a>
+     */
+    public Builder diskFreeLimitInBytes(long bytes) {
+      requireNotNegative("disk_free_limit", bytes);
+      settings.put("disk_free_limit", new Setting(String.valueOf(bytes), "disk_free_limit.absolute = " + bytes));
+      return this;
+    }
+
+    /**
+     * Same as {@link #diskFreeLimitInBytes(long)}, but relative to the memory available. For example, {@code 1.0}
+     * blocks publishers once there's less free disk space than memory.
+     */
+    public Builder diskFreeLimitRelativeToMemory(double ratio) {
+      requirePositive("disk_free_limit", ratio);
+      settings.put("disk_free_limit", new Setting("{mem_relative, " + toErlangFloat(ratio) + "}",
+          "disk_free_limit.relative = " + toErlangFloat(ratio)));
+      return this;
+    }
+
+    /**
+     * Maximum number of channels a client may open on a connection, where {@code 0} means no limit.
+     * <p>
+     * RabbitMQ's default value is {@code 2047} since 3.7.5, and {@code 0} before that.
+     */
+    public Builder channelMax(int channelMax) {
+      if (channelMax < 0 || channelMax > 65535) {
+        throw new IllegalArgumentException("Expected channel_max between 0 and 65535 but got: " + channelMax);
+      }
+      return integer("channel_max", channelMax);
+    }
+
+    /**
+     * Maximum number of connections waiting to be accepted by the AMQP listener. Clients opening many connections at
+     * once, as test suites may do, get refused beyond it.
+     * <p>
+     * Other TCP listen options are set to RabbitMQ's defaults, which setting the backlog would otherwise discard.
+     * <p>
+     * RabbitMQ's default value is {@code 128}
+     */
+    public Builder tcpListenBacklog(int backlog) {
+      requirePositive("tcp_listen_options.backlog", backlog);
+      settings.put("tcp_listen_options", new Setting(
+          "[{backlog, " + backlog + "}, {nodelay, true}, {linger, {true, 0}}, {exit_on_close, false}]",
+          "tcp_listen_options.backlog = " + backlog,
+          "tcp_listen_options.nodelay = true",
+          "tcp_listen_options.linger.on = true",
+          "tcp_listen_options.linger.timeout = 0",
+          "tcp_listen_options.exit_on_close = false"));
+      return this;
+    }
+
+    /**
+     * Size in bytes below which messages are stored in the queue index instead of the message store, which saves a
+     * disk write per message at the cost of memory.
+     * <p>
+     * RabbitMQ's default value is {@code 4096}
+     */
+    public Builder queueIndexEmbedMsgsBelow(int bytes) {
+      requireNotNegative("queue_index_embed_msgs_below", bytes);
+      return integer("queue_index_embed_msgs_below", bytes);
+    }
+
+    /**
+     * Heartbeat timeout suggested to clients, in seconds, where {@code 0} disables heartbeats.
+     * <p>
+     * RabbitMQ's default value is {@code 60}
+     */
+    public Builder heartbeatInSeconds(int seconds) {
+      requireNotNegative("heartbeat", seconds);
+      return integer("heartbeat", seconds);
+    }
+
+    public RabbitMqConf build() {
+      return new RabbitMqConf(Collections.unmodifiableMap(new LinkedHashMap<>(settings)));
+    }
+
+    private Builder integer(String key, long value) {
+      settings.put(key, new Setting(String.valueOf(value), key + " = " + value));
+      return this;
+    }
+
+    private static void requirePositive(String key, double value) {
+      if (!(value > 0)) {
+        throw new IllegalArgumentException("Expected a positive " + key + " but got: " + value);
+      }
+    }
+
+    private static void requireNotNegative(String key, long value) {
+      if (value < 0) {
+        throw new IllegalArgumentException("Expected a non negative " + key + " but got: " + value);
+      }
+    }
+
+    /**
+     * Erlang floats need a decimal point and no exponent, such as {@code 0.0001} instead of {@code 1.0E-4}.
+     */
+    private static String toErlangFloat(double value) {
+      String plain = BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+      return plain.contains(".") ? plain : plain + ".0";
+    }
+  }
+}
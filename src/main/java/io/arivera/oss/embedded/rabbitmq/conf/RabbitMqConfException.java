@@ -0,0 +1,8 @@
+package io.arivera.oss.embedded.rabbitmq.conf;
+
+public class RabbitMqConfException extends RuntimeException {
+
+  public RabbitMqConfException(String msg, Throwable cause) {
+    super(msg, cause);
+  }
+}
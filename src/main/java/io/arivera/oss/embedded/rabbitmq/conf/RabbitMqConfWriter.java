@@ -0,0 +1,107 @@
+package io.arivera.oss.embedded.rabbitmq.conf;
+
+import io.arivera.oss.embedded.rabbitmq.BaseVersion;
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.UnknownVersion;
+import io.arivera.oss.embedded.rabbitmq.Version;
+import io.arivera.oss.embedded.rabbitmq.definitions.Definitions;
+import io.arivera.oss.embedded.rabbitmq.definitions.DefinitionsInstaller;
+import io.arivera.oss.embedded.rabbitmq.util.ConfigFolder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes the {@link RabbitMqConf} of a broker into the {@code etc/rabbitmq} folder of the broker, as a
+ * {@code rabbitmq.conf} file for RabbitMQ 3.7 and later, or as a classic {@code rabbitmq.config} file otherwise.
+ * <p>
+ * If the broker has {@link Definitions} too, the classic format is used whatever the version, so the same file loads
+ * them. Otherwise, loading them from a {@code rabbitmq.conf} file would depend on the version and on the management
+ * plugin being enabled.
+ * <p>
+ * Files are named after the digest of their contents, in the {@link ConfigFolder}.
+ *
+ * @see EmbeddedRabbitMqConfig.Builder#rabbitMqConf(RabbitMqConf)
+ */
+public class RabbitMqConfWriter implements Runnable {
+
+  static final String NEW_STYLE_EXTENSION = ".conf";
+  static final String CLASSIC_EXTENSION = ".config";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RabbitMqConfWriter.class);
+
+  private static final Version NEW_STYLE_SINCE = new BaseVersion("3.7.0");
+  private static final String FILE_PREFIX = "rabbitmq-";
+
+  private final EmbeddedRabbitMqConfig config;
+
+  public RabbitMqConfWriter(EmbeddedRabbitMqConfig config) {
+    this.config = config;
+  }
+
+  /**
+   * @return {@code true} if the given version reads {@code rabbitmq.conf} files. Custom downloads, whose version is
+   *     unknown, are given classic files.
+   */
+  public static boolean supportsNewStyle(Version version) {
+    return !(version instanceof UnknownVersion) && Version.VERSION_COMPARATOR.compare(version, NEW_STYLE_SINCE) >= 0;
+  }
+
+  /**
+   * @param definitions loaded by the same file, or {@code null} if there are none.
+   * @return path, without extension, of the configuration file with the given settings, which is the value expected
+   *     by {@link io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar#CONFIG_FILE}.
+   */
+  public static File getConfigFileBase(File appFolder, Version version, RabbitMqConf conf, Definitions definitions) {
+    String contents = render(appFolder, version, conf, definitions);
+    return ConfigFolder.getFile(appFolder, FILE_PREFIX, ConfigFolder.digest(contents));
+  }
+
+  /**
+   * Does nothing unless the configuration has settings.
+   *
+   * @throws RabbitMqConfException if the file can't be written.
+   */
+  @Override
+  public void run() throws RabbitMqConfException {
+    RabbitMqConf conf = config.getRabbitMqConf();
+    if (conf == null) {
+      return;
+    }
+    File appFolder = config.getAppFolder();
+    Definitions definitions = config.getDefinitions();
+    File base = getConfigFileBase(appFolder, config.getVersion(), conf, definitions);
+    File file = new File(base.getPath()
+        + (isClassic(config.getVersion(), definitions) ? CLASSIC_EXTENSION : NEW_STYLE_EXTENSION));
+    try {
+      ConfigFolder.writeOnce(file, render(appFolder, config.getVersion(), conf, definitions));
+    } catch (IOException e) {
+      throw new RabbitMqConfException("Could not write configuration to '" + file + "'", e);
+    }
+    LOGGER.debug("Broker will be configured with {} from '{}'", conf, file);
+  }
+
+  static String render(File appFolder, Version version, RabbitMqConf conf, Definitions definitions) {
+    if (!isClassic(version, definitions)) {
+      return conf.toNewStyle();
+    }
+    if (definitions == null) {
+      return conf.toClassic();
+    }
+    String json = DefinitionsInstaller.toErlangString(DefinitionsInstaller.getDefinitionsFile(appFolder, definitions));
+    List<String> rabbitTerms = new ArrayList<>(conf.getClassicTerms());
+    rabbitTerms.add("{load_definitions, " + json + "}");
+    return RabbitMqConf.toClassic(rabbitTerms,
+        Collections.singletonList("{rabbitmq_management, [{load_definitions, " + json + "}]}"));
+  }
+
+  private static boolean isClassic(Version version, Definitions definitions) {
+    return definitions != null || !supportsNewStyle(version);
+  }
+}
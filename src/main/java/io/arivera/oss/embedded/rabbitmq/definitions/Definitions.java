@@ -0,0 +1,253 @@
+package io.arivera.oss.embedded.rabbitmq.definitions;
+
+import io.arivera.oss.embedded.rabbitmq.util.DigestUtils;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Users, virtual hosts, permissions, exchanges, queues, bindings and policies for the broker to load as it boots, so
+ * it comes up fully provisioned, without running any command once it's started.
+ * <p>
+ * They're written in the JSON format of {@code rabbitmqctl import_definitions} and the management plugin. Before
+ * RabbitMQ 3.8, loading them at boot is done by the {@code rabbitmq_management} plugin, which must be enabled.
+ * <p>
+ * Declare every user and virtual host needed, including the default ones: RabbitMQ may skip creating those when
+ * definitions are loaded at boot.
+ * <p>
+ * Example use:
+ * <pre>
+ * {@code
+ *   Definitions definitions = new Definitions.Builder()
+ *       .vhost("/")
+ *       .user("guest", "guest", "administrator")
+ *       .permissions("/", "guest", ".*", ".*", ".*")
+ *       .exchange("/", "orders", "topic")
+ *       .queue("/", "orders.created")
+ *       .binding("/", "orders", "orders.created", "order.created")
+ *       .build();
+ * }
+ * </pre>
+ *
+ * @see io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig.Builder#definitions(Definitions)
+ * @see <a href="https://www.rabbitmq.com/definitions.html">RabbitMQ Schema Definition Export and Import</a>
+ */
+public class Definitions {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final Map<String, Object> sections;
+  private final String json;
+
+  private Definitions(Map<String, Object> sections) {
+    this.sections = sections;
+    this.json = JsonWriter.write(sections);
+  }
+
+  public String toJson() {
+    return json;
+  }
+
+  /**
+   * @return SHA-256 digest of the JSON, as a lower case hexadecimal String.
+   */
+  public String getSha256Hex() {
+    return DigestUtils.toHex(DigestUtils.newSha256().digest(json.getBytes(UTF_8)));
+  }
+
+  /**
+   * @return number of users, virtual hosts, permissions, exchanges, queues, bindings and policies.
+   */
+  public int size() {
+    int size = 0;
+    for (Object section : sections.values()) {
+      size += ((List<?>) section).size();
+    }
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return "Definitions{"
+        + "size=" + size()
+        + '}';
+  }
+
+  public static class Builder {
+
+    private final List<Map<String, Object>> users;
+    private final List<Map<String, Object>> vhosts;
+    private final List<Map<String, Object>> permissions;
+    private final List<Map<String, Object>> policies;
+    private final List<Map<String, Object>> queues;
+    private final List<Map<String, Object>> exchanges;
+    private final List<Map<String, Object>> bindings;
+
+    /**
+     * Creates a new builder, with no definitions.
+     */
+    public Builder() {
+      this.users = new ArrayList<>();
+      this.vhosts = new ArrayList<>();
+      this.permissions = new ArrayList<>();
+      this.policies = new ArrayList<>();
+      this.queues = new ArrayList<>();
+      this.exchanges = new ArrayList<>();
+      this.bindings = new ArrayList<>();
+    }
+
+    /**
+     * Declares a user, with a plain text password.
+     *
+     * @param tags such as {@code administrator} or {@code management}.
+     */
+    public Builder user(String name, String password, String... tags) {
+      StringBuilder tagList = new StringBuilder();
+      for (String tag : tags) {
+        tagList.append(tagList.length() > 0 ? "," : "").append(tag);
+      }
+      users.add(object(
+          "name", name,
+          "password", password,
+          "tags", tagList.toString()));
+      return this;
+    }
+
+    public Builder vhost(String name) {
+      vhosts.add(object("name", name));
+      return this;
+    }
+
+    /**
+     * Same as {@code rabbitmqctl set_permissions -p vhost user configure write read}.
+     */
+    public Builder permissions(String vhost, String user, String configure, String write, String read) {
+      permissions.add(object(
+          "user", user,
+          "vhost", vhost,
+          "configure", configure,
+          "write", write,
+          "read", read));
+      return this;
+    }
+
+    /**
+     * Declares a durable exchange.
+     *
+     * @param type such as {@code direct}, {@code fanout}, {@code topic} or {@code headers}.
+     */
+    public Builder exchange(String vhost, String name, String type) {
+      return exchange(vhost, name, type, true, false, Collections.<String, Object>emptyMap());
+    }
+
+    /**
+     * @param arguments values can be Strings, Numbers, Booleans, Lists or Maps of those.
+     */
+    public Builder exchange(String vhost, String name, String type, boolean durable, boolean autoDelete,
+                            Map<String, ?> arguments) {
+      exchanges.add(object(
+          "name", name,
+          "vhost", vhost,
+          "type", type,
+          "durable", durable,
+          "auto_delete", autoDelete,
+          "internal", false,
+          "arguments", arguments));
+      return this;
+    }
+
+    /**
+     * Declares a durable queue.
+     */
+    public Builder queue(String vhost, String name) {
+      return queue(vhost, name, true, false, Collections.<String, Object>emptyMap());
+    }
+
+    /**
+     * @param arguments values can be Strings, Numbers, Booleans, Lists or Maps of those, e.g.
+     *                  {@code x-message-ttl} with a Number.
+     */
+    public Builder queue(String vhost, String name, boolean durable, boolean autoDelete, Map<String, ?> arguments) {
+      queues.add(object(
+          "name", name,
+          "vhost", vhost,
+          "durable", durable,
+          "auto_delete", autoDelete,
+          "arguments", arguments));
+      return this;
+    }
+
+    /**
+     * Binds a queue to an exchange.
+     */
+    public Builder binding(String vhost, String exchange, String queue, String routingKey) {
+      return binding(vhost, exchange, queue, "queue", routingKey);
+    }
+
+    private Builder binding(String vhost, String source, String destination, String destinationType,
+                            String routingKey) {
+      bindings.add(object(
+          "source", source,
+          "vhost", vhost,
+          "destination", destination,
+          "destination_type", destinationType,
+          "routing_key", routingKey,
+          "arguments", Collections.emptyMap()));
+      return this;
+    }
+
+    /**
+     * Binds an exchange to another exchange.
+     */
+    public Builder exchangeBinding(String vhost, String source, String destination, String routingKey) {
+      return binding(vhost, source, destination, "exchange", routingKey);
+    }
+
+    /**
+     * Declares a policy.
+     *
+     * @param pattern    regular expression matching the names of the queues or exchanges the policy applies to.
+     * @param applyTo    {@code queues}, {@code exchanges} or {@code all}.
+     * @param definition keys such as {@code max-length} or {@code message-ttl}, with Strings, Numbers, Booleans, Lists
+     *                   or Maps of those as values.
+     */
+    public Builder policy(String vhost, String name, String pattern, String applyTo, int priority,
+                          Map<String, ?> definition) {
+      policies.add(object(
+          "vhost", vhost,
+          "name", name,
+          "pattern", pattern,
+          "apply-to", applyTo,
+          "definition", definition,
+          "priority", priority));
+      return this;
+    }
+
+    /**
+     * Builds an immutable instance of {@link Definitions}, in the order they were declared within each kind.
+     */
+    public Definitions build() {
+      Map<String, Object> sections = new LinkedHashMap<>();
+      sections.put("users", new ArrayList<>(users));
+      sections.put("vhosts", new ArrayList<>(vhosts));
+      sections.put("permissions", new ArrayList<>(permissions));
+      sections.put("policies", new ArrayList<>(policies));
+      sections.put("queues", new ArrayList<>(queues));
+      sections.put("exchanges", new ArrayList<>(exchanges));
+      sections.put("bindings", new ArrayList<>(bindings));
+      return new Definitions(sections);
+    }
+
+    private static Map<String, Object> object(Object... keysAndValues) {
+      Map<String, Object> object = new LinkedHashMap<>();
+      for (int i = 0; i < keysAndValues.length; i += 2) {
+        object.put((String) keysAndValues[i], keysAndValues[i + 1]);
+      }
+      return object;
+    }
+  }
+}
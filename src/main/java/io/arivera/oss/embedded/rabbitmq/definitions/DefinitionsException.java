@@ -0,0 +1,8 @@
+package io.arivera.oss.embedded.rabbitmq.definitions;
+
+public class DefinitionsException extends RuntimeException {
+
+  public DefinitionsException(String msg, Throwable cause) {
+    super(msg, cause);
+  }
+}
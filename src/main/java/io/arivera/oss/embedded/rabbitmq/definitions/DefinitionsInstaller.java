@@ -0,0 +1,95 @@
+package io.arivera.oss.embedded.rabbitmq.definitions;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.util.ConfigFolder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes the {@link Definitions} of a broker, along with a configuration file that makes the broker load them as it
+ * boots, into the {@code etc/rabbitmq} folder of the broker.
+ * <p>
+ * Both files are named after the digest of the definitions, in the {@link ConfigFolder}.
+ * <p>
+ * When the broker has {@link EmbeddedRabbitMqConfig#getRabbitMqConf() settings} as well, only the definitions are
+ * written here: the configuration file written with the settings loads them.
+ *
+ * @see EmbeddedRabbitMqConfig.Builder#definitions(Definitions)
+ */
+public class DefinitionsInstaller implements Runnable {
+
+  static final String JSON_EXTENSION = ".json";
+  static final String CONFIG_EXTENSION = ".config";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DefinitionsInstaller.class);
+
+  private static final String FILE_PREFIX = "definitions-";
+
+  private final EmbeddedRabbitMqConfig config;
+
+  public DefinitionsInstaller(EmbeddedRabbitMqConfig config) {
+    this.config = config;
+  }
+
+  /**
+   * @return path, without extension, of the configuration file that loads the given definitions, which is the value
+   *     expected by {@link io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar#CONFIG_FILE}.
+   */
+  public static File getConfigFileBase(File appFolder, Definitions definitions) {
+    return ConfigFolder.getFile(appFolder, FILE_PREFIX, definitions.getSha256Hex());
+  }
+
+  /**
+   * @return file the given definitions are written to.
+   */
+  public static File getDefinitionsFile(File appFolder, Definitions definitions) {
+    return new File(getConfigFileBase(appFolder, definitions).getPath() + JSON_EXTENSION);
+  }
+
+  /**
+   * @return absolute path of the file as an Erlang string, with forward slashes even on Windows.
+   */
+  public static String toErlangString(File file) {
+    return "\"" + file.getAbsolutePath().replace('\\', '/').replace("\"", "\\\"") + "\"";
+  }
+
+  /**
+   * Does nothing unless the configuration has definitions.
+   *
+   * @throws DefinitionsException if the files can't be written.
+   */
+  @Override
+  public void run() throws DefinitionsException {
+    Definitions definitions = config.getDefinitions();
+    if (definitions == null) {
+      return;
+    }
+    File base = getConfigFileBase(config.getAppFolder(), definitions);
+    File json = getDefinitionsFile(config.getAppFolder(), definitions);
+    File configFile = new File(base.getPath() + CONFIG_EXTENSION);
+    try {
+      ConfigFolder.writeOnce(json, definitions.toJson());
+      if (config.getRabbitMqConf() == null) {
+        ConfigFolder.writeOnce(configFile, toErlangConfig(json));
+      }
+    } catch (IOException e) {
+      throw new DefinitionsException("Could not write definitions to '" + json + "'", e);
+    }
+    LOGGER.debug("Broker will load {} from '{}'", definitions, json);
+  }
+
+  /**
+   * Loading definitions at boot moved from the management plugin to the core of RabbitMQ in 3.8, so both are set.
+   */
+  static String toErlangConfig(File json) {
+    String path = toErlangString(json);
+    return "[\n"
+        + "  {rabbit, [{load_definitions, " + path + "}]},\n"
+        + "  {rabbitmq_management, [{load_definitions, " + path + "}]}\n"
+        + "].\n";
+  }
+}
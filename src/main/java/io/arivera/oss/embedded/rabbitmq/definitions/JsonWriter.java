@@ -0,0 +1,73 @@
+package io.arivera.oss.embedded.rabbitmq.definitions;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes Maps, Lists, Strings, Numbers, Booleans and {@code null} as JSON, which is all that's needed for
+ * {@link Definitions}, without depending on a JSON library.
+ */
+class JsonWriter {
+
+  private JsonWriter() {
+  }
+
+  static String write(Object value) {
+    StringBuilder json = new StringBuilder();
+    write(value, json);
+    return json.toString();
+  }
+
+  private static void write(Object value, StringBuilder json) {
+    if (value == null) {
+      json.append("null");
+    } else if (value instanceof String) {
+      writeString((String) value, json);
+    } else if (value instanceof Number || value instanceof Boolean) {
+      json.append(value);
+    } else if (value instanceof Map) {
+      json.append('{');
+      Iterator<? extends Map.Entry<?, ?>> entries = ((Map<?, ?>) value).entrySet().iterator();
+      while (entries.hasNext()) {
+        Map.Entry<?, ?> entry = entries.next();
+        writeString(String.valueOf(entry.getKey()), json);
+        json.append(':');
+        write(entry.getValue(), json);
+        json.append(entries.hasNext() ? "," : "");
+      }
+      json.append('}');
+    } else if (value instanceof List) {
+      json.append('[');
+      Iterator<?> elements = ((List<?>) value).iterator();
+      while (elements.hasNext()) {
+        write(elements.next(), json);
+        json.append(elements.hasNext() ? "," : "");
+      }
+      json.append(']');
+    } else {
+      throw new IllegalArgumentException("Can't write " + value.getClass().getName() + " as JSON: " + value);
+    }
+  }
+
+  private static void writeString(String value, StringBuilder json) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char character = value.charAt(i);
+      if (character == '"' || character == '\\') {
+        json.append('\\').append(character);
+      } else if (character == '\n') {
+        json.append("\\n");
+      } else if (character == '\r') {
+        json.append("\\r");
+      } else if (character == '\t') {
+        json.append("\\t");
+      } else if (character < ' ') {
+        json.append(String.format("\\u%04x", (int) character));
+      } else {
+        json.append(character);
+      }
+    }
+    json.append('"');
+  }
+}
@@ -0,0 +1,147 @@
+package io.arivera.oss.embedded.rabbitmq.download;
+
+import io.arivera.oss.embedded.rabbitmq.util.DigestUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Properties;
+
+/**
+ * Calculates the SHA-256 digest of an artifact while it's downloaded and compares it to the expected one, if any.
+ * <p>
+ * Once downloaded, the digest is recorded in a sidecar file next to the artifact together with the artifact's size
+ * and modification time. Later runs that find the artifact unchanged rely on the recorded digest instead of reading
+ * the whole artifact again.
+ */
+class ArtifactChecksum {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactChecksum.class);
+
+  private static final String SIDECAR_SUFFIX = ".sha256";
+  private static final String DIGEST_KEY = "sha256";
+  private static final String SIZE_KEY = "size";
+  private static final String LAST_MODIFIED_KEY = "lastModified";
+
+  private final String expected;
+  private final MessageDigest digest;
+
+  /**
+   * @param expected the expected hexadecimal digest or {@code null} if the artifact can't be verified.
+   */
+  ArtifactChecksum(String expected) {
+    this.expected = expected;
+    this.digest = DigestUtils.newSha256();
+  }
+
+  /**
+   * @return a stream that updates the digest with every byte read from the given one.
+   */
+  InputStream wrap(InputStream input) {
+    return new DigestInputStream(input, digest);
+  }
+
+  /**
+   * Updates the digest with the content of the given file, as when resuming a download or when the artifact couldn't
+   * be read in order while downloading it.
+   */
+  void update(File file) throws IOException {
+    byte[] buffer = new byte[64 * 1024];
+    try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+      int read;
+      while ((read = input.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    }
+  }
+
+  void reset() {
+    digest.reset();
+  }
+
+  /**
+   * Completes the digest calculation.
+   *
+   * @return the digest of everything read as a lower case hexadecimal String.
+   * @throws DownloadException if it doesn't match the expected digest.
+   */
+  String verify(URL source) throws DownloadException {
+    String actual = DigestUtils.toHex(digest.digest());
+    if (expected != null && !expected.equals(actual)) {
+      throw new DownloadException("Artifact downloaded from '" + source + "' is corrupted or was modified. "
+          + "Expected SHA-256 digest " + expected + " but got " + actual);
+    }
+    if (expected != null) {
+      LOGGER.debug("Verified SHA-256 digest of '{}'", source);
+    }
+    return actual;
+  }
+
+  /**
+   * Stores the digest of the given artifact next to it, along with the artifact's current size and modification time.
+   */
+  static void record(File artifact, String sha256) {
+    Properties properties = new Properties();
+    properties.setProperty(DIGEST_KEY, sha256);
+    properties.setProperty(SIZE_KEY, String.valueOf(artifact.length()));
+    properties.setProperty(LAST_MODIFIED_KEY, String.valueOf(artifact.lastModified()));
+    File sidecar = sidecarFor(artifact);
+    try (OutputStream output = new FileOutputStream(sidecar)) {
+      properties.store(output, "Digest of " + artifact.getName());
+    } catch (IOException e) {
+      LOGGER.warn("Could not record digest of '{}'. It will be calculated again when needed.", artifact, e);
+    }
+  }
+
+  /**
+   * Determines if the given previously downloaded artifact has the expected digest.
+   * <p>
+   * The recorded digest is used as long as the artifact's size and modification time didn't change since it was
+   * recorded. Otherwise, the digest is calculated (and recorded) again.
+   */
+  static boolean matches(File artifact, String expected) {
+    String recorded = readRecordedDigest(artifact);
+    if (recorded == null) {
+      LOGGER.debug("No up to date digest recorded for '{}'. Calculating it...", artifact);
+      try {
+        recorded = DigestUtils.sha256Hex(artifact);
+      } catch (IOException e) {
+        LOGGER.warn("Could not calculate digest of '{}'", artifact, e);
+        return false;
+      }
+      record(artifact, recorded);
+    }
+    return expected.equals(recorded);
+  }
+
+  private static String readRecordedDigest(File artifact) {
+    File sidecar = sidecarFor(artifact);
+    if (!sidecar.isFile()) {
+      return null;
+    }
+    Properties properties = new Properties();
+    try (InputStream input = new FileInputStream(sidecar)) {
+      properties.load(input);
+      boolean unchanged = Long.parseLong(properties.getProperty(SIZE_KEY)) == artifact.length()
+          && Long.parseLong(properties.getProperty(LAST_MODIFIED_KEY)) == artifact.lastModified();
+      return unchanged ? properties.getProperty(DIGEST_KEY) : null;
+    } catch (IOException | RuntimeException e) {
+      LOGGER.debug("Could not read recorded digest '{}'. Ignoring it.", sidecar, e);
+      return null;
+    }
+  }
+
+  private static File sidecarFor(File artifact) {
+    return new File(artifact.getParentFile(), artifact.getName() + SIDECAR_SUFFIX);
+  }
+}
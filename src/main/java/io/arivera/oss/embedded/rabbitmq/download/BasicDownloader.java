@@ -8,6 +8,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Semaphore;
@@ -57,12 +58,14 @@ class BasicDownloader implements Runnable, Downloader {
 
       try {
         stopWatch.start();
-        FileUtils.copyUrlToFile(
+        ArtifactChecksum checksum = new ArtifactChecksum(config.getDownloadChecksum());
+        InputStream input = checksum.wrap(FileUtils.openUrlStream(
             config.getDownloadSource(),
-            config.getDownloadTarget(),
             (int) config.getDownloadConnectionTimeoutInMillis(),
             (int) config.getDownloadReadTimeoutInMillis(),
-            config.getDownloadProxy());
+            config.getDownloadProxy()));
+        FileUtils.copyInputStreamToFile(input, config.getDownloadTarget());
+        checksum.verify(config.getDownloadSource());
         stopWatch.stop();
         LOGGER.info("Download finished in {}ms", stopWatch.getTime());
       } catch (IOException e) {
@@ -1,11 +1,13 @@
 package io.arivera.oss.embedded.rabbitmq.download;
 
 import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.util.InterProcessLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 
 class CachedDownloader extends Downloader.Decorator {
 
@@ -18,18 +20,49 @@ class CachedDownloader extends Downloader.Decorator {
     this.config = config;
   }
 
+  /**
+   * Holds a lock over the download target while checking for and downloading the artifact, so that when several
+   * processes share the same download folder only the first one downloads it and the rest re-use it.
+   */
   @Override
   public void run() {
-    if (isDownloadAlreadyCached()) {
-      LOGGER.debug("RabbitMQ has been downloaded before. Using file: {}", config.getDownloadTarget());
-    } else {
-      download();
+    InterProcessLock lock = acquireLock();
+    try {
+      if (isDownloadAlreadyCached()) {
+        LOGGER.debug("RabbitMQ has been downloaded before. Using file: {}", config.getDownloadTarget());
+      } else {
+        download();
+      }
+    } finally {
+      if (lock != null) {
+        lock.close();
+      }
+    }
+  }
+
+  private InterProcessLock acquireLock() {
+    try {
+      return InterProcessLock.acquire(config.getDownloadTarget());
+    } catch (IOException e) {
+      LOGGER.warn("Could not lock '{}'. Will download without coordinating with other processes.",
+          config.getDownloadTarget(), e);
+      return null;
     }
   }
 
   private boolean isDownloadAlreadyCached() {
     File downloadTarget = config.getDownloadTarget();
-    return downloadTarget.exists() && downloadTarget.isFile() && downloadTarget.canRead() && downloadTarget.length() > 0;
+    boolean exists =
+        downloadTarget.exists() && downloadTarget.isFile() && downloadTarget.canRead() && downloadTarget.length() > 0;
+    if (!exists || config.getDownloadChecksum() == null) {
+      return exists;
+    }
+    boolean verified = ArtifactChecksum.matches(downloadTarget, config.getDownloadChecksum());
+    if (!verified) {
+      LOGGER.warn("Previously downloaded file doesn't have the expected checksum. Downloading it again: {}",
+          downloadTarget);
+    }
+    return verified;
   }
 
   private void download() {
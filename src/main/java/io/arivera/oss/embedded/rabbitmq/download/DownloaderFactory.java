@@ -1,24 +1,54 @@
 package io.arivera.oss.embedded.rabbitmq.download;
 
 import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.extract.ExtractionCounter;
+import io.arivera.oss.embedded.rabbitmq.extract.ExtractorFactory;
 
 public class DownloaderFactory {
 
   EmbeddedRabbitMqConfig config;
+  ExtractionCounter extractionCounter;
 
   public DownloaderFactory(EmbeddedRabbitMqConfig config) {
+    this(config, new ExtractionCounter());
+  }
+
+  /**
+   * @param extractionCounter records the files written by downloaders that extract the archive while downloading it.
+   */
+  public DownloaderFactory(EmbeddedRabbitMqConfig config, ExtractionCounter extractionCounter) {
     this.config = config;
+    this.extractionCounter = extractionCounter;
   }
 
   /**
    * @return an appropriate instance depending on the given configuration.
    */
   public Downloader getNewInstance() {
-    Downloader downloader = new BasicDownloader(config);
+    Downloader downloader;
+    ExtractorFactory extractorFactory = new ExtractorFactory(config, extractionCounter);
+    if (config.shouldExtractWhileDownloading() && extractorFactory.isStreamingSupported()) {
+      downloader = new PipelinedDownloader(config, extractorFactory.getNewStreamingInstance());
+    } else if (config.getDownloadConnections() > 1) {
+      downloader = new RangedDownloader(config, newSingleConnectionDownloader());
+    } else {
+      downloader = newSingleConnectionDownloader();
+    }
     if (config.shouldCachedDownload()) {
       downloader = new CachedDownloader(downloader, config);
     }
     return downloader;
   }
 
+  /**
+   * Downloads that are cached can be resumed if interrupted, which isn't worth it otherwise.
+   */
+  private Downloader newSingleConnectionDownloader() {
+    if (config.shouldCachedDownload()) {
+      return new ResumableDownloader(config);
+    } else {
+      return new BasicDownloader(config);
+    }
+  }
+
 }
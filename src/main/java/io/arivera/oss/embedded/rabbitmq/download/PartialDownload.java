@@ -0,0 +1,169 @@
+package io.arivera.oss.embedded.rabbitmq.download;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * A download in progress, written next to the download target and only moved to the target once complete.
+ * <p>
+ * Alongside the partially downloaded file, a sidecar file records where it's downloaded from, the expected length
+ * and the validator (ETag or Last-Modified date) reported by the server, which allows a later attempt to continue
+ * where the previous one stopped as long as the remote artifact hasn't changed.
+ */
+class PartialDownload {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PartialDownload.class);
+
+  private static final String PART_SUFFIX = ".part";
+  private static final String METADATA_SUFFIX = ".part.properties";
+  private static final String SOURCE_KEY = "source";
+  private static final String LENGTH_KEY = "length";
+  private static final String VALIDATOR_KEY = "validator";
+  private static final long UNKNOWN_LENGTH = -1;
+
+  private final File target;
+  private final File file;
+  private final File metadataFile;
+  private final URL source;
+  private long expectedLength;
+  private String validator;
+
+  private PartialDownload(File target, URL source) {
+    this.target = target;
+    this.file = new File(target.getParentFile(), target.getName() + PART_SUFFIX);
+    this.metadataFile = new File(target.getParentFile(), target.getName() + METADATA_SUFFIX);
+    this.source = source;
+    this.expectedLength = UNKNOWN_LENGTH;
+  }
+
+  /**
+   * Finds the partial download of the given source into the given target, with the information recorded by a
+   * previous attempt, if any.
+   */
+  static PartialDownload of(File target, URL source) {
+    PartialDownload partial = new PartialDownload(target, source);
+    partial.readMetadata();
+    return partial;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  long getExpectedLength() {
+    return expectedLength;
+  }
+
+  String getValidator() {
+    return validator;
+  }
+
+  /**
+   * @return how many bytes were previously downloaded and can be kept, or {@code 0} when the download must start
+   *     from the beginning.
+   */
+  long getResumableLength() {
+    if (validator == null || !file.isFile()) {
+      return 0;
+    }
+    long length = file.length();
+    return expectedLength == UNKNOWN_LENGTH || length <= expectedLength ? length : 0;
+  }
+
+  /**
+   * Records what's about to be downloaded so that it can be resumed if interrupted.
+   *
+   * @param length    the expected length of the whole artifact, or a negative value if unknown.
+   * @param validator the ETag or Last-Modified value to send back when resuming, or {@code null} if there's none, in
+   *                  which case the download can't be resumed.
+   */
+  void start(long length, String validator) throws IOException {
+    this.expectedLength = length < 0 ? UNKNOWN_LENGTH : length;
+    this.validator = validator;
+    Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+    if (validator == null) {
+      deleteQuietly(metadataFile);
+      return;
+    }
+    Properties properties = new Properties();
+    properties.setProperty(SOURCE_KEY, source.toString());
+    properties.setProperty(LENGTH_KEY, String.valueOf(expectedLength));
+    properties.setProperty(VALIDATOR_KEY, validator);
+    try (OutputStream output = new FileOutputStream(metadataFile)) {
+      properties.store(output, "Partial download of " + target.getName());
+    }
+  }
+
+  /**
+   * @throws IOException if fewer bytes than expected were downloaded.
+   */
+  void verifyLength() throws IOException {
+    if (expectedLength != UNKNOWN_LENGTH && file.length() != expectedLength) {
+      throw new IOException("Download of '" + source + "' is incomplete. Expected " + expectedLength
+          + " bytes but got " + file.length());
+    }
+  }
+
+  /**
+   * Moves the downloaded file to the download target, atomically whenever the file system supports it.
+   *
+   * @throws IOException if fewer bytes than expected were downloaded or the file couldn't be moved.
+   */
+  void complete() throws IOException {
+    verifyLength();
+    try {
+      Files.move(file.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    deleteQuietly(metadataFile);
+  }
+
+  /**
+   * Removes the partially downloaded file and its recorded information.
+   */
+  void discard() {
+    expectedLength = UNKNOWN_LENGTH;
+    validator = null;
+    deleteQuietly(metadataFile);
+    deleteQuietly(file);
+  }
+
+  private void readMetadata() {
+    if (!metadataFile.isFile()) {
+      return;
+    }
+    Properties properties = new Properties();
+    try (InputStream input = new FileInputStream(metadataFile)) {
+      properties.load(input);
+      if (source.toString().equals(properties.getProperty(SOURCE_KEY))) {
+        expectedLength = Long.parseLong(properties.getProperty(LENGTH_KEY));
+        validator = properties.getProperty(VALIDATOR_KEY);
+      } else {
+        LOGGER.debug("Partial download '{}' belongs to a different source. Ignoring it.", file);
+      }
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Could not read information about partial download '{}'. Ignoring it.", file, e);
+      expectedLength = UNKNOWN_LENGTH;
+      validator = null;
+    }
+  }
+
+  private static void deleteQuietly(File file) {
+    if (file.exists() && !file.delete()) {
+      LOGGER.warn("Could not remove '{}'", file);
+    }
+  }
+}
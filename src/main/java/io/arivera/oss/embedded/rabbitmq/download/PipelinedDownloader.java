@@ -0,0 +1,127 @@
+package io.arivera.oss.embedded.rabbitmq.download;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.apache.commons.io.FileUtils;
+import io.arivera.oss.embedded.rabbitmq.apache.commons.lang3.StopWatch;
+import io.arivera.oss.embedded.rabbitmq.extract.ExtractionException;
+import io.arivera.oss.embedded.rabbitmq.extract.StreamingExtractor;
+import io.arivera.oss.embedded.rabbitmq.util.InterProcessLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Downloads the artifact while handing its bytes to a {@link StreamingExtractor}, so that extraction doesn't have to
+ * wait for the download to finish, nor read the downloaded file from disk again.
+ * <p>
+ * Extracted files are locked the same way the {@code CachedExtractor} does, so other processes don't extract into the
+ * same folder at the same time.
+ */
+class PipelinedDownloader implements Downloader {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PipelinedDownloader.class);
+
+  private final EmbeddedRabbitMqConfig config;
+  private final StreamingExtractor extractor;
+
+  PipelinedDownloader(EmbeddedRabbitMqConfig config, StreamingExtractor extractor) {
+    this.config = config;
+    this.extractor = extractor;
+  }
+
+  @Override
+  public void run() throws DownloadException {
+    LOGGER.info("Downloading and extracting '{}'...", config.getDownloadSource());
+    LOGGER.debug("Downloading to '{}' with {}ms connection and {}ms download timeout...",
+        config.getDownloadTarget(),
+        config.getDownloadConnectionTimeoutInMillis(),
+        config.getDownloadReadTimeoutInMillis());
+
+    StopWatch stopWatch = new StopWatch();
+    stopWatch.start();
+    PartialDownload partial = PartialDownload.of(config.getDownloadTarget(), config.getDownloadSource());
+    partial.discard();              // extraction needs the whole stream, so there's nothing to resume
+    InterProcessLock extractionLock = null;
+    ArtifactChecksum checksum = new ArtifactChecksum(config.getDownloadChecksum());
+    InputStream input = null;
+    OutputStream output = null;
+    try {
+      input = checksum.wrap(FileUtils.openUrlStream(
+          config.getDownloadSource(),
+          (int) config.getDownloadConnectionTimeoutInMillis(),
+          (int) config.getDownloadReadTimeoutInMillis(),
+          config.getDownloadProxy()));
+      output = FileUtils.openOutputStream(partial.getFile());
+      extractionLock = InterProcessLock.acquire(config.getTemplateFolder());
+      extractor.extract(new TeeInputStream(input, output));
+      output.close(); // don't swallow close Exception if extraction completes normally
+      String sha256 = checksum.verify(config.getDownloadSource());
+      partial.complete();
+      extractor.archiveCompleted(config.getDownloadTarget());
+      ArtifactChecksum.record(config.getDownloadTarget(), sha256);
+      stopWatch.stop();
+      LOGGER.info("Download and extraction finished in {}ms", stopWatch.getTime());
+    } catch (IOException | ExtractionException e) {
+      throw new DownloadException(
+          "Could not download and extract '" + config.getDownloadSource() + "' to '" + config.getDownloadTarget() + "'",
+          e);
+    } finally {
+      FileUtils.closeQuietly(input);
+      FileUtils.closeQuietly(output);
+      if (extractionLock != null) {
+        extractionLock.close();
+      }
+    }
+  }
+
+  /**
+   * Writes every byte read to the given output.
+   */
+  private static class TeeInputStream extends FilterInputStream {
+
+    private final OutputStream branch;
+
+    TeeInputStream(InputStream input, OutputStream branch) {
+      super(input);
+      this.branch = branch;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int value = super.read();
+      if (value != -1) {
+        branch.write(value);
+      }
+      return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int read = super.read(buffer, offset, length);
+      if (read != -1) {
+        branch.write(buffer, offset, read);
+      }
+      return read;
+    }
+
+    /**
+     * Reads the skipped bytes instead of delegating, otherwise they'd be missing from the output.
+     */
+    @Override
+    public long skip(long length) throws IOException {
+      byte[] buffer = new byte[(int) Math.min(length, 8 * 1024)];
+      int read = read(buffer, 0, buffer.length);
+      return Math.max(read, 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,243 @@
+package io.arivera.oss.embedded.rabbitmq.download;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.apache.commons.io.FileUtils;
+import io.arivera.oss.embedded.rabbitmq.apache.commons.lang3.StopWatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads the artifact using several concurrent connections, each one fetching a different range of bytes and
+ * writing them straight to their position in a file preallocated to the artifact's size. The file is only moved to
+ * the download target once every range was downloaded and its digest verified. Since ranges arrive out of order, the
+ * digest is calculated reading the file once all of them were downloaded.
+ * <p>
+ * Servers that don't advertise support for ranged requests (or artifacts too small to be worth splitting) are
+ * downloaded using a single connection through a {@link BasicDownloader}.
+ */
+class RangedDownloader implements Downloader {
+
+  static final long MIN_RANGE_SIZE = 256 * 1024;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RangedDownloader.class);
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final EmbeddedRabbitMqConfig config;
+  private final Downloader fallbackDownloader;
+
+  RangedDownloader(EmbeddedRabbitMqConfig config) {
+    this(config, new BasicDownloader(config));
+  }
+
+  RangedDownloader(EmbeddedRabbitMqConfig config, Downloader fallbackDownloader) {
+    this.config = config;
+    this.fallbackDownloader = fallbackDownloader;
+  }
+
+  @Override
+  public void run() throws DownloadException {
+    RemoteArtifact artifact;
+    try {
+      artifact = probe();
+    } catch (IOException e) {
+      LOGGER.debug("Could not determine if ranged requests are supported. Will use a single connection.", e);
+      artifact = null;
+    }
+
+    int rangeCount = artifact == null ? 1 : countRanges(artifact.length, config.getDownloadConnections());
+    if (rangeCount < 2) {
+      LOGGER.debug("Ranged requests aren't supported or needed. Downloading using a single connection...");
+      fallbackDownloader.run();
+      return;
+    }
+
+    LOGGER.info("Downloading '{}' using {} connections...", config.getDownloadSource(), rangeCount);
+    StopWatch stopWatch = new StopWatch();
+    stopWatch.start();
+    try {
+      download(artifact, rangeCount);
+    } catch (IOException e) {
+      throw new DownloadException(
+          "Could not download '" + config.getDownloadSource() + "' to '" + config.getDownloadTarget() + "'", e);
+    }
+    stopWatch.stop();
+    LOGGER.info("Download finished in {}ms", stopWatch.getTime());
+  }
+
+  static int countRanges(long length, int maxConnections) {
+    return (int) Math.max(1, Math.min(maxConnections, length / MIN_RANGE_SIZE));
+  }
+
+  private RemoteArtifact probe() throws IOException {
+    URLConnection connection = openConnection();
+    if (!(connection instanceof HttpURLConnection)) {
+      return null;
+    }
+    HttpURLConnection httpConnection = (HttpURLConnection) connection;
+    try {
+      httpConnection.setRequestMethod("HEAD");
+      if (httpConnection.getResponseCode() != HttpURLConnection.HTTP_OK
+          || !"bytes".equalsIgnoreCase(httpConnection.getHeaderField("Accept-Ranges"))) {
+        return null;
+      }
+      long length = Long.parseLong(httpConnection.getHeaderField("Content-Length"));
+      String validator = httpConnection.getHeaderField("ETag");
+      if (validator == null) {
+        validator = httpConnection.getHeaderField("Last-Modified");
+      }
+      return length > 0 ? new RemoteArtifact(length, validator) : null;
+    } catch (NumberFormatException e) {
+      return null;
+    } finally {
+      httpConnection.disconnect();
+    }
+  }
+
+  private void download(RemoteArtifact artifact, int rangeCount) throws IOException {
+    PartialDownload partial = PartialDownload.of(config.getDownloadTarget(), config.getDownloadSource());
+    partial.discard();              // ranges aren't tracked, so there's nothing to resume
+    partial.start(artifact.length, null);
+
+    ExecutorService executor = Executors.newFixedThreadPool(rangeCount, new DownloadThreadFactory());
+    try (RandomAccessFile file = new RandomAccessFile(partial.getFile(), "rw")) {
+      file.setLength(artifact.length);
+      FileChannel channel = file.getChannel();
+
+      List<Future<Void>> ranges = new ArrayList<>(rangeCount);
+      long rangeSize = artifact.length / rangeCount;
+      for (int i = 0; i < rangeCount; i++) {
+        long first = i * rangeSize;
+        long last = i == rangeCount - 1 ? artifact.length - 1 : first + rangeSize - 1;
+        ranges.add(executor.submit(new RangeDownload(artifact, first, last, channel)));
+      }
+
+      for (Future<Void> range : ranges) {
+        awaitRange(range);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    ArtifactChecksum checksum = new ArtifactChecksum(config.getDownloadChecksum());
+    checksum.update(partial.getFile());
+    String sha256;
+    try {
+      sha256 = checksum.verify(config.getDownloadSource());
+    } catch (DownloadException e) {
+      partial.discard();
+      throw e;
+    }
+    partial.complete();
+    ArtifactChecksum.record(config.getDownloadTarget(), sha256);
+  }
+
+  private static void awaitRange(Future<Void> range) throws IOException {
+    try {
+      range.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while downloading", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private URLConnection openConnection() throws IOException {
+    return FileUtils.openUrlConnection(
+        config.getDownloadSource(),
+        (int) config.getDownloadConnectionTimeoutInMillis(),
+        (int) config.getDownloadReadTimeoutInMillis(),
+        config.getDownloadProxy());
+  }
+
+  private static class RemoteArtifact {
+    final long length;
+    final String validator;
+
+    RemoteArtifact(long length, String validator) {
+      this.length = length;
+      this.validator = validator;
+    }
+  }
+
+  private class RangeDownload implements Callable<Void> {
+
+    private final RemoteArtifact artifact;
+    private final long first;
+    private final long last;
+    private final FileChannel channel;
+
+    RangeDownload(RemoteArtifact artifact, long first, long last, FileChannel channel) {
+      this.artifact = artifact;
+      this.first = first;
+      this.last = last;
+      this.channel = channel;
+    }
+
+    @Override
+    public Void call() throws IOException {
+      HttpURLConnection connection = (HttpURLConnection) openConnection();
+      connection.setRequestProperty("Range", "bytes=" + first + "-" + last);
+      if (artifact.validator != null) {
+        connection.setRequestProperty("If-Range", artifact.validator);
+      }
+      try {
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+          throw new IOException("Expected partial content for range " + first + "-" + last
+              + " but got HTTP " + connection.getResponseCode() + ". Did the artifact change during the download?");
+        }
+        long position = first;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = connection.getInputStream()) {
+          int read;
+          while (position <= last && (read = input.read(buffer)) != -1) {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, (int) Math.min(read, last - position + 1));
+            while (bytes.hasRemaining()) {
+              position += channel.write(bytes, position);
+            }
+          }
+        }
+        if (position != last + 1) {
+          throw new IOException("Range " + first + "-" + last + " ended after " + (position - first) + " bytes");
+        }
+        LOGGER.debug("Downloaded range {}-{}", first, last);
+        return null;
+      } finally {
+        connection.disconnect();
+      }
+    }
+  }
+
+  private static class DownloadThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "RabbitMQ-Download-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package io.arivera.oss.embedded.rabbitmq.download;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.apache.commons.io.FileUtils;
+import io.arivera.oss.embedded.rabbitmq.apache.commons.lang3.StopWatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+
+/**
+ * Downloads the artifact into a {@link PartialDownload} which is only moved to the download target once complete.
+ * <p>
+ * If a previous attempt was interrupted, the download continues from the last byte received by requesting only the
+ * remaining range, as long as the server supports it and reports the artifact hasn't changed since. Otherwise, the
+ * download starts over.
+ * <p>
+ * The artifact's digest is calculated as it's downloaded and verified before the file is moved to the download target.
+ */
+class ResumableDownloader implements Downloader {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResumableDownloader.class);
+
+  private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final long PROGRESS_INTERVAL_IN_MILLIS = 500;
+
+  private final EmbeddedRabbitMqConfig config;
+
+  ResumableDownloader(EmbeddedRabbitMqConfig config) {
+    this.config = config;
+  }
+
+  @Override
+  public void run() throws DownloadException {
+    PartialDownload partial = PartialDownload.of(config.getDownloadTarget(), config.getDownloadSource());
+    StopWatch stopWatch = new StopWatch();
+    stopWatch.start();
+    try {
+      download(partial, new ArtifactChecksum(config.getDownloadChecksum()));
+    } catch (IOException e) {
+      throw new DownloadException("Could not download '" + config.getDownloadSource() + "' to '"
+          + config.getDownloadTarget() + "'. Next attempt will continue from " + partial.getResumableLength()
+          + " bytes", e);
+    }
+    stopWatch.stop();
+    LOGGER.info("Download finished in {}ms", stopWatch.getTime());
+  }
+
+  private void download(PartialDownload partial, ArtifactChecksum checksum) throws IOException {
+    long offset = partial.getResumableLength();
+    URLConnection connection = openConnection();
+    if (offset > 0 && connection instanceof HttpURLConnection) {
+      LOGGER.info("Resuming download of '{}' from byte {}...", config.getDownloadSource(), offset);
+      connection.setRequestProperty("Range", "bytes=" + offset + "-");
+      connection.setRequestProperty("If-Range", partial.getValidator());
+    } else {
+      LOGGER.info("Downloading '{}'...", config.getDownloadSource());
+      offset = 0;
+    }
+    LOGGER.debug("Downloading to '{}' with {}ms connection and {}ms download timeout...",
+        partial.getFile(),
+        config.getDownloadConnectionTimeoutInMillis(),
+        config.getDownloadReadTimeoutInMillis());
+
+    if (offset > 0) {
+      int responseCode = ((HttpURLConnection) connection).getResponseCode();
+      if (responseCode == HTTP_RANGE_NOT_SATISFIABLE && offset == partial.getExpectedLength()) {
+        LOGGER.debug("Partial download was already complete");
+        ((HttpURLConnection) connection).disconnect();
+        checksum.update(partial.getFile());
+        complete(partial, checksum);
+        return;
+      } else if (responseCode == HttpURLConnection.HTTP_OK) {
+        LOGGER.info("Artifact '{}' changed or can't be downloaded partially. Starting over...",
+            config.getDownloadSource());
+        partial.discard();
+        offset = 0;
+      } else if (responseCode != HttpURLConnection.HTTP_PARTIAL || !rangeStartsAt(connection, offset)) {
+        LOGGER.info("Download of '{}' can't be resumed (HTTP {}). Starting over...", config.getDownloadSource(),
+            responseCode);
+        ((HttpURLConnection) connection).disconnect();
+        partial.discard();
+        download(partial, checksum);
+        return;
+      }
+    }
+
+    try (InputStream input = checksum.wrap(connection.getInputStream())) {
+      if (offset == 0) {
+        partial.start(connection.getContentLengthLong(), getValidator(connection));
+      } else {
+        checksum.update(partial.getFile());
+      }
+      try (OutputStream output = new FileOutputStream(partial.getFile(), offset > 0)) {
+        copy(input, output, offset, partial.getExpectedLength());
+      }
+    }
+    complete(partial, checksum);
+  }
+
+  /**
+   * Moves the downloaded file to the download target if it's complete and has the expected digest. A file with an
+   * unexpected digest is discarded, since continuing its download wouldn't fix it.
+   */
+  private void complete(PartialDownload partial, ArtifactChecksum checksum) throws IOException {
+    partial.verifyLength();
+    String sha256;
+    try {
+      sha256 = checksum.verify(config.getDownloadSource());
+    } catch (DownloadException e) {
+      partial.discard();
+      throw e;
+    }
+    partial.complete();
+    ArtifactChecksum.record(config.getDownloadTarget(), sha256);
+  }
+
+  private static boolean rangeStartsAt(URLConnection connection, long offset) {
+    String contentRange = connection.getHeaderField("Content-Range");
+    return contentRange != null && contentRange.startsWith("bytes " + offset + "-");
+  }
+
+  private static String getValidator(URLConnection connection) {
+    if (!(connection instanceof HttpURLConnection)) {
+      return null;
+    }
+    String validator = connection.getHeaderField("ETag");
+    if (validator == null || validator.startsWith("W/")) {   // weak validators can't be used with If-Range
+      validator = connection.getHeaderField("Last-Modified");
+    }
+    return validator;
+  }
+
+  private static void copy(InputStream input, OutputStream output, long offset, long expectedLength)
+      throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    long downloaded = offset;
+    long lastProgress = System.currentTimeMillis();
+    int read;
+    while ((read = input.read(buffer)) != -1) {
+      output.write(buffer, 0, read);
+      downloaded += read;
+      if (System.currentTimeMillis() - lastProgress >= PROGRESS_INTERVAL_IN_MILLIS) {
+        LOGGER.debug("Downloaded {} of {} bytes", downloaded, expectedLength);
+        lastProgress = System.currentTimeMillis();
+      }
+    }
+  }
+
+  private URLConnection openConnection() throws IOException {
+    return FileUtils.openUrlConnection(
+        config.getDownloadSource(),
+        (int) config.getDownloadConnectionTimeoutInMillis(),
+        (int) config.getDownloadReadTimeoutInMillis(),
+        config.getDownloadProxy());
+  }
+}
@@ -24,16 +24,33 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Enumeration;
+import java.util.Set;
 import java.util.zip.GZIPInputStream;
 
 class BasicExtractor implements Extractor {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(BasicExtractor.class);
 
+  private static final EntryListener NULL_LISTENER = new NullEntryListener();
+
   private final EmbeddedRabbitMqConfig config;
+  private final EntryListener entryListener;
+  private final Set<String> entriesToExtract;
+
+  BasicExtractor(EmbeddedRabbitMqConfig config, ExtractionCounter counter) {
+    this(config, counter, NULL_LISTENER, null);
+  }
 
-  BasicExtractor(EmbeddedRabbitMqConfig config) {
+  /**
+   * @param counter          records every file written to disk.
+   * @param entryListener    notified of every entry written to disk, if not {@code null}.
+   * @param entriesToExtract names of the only entries to extract from the archive or {@code null} to extract all.
+   */
+  BasicExtractor(EmbeddedRabbitMqConfig config, ExtractionCounter counter, EntryListener entryListener,
+                 Set<String> entriesToExtract) {
     this.config = config;
+    this.entryListener = new MeasuringEntryListener(counter, entryListener == null ? NULL_LISTENER : entryListener);
+    this.entriesToExtract = entriesToExtract;
   }
 
   @Override
@@ -45,22 +62,75 @@ class BasicExtractor implements Extractor {
   CompressedExtractor getExtractor(EmbeddedRabbitMqConfig config) {
     String downloadedFilename = config.getDownloadTarget().toString();
     if (ArchiveType.TAR_GZ.matches(downloadedFilename)) {
-      return new TarGzExtractor(config);
+      return new TarGzExtractor(config, entryListener, entriesToExtract);
     } else if (ArchiveType.TAR_XZ.matches(downloadedFilename)) {
-      return new TarXzExtractor(config);
+      return new TarXzExtractor(config, entryListener, entriesToExtract);
     } else if (ArchiveType.ZIP.matches(downloadedFilename)) {
-      return new ZipExtractor(config);
+      return new ZipExtractor(config, entryListener, entriesToExtract);
     } else {
       throw new IllegalStateException("Could not determine compression format for file: " + downloadedFilename);
     }
   }
 
+  /**
+   * Notified of each entry extracted from the archive.
+   */
+  interface EntryListener {
+    void entryExtracted(String name, ExtractionManifest.EntryType type, long size, int mode);
+  }
+
+  private static class NullEntryListener implements EntryListener {
+    @Override
+    public void entryExtracted(String name, ExtractionManifest.EntryType type, long size, int mode) {
+    }
+  }
+
+  /**
+   * Records every extracted file in the given {@link ExtractionCounter} before notifying the given listener.
+   */
+  private static class MeasuringEntryListener implements EntryListener {
+
+    private final ExtractionCounter counter;
+    private final EntryListener delegate;
+
+    MeasuringEntryListener(ExtractionCounter counter, EntryListener delegate) {
+      this.counter = counter;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void entryExtracted(String name, ExtractionManifest.EntryType type, long size, int mode) {
+      if (type == ExtractionManifest.EntryType.FILE) {
+        counter.recordFile(size);
+      }
+      delegate.entryExtracted(name, type, size, mode);
+    }
+  }
+
   abstract static class CompressedExtractor implements Runnable {
 
     protected final EmbeddedRabbitMqConfig config;
+    protected final EntryListener entryListener;
+    private final Set<String> entriesToExtract;
 
-    CompressedExtractor(EmbeddedRabbitMqConfig config) {
+    CompressedExtractor(EmbeddedRabbitMqConfig config, EntryListener entryListener, Set<String> entriesToExtract) {
       this.config = config;
+      this.entryListener = entryListener;
+      this.entriesToExtract = entriesToExtract;
+    }
+
+    protected boolean shouldExtract(String entryName) {
+      return entriesToExtract == null || entriesToExtract.contains(entryName);
+    }
+
+    /**
+     * @param mode the Unix file mode of an archive entry, like {@code 0764}
+     * @return whether the extracted file should be made executable.
+     */
+    static boolean isExecutable(int mode) {
+      int ownerBits = mode >> 2;              // owner bits: 7
+      int isExecutable = ownerBits & 1;       // bits: RWX, where X = executable bit
+      return isExecutable == 1;
     }
 
     protected static void createNewFile(File destPath) {
@@ -98,36 +168,46 @@ class BasicExtractor implements Extractor {
 
   abstract static class AbstractTarExtractor extends CompressedExtractor {
 
-    AbstractTarExtractor(EmbeddedRabbitMqConfig config) {
-      super(config);
+    AbstractTarExtractor(EmbeddedRabbitMqConfig config, EntryListener entryListener, Set<String> entriesToExtract) {
+      super(config, entryListener, entriesToExtract);
     }
 
     @Override
     public void run() throws ExtractionException {
-      String downloadedFile = config.getDownloadTarget().toString();
       TarArchiveInputStream archive;
       try {
         BufferedInputStream bufferedFileInput =
             new BufferedInputStream(new FileInputStream(config.getDownloadTarget()));
-        InputStream compressedInputStream = getCompressedInputStream(downloadedFile, bufferedFileInput);
-        archive = new TarArchiveInputStream(compressedInputStream);
+        archive = openArchive(bufferedFileInput);
       } catch (IOException e) {
         throw new ExtractionException(
             "Download file '" + config.getDownloadTarget() + "' was not found or is not accessible.", e);
       }
 
       try {
-        LOGGER.info("Extracting '{}' to '{}'", config.getDownloadTarget(), config.getExtractionFolder());
-        StopWatch stopWatch = new StopWatch();
-        stopWatch.start();
-        extractTar(archive);
-        stopWatch.stop();
-        LOGGER.info("Finished extracting files in {}ms", stopWatch.getTime());
+        extract(archive);
       } finally {
         IOUtils.closeQuietly(archive);
       }
     }
 
+    TarArchiveInputStream openArchive(BufferedInputStream bufferedInput) throws IOException {
+      InputStream compressedInputStream = getCompressedInputStream(config.getDownloadTarget().toString(), bufferedInput);
+      return new TarArchiveInputStream(compressedInputStream);
+    }
+
+    /**
+     * Extracts every entry of the given archive, which is left open for the caller to close.
+     */
+    void extract(TarArchiveInputStream archive) {
+      LOGGER.info("Extracting '{}' to '{}'", config.getDownloadTarget(), config.getExtractionFolder());
+      StopWatch stopWatch = new StopWatch();
+      stopWatch.start();
+      extractTar(archive);
+      stopWatch.stop();
+      LOGGER.info("Finished extracting files in {}ms", stopWatch.getTime());
+    }
+
     protected abstract InputStream getCompressedInputStream(String downloadedFile,
                                                             BufferedInputStream bufferedFileInput) throws IOException;
 
@@ -142,18 +222,20 @@ class BasicExtractor implements Extractor {
 
       while (fileToExtract != null) {
         File destPath = new File(config.getExtractionFolder(), fileToExtract.getName());
+        int mode = fileToExtract.getMode();     // example: 764
 
-        if (fileToExtract.isDirectory()) {
+        if (!shouldExtract(fileToExtract.getName())) {
+          LOGGER.trace("Skipping '{}'...", fileToExtract.getName());
+        } else if (fileToExtract.isDirectory()) {
           makeDirectory(destPath);
+          entryListener.entryExtracted(fileToExtract.getName(), ExtractionManifest.EntryType.DIRECTORY, 0, mode);
         } else if (fileToExtract.isLink()) {
           createLink(fileToExtract, destPath);
+          entryListener.entryExtracted(fileToExtract.getName(), ExtractionManifest.EntryType.LINK, 0, mode);
         } else {
           createNewFile(destPath);
 
-          int mode = fileToExtract.getMode();     // example: 764
-          int ownerBits = mode >> 2;              // owner bits: 7
-          int isExecutable = ownerBits & 1;       // bits: RWX, where X = executable bit
-          boolean madeExecutable = destPath.setExecutable(isExecutable == 1);
+          boolean madeExecutable = destPath.setExecutable(isExecutable(mode));
           if (!madeExecutable) {
             LOGGER.warn("File '{}' (original mode {}) could not be made executable probably due to permission issues.",
                 fileToExtract.getName(), mode);
@@ -166,6 +248,8 @@ class BasicExtractor implements Extractor {
           }
 
           extractFile(archive, destPath, fileToExtract.getName());
+          entryListener.entryExtracted(fileToExtract.getName(), ExtractionManifest.EntryType.FILE,
+              fileToExtract.getSize(), mode);
         }
 
         try {
@@ -190,6 +274,7 @@ class BasicExtractor implements Extractor {
       Path existingFile = Paths.get(config.getExtractionFolder().toString(), fileToExtract.getLinkName());
       try {
         LOGGER.debug("Extracting '{}'...", destPath);
+        Files.deleteIfExists(link);
         Files.createLink(link, existingFile);
       } catch (IOException e) {
         LOGGER.warn("Could not create link '{}' to '{}'", link, existingFile, e);
@@ -200,8 +285,8 @@ class BasicExtractor implements Extractor {
 
   private static class TarGzExtractor extends AbstractTarExtractor {
 
-    public TarGzExtractor(EmbeddedRabbitMqConfig config) {
-      super(config);
+    public TarGzExtractor(EmbeddedRabbitMqConfig config, EntryListener entryListener, Set<String> entriesToExtract) {
+      super(config, entryListener, entriesToExtract);
     }
 
     @Override
@@ -214,8 +299,8 @@ class BasicExtractor implements Extractor {
 
   private static class TarXzExtractor extends AbstractTarExtractor {
 
-    public TarXzExtractor(EmbeddedRabbitMqConfig config) {
-      super(config);
+    public TarXzExtractor(EmbeddedRabbitMqConfig config, EntryListener entryListener, Set<String> entriesToExtract) {
+      super(config, entryListener, entriesToExtract);
     }
 
     protected InputStream getCompressedInputStream(String downloadedFile,
@@ -226,8 +311,8 @@ class BasicExtractor implements Extractor {
 
   private static class ZipExtractor extends CompressedExtractor {
 
-    public ZipExtractor(EmbeddedRabbitMqConfig config) {
-      super(config);
+    public ZipExtractor(EmbeddedRabbitMqConfig config, EntryListener entryListener, Set<String> entriesToExtract) {
+      super(config, entryListener, entriesToExtract);
     }
 
     @Override
@@ -260,13 +345,18 @@ class BasicExtractor implements Extractor {
         String fileName = entry.getName();
         File outputFile = new File(config.getExtractionFolder(), fileName);
 
-        if (entry.isDirectory()) {
+        if (!shouldExtract(fileName)) {
+          LOGGER.trace("Skipping '{}'...", fileName);
+        } else if (entry.isDirectory()) {
           makeDirectory(outputFile);
+          entryListener.entryExtracted(fileName, ExtractionManifest.EntryType.DIRECTORY, 0, 0);
         } else {
           createNewFile(outputFile);
           try {
             InputStream inputStream = zipFile.getInputStream(entry);
             extractFile(inputStream, outputFile, fileName);
+            // File modes aren't applied when extracting ZIP files, so none are recorded either.
+            entryListener.entryExtracted(fileName, ExtractionManifest.EntryType.FILE, entry.getSize(), 0);
           } catch (IOException e) {
             throw new ExtractionException("Error extracting file '" + fileName + "' "
                 + "from downloaded file: " + config.getDownloadTarget(), e);
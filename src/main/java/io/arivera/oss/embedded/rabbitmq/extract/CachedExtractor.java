@@ -1,25 +1,63 @@
 package io.arivera.oss.embedded.rabbitmq.extract;
 
 import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.apache.commons.lang3.StopWatch;
+import io.arivera.oss.embedded.rabbitmq.util.DigestUtils;
+import io.arivera.oss.embedded.rabbitmq.util.InterProcessLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
 class CachedExtractor extends Extractor.Decorator {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(CachedExtractor.class);
 
   private final EmbeddedRabbitMqConfig config;
+  private final ExtractionCounter counter;
 
-  CachedExtractor(Extractor extractor, EmbeddedRabbitMqConfig config) {
+  CachedExtractor(Extractor extractor, EmbeddedRabbitMqConfig config, ExtractionCounter counter) {
     super(extractor);
     this.config = config;
+    this.counter = counter;
   }
 
+  /**
+   * Holds a lock over the application folder while extracting, so that when several processes share the same
+   * extraction folder they don't write over each other's files (and, when using the manifest, only the first one
+   * extracts them).
+   */
   @Override
   public void run() throws ExtractionException {
+    InterProcessLock lock = acquireLock(config.getTemplateFolder());
     try {
-      innerExtractor.run();
+      extract();
+    } finally {
+      if (lock != null) {
+        lock.close();
+      }
+    }
+  }
+
+  private static InterProcessLock acquireLock(File appFolder) {
+    try {
+      return InterProcessLock.acquire(appFolder);
+    } catch (IOException e) {
+      LOGGER.warn("Could not lock '{}'. Will extract without coordinating with other processes.", appFolder, e);
+      return null;
+    }
+  }
+
+  private void extract() throws ExtractionException {
+    try {
+      if (config.shouldUseExtractionManifest()) {
+        extractUsingManifest();
+      } else {
+        innerExtractor.run();
+      }
     } catch (ExtractionException e) {
       if (config.shouldDeleteCachedFileOnErrors()) {
         boolean deleted = config.getDownloadTarget().delete();
@@ -34,4 +72,74 @@ class CachedExtractor extends Extractor.Decorator {
       throw e;
     }
   }
+
+  /**
+   * Skips the extraction when the manifest left behind by a previous extraction confirms the files are intact,
+   * extracts only the damaged files when some aren't, or extracts everything (recording a new manifest) otherwise.
+   * <p>
+   * A {@link BasicExtractor} is used directly (instead of the decorated extractor) since it's the one that can report
+   * the extracted entries and extract only some of them.
+   */
+  private void extractUsingManifest() throws ExtractionException {
+    StopWatch stopWatch = new StopWatch();
+    stopWatch.start();
+
+    File archive = config.getDownloadTarget();
+    File manifestFile = ExtractionManifest.locationFor(config.getTemplateFolder());
+    ExtractionManifest manifest = ExtractionManifest.read(manifestFile);
+
+    ExtractionOutcome outcome;
+    if (manifest != null && describes(manifest, archive)) {
+      Set<String> damagedEntries = manifest.findDamagedEntries(config.getExtractionFolder());
+      if (damagedEntries.isEmpty()) {
+        outcome = ExtractionOutcome.CACHE_HIT;
+      } else {
+        LOGGER.info("{} previously extracted files are missing or were modified. Extracting them again...",
+            damagedEntries.size());
+        new BasicExtractor(config, counter, null, damagedEntries).run();
+        outcome = ExtractionOutcome.PARTIAL_REPAIR;
+      }
+      if (manifest.isStale()) {
+        writeQuietly(manifest, manifestFile);
+      }
+    } else {
+      deleteQuietly(manifestFile);
+      ExtractionManifest newManifest = new ExtractionManifest();
+      new BasicExtractor(config, counter, newManifest, null).run();
+      try {
+        newManifest.describeArchive(archive, DigestUtils.sha256Hex(archive));
+        writeQuietly(newManifest, manifestFile);
+      } catch (IOException e) {
+        LOGGER.warn("Could not calculate digest of '{}'. Extraction manifest won't be written.", archive, e);
+      }
+      outcome = ExtractionOutcome.FULL_EXTRACTION;
+    }
+
+    stopWatch.stop();
+    ExtractionMetrics.record(outcome);
+    LOGGER.info("Extraction of '{}' finished as {} in {}ms", archive, outcome, stopWatch.getTime());
+  }
+
+  private boolean describes(ExtractionManifest manifest, File archive) {
+    try {
+      return manifest.describes(archive);
+    } catch (IOException e) {
+      LOGGER.warn("Could not compare '{}' with its extraction manifest. Will extract it again.", archive, e);
+      return false;
+    }
+  }
+
+  private void writeQuietly(ExtractionManifest manifest, File manifestFile) {
+    try {
+      manifest.write(manifestFile);
+    } catch (IOException e) {
+      LOGGER.warn("Could not write extraction manifest '{}'. Next start will extract all files again.", manifestFile, e);
+    }
+  }
+
+  private void deleteQuietly(File manifestFile) {
+    if (manifestFile.exists() && !manifestFile.delete()) {
+      LOGGER.warn("Could not remove outdated extraction manifest '{}'", manifestFile);
+    }
+  }
 }
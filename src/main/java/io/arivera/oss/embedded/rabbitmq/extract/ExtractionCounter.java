@@ -0,0 +1,38 @@
+package io.arivera.oss.embedded.rabbitmq.extract;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the files and bytes written to disk by the extractions it's handed to.
+ * <p>
+ * Unlike the {@link ExtractionMetrics}, which add up every extraction in the JVM, a counter only sees the extractions
+ * of whoever created it, so brokers prepared at the same time can each report their own totals.
+ *
+ * @see ExtractorFactory#ExtractorFactory(io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig, ExtractionCounter)
+ */
+public class ExtractionCounter {
+
+  private final AtomicLong files = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+
+  void recordFile(long size) {
+    files.incrementAndGet();
+    bytes.addAndGet(size);
+    ExtractionMetrics.recordFile(size);
+  }
+
+  /**
+   * @return how many files have been written to disk by the extractions using this counter.
+   */
+  public long getFilesExtracted() {
+    return files.get();
+  }
+
+  /**
+   * @return how many bytes have been written to disk by the extractions using this counter.
+   */
+  public long getBytesExtracted() {
+    return bytes.get();
+  }
+
+}
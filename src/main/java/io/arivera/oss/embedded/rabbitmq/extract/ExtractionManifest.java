@@ -0,0 +1,237 @@
+package io.arivera.oss.embedded.rabbitmq.extract;
+
+import io.arivera.oss.embedded.rabbitmq.util.DigestUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A record of every entry written while extracting an archive, stored next to the extracted tree.
+ * <p>
+ * The manifest allows for a later run to confirm that a previous extraction is still intact by only looking at
+ * file metadata (existence, size and permissions) instead of decompressing the whole archive again.
+ */
+class ExtractionManifest implements BasicExtractor.EntryListener {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExtractionManifest.class);
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String FORMAT_VERSION = "1";
+  private static final String FORMAT_VERSION_KEY = "version=";
+  private static final String ARCHIVE_DIGEST_KEY = "archive.sha256=";
+  private static final String ARCHIVE_SIZE_KEY = "archive.size=";
+  private static final String ARCHIVE_LAST_MODIFIED_KEY = "archive.lastModified=";
+  private static final String ENTRIES_KEY = "entries=";
+  private static final String SEPARATOR = "\t";
+
+  enum EntryType {
+    FILE('F'), DIRECTORY('D'), LINK('L');
+
+    private final char code;
+
+    EntryType(char code) {
+      this.code = code;
+    }
+
+    static EntryType fromCode(char code) {
+      for (EntryType type : values()) {
+        if (type.code == code) {
+          return type;
+        }
+      }
+      throw new IllegalArgumentException("Unknown entry type: " + code);
+    }
+  }
+
+  static class Entry {
+    final String name;
+    final EntryType type;
+    final long size;
+    final int mode;
+
+    Entry(String name, EntryType type, long size, int mode) {
+      this.name = name;
+      this.type = type;
+      this.size = size;
+      this.mode = mode;
+    }
+  }
+
+  private final List<Entry> entries;
+  private String archiveDigest;
+  private long archiveSize;
+  private long archiveLastModified;
+  private boolean stale;
+
+  ExtractionManifest() {
+    this.entries = new ArrayList<>();
+  }
+
+  /**
+   * @return a hidden file, next to the given application folder, where its extraction manifest is stored.
+   */
+  static File locationFor(File appFolder) {
+    return new File(appFolder.getParentFile(), "." + appFolder.getName() + ".manifest");
+  }
+
+  @Override
+  public void entryExtracted(String name, EntryType type, long size, int mode) {
+    entries.add(new Entry(name, type, size, mode));
+  }
+
+  /**
+   * Records the identity of the archive the entries were extracted from.
+   */
+  void describeArchive(File archive, String digest) {
+    describeArchive(digest, archive.length(), archive.lastModified());
+  }
+
+  void describeArchive(String digest, long size, long lastModified) {
+    this.archiveDigest = digest;
+    this.archiveSize = size;
+    this.archiveLastModified = lastModified;
+  }
+
+  List<Entry> getEntries() {
+    return Collections.unmodifiableList(entries);
+  }
+
+  /**
+   * Determines if this manifest was produced from the given archive.
+   * <p>
+   * When the archive's size and modification time are unchanged it's assumed to be the same file. Otherwise, the
+   * archive's digest is calculated and compared to the one recorded.
+   */
+  boolean describes(File archive) throws IOException {
+    if (archive.length() != archiveSize) {
+      return false;
+    }
+    if (archive.lastModified() == archiveLastModified) {
+      return true;
+    }
+    LOGGER.debug("Archive '{}' was modified since it was extracted. Comparing digests...", archive);
+    boolean sameContent = DigestUtils.sha256Hex(archive).equals(archiveDigest);
+    if (sameContent) {
+      archiveLastModified = archive.lastModified();
+      stale = true;
+    }
+    return sameContent;
+  }
+
+  /**
+   * @return {@code true} if the recorded archive information was updated and should be written again.
+   */
+  boolean isStale() {
+    return stale;
+  }
+
+  /**
+   * Compares the recorded entries against the files found under the given folder, only looking at file metadata.
+   *
+   * @return the names of the entries that are missing or which don't match what was originally extracted.
+   */
+  Set<String> findDamagedEntries(File extractionFolder) {
+    Set<String> damaged = new LinkedHashSet<>();
+    for (Entry entry : entries) {
+      File file = new File(extractionFolder, entry.name);
+      boolean intact;
+      switch (entry.type) {
+        case DIRECTORY:
+          intact = file.isDirectory();
+          break;
+        case LINK:
+          intact = file.exists();
+          break;
+        default:
+          intact = file.isFile()
+              && file.length() == entry.size
+              && (!BasicExtractor.CompressedExtractor.isExecutable(entry.mode) || file.canExecute());
+          break;
+      }
+      if (!intact) {
+        damaged.add(entry.name);
+      }
+    }
+    return damaged;
+  }
+
+  /**
+   * @return a manifest read from the given file or {@code null} if it doesn't exist or can't be parsed.
+   */
+  static ExtractionManifest read(File manifestFile) {
+    if (!manifestFile.isFile()) {
+      return null;
+    }
+    ExtractionManifest manifest = new ExtractionManifest();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifestFile), UTF_8))) {
+      if (!(FORMAT_VERSION_KEY + FORMAT_VERSION).equals(reader.readLine())) {
+        LOGGER.debug("Manifest '{}' uses an unknown format. Ignoring it.", manifestFile);
+        return null;
+      }
+      manifest.archiveDigest = readValue(reader, ARCHIVE_DIGEST_KEY);
+      manifest.archiveSize = Long.parseLong(readValue(reader, ARCHIVE_SIZE_KEY));
+      manifest.archiveLastModified = Long.parseLong(readValue(reader, ARCHIVE_LAST_MODIFIED_KEY));
+      int entryCount = Integer.parseInt(readValue(reader, ENTRIES_KEY));
+      for (int i = 0; i < entryCount; i++) {
+        String line = reader.readLine();
+        if (line == null) {
+          throw new IOException("Expected " + entryCount + " entries but found " + i);
+        }
+        String[] fields = line.split(SEPARATOR, 4);
+        manifest.entries.add(new Entry(fields[3], EntryType.fromCode(fields[0].charAt(0)),
+            Long.parseLong(fields[2]), Integer.parseInt(fields[1], 8)));
+      }
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Could not read extraction manifest '{}'. Ignoring it.", manifestFile, e);
+      return null;
+    }
+    return manifest;
+  }
+
+  private static String readValue(BufferedReader reader, String key) throws IOException {
+    String line = reader.readLine();
+    if (line == null || !line.startsWith(key)) {
+      throw new IOException("Expected line starting with '" + key + "' but found: " + line);
+    }
+    return line.substring(key.length());
+  }
+
+  /**
+   * Writes this manifest to a temporary file first and then moves it to the given location to ensure a partially
+   * written manifest is never read.
+   */
+  void write(File manifestFile) throws IOException {
+    File tempFile = new File(manifestFile.getParentFile(), manifestFile.getName() + ".tmp");
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), UTF_8))) {
+      writer.write(FORMAT_VERSION_KEY + FORMAT_VERSION + "\n");
+      writer.write(ARCHIVE_DIGEST_KEY + archiveDigest + "\n");
+      writer.write(ARCHIVE_SIZE_KEY + archiveSize + "\n");
+      writer.write(ARCHIVE_LAST_MODIFIED_KEY + archiveLastModified + "\n");
+      writer.write(ENTRIES_KEY + entries.size() + "\n");
+      for (Entry entry : entries) {
+        writer.write(entry.type.code + SEPARATOR + Integer.toOctalString(entry.mode) + SEPARATOR + entry.size
+            + SEPARATOR + entry.name + "\n");
+      }
+    }
+    Files.move(tempFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+}
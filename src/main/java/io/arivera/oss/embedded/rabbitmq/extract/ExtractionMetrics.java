@@ -0,0 +1,69 @@
+package io.arivera.oss.embedded.rabbitmq.extract;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JVM-wide counters of the {@link ExtractionOutcome outcomes} of cached extractions.
+ * <p>
+ * Useful to confirm that consecutive broker starts are taking the fast path and skipping the extraction.
+ *
+ * @see ExtractionCounter
+ * @see io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig.Builder#useExtractionManifest(boolean)
+ */
+public final class ExtractionMetrics {
+
+  private static final Map<ExtractionOutcome, AtomicLong> COUNTERS = new EnumMap<>(ExtractionOutcome.class);
+  private static final AtomicLong FILES_EXTRACTED = new AtomicLong();
+  private static final AtomicLong BYTES_EXTRACTED = new AtomicLong();
+  private static volatile ExtractionOutcome lastOutcome;
+
+  static {
+    for (ExtractionOutcome outcome : ExtractionOutcome.values()) {
+      COUNTERS.put(outcome, new AtomicLong());
+    }
+  }
+
+  private ExtractionMetrics() {
+  }
+
+  static void record(ExtractionOutcome outcome) {
+    COUNTERS.get(outcome).incrementAndGet();
+    lastOutcome = outcome;
+  }
+
+  static void recordFile(long size) {
+    FILES_EXTRACTED.incrementAndGet();
+    BYTES_EXTRACTED.addAndGet(size);
+  }
+
+  /**
+   * @return how many files have been written to disk by all extractions (cached or not) in this JVM.
+   */
+  public static long getFilesExtracted() {
+    return FILES_EXTRACTED.get();
+  }
+
+  /**
+   * @return how many bytes have been written to disk by all extractions (cached or not) in this JVM.
+   */
+  public static long getBytesExtracted() {
+    return BYTES_EXTRACTED.get();
+  }
+
+  /**
+   * @return how many cached extractions have finished with the given outcome in this JVM.
+   */
+  public static long getCount(ExtractionOutcome outcome) {
+    return COUNTERS.get(outcome).get();
+  }
+
+  /**
+   * @return outcome of the most recent cached extraction or {@code null} if none has happened yet.
+   */
+  public static ExtractionOutcome getLastOutcome() {
+    return lastOutcome;
+  }
+
+}
@@ -0,0 +1,25 @@
+package io.arivera.oss.embedded.rabbitmq.extract;
+
+/**
+ * Describes how much work was needed to make the extracted files available.
+ *
+ * @see ExtractionMetrics
+ */
+public enum ExtractionOutcome {
+
+  /**
+   * A previous extraction was found intact, so nothing was extracted.
+   */
+  CACHE_HIT,
+
+  /**
+   * A previous extraction was found but some of its files were missing or modified, so only those were extracted.
+   */
+  PARTIAL_REPAIR,
+
+  /**
+   * The whole archive was extracted.
+   */
+  FULL_EXTRACTION
+
+}
@@ -1,24 +1,59 @@
 package io.arivera.oss.embedded.rabbitmq.extract;
 
 import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.util.ArchiveType;
 
 public class ExtractorFactory {
 
   private EmbeddedRabbitMqConfig config;
+  private ExtractionCounter counter;
 
   public ExtractorFactory(EmbeddedRabbitMqConfig config) {
+    this(config, new ExtractionCounter());
+  }
+
+  /**
+   * @param counter records the files written by every extractor created by this factory.
+   */
+  public ExtractorFactory(EmbeddedRabbitMqConfig config, ExtractionCounter counter) {
     this.config = config;
+    this.counter = counter;
   }
 
   /**
    * Returns an Extractor instance appropriate based on the given configuration.
    */
   public Extractor getNewInstance() {
-    Extractor extractor = new BasicExtractor(config);
+    Extractor extractor = new BasicExtractor(config, counter);
     if (config.shouldCachedDownload()) {
-      extractor = new CachedExtractor(extractor, config);
+      extractor = new CachedExtractor(extractor, config, counter);
     }
     return extractor;
   }
 
+  /**
+   * Determines if the archive can be extracted while it's downloaded.
+   * <p>
+   * Only TAR based archives can be read sequentially (ZIP files need random access) and only when the download is
+   * cached and an extraction manifest is used, so that the following extraction step recognizes the files as
+   * already extracted.
+   */
+  public boolean isStreamingSupported() {
+    String downloadedFilename = config.getDownloadTarget().toString();
+    return config.shouldCachedDownload()
+        && config.shouldUseExtractionManifest()
+        && (ArchiveType.TAR_GZ.matches(downloadedFilename) || ArchiveType.TAR_XZ.matches(downloadedFilename));
+  }
+
+  /**
+   * @return an extractor able to extract the archive while it's downloaded.
+   * @throws IllegalStateException if {@link #isStreamingSupported()} is false for the given configuration.
+   */
+  public StreamingExtractor getNewStreamingInstance() {
+    if (!isStreamingSupported()) {
+      throw new IllegalStateException("Archive '" + config.getDownloadTarget() + "' can't be extracted while downloading");
+    }
+    return new StreamingTarExtractor(config, counter);
+  }
+
 }
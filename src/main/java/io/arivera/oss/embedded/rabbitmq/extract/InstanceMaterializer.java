@@ -0,0 +1,185 @@
+package io.arivera.oss.embedded.rabbitmq.extract;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.apache.commons.lang3.StopWatch;
+import io.arivera.oss.embedded.rabbitmq.util.InterProcessLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Creates the folder a broker instance runs from out of the extracted files, which act as a template shared by all
+ * instances of the same version.
+ * <p>
+ * Files are hard linked to the template's (or copied when the file system doesn't support it), so creating an instance
+ * takes very little time and disk space. Since linked files are shared, they must never be modified in place.
+ * The {@code etc} and {@code var} folders, which RabbitMQ and its users write to, are private to each instance: they
+ * are copied from the template the first time and kept across runs. Everything else is linked again on every run so
+ * the instance always matches the template.
+ *
+ * @see EmbeddedRabbitMqConfig.Builder#instanceFolder(File)
+ */
+public class InstanceMaterializer {
+
+  static final Set<String> PRIVATE_FOLDERS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("etc", "var")));
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(InstanceMaterializer.class);
+
+  private final EmbeddedRabbitMqConfig config;
+
+  public InstanceMaterializer(EmbeddedRabbitMqConfig config) {
+    this.config = config;
+  }
+
+  /**
+   * Creates or refreshes the instance folder. Does nothing unless the configuration uses broker instances.
+   *
+   * @throws ExtractionException if the instance folder can't be created.
+   */
+  public void run() throws ExtractionException {
+    if (!config.shouldUseBrokerInstance()) {
+      return;
+    }
+    final Path template = config.getTemplateFolder().toPath();
+    final Path instance = config.getAppFolder().toPath();
+    LOGGER.info("Creating broker instance '{}' from '{}'...", instance, template);
+    StopWatch stopWatch = new StopWatch();
+    stopWatch.start();
+
+    try (InterProcessLock ignored = InterProcessLock.acquire(template.toFile())) {
+      if (!Files.isDirectory(template)) {
+        throw new ExtractionException("Template folder '" + template + "' doesn't exist. Was the artifact extracted?");
+      }
+      Files.createDirectories(instance);
+      removeSharedEntries(instance);
+      LinkingVisitor visitor = new LinkingVisitor(template, instance);
+      Files.walkFileTree(template, visitor);
+      stopWatch.stop();
+      LOGGER.info("Broker instance created in {}ms ({} files linked, {} copied)",
+          stopWatch.getTime(), visitor.linked, visitor.copied);
+    } catch (IOException e) {
+      throw new ExtractionException("Could not create broker instance '" + instance + "' from '" + template + "'", e);
+    }
+  }
+
+  /**
+   * Removes everything from a previous run, except for the private folders.
+   */
+  private static void removeSharedEntries(Path instance) throws IOException {
+    File[] children = instance.toFile().listFiles();
+    if (children == null) {
+      return;
+    }
+    for (File child : children) {
+      if (!PRIVATE_FOLDERS.contains(child.getName())) {
+        deleteRecursively(child.toPath());
+      }
+    }
+  }
+
+  static void deleteRecursively(Path path) throws IOException {
+    if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+      Files.deleteIfExists(path);
+      return;
+    }
+    Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        if (exc != null) {
+          throw exc;
+        }
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private static class LinkingVisitor extends SimpleFileVisitor<Path> {
+
+    private final Path template;
+    private final Path instance;
+    private boolean linksSupported = true;
+    private int linked;
+    private int copied;
+
+    LinkingVisitor(Path template, Path instance) {
+      this.template = template;
+      this.instance = instance;
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+      Path relative = template.relativize(dir);
+      Path target = instance.resolve(relative.toString());
+      if (relative.getNameCount() == 1 && PRIVATE_FOLDERS.contains(relative.toString())) {
+        if (Files.exists(target)) {
+          return FileVisitResult.SKIP_SUBTREE;
+        }
+        copyRecursively(dir, target);
+        return FileVisitResult.SKIP_SUBTREE;
+      }
+      Files.createDirectories(target);
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+      Path target = instance.resolve(template.relativize(file).toString());
+      if (attrs.isSymbolicLink()) {
+        Files.createSymbolicLink(target, Files.readSymbolicLink(file));
+        return FileVisitResult.CONTINUE;
+      }
+      if (linksSupported) {
+        try {
+          Files.createLink(target, file);
+          linked++;
+          return FileVisitResult.CONTINUE;
+        } catch (UnsupportedOperationException | IOException e) {
+          LOGGER.warn("Could not hard link '{}'. Files will be copied instead.", file, e);
+          linksSupported = false;
+        }
+      }
+      Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+      copied++;
+      return FileVisitResult.CONTINUE;
+    }
+
+    private void copyRecursively(final Path source, final Path target) throws IOException {
+      Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+          Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+          Files.copy(file, target.resolve(source.relativize(file).toString()),
+              StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+          copied++;
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package io.arivera.oss.embedded.rabbitmq.extract;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar;
+import io.arivera.oss.embedded.rabbitmq.apache.commons.lang3.StopWatch;
+import io.arivera.oss.embedded.rabbitmq.util.AtomicFiles;
+import io.arivera.oss.embedded.rabbitmq.util.InterProcessLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Expands the plugin archives of a RabbitMQ version once, into a folder shared by all brokers of that version, which
+ * then use it as their {@link RabbitMqEnvVar#PLUGINS_DIR plugins folder}.
+ * <p>
+ * On every boot, RabbitMQ wipes its {@link RabbitMqEnvVar#PLUGINS_EXPAND_DIR plugins expansion folder} and unpacks
+ * every enabled {@code .ez} archive into it again. Plugins found as folders instead of archives are loaded where they
+ * are, so with the pre-expanded folder there's nothing left to unpack.
+ * <p>
+ * The expanded folder records which archives it was expanded from. Whenever they change, as when the files are
+ * extracted again, the folder is expanded again.
+ *
+ * @see EmbeddedRabbitMqConfig.Builder#preExpandPlugins(boolean)
+ */
+public class PluginsExpander {
+
+  static final String MANIFEST_FILE = ".expansion-manifest";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PluginsExpander.class);
+
+  private static final String PLUGINS_FOLDER = "plugins";
+  private static final String EXPANDED_FOLDER_SUFFIX = "-expanded-plugins";
+  private static final String ARCHIVE_EXTENSION = ".ez";
+  private static final String MANIFEST_VERSION = "v1";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final EmbeddedRabbitMqConfig config;
+
+  public PluginsExpander(EmbeddedRabbitMqConfig config) {
+    this.config = config;
+  }
+
+  /**
+   * @return folder, next to the extracted files, where plugins of the given extracted files are expanded to.
+   */
+  public static File getExpandedPluginsFolder(File templateFolder) {
+    return new File(templateFolder.getAbsoluteFile().getParentFile(), templateFolder.getName() + EXPANDED_FOLDER_SUFFIX);
+  }
+
+  /**
+   * Expands the plugins unless they were already expanded from the same archives. Does nothing unless the
+   * configuration uses pre-expanded plugins.
+   *
+   * @throws ExtractionException if the plugins can't be expanded.
+   */
+  public void run() throws ExtractionException {
+    File target = getExpandedPluginsFolder(config.getTemplateFolder());
+    if (!config.shouldPreExpandPlugins()
+        || !target.getPath().equals(config.getEnvVars().get(RabbitMqEnvVar.PLUGINS_DIR.getEnvVarName()))) {
+      return;
+    }
+    Path source = new File(config.getTemplateFolder(), PLUGINS_FOLDER).toPath();
+    try (InterProcessLock ignored = InterProcessLock.acquire(target)) {
+      String manifest = manifestOf(source);
+      Path manifestFile = target.toPath().resolve(MANIFEST_FILE);
+      if (Files.isRegularFile(manifestFile) && manifest.equals(new String(Files.readAllBytes(manifestFile), UTF_8))) {
+        LOGGER.debug("Plugins were already expanded into '{}'", target);
+        return;
+      }
+      expand(source, target.toPath(), manifest);
+    } catch (IOException e) {
+      throw new ExtractionException("Could not expand plugins from '" + source + "' into '" + target + "'", e);
+    }
+  }
+
+  /**
+   * Expands into a new folder, which replaces the target once complete, so brokers never see a partial expansion.
+   */
+  private static void expand(Path source, Path target, String manifest) throws IOException {
+    LOGGER.info("Expanding plugins from '{}' into '{}'...", source, target);
+    StopWatch stopWatch = new StopWatch();
+    stopWatch.start();
+    Path staging = Files.createTempDirectory(target.getParent(), target.getFileName().toString() + ".");
+    try {
+      int archives = 0;
+      for (File entry : listSorted(source)) {
+        if (entry.isFile() && entry.getName().endsWith(ARCHIVE_EXTENSION)) {
+          unzip(entry, staging);
+          archives++;
+        } else if (entry.isDirectory()) {
+          copyRecursively(entry.toPath(), staging.resolve(entry.getName()));
+        }
+      }
+      AtomicFiles.write(staging.resolve(MANIFEST_FILE), manifest);
+      InstanceMaterializer.deleteRecursively(target);
+      Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+      stopWatch.stop();
+      LOGGER.info("Expanded {} plugin archives in {}ms", archives, stopWatch.getTime());
+    } finally {
+      InstanceMaterializer.deleteRecursively(staging);
+    }
+  }
+
+  /**
+   * Lists name, size and modification time of every entry of the plugins folder.
+   */
+  private static String manifestOf(Path source) throws IOException {
+    File[] entries = listSorted(source);
+    if (entries.length == 0) {
+      throw new IOException("No plugins found in '" + source + "'. Was the artifact extracted?");
+    }
+    StringBuilder manifest = new StringBuilder(MANIFEST_VERSION).append('\n');
+    for (File entry : entries) {
+      manifest.append(entry.getName()).append(' ')
+          .append(entry.isDirectory() ? "dir" : String.valueOf(entry.length())).append(' ')
+          .append(entry.lastModified()).append('\n');
+    }
+    return manifest.toString();
+  }
+
+  private static File[] listSorted(Path folder) {
+    File[] entries = folder.toFile().listFiles();
+    if (entries == null) {
+      return new File[0];
+    }
+    Arrays.sort(entries);
+    return entries;
+  }
+
+  private static void unzip(File archive, Path target) throws IOException {
+    try (ZipFile zipFile = new ZipFile(archive)) {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        Path destination = target.resolve(entry.getName()).normalize();
+        if (!destination.startsWith(target)) {
+          throw new IOException("Entry '" + entry.getName() + "' of '" + archive + "' is outside of the archive");
+        }
+        if (entry.isDirectory()) {
+          Files.createDirectories(destination);
+          continue;
+        }
+        Files.createDirectories(destination.getParent());
+        try (InputStream input = zipFile.getInputStream(entry)) {
+          Files.copy(input, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+    }
+  }
+
+  private static void copyRecursively(final Path source, final Path target) throws IOException {
+    Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.copy(file, target.resolve(source.relativize(file).toString()), StandardCopyOption.COPY_ATTRIBUTES);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+}
@@ -0,0 +1,26 @@
+package io.arivera.oss.embedded.rabbitmq.extract;
+
+import java.io.File;
+import java.io.InputStream;
+
+/**
+ * Extracts an archive as its bytes are read from a stream, allowing extraction to happen while the archive is still
+ * being downloaded.
+ */
+public interface StreamingExtractor {
+
+  /**
+   * Extracts the archive read from the given stream.
+   * <p>
+   * The stream is always read until its end (even past the end of the archive's entries) so that whoever is
+   * copying the stream's content elsewhere ends up with the complete file. It's not closed.
+   */
+  void extract(InputStream archive) throws ExtractionException;
+
+  /**
+   * Ties the files extracted by {@link #extract(InputStream)} to the file the stream was copied to, once it's complete
+   * and in its final location, so later extractions of that file can be skipped.
+   */
+  void archiveCompleted(File archive);
+
+}
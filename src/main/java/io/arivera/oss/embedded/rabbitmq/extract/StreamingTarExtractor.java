@@ -0,0 +1,148 @@
+package io.arivera.oss.embedded.rabbitmq.extract;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.util.DigestUtils;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+
+/**
+ * Extracts a TAR based archive from a stream, recording an {@link ExtractionManifest} along the way so that the
+ * {@link CachedExtractor} that runs once the download completes finds the files already in place.
+ * <p>
+ * The manifest is only written once the archive file is complete, so it records the file's actual modification time
+ * next to the digest calculated while streaming, and the {@link CachedExtractor} doesn't have to read the archive
+ * again to recognize it.
+ */
+class StreamingTarExtractor implements StreamingExtractor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StreamingTarExtractor.class);
+
+  private final EmbeddedRabbitMqConfig config;
+  private final ExtractionCounter counter;
+  private ExtractionManifest manifest;
+  private String archiveDigest;
+  private long archiveSize;
+
+  StreamingTarExtractor(EmbeddedRabbitMqConfig config, ExtractionCounter counter) {
+    this.config = config;
+    this.counter = counter;
+  }
+
+  @Override
+  public void extract(InputStream archiveStream) throws ExtractionException {
+    File manifestFile = ExtractionManifest.locationFor(config.getTemplateFolder());
+    if (manifestFile.exists() && !manifestFile.delete()) {
+      LOGGER.warn("Could not remove outdated extraction manifest '{}'", manifestFile);
+    }
+
+    ExtractionManifest newManifest = new ExtractionManifest();
+    MessageDigest digest = DigestUtils.newSha256();
+    CountingInputStream countingStream = new CountingInputStream(new DigestInputStream(archiveStream, digest));
+    BufferedInputStream bufferedInput = new BufferedInputStream(countingStream);
+
+    BasicExtractor.AbstractTarExtractor extractor =
+        (BasicExtractor.AbstractTarExtractor) new BasicExtractor(config, counter, newManifest, null).getExtractor(config);
+    TarArchiveInputStream archive;
+    try {
+      archive = extractor.openArchive(bufferedInput);
+    } catch (IOException e) {
+      throw new ExtractionException("Could not read archive while downloading '" + config.getDownloadSource() + "'", e);
+    }
+    extractor.extract(archive);
+
+    try {
+      drain(bufferedInput);
+    } catch (IOException e) {
+      throw new ExtractionException("Could not read the end of the archive while downloading '"
+          + config.getDownloadSource() + "'", e);
+    }
+
+    this.manifest = newManifest;
+    this.archiveDigest = DigestUtils.toHex(digest.digest());
+    this.archiveSize = countingStream.getCount();
+    ExtractionMetrics.record(ExtractionOutcome.FULL_EXTRACTION);
+  }
+
+  @Override
+  public void archiveCompleted(File archive) {
+    if (manifest == null) {
+      throw new IllegalStateException("Archive '" + archive + "' hasn't been extracted");
+    }
+    File manifestFile = ExtractionManifest.locationFor(config.getTemplateFolder());
+    if (archive.length() != archiveSize) {
+      LOGGER.warn("Archive '{}' doesn't have the {} bytes that were extracted. Extraction manifest won't be written.",
+          archive, archiveSize);
+      return;
+    }
+    manifest.describeArchive(archive, archiveDigest);
+    try {
+      manifest.write(manifestFile);
+    } catch (IOException e) {
+      LOGGER.warn("Could not write extraction manifest '{}'. Next start will extract all files again.", manifestFile, e);
+    }
+  }
+
+  /**
+   * Reads whatever follows the archive's last entry (like the padding at the end of TAR files).
+   */
+  private static void drain(InputStream input) throws IOException {
+    byte[] buffer = new byte[8 * 1024];
+    long trailing = 0;
+    int read;
+    while ((read = input.read(buffer)) != -1) {
+      trailing += read;
+    }
+    LOGGER.trace("Read {} trailing bytes after the last archive entry", trailing);
+  }
+
+  private static class CountingInputStream extends FilterInputStream {
+
+    private long count;
+
+    CountingInputStream(InputStream input) {
+      super(input);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int value = super.read();
+      if (value != -1) {
+        count++;
+      }
+      return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int read = super.read(buffer, offset, length);
+      if (read != -1) {
+        count += read;
+      }
+      return read;
+    }
+
+    /**
+     * Reads the skipped bytes instead of delegating, otherwise they'd be missing from the digest and the copy.
+     */
+    @Override
+    public long skip(long length) throws IOException {
+      byte[] buffer = new byte[(int) Math.min(length, 8 * 1024)];
+      int read = read(buffer, 0, buffer.length);
+      return Math.max(read, 0);
+    }
+
+    long getCount() {
+      return count;
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package io.arivera.oss.embedded.rabbitmq.helpers;
 
 import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.bin.CachedErlangShell;
 import io.arivera.oss.embedded.rabbitmq.bin.ErlangShell;
 import io.arivera.oss.embedded.rabbitmq.bin.ErlangShellException;
 
@@ -20,7 +21,8 @@ public class ErlangVersionChecker {
   private final String minErlangVersion;
 
   public ErlangVersionChecker(EmbeddedRabbitMqConfig config) {
-    this(config.getVersion().getMinimumErlangVersion(), new ErlangShell(config));
+    this(config.getVersion().getMinimumErlangVersion(),
+        config.shouldCacheErlangVersion() ? new CachedErlangShell(config) : new ErlangShell(config));
   }
 
   public ErlangVersionChecker(String minErlangVersion, ErlangShell erlangShell) {
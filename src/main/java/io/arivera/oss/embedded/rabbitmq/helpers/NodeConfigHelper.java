@@ -0,0 +1,76 @@
+package io.arivera.oss.embedded.rabbitmq.helpers;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar;
+import io.arivera.oss.embedded.rabbitmq.util.ListenableFuture;
+import io.arivera.oss.embedded.rabbitmq.util.PortAllocator;
+import io.arivera.oss.embedded.rabbitmq.util.PortBlock;
+
+import java.io.File;
+
+/**
+ * Configures brokers that run next to others started from the same builder, like the ones of a
+ * {@link io.arivera.oss.embedded.rabbitmq.pool.BrokerPool} or the nodes of an
+ * {@link io.arivera.oss.embedded.rabbitmq.cluster.EmbeddedRabbitMqCluster}, and frees their ports once they stop.
+ * <p>
+ * Every broker gets a copy of the builder with a block of ports of its own, and a node name made of the given prefix
+ * and its AMQP port, so brokers started at the same time never share either.
+ */
+public class NodeConfigHelper {
+
+  private NodeConfigHelper() {
+  }
+
+  /**
+   * @param configBuilder  copied while holding its lock, so it may be shared by several threads. Ports already
+   *                       reserved by it are left alone.
+   * @param nodeNamePrefix followed by the AMQP port of the broker to make up its node name.
+   * @param dataFolder     where the broker keeps its data and logs, in a folder named after it, or {@code null} to
+   *                       leave them where the builder puts them.
+   * @return configuration holding a newly reserved block of ports, which is closed if the configuration couldn't be
+   *     built.
+   */
+  public static EmbeddedRabbitMqConfig newConfig(EmbeddedRabbitMqConfig.Builder configBuilder,
+                                                 PortAllocator portAllocator, String nodeNamePrefix, File dataFolder) {
+    PortBlock ports = portAllocator.reserveBlock();
+    String nodeName = nodeNamePrefix + ports.getAmqpPort();
+    try {
+      EmbeddedRabbitMqConfig.Builder nodeBuilder;
+      synchronized (configBuilder) {
+        nodeBuilder = configBuilder.copy();
+      }
+      nodeBuilder.ports(ports).envVar(RabbitMqEnvVar.NODENAME, nodeName);
+      if (dataFolder != null) {
+        File nodeFolder = new File(dataFolder, nodeName);
+        nodeBuilder
+            .envVar(RabbitMqEnvVar.MNESIA_BASE, new File(nodeFolder, "mnesia").getPath())
+            .envVar(RabbitMqEnvVar.LOG_BASE, new File(nodeFolder, "log").getPath());
+      }
+      return nodeBuilder.build();
+    } catch (RuntimeException e) {
+      ports.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Frees the ports of the given configuration once the broker is stopped, or couldn't be.
+   *
+   * @return the given future.
+   */
+  public static ListenableFuture<Void> freePortsWhenStopped(ListenableFuture<Void> stop,
+                                                            final EmbeddedRabbitMqConfig config) {
+    stop.addCallback(new ListenableFuture.Callback<Void>() {
+      @Override
+      public void onSuccess(Void result) {
+        config.getPorts().close();
+      }
+
+      @Override
+      public void onFailure(Throwable failure) {
+        config.getPorts().close();
+      }
+    });
+    return stop;
+  }
+}
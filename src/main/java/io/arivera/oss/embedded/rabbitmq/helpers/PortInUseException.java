@@ -0,0 +1,15 @@
+package io.arivera.oss.embedded.rabbitmq.helpers;
+
+/**
+ * Thrown when the RabbitMQ Server couldn't start because one of its ports was taken by the time it tried to bind it.
+ */
+public class PortInUseException extends StartupException {
+
+  public PortInUseException(String msg) {
+    super(msg);
+  }
+
+  public PortInUseException(String msg, Throwable cause) {
+    super(msg, cause);
+  }
+}
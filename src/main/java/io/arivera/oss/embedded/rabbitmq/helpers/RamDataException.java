@@ -0,0 +1,12 @@
+package io.arivera.oss.embedded.rabbitmq.helpers;
+
+public class RamDataException extends RuntimeException {
+
+  public RamDataException(String msg) {
+    super(msg);
+  }
+
+  public RamDataException(String msg, Throwable cause) {
+    super(msg, cause);
+  }
+}
@@ -0,0 +1,118 @@
+package io.arivera.oss.embedded.rabbitmq.helpers;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.UUID;
+
+/**
+ * Keeps the data of a disposable broker in a folder of its own, on a file system backed by memory like
+ * {@code /dev/shm}: its database and message stores, under {@link RabbitMqEnvVar#MNESIA_BASE}, and its logs, under
+ * {@link RabbitMqEnvVar#LOG_BASE}. Brokers then never wait on the disk, nor on each other's writes to it.
+ * <p>
+ * The folder is created before the broker boots, as long as the file system has the free space required, and it's
+ * deleted once the broker stops or fails to start, so nothing is kept across restarts. The free space is only checked
+ * then: once running, the broker is kept from filling up the file system by its own free disk space alarm.
+ *
+ * @see EmbeddedRabbitMqConfig.Builder#ramDataFolder(File, long)
+ */
+public class RamDataFolder {
+
+  /**
+   * File system backed by memory found on most Linux distributions.
+   */
+  public static final File DEFAULT_FILE_SYSTEM = new File("/dev/shm");
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RamDataFolder.class);
+
+  private static final String FOLDER_PREFIX = "embedded-rabbitmq-";
+
+  private final EmbeddedRabbitMqConfig config;
+
+  public RamDataFolder(EmbeddedRabbitMqConfig config) {
+    this.config = config;
+  }
+
+  /**
+   * @return a new folder, private to a single broker, in the given file system.
+   */
+  public static File newBrokerFolder(File fileSystem) {
+    return new File(fileSystem.getAbsoluteFile(), FOLDER_PREFIX + UUID.randomUUID());
+  }
+
+  /**
+   * Creates the folder of the broker. Does nothing unless the configuration keeps data in memory.
+   *
+   * @throws RamDataException if the file system is missing, has less free space than required, or the folder can't be
+   *                          created.
+   */
+  public void create() throws RamDataException {
+    File folder = config.getRamDataFolder();
+    if (folder == null) {
+      return;
+    }
+    File fileSystem = folder.getParentFile();
+    if (!fileSystem.isDirectory()) {
+      throw new RamDataException("File system '" + fileSystem + "' for the broker's data doesn't exist");
+    }
+    long freeBytes = fileSystem.getUsableSpace();
+    if (freeBytes < config.getRamDataRequiredFreeSpaceInBytes()) {
+      throw new RamDataException("File system '" + fileSystem + "' has " + freeBytes + " bytes free, but the "
+          + "broker's data requires " + config.getRamDataRequiredFreeSpaceInBytes() + " bytes");
+    }
+    try {
+      Files.createDirectories(folder.toPath());
+    } catch (IOException e) {
+      throw new RamDataException("Could not create folder '" + folder + "' for the broker's data", e);
+    }
+    LOGGER.debug("Broker will keep its data in '{}' ({} bytes free)", folder, freeBytes);
+  }
+
+  /**
+   * Deletes the folder of the broker, along with everything in it. Does nothing unless the configuration keeps data in
+   * memory. Failures are logged, since the broker is already stopped.
+   */
+  public void delete() {
+    File folder = config.getRamDataFolder();
+    if (folder == null) {
+      return;
+    }
+    try {
+      deleteRecursively(folder.toPath());
+    } catch (IOException e) {
+      LOGGER.warn("Could not delete folder '{}' of the broker's data", folder, e);
+    }
+  }
+
+  private static void deleteRecursively(Path folder) throws IOException {
+    if (!Files.exists(folder)) {
+      return;
+    }
+    Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        if (exc != null) {
+          throw exc;
+        }
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+}
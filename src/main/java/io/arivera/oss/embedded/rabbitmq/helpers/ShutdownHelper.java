@@ -3,6 +3,9 @@ package io.arivera.oss.embedded.rabbitmq.helpers;
 import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
 import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCommandException;
 import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCtl;
+import io.arivera.oss.embedded.rabbitmq.util.AsyncExecutors;
+import io.arivera.oss.embedded.rabbitmq.util.ListenableFuture;
+import io.arivera.oss.embedded.rabbitmq.util.SettableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,6 +13,7 @@ import org.zeroturnaround.exec.ProcessResult;
 
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -19,6 +23,7 @@ import java.util.concurrent.TimeoutException;
 public class ShutdownHelper implements Runnable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ShutdownHelper.class);
+  private static final long POLL_INTERVAL_IN_MILLIS = 50;
 
   private final EmbeddedRabbitMqConfig config;
   private final Future<ProcessResult> rabbitMqProcess;
@@ -41,6 +46,117 @@ public class ShutdownHelper implements Runnable {
     confirmShutdown();
   }
 
+  /**
+   * Same as {@link #run()} but without blocking the current thread: the end of the processes is learned from their
+   * events and timeouts are enforced by a thread shared with other asynchronous operations.
+   * <p>
+   * The RabbitMQ Server process is expected to be the one given by {@link StartupHelper#callAsync()}. Any other kind
+   * of future is polled until it's done.
+   *
+   * @return a future completed once the server is stopped, or completed with a {@link ShutDownException} if it couldn't
+   *     be stopped or confirmed to have stopped in time.
+   */
+  public ListenableFuture<Void> runAsync() {
+    final SettableFuture<Void> shutdownFuture = new SettableFuture<>();
+    StartupHelper.PublishingProcessListener rabbitMqCtlListener = new StartupHelper.PublishingProcessListener();
+    try {
+      new RabbitMqCtl(config).execute(rabbitMqCtlListener, "stop");
+    } catch (RabbitMqCommandException e) {
+      shutdownFuture.setException(
+          new ShutDownException("Could not successfully execute command to stop RabbitMQ Server", e));
+      return shutdownFuture;
+    }
+
+    whenDone(rabbitMqCtlListener.getResult(), "command to shut down RabbitMQ Server to finish")
+        .addCallback(new ListenableFuture.Callback<ProcessResult>() {
+          @Override
+          public void onSuccess(ProcessResult rabbitMqCtlProcessResult) {
+            int exitValue = rabbitMqCtlProcessResult.getExitValue();
+            if (exitValue == 0) {
+              LOGGER.debug("Successfully commanded RabbitMQ Server to stop.");
+            } else {
+              LOGGER.warn("Command to stop RabbitMQ Sever failed with exit value: " + exitValue);
+            }
+            whenDone(rabbitMqProcess, "RabbitMQ Server to shut down")
+                .addCallback(new ListenableFuture.Callback<ProcessResult>() {
+                  @Override
+                  public void onSuccess(ProcessResult rabbitMqProcessResult) {
+                    logExitValue(rabbitMqProcessResult.getExitValue());
+                    shutdownFuture.set(null);
+                  }
+
+                  @Override
+                  public void onFailure(Throwable failure) {
+                    shutdownFuture.setException(failure);
+                  }
+                });
+          }
+
+          @Override
+          public void onFailure(Throwable failure) {
+            shutdownFuture.setException(failure);
+          }
+        });
+    return shutdownFuture;
+  }
+
+  /**
+   * @return a future completed with the result of the given one, or failed if it doesn't complete in time.
+   */
+  @SuppressWarnings("unchecked")
+  private ListenableFuture<ProcessResult> whenDone(final Future<ProcessResult> processFuture,
+                                                   final String waitDescription) {
+    final SettableFuture<ProcessResult> resultFuture = new SettableFuture<>();
+    final ScheduledFuture<?> timeout = AsyncExecutors.scheduler().schedule(new Runnable() {
+      @Override
+      public void run() {
+        resultFuture.setException(new ShutDownException("Error while waiting " + timeoutDuration + " " + timeoutUnit
+            + " for " + waitDescription, new TimeoutException()));
+      }
+    }, timeoutDuration, timeoutUnit);
+
+    ListenableFuture.Callback<ProcessResult> callback = new ListenableFuture.Callback<ProcessResult>() {
+      @Override
+      public void onSuccess(ProcessResult result) {
+        timeout.cancel(false);
+        resultFuture.set(result);
+      }
+
+      @Override
+      public void onFailure(Throwable failure) {
+        timeout.cancel(false);
+        resultFuture.setException(new ShutDownException("Error while waiting for " + waitDescription, failure));
+      }
+    };
+    if (processFuture instanceof ListenableFuture) {
+      ((ListenableFuture<ProcessResult>) processFuture).addCallback(callback);
+    } else {
+      pollUntilDone(processFuture, resultFuture, callback);
+    }
+    return resultFuture;
+  }
+
+  private static void pollUntilDone(final Future<ProcessResult> processFuture, final Future<ProcessResult> resultFuture,
+                                    final ListenableFuture.Callback<ProcessResult> callback) {
+    AsyncExecutors.scheduler().execute(new Runnable() {
+      @Override
+      public void run() {
+        if (resultFuture.isDone()) {
+          return;
+        }
+        if (!processFuture.isDone()) {
+          AsyncExecutors.scheduler().schedule(this, POLL_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS);
+          return;
+        }
+        try {
+          callback.onSuccess(processFuture.get());
+        } catch (InterruptedException | ExecutionException | RuntimeException e) {
+          callback.onFailure(e);
+        }
+      }
+    });
+  }
+
   private void submitShutdownRequest() throws ShutDownException {
     Future<ProcessResult> resultFuture;
     try {
@@ -75,6 +191,10 @@ public class ShutdownHelper implements Runnable {
           + "RabbitMQ Server to shut down", e);
     }
 
+    logExitValue(exitValue);
+  }
+
+  private static void logExitValue(int exitValue) {
     if (exitValue == 0) {
       LOGGER.debug("RabbitMQ Server stopped successfully.");
     } else {
@@ -4,6 +4,13 @@ import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
 import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCommand;
 import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCommandException;
 import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqServer;
+import io.arivera.oss.embedded.rabbitmq.lifecycle.LifecycleEventPublisher;
+import io.arivera.oss.embedded.rabbitmq.lifecycle.LifecyclePhase;
+import io.arivera.oss.embedded.rabbitmq.readiness.ReadinessCheck;
+import io.arivera.oss.embedded.rabbitmq.util.AsyncExecutors;
+import io.arivera.oss.embedded.rabbitmq.util.ListenableFuture;
+import io.arivera.oss.embedded.rabbitmq.util.PortBlock;
+import io.arivera.oss.embedded.rabbitmq.util.SettableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,19 +21,33 @@ import org.zeroturnaround.exec.stream.LogOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class StartupHelper implements Callable<Future<ProcessResult>> {
 
   public static final String BROKER_STARTUP_COMPLETED = ".*completed with \\d+ plugins.*";
+  private static final Logger LOGGER = LoggerFactory.getLogger(StartupHelper.class);
   private final EmbeddedRabbitMqConfig config;
+  private final LifecycleEventPublisher publisher;
 
   public StartupHelper(EmbeddedRabbitMqConfig config) {
+    this(config, new LifecycleEventPublisher(config));
+  }
+
+  /**
+   * @param publisher notified of the {@link LifecyclePhase#PROCESS_SPAWN} and {@link LifecyclePhase#READINESS} phases.
+   */
+  public StartupHelper(EmbeddedRabbitMqConfig config, LifecycleEventPublisher publisher) {
     this.config = config;
+    this.publisher = publisher;
   }
 
   /**
@@ -35,25 +56,97 @@ public class StartupHelper implements Callable<Future<ProcessResult>> {
    * This is useful to ensure no other interactions happen with the RabbitMQ Server until it's safe to do so
    *
    * @return an unfinished future representing the eventual result of the {@code rabbitmq-server} process running in "foreground".
-   * @throws StartupException if anything fails while attempting to start and confirm successful initialization.
+   * @throws StartupException if anything fails while attempting to start and confirm successful initialization, such
+   *                          as a {@link PortInUseException}.
    * @see ShutdownHelper
    */
   @Override
   public Future<ProcessResult> call() throws StartupException {
-    PatternFinderOutputStream initializationWatcher = new PatternFinderOutputStream(BROKER_STARTUP_COMPLETED);
+    ReadinessCheck readinessCheck = config.getReadinessStrategy().newCheck(config);
+    ReadinessWatcher initializationWatcher = new ReadinessWatcher(readinessCheck);
 
-    // Inform the initializationWatcher if the process ends before the expected output is produced.
+    // Inform the initializationWatcher if the process ends before the server is ready.
     PublishingProcessListener rabbitMqProcessListener = new PublishingProcessListener();
     rabbitMqProcessListener.addSubscriber(initializationWatcher);
 
     Future<ProcessResult> resultFuture = startProcess(initializationWatcher, rabbitMqProcessListener);
-    waitForConfirmation(initializationWatcher);
+    waitForConfirmation(initializationWatcher, resultFuture, rabbitMqProcessListener);
 
     return resultFuture;
   }
 
-  private Future<ProcessResult> startProcess(PatternFinderOutputStream initializationWatcher,
+  /**
+   * Starts the RabbitMQ Server without blocking the current thread to confirm it started.
+   * <p>
+   * The readiness check is polled by the threads shared for blocking work (since checks may wait on a socket) and
+   * whenever the process writes some output, while the process termination is learned from the process events.
+   *
+   * @return a future completed once the server is confirmed to have started, with a future of the eventual result of
+   *     the {@code rabbitmq-server} process, or completed with a {@link StartupException} if the server couldn't be
+   *     started or confirmed to be ready in time, such as a {@link PortInUseException}.
+   * @see ShutdownHelper#runAsync()
+   */
+  public ListenableFuture<ListenableFuture<ProcessResult>> callAsync() {
+    final SettableFuture<ListenableFuture<ProcessResult>> readyFuture = new SettableFuture<>();
+    ReadinessCheck readinessCheck = config.getReadinessStrategy().newCheck(config);
+    final ReadinessWatcher initializationWatcher = new ReadinessWatcher(readinessCheck);
+
+    final PublishingProcessListener rabbitMqProcessListener = new PublishingProcessListener();
+    rabbitMqProcessListener.addSubscriber(initializationWatcher);
+
+    final Future<ProcessResult> resultFuture;
+    try {
+      resultFuture = startProcess(initializationWatcher, rabbitMqProcessListener);
+    } catch (StartupException e) {
+      readyFuture.setException(e);
+      return readyFuture;
+    }
+
+    final LifecycleEventPublisher.Phase phase = publisher.start(LifecyclePhase.READINESS);
+    final long timeout = config.getRabbitMqServerInitializationTimeoutInMillis();
+    initializationWatcher.whenReady(AsyncExecutors.scheduler(), AsyncExecutors.blockingTasks(), timeout,
+        config.getReadinessInitialPollIntervalInMillis(), config.getReadinessMaxPollIntervalInMillis())
+        .addCallback(new ListenableFuture.Callback<Boolean>() {
+          @Override
+          public void onSuccess(Boolean ready) {
+            if (ready) {
+              phase.succeeded();
+              readyFuture.set(rabbitMqProcessListener.getResult());
+            } else if (initializationWatcher.isAddressInUse()) {
+              final ListenableFuture.Callback<Boolean> readiness = this;
+              final StartupException failure = newFailedConfirmationException(initializationWatcher, timeout);
+              stopProcess(resultFuture, rabbitMqProcessListener).addCallback(new ListenableFuture.Callback<Void>() {
+                @Override
+                public void onSuccess(Void result) {
+                  readiness.onFailure(failure);
+                }
+
+                @Override
+                public void onFailure(Throwable stopFailure) {
+                  readiness.onFailure(failure);
+                }
+              });
+            } else {
+              onFailure(newFailedConfirmationException(initializationWatcher, timeout));
+            }
+          }
+
+          @Override
+          public void onFailure(Throwable failure) {
+            phase.failed(failure);
+            readyFuture.setException(failure);
+          }
+        });
+    return readyFuture;
+  }
+
+  private Future<ProcessResult> startProcess(ReadinessWatcher initializationWatcher,
                                              PublishingProcessListener rabbitMqProcessListener) {
+    LifecycleEventPublisher.Phase phase = publisher.start(LifecyclePhase.PROCESS_SPAWN);
+    PortBlock ports = config.getPorts();
+    if (ports != null) {
+      ports.releasePlaceholders();
+    }
     Future<ProcessResult> resultFuture;
     try {
       resultFuture = new RabbitMqServer(config)
@@ -61,24 +154,89 @@ public class StartupHelper implements Callable<Future<ProcessResult>> {
           .listeningToEventsWith(rabbitMqProcessListener)
           .start();
     } catch (RabbitMqCommandException e) {
-      throw new StartupException("Could not start RabbitMQ Server", e);
+      StartupException startupException = new StartupException("Could not start RabbitMQ Server", e);
+      phase.failed(startupException);
+      throw startupException;
     }
+    phase.succeeded();
     return resultFuture;
   }
 
-  private void waitForConfirmation(PatternFinderOutputStream initializationWatcher) {
+  private void waitForConfirmation(ReadinessWatcher initializationWatcher, Future<ProcessResult> resultFuture,
+                                   PublishingProcessListener rabbitMqProcessListener) {
+    LifecycleEventPublisher.Phase phase = publisher.start(LifecyclePhase.READINESS);
     long timeout = config.getRabbitMqServerInitializationTimeoutInMillis();
-    boolean match = initializationWatcher.waitForMatch(timeout, TimeUnit.MILLISECONDS);
+    boolean ready = initializationWatcher.waitUntilReady(timeout,
+        config.getReadinessInitialPollIntervalInMillis(), config.getReadinessMaxPollIntervalInMillis());
+
+    if (!ready) {
+      StartupException startupException = newFailedConfirmationException(initializationWatcher, timeout);
+      if (initializationWatcher.isAddressInUse()) {
+        try {
+          stopProcess(resultFuture, rabbitMqProcessListener).get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+          LOGGER.warn("Could not wait for RabbitMQ Server to stop", e);
+        }
+      }
+      phase.failed(startupException);
+      throw startupException;
+    }
+    phase.succeeded();
+  }
 
-    if (!match) {
-      throw new StartupException(
-          "Could not confirm RabbitMQ Server initialization completed successfully within " + timeout + "ms");
+  private StartupException newFailedConfirmationException(ReadinessWatcher initializationWatcher, long timeout) {
+    if (initializationWatcher.isAddressInUse()) {
+      return new PortInUseException("RabbitMQ Server could not bind its ports " + config.getPorts()
+          + " because they're in use");
     }
+    return new StartupException(
+        "Could not confirm RabbitMQ Server initialization completed successfully within " + timeout + "ms");
+  }
+
+  /**
+   * Stops a server that couldn't bind its ports, in case it didn't stop on its own, so it can be started again with
+   * other ports. Its node name stays taken until the process is gone, so that's waited for, but no longer than
+   * {@link EmbeddedRabbitMqConfig#getDefaultRabbitMqCtlTimeoutInMillis()}.
+   *
+   * @return a future completed once the process is gone, or once it's no longer worth waiting for it.
+   */
+  private ListenableFuture<Void> stopProcess(Future<ProcessResult> resultFuture,
+                                             PublishingProcessListener rabbitMqProcessListener) {
+    resultFuture.cancel(true);
+    final SettableFuture<Void> stopped = new SettableFuture<>();
+    final long timeout = config.getDefaultRabbitMqCtlTimeoutInMillis();
+    final ScheduledFuture<?> timer = AsyncExecutors.scheduler().schedule(new Runnable() {
+      @Override
+      public void run() {
+        if (stopped.set(null)) {
+          LOGGER.warn("RabbitMQ Server didn't stop within {}ms, it may still hold its node name", timeout);
+        }
+      }
+    }, timeout, TimeUnit.MILLISECONDS);
+    rabbitMqProcessListener.getTermination().addCallback(new ListenableFuture.Callback<Void>() {
+      @Override
+      public void onSuccess(Void result) {
+        timer.cancel(false);
+        stopped.set(null);
+      }
+
+      @Override
+      public void onFailure(Throwable failure) {
+        onSuccess(null);
+      }
+    });
+    return stopped;
   }
 
   /**
    * Notifies subscribers of process termination so they don't have to rely on blocking {@link Future#get()} of
    * {@link ProcessResult}s, which is returned by {@link RabbitMqCommand}s.
+   * <p>
+   * The result is also available through a {@link ListenableFuture}, which fails if the process stops without one
+   * (for example, if waiting for it was interrupted), and so is the termination of the process, which is only known
+   * once a process that was stopped is actually gone.
    */
   static class PublishingProcessListener extends ProcessListener {
 
@@ -87,9 +245,13 @@ public class StartupHelper implements Callable<Future<ProcessResult>> {
     }
 
     private final List<Subscriber> subscribers;
+    private final SettableFuture<ProcessResult> result;
+    private final SettableFuture<Void> termination;
 
     public PublishingProcessListener(Subscriber... subscribers) {
       this.subscribers = new ArrayList<>(Arrays.asList(subscribers));
+      this.result = new SettableFuture<>();
+      this.termination = new SettableFuture<>();
     }
 
     @Override
@@ -98,6 +260,27 @@ public class StartupHelper implements Callable<Future<ProcessResult>> {
       for (Subscriber subscriber : subscribers) {
         subscriber.processFinished(result.getExitValue());
       }
+      this.result.set(result);
+    }
+
+    @Override
+    public void afterStop(Process process) {
+      super.afterStop(process);
+      result.setException(new RabbitMqCommandException("Process stopped without a result"));
+      try {
+        process.waitFor();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      termination.set(null);
+    }
+
+    public ListenableFuture<ProcessResult> getResult() {
+      return result;
+    }
+
+    public ListenableFuture<Void> getTermination() {
+      return termination;
     }
 
     public void addSubscriber(Subscriber subscriber) {
@@ -107,63 +290,231 @@ public class StartupHelper implements Callable<Future<ProcessResult>> {
   }
 
   /**
-   * An output stream that compares each line with a given pattern.
+   * An output stream that hands each line to a {@link ReadinessCheck}.
    *
-   * This class offers the ability to wait until the pattern is found or the given amount of time has passed.
+   * This class offers the ability to poll the check, with an increasing interval, until it succeeds, the process
+   * finishes or the given amount of time has passed. Every line written by the process triggers a new poll right away.
    */
-  static class PatternFinderOutputStream extends LogOutputStream implements PublishingProcessListener.Subscriber {
+  static class ReadinessWatcher extends LogOutputStream implements PublishingProcessListener.Subscriber {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(PatternFinderOutputStream.class);
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReadinessWatcher.class);
 
-    private final Pattern pattern;
-    private final Semaphore lock;
-    private boolean matchFound;
+    private static final String ADDRESS_IN_USE = "eaddrinuse";
 
-    public PatternFinderOutputStream(String initializationMarkerPattern) {
-      this(Pattern.compile(initializationMarkerPattern, Pattern.CASE_INSENSITIVE));
-    }
+    private final ReadinessCheck check;
+    private final Object monitor;
+    private boolean processFinished;
+    private boolean addressInUse;
+    private boolean outputPending;
+    private AsyncPoll asyncPoll;
 
-    public PatternFinderOutputStream(Pattern initializationMarkerPattern) {
-      try {
-        lock = new Semaphore(1);
-        lock.acquire();
-      } catch (InterruptedException e) {
-        throw new IllegalStateException("Could not acquire a lock we create right above?", e);
-      }
-      pattern = initializationMarkerPattern;
-      matchFound = false;
+    public ReadinessWatcher(ReadinessCheck check) {
+      this.check = check;
+      this.monitor = new Object();
     }
 
+    /**
+     * Lines reporting a port that couldn't be bound end the wait, since the server won't ever be ready.
+     */
     @Override
     protected void processLine(String line) {
-      if (pattern.matcher(line).matches()) {
-        LOGGER.trace("Pattern '{}' found in line: {}", pattern, line);
-        matchFound = true;
-        lock.release();
+      check.processOutputLine(line);
+      boolean bindFailed = line.toLowerCase(Locale.ROOT).contains(ADDRESS_IN_USE);
+      AsyncPoll poll;
+      synchronized (monitor) {
+        addressInUse |= bindFailed;
+        outputPending = true;
+        monitor.notifyAll();
+        poll = asyncPoll;
+      }
+      if (poll != null) {
+        poll.trigger();
       }
-      LOGGER.trace("Pattern '{}' NOT found in line: {}", pattern, line);
     }
 
     @Override
     public void processFinished(int exitValue) {
       LOGGER.debug("No more output is expected since process finished (exit code: {})", exitValue);
-      lock.release();
+      AsyncPoll poll;
+      synchronized (monitor) {
+        processFinished = true;
+        monitor.notifyAll();
+        poll = asyncPoll;
+      }
+      if (poll != null) {
+        poll.trigger();
+      }
     }
 
-    public boolean waitForMatch(long duration, TimeUnit timeUnit) {
+    /**
+     * @return {@code true} if the check succeeded within the given time.
+     */
+    public boolean waitUntilReady(long timeoutInMillis, long initialIntervalInMillis, long maxIntervalInMillis) {
+      long startTime = System.nanoTime();
+      long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(timeoutInMillis);
+      long interval = initialIntervalInMillis;
+      int polls = 0;
       try {
-        boolean acquired = lock.tryAcquire(duration, timeUnit);
-        if (!acquired) {
-          LOGGER.info("Waited for {} {} for pattern '{}' to appear but it didn't.", duration, timeUnit, pattern );
+        while (true) {
+          polls++;
+          if (check.isReady()) {
+            LOGGER.info("RabbitMQ Server ready after {}ms according to {} ({} checks)",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), check, polls);
+            return true;
+          }
+          synchronized (monitor) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (processFinished || addressInUse || remaining <= 0) {
+              break;
+            }
+            if (!outputPending) {
+              monitor.wait(Math.min(interval, remaining));
+            }
+            outputPending = false;
+          }
+          interval = Math.min(interval * 2, maxIntervalInMillis);
         }
       } catch (InterruptedException e) {
-        LOGGER.warn("Error while waiting for process output that matches the pattern '{}'", pattern);
+        Thread.currentThread().interrupt();
+        LOGGER.warn("Interrupted while waiting for {}", check);
+        return false;
+      }
+      LOGGER.info("Waited for {}ms for {} to succeed but it didn't.", timeoutInMillis, check);
+      return check.isReady();
+    }
+
+    /**
+     * Same as {@link #waitUntilReady(long, long, long)} but polling the check with the given executor instead of
+     * blocking the current thread.
+     * <p>
+     * The scheduler only times the polls and the timeout, so the timeout is enforced even while a poll is blocked.
+     *
+     * @param checks runs the polls, which may block (like a check connecting to the server).
+     * @return a future completed with {@code true} if the check succeeded within the given time.
+     */
+    public ListenableFuture<Boolean> whenReady(ScheduledExecutorService scheduler, Executor checks, long timeoutInMillis,
+                                               long initialIntervalInMillis, long maxIntervalInMillis) {
+      AsyncPoll poll = new AsyncPoll(scheduler, checks, timeoutInMillis, initialIntervalInMillis, maxIntervalInMillis);
+      synchronized (monitor) {
+        asyncPoll = poll;
+      }
+      poll.start();
+      return poll.result;
+    }
+
+    /**
+     * @return {@code true} if the output showed the server couldn't bind one of its ports.
+     */
+    public boolean isAddressInUse() {
+      synchronized (monitor) {
+        return addressInUse;
+      }
+    }
+
+    private boolean isDone() {
+      synchronized (monitor) {
+        return processFinished || addressInUse;
       }
-      return isMatchFound();
     }
 
-    public boolean isMatchFound() {
-      return matchFound;
+    /**
+     * Polls the check once and, unless it's done, schedules the next poll. Output and process termination trigger a
+     * poll right away, which replaces the scheduled one.
+     */
+    private class AsyncPoll implements Runnable {
+
+      private final ScheduledExecutorService scheduler;
+      private final Executor checks;
+      private final SettableFuture<Boolean> result;
+      private final AtomicBoolean triggered;
+      private final long startTime;
+      private final long deadline;
+      private final long timeoutInMillis;
+      private final long maxIntervalInMillis;
+      private long interval;
+      private int polls;
+      private ScheduledFuture<?> nextPoll;
+
+      AsyncPoll(ScheduledExecutorService scheduler, Executor checks, long timeoutInMillis, long initialIntervalInMillis,
+                long maxIntervalInMillis) {
+        this.scheduler = scheduler;
+        this.checks = checks;
+        this.result = new SettableFuture<>();
+        this.triggered = new AtomicBoolean();
+        this.startTime = System.nanoTime();
+        this.deadline = startTime + TimeUnit.MILLISECONDS.toNanos(timeoutInMillis);
+        this.timeoutInMillis = timeoutInMillis;
+        this.maxIntervalInMillis = maxIntervalInMillis;
+        this.interval = initialIntervalInMillis;
+      }
+
+      void start() {
+        final ScheduledFuture<?> timeout = scheduler.schedule(new Runnable() {
+          @Override
+          public void run() {
+            giveUp();
+          }
+        }, timeoutInMillis, TimeUnit.MILLISECONDS);
+        result.addCallback(new ListenableFuture.Callback<Boolean>() {
+          @Override
+          public void onSuccess(Boolean ready) {
+            timeout.cancel(false);
+          }
+
+          @Override
+          public void onFailure(Throwable failure) {
+            timeout.cancel(false);
+          }
+        });
+        trigger();
+      }
+
+      void trigger() {
+        if (!result.isDone() && triggered.compareAndSet(false, true)) {
+          checks.execute(this);
+        }
+      }
+
+      private void giveUp() {
+        if (result.set(false)) {
+          LOGGER.info("Waited for {}ms for {} to succeed but it didn't.", timeoutInMillis, check);
+        }
+      }
+
+      @Override
+      public synchronized void run() {
+        triggered.set(false);
+        if (result.isDone()) {
+          return;
+        }
+        polls++;
+        try {
+          if (check.isReady()) {
+            LOGGER.info("RabbitMQ Server ready after {}ms according to {} ({} checks)",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), check, polls);
+            result.set(true);
+            return;
+          }
+        } catch (RuntimeException e) {
+          result.setException(e);
+          return;
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (isDone() || remaining <= 0) {
+          giveUp();
+          return;
+        }
+        if (nextPoll != null) {
+          nextPoll.cancel(false);
+        }
+        nextPoll = scheduler.schedule(new Runnable() {
+          @Override
+          public void run() {
+            trigger();
+          }
+        }, Math.min(interval, remaining), TimeUnit.MILLISECONDS);
+        interval = Math.min(interval * 2, maxIntervalInMillis);
+      }
     }
   }
 }
@@ -0,0 +1,14 @@
+package io.arivera.oss.embedded.rabbitmq.helpers;
+
+import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCommandException;
+
+public class StateResetException extends RabbitMqCommandException {
+
+  public StateResetException(String msg) {
+    super(msg);
+  }
+
+  public StateResetException(String msg, Throwable cause) {
+    super(msg, cause);
+  }
+}
@@ -0,0 +1,95 @@
+package io.arivera.oss.embedded.rabbitmq.helpers;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.bin.ControlSession;
+import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCommandException;
+import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCtl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A helper class used to wipe the state created on a running RabbitMQ Server, without restarting it.
+ * <p>
+ * Every virtual host is deleted, along with its queues, exchanges, bindings, policies and parameters. Every user but
+ * the default one is deleted too. Then the default virtual host is recreated, with the default permissions for the
+ * default user. Clients still connected are disconnected.
+ * <p>
+ * All of this happens in a single {@code rabbitmqctl eval} call, which is much cheaper than
+ * {@link RabbitMqCtl#stopApp()}, {@link RabbitMqCtl#reset()} and {@link RabbitMqCtl#startApp()}: those launch an Erlang
+ * VM each and restart the whole RabbitMQ application. Unlike {@code reset}, cluster membership is left untouched.
+ */
+public class StateResetHelper implements Runnable {
+
+  static final String RESET_EXPRESSION = RabbitMqCtl.CALL_PROLOGUE
+      + "{ok, DefaultVHost} = application:get_env(rabbit, default_vhost), "
+      + "{ok, DefaultUser} = application:get_env(rabbit, default_user), "
+      + "{ok, [Conf, Write, Read]} = application:get_env(rabbit, default_permissions), "
+      + "UserName = fun(U) when is_list(U) -> proplists:get_value(user, U); (U) -> maps:get(user, U) end, "
+      + "[Call(rabbit_auth_backend_internal, delete_user, [U]) "
+      + "  || U <- [UserName(P) || P <- rabbit_auth_backend_internal:list_users()], U =/= DefaultUser], "
+      + "[Call(rabbit_vhost, delete, [V]) || V <- rabbit_vhost:list()], "
+      + "Call(rabbit_vhost, add, [DefaultVHost]), "
+      + "Call(rabbit_auth_backend_internal, set_permissions, [DefaultUser, DefaultVHost, Conf, Write, Read]), "
+      + "ok.";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StateResetHelper.class);
+
+  private final EmbeddedRabbitMqConfig config;
+  private final ControlSession controlSession;
+  private final long timeoutDuration;
+  private final TimeUnit timeoutUnit;
+
+  /**
+   * Constructs a new instance that will be used to reset the state of the RabbitMQ server of the given configuration.
+   */
+  public StateResetHelper(EmbeddedRabbitMqConfig config) {
+    this(config, null);
+  }
+
+  /**
+   * Same as {@link #StateResetHelper(EmbeddedRabbitMqConfig)}, but evaluating the reset through the given session
+   * while it's open, which saves launching {@code rabbitmqctl}.
+   *
+   * @param controlSession may be {@code null}.
+   */
+  public StateResetHelper(EmbeddedRabbitMqConfig config, ControlSession controlSession) {
+    this.config = config;
+    this.controlSession = controlSession;
+    this.timeoutDuration = config.getDefaultRabbitMqCtlTimeoutInMillis();
+    this.timeoutUnit = TimeUnit.MILLISECONDS;
+  }
+
+  @Override
+  public void run() throws StateResetException {
+    Future<ProcessResult> resultFuture;
+    try {
+      resultFuture = new RabbitMqCtl(config, controlSession).eval(RESET_EXPRESSION);
+    } catch (RabbitMqCommandException e) {
+      throw new StateResetException("Could not execute command to reset RabbitMQ Server state", e);
+    }
+
+    ProcessResult result;
+    try {
+      result = resultFuture.get(timeoutDuration, timeoutUnit);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StateResetException("Interrupted while waiting for RabbitMQ Server state to be reset", e);
+    } catch (ExecutionException | TimeoutException e) {
+      throw new StateResetException("Error while waiting " + timeoutDuration + " " + timeoutUnit + " for "
+          + "RabbitMQ Server state to be reset", e);
+    }
+
+    if (result.getExitValue() != 0) {
+      throw new StateResetException("Command to reset RabbitMQ Server state failed with exit value: "
+          + result.getExitValue());
+    }
+    LOGGER.debug("RabbitMQ Server state was reset.");
+  }
+}
@@ -0,0 +1,129 @@
+package io.arivera.oss.embedded.rabbitmq.lifecycle;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how a {@link LifecyclePhase phase} went: how long it took, whether it failed and what it measured.
+ */
+public class LifecycleEvent {
+
+  /**
+   * Amount of bytes downloaded or extracted.
+   */
+  public static final String BYTES = "bytes";
+
+  /**
+   * Download rate, in bytes per second.
+   */
+  public static final String BYTES_PER_SECOND = "bytesPerSecond";
+
+  /**
+   * Amount of files extracted.
+   */
+  public static final String FILES = "files";
+
+  /**
+   * {@code 1} if a previously downloaded artifact was found, {@code 0} otherwise.
+   */
+  public static final String ARCHIVE_CACHED = "archiveCached";
+
+  /**
+   * {@code 1} if a previous extraction was found, {@code 0} otherwise.
+   */
+  public static final String EXTRACTION_CACHED = "extractionCached";
+
+  /**
+   * Time taken by the slowest of the startup branches that can run concurrently (the Erlang check, and the cache
+   * lookup, download and extraction), in milliseconds.
+   */
+  public static final String CRITICAL_PATH_MILLIS = "criticalPathMillis";
+
+  /**
+   * Time the startup branches that can run concurrently would take if run one after the other, in milliseconds.
+   */
+  public static final String SERIAL_MILLIS = "serialMillis";
+
+  private final EmbeddedRabbitMqConfig config;
+  private final LifecyclePhase phase;
+  private final long startTimeInMillis;
+  private final long durationInNanos;
+  private final Map<String, Long> measurements;
+  private final Throwable failure;
+
+  LifecycleEvent(EmbeddedRabbitMqConfig config, LifecyclePhase phase, long startTimeInMillis, long durationInNanos,
+                 Map<String, Long> measurements, Throwable failure) {
+    this.config = config;
+    this.phase = phase;
+    this.startTimeInMillis = startTimeInMillis;
+    this.durationInNanos = durationInNanos;
+    this.measurements = Collections.unmodifiableMap(new LinkedHashMap<>(measurements));
+    this.failure = failure;
+  }
+
+  /**
+   * @return configuration of the broker going through the phase.
+   */
+  public EmbeddedRabbitMqConfig getConfig() {
+    return config;
+  }
+
+  public LifecyclePhase getPhase() {
+    return phase;
+  }
+
+  /**
+   * @return wall-clock time when the phase started, in milliseconds since the epoch.
+   */
+  public long getStartTimeInMillis() {
+    return startTimeInMillis;
+  }
+
+  public long getDurationInNanos() {
+    return durationInNanos;
+  }
+
+  public long getDurationInMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(durationInNanos);
+  }
+
+  /**
+   * @return values measured during the phase, keyed by names like {@link #BYTES}. Which ones are present depends on
+   *     the phase.
+   */
+  public Map<String, Long> getMeasurements() {
+    return measurements;
+  }
+
+  /**
+   * @return value of the given measurement or {@code null} if it wasn't measured.
+   */
+  public Long getMeasurement(String name) {
+    return measurements.get(name);
+  }
+
+  public boolean isSuccessful() {
+    return failure == null;
+  }
+
+  /**
+   * @return cause of the phase's failure or {@code null} if it was successful.
+   */
+  public Throwable getFailure() {
+    return failure;
+  }
+
+  @Override
+  public String toString() {
+    return "LifecycleEvent{"
+        + "phase=" + phase
+        + ", durationInMillis=" + getDurationInMillis()
+        + ", measurements=" + measurements
+        + (failure == null ? "" : ", failure=" + failure)
+        + '}';
+  }
+}
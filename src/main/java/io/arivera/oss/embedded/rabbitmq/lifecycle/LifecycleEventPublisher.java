@@ -0,0 +1,106 @@
+package io.arivera.oss.embedded.rabbitmq.lifecycle;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Times the phases of a broker and notifies the {@link LifecycleListener}s of its configuration.
+ * <p>
+ * Example use:
+ * <pre>
+ * {@code
+ *   LifecycleEventPublisher.Phase phase = publisher.start(LifecyclePhase.DOWNLOAD);
+ *   try {
+ *     ...
+ *     phase.measure(LifecycleEvent.BYTES, bytes);
+ *     phase.succeeded();
+ *   } catch (RuntimeException e) {
+ *     phase.failed(e);
+ *     throw e;
+ *   }
+ * }
+ * </pre>
+ */
+public class LifecycleEventPublisher {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LifecycleEventPublisher.class);
+
+  private final EmbeddedRabbitMqConfig config;
+  private final List<LifecycleListener> listeners;
+
+  public LifecycleEventPublisher(EmbeddedRabbitMqConfig config) {
+    this.config = config;
+    this.listeners = config.getLifecycleListeners();
+  }
+
+  /**
+   * Starts timing the given phase.
+   */
+  public Phase start(LifecyclePhase phase) {
+    return new Phase(phase);
+  }
+
+  private void publish(LifecycleEvent event) {
+    LOGGER.debug("{}", event);
+    for (LifecycleListener listener : listeners) {
+      try {
+        listener.phaseFinished(event);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Lifecycle listener {} failed to process {}", listener, event, e);
+      }
+    }
+  }
+
+  /**
+   * A phase being timed. Publishes a single event, once it either succeeds or fails.
+   */
+  public class Phase {
+
+    private final LifecyclePhase phase;
+    private final long startTimeInMillis;
+    private final long startTimeInNanos;
+    private final Map<String, Long> measurements;
+    private boolean finished;
+
+    private Phase(LifecyclePhase phase) {
+      this.phase = phase;
+      this.startTimeInMillis = System.currentTimeMillis();
+      this.startTimeInNanos = System.nanoTime();
+      this.measurements = new LinkedHashMap<>();
+    }
+
+    public Phase measure(String name, long value) {
+      measurements.put(name, value);
+      return this;
+    }
+
+    /**
+     * @return time elapsed since the phase started.
+     */
+    public long getElapsedNanos() {
+      return System.nanoTime() - startTimeInNanos;
+    }
+
+    public void succeeded() {
+      finish(null);
+    }
+
+    public void failed(Throwable failure) {
+      finish(failure);
+    }
+
+    private void finish(Throwable failure) {
+      if (finished) {
+        return;
+      }
+      finished = true;
+      publish(new LifecycleEvent(config, phase, startTimeInMillis, getElapsedNanos(), measurements, failure));
+    }
+  }
+}
@@ -0,0 +1,16 @@
+package io.arivera.oss.embedded.rabbitmq.lifecycle;
+
+/**
+ * Notified every time a broker finishes a {@link LifecyclePhase phase} of its startup or shutdown, successfully or not.
+ * <p>
+ * Listeners are invoked synchronously by the threads starting or stopping the broker, so they should return quickly
+ * and be thread-safe, since phases can run concurrently.
+ * Exceptions thrown by a listener are logged and otherwise ignored.
+ *
+ * @see io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig.Builder#lifecycleListener(LifecycleListener)
+ */
+public interface LifecycleListener {
+
+  void phaseFinished(LifecycleEvent event);
+
+}
@@ -0,0 +1,54 @@
+package io.arivera.oss.embedded.rabbitmq.lifecycle;
+
+/**
+ * The phases a broker goes through when it's started and stopped, in the order they happen.
+ *
+ * @see LifecycleListener
+ */
+public enum LifecyclePhase {
+
+  /**
+   * Verification of the Erlang version installed in the system.
+   */
+  ERLANG_CHECK,
+
+  /**
+   * Lookup of previously downloaded and extracted files. Reports {@link LifecycleEvent#ARCHIVE_CACHED} and
+   * {@link LifecycleEvent#EXTRACTION_CACHED}.
+   */
+  CACHE_LOOKUP,
+
+  /**
+   * Download of the artifact, which is skipped when cached. Reports {@link LifecycleEvent#BYTES} and
+   * {@link LifecycleEvent#BYTES_PER_SECOND}.
+   */
+  DOWNLOAD,
+
+  /**
+   * Extraction of the artifact, which is skipped or partial when cached. Reports {@link LifecycleEvent#FILES} and
+   * {@link LifecycleEvent#BYTES}.
+   */
+  EXTRACTION,
+
+  /**
+   * Launch of the {@code rabbitmq-server} process.
+   */
+  PROCESS_SPAWN,
+
+  /**
+   * Wait for the launched server to be ready, as defined by the configured readiness strategy.
+   */
+  READINESS,
+
+  /**
+   * The whole startup, from the Erlang check until the server is ready. Reports
+   * {@link LifecycleEvent#CRITICAL_PATH_MILLIS} and {@link LifecycleEvent#SERIAL_MILLIS}.
+   */
+  STARTUP,
+
+  /**
+   * Stop of the server, until its process exits.
+   */
+  SHUTDOWN,
+
+}
@@ -0,0 +1,20 @@
+package io.arivera.oss.embedded.rabbitmq.pool;
+
+import io.arivera.oss.embedded.rabbitmq.util.ListenableFuture;
+
+/**
+ * How a {@link BrokerPool} starts, resets and stops its brokers.
+ */
+interface BrokerLifecycle {
+
+  ListenableFuture<Void> start(PooledBroker broker);
+
+  /**
+   * Returns the broker to its virgin state, blocking the current thread until it's done.
+   *
+   * @throws BrokerPoolException if the broker couldn't be reset.
+   */
+  void reset(PooledBroker broker) throws BrokerPoolException;
+
+  ListenableFuture<Void> stop(PooledBroker broker);
+}
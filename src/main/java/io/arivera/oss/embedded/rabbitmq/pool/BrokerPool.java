@@ -0,0 +1,374 @@
+package io.arivera.oss.embedded.rabbitmq.pool;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.helpers.NodeConfigHelper;
+import io.arivera.oss.embedded.rabbitmq.util.AsyncExecutors;
+import io.arivera.oss.embedded.rabbitmq.util.ListenableFuture;
+import io.arivera.oss.embedded.rabbitmq.util.PortAllocator;
+import io.arivera.oss.embedded.rabbitmq.util.SettableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a fixed number of RabbitMQ brokers started in the background, so test suites can get a ready broker without
+ * waiting for Erlang to boot every time.
+ * <p>
+ * Every broker runs on its own ports, reserved by the {@link PortAllocator} of this JVM, and with its own node name.
+ * Once released, a broker is reset in the background, removing any vhosts, users, queues or messages created while in
+ * use, before it's handed out again.
+ * Brokers that can't be reset are stopped and replaced by new ones. Brokers that can't be started aren't retried, so
+ * a broken setup surfaces as a {@link BrokerPoolException} on {@link #acquire()}.
+ * <p>
+ * Example use:
+ * <pre>
+ * {@code
+ *   BrokerPool pool = new BrokerPool(new EmbeddedRabbitMqConfig.Builder(), 2);
+ *   try (PooledBroker broker = pool.acquire()) {
+ *     connectionFactory.setPort(broker.getPort());
+ *     // ...
+ *   }
+ *   pool.close();
+ * }
+ * </pre>
+ */
+public class BrokerPool implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BrokerPool.class);
+
+  private static final String NODE_NAME_PREFIX = "rabbit-pool-";
+
+  private final EmbeddedRabbitMqConfig.Builder configBuilder;
+  private final BrokerLifecycle lifecycle;
+  private final PortAllocator portAllocator;
+
+  private final Object lock;
+  private final Deque<PooledBroker> idle;
+  private final Set<PooledBroker> inUse;
+  private int pending;
+  private Throwable lastFailure;
+  private boolean closed;
+
+  private final AtomicLong acquisitions;
+  private final AtomicLong warmHits;
+  private final AtomicLong waitTimeInNanos;
+  private final AtomicLong resets;
+  private final AtomicLong resetTimeInNanos;
+  private final AtomicLong failures;
+
+  /**
+   * Starts the given number of brokers in the background.
+   *
+   * @param configBuilder copied to configure every broker, with their own ports and node name.
+   * @param size          number of brokers to keep, whether in use or not.
+   */
+  public BrokerPool(EmbeddedRabbitMqConfig.Builder configBuilder, int size) {
+    this(configBuilder, size, new EmbeddedBrokerLifecycle(), PortAllocator.getInstance());
+  }
+
+  BrokerPool(EmbeddedRabbitMqConfig.Builder configBuilder, int size, BrokerLifecycle lifecycle,
+             PortAllocator portAllocator) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Pool size must be positive, but was " + size);
+    }
+    this.configBuilder = configBuilder;
+    this.lifecycle = lifecycle;
+    this.portAllocator = portAllocator;
+    this.lock = new Object();
+    this.idle = new ArrayDeque<>();
+    this.inUse = new HashSet<>();
+    this.acquisitions = new AtomicLong();
+    this.warmHits = new AtomicLong();
+    this.waitTimeInNanos = new AtomicLong();
+    this.resets = new AtomicLong();
+    this.resetTimeInNanos = new AtomicLong();
+    this.failures = new AtomicLong();
+    this.pending = size;
+    for (int i = 0; i < size; i++) {
+      boot();
+    }
+  }
+
+  /**
+   * Same as {@link #acquire(long, TimeUnit)} but waiting as long as it takes.
+   */
+  public PooledBroker acquire() throws BrokerPoolException {
+    return acquire(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Hands out a started broker right away or, if none is available, waits for one to finish starting or being reset.
+   *
+   * @throws BrokerPoolException if no broker became available in time, or if no broker will ever be because none
+   *                             could be started.
+   */
+  public PooledBroker acquire(long timeout, TimeUnit unit) throws BrokerPoolException {
+    long startTime = System.nanoTime();
+    long deadline = startTime + unit.toNanos(timeout);
+    PooledBroker broker;
+    boolean warm;
+    synchronized (lock) {
+      warm = !idle.isEmpty();
+      while (idle.isEmpty()) {
+        if (closed) {
+          throw new IllegalStateException("Pool is closed");
+        }
+        if (pending == 0 && inUse.isEmpty()) {
+          throw new BrokerPoolException("No RabbitMQ broker could be started", lastFailure);
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          throw new BrokerPoolException("No RabbitMQ broker became available within " + unit.toMillis(timeout) + "ms");
+        }
+        try {
+          TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new BrokerPoolException("Interrupted while waiting for a RabbitMQ broker", e);
+        }
+      }
+      broker = idle.poll();
+      inUse.add(broker);
+    }
+    acquisitions.incrementAndGet();
+    if (warm) {
+      warmHits.incrementAndGet();
+    }
+    waitTimeInNanos.addAndGet(System.nanoTime() - startTime);
+    LOGGER.debug("Acquired {} ({})", broker, warm ? "warm" : "after waiting");
+    return broker;
+  }
+
+  /**
+   * Gives the broker back to the pool, which resets it in the background before handing it out again.
+   *
+   * @throws IllegalArgumentException if the broker isn't in use, because it was already released or wasn't acquired
+   *                                  from this pool.
+   */
+  public void release(final PooledBroker broker) throws IllegalArgumentException {
+    synchronized (lock) {
+      if (!inUse.remove(broker)) {
+        throw new IllegalArgumentException(broker + " wasn't acquired from this pool or was already released");
+      }
+      if (closed) {
+        return;     // already stopped when the pool was closed
+      }
+      pending++;
+    }
+    AsyncExecutors.blockingTasks().execute(new Runnable() {
+      @Override
+      public void run() {
+        long startTime = System.nanoTime();
+        try {
+          lifecycle.reset(broker);
+        } catch (RuntimeException e) {
+          LOGGER.warn("Could not reset {}. Replacing it.", broker, e);
+          recordFailure(e);
+          stop(broker);
+          boot();
+          return;
+        }
+        long elapsed = System.nanoTime() - startTime;
+        resets.incrementAndGet();
+        resetTimeInNanos.addAndGet(elapsed);
+        LOGGER.debug("Reset {} in {}ms", broker, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        available(broker);
+      }
+    });
+  }
+
+  public Statistics getStatistics() {
+    return new Statistics(acquisitions.get(), warmHits.get(), TimeUnit.NANOSECONDS.toMillis(waitTimeInNanos.get()),
+        resets.get(), TimeUnit.NANOSECONDS.toMillis(resetTimeInNanos.get()), failures.get());
+  }
+
+  /**
+   * Stops every broker, including the ones in use, and waits for them to stop. Brokers still starting or being reset
+   * are stopped once they're done.
+   */
+  @Override
+  public void close() {
+    List<PooledBroker> brokers;
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      brokers = new ArrayList<>(idle);
+      brokers.addAll(inUse);
+      idle.clear();
+      lock.notifyAll();
+    }
+    List<ListenableFuture<Void>> stops = new ArrayList<>();
+    for (PooledBroker broker : brokers) {
+      stops.add(stop(broker));
+    }
+    for (ListenableFuture<Void> stop : stops) {
+      try {
+        stop.get();
+      } catch (ExecutionException e) {
+        LOGGER.warn("Could not stop pooled RabbitMQ broker", e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        LOGGER.warn("Interrupted while waiting for pooled RabbitMQ brokers to stop");
+        return;
+      }
+    }
+  }
+
+  /**
+   * Starts a new broker, which must have been already counted as pending.
+   */
+  private void boot() {
+    final PooledBroker broker;
+    try {
+      broker = new PooledBroker(this, NodeConfigHelper.newConfig(configBuilder, portAllocator, NODE_NAME_PREFIX, null));
+    } catch (RuntimeException e) {
+      LOGGER.warn("Could not configure a new pooled RabbitMQ broker", e);
+      lost(e);
+      return;
+    }
+    LOGGER.debug("Starting {}...", broker);
+    lifecycle.start(broker).addCallback(new ListenableFuture.Callback<Void>() {
+      @Override
+      public void onSuccess(Void result) {
+        available(broker);
+      }
+
+      @Override
+      public void onFailure(Throwable failure) {
+        LOGGER.warn("Could not start {}", broker, failure);
+        broker.getConfig().getPorts().close();
+        lost(failure);
+      }
+    });
+  }
+
+  private void available(PooledBroker broker) {
+    boolean stop;
+    synchronized (lock) {
+      pending--;
+      stop = closed;
+      if (!closed) {
+        idle.add(broker);
+      }
+      lock.notifyAll();
+    }
+    if (stop) {
+      stop(broker);
+    }
+  }
+
+  private void lost(Throwable failure) {
+    recordFailure(failure);
+    synchronized (lock) {
+      pending--;
+      lock.notifyAll();
+    }
+  }
+
+  private void recordFailure(Throwable failure) {
+    failures.incrementAndGet();
+    synchronized (lock) {
+      lastFailure = failure;
+    }
+  }
+
+  private ListenableFuture<Void> stop(PooledBroker broker) {
+    LOGGER.debug("Stopping {}...", broker);
+    ListenableFuture<Void> stop;
+    try {
+      stop = lifecycle.stop(broker);
+    } catch (RuntimeException e) {
+      SettableFuture<Void> failed = new SettableFuture<>();
+      failed.setException(e);
+      stop = failed;
+    }
+    return NodeConfigHelper.freePortsWhenStopped(stop, broker.getConfig());
+  }
+
+  public static final class Statistics {
+
+    private final long acquisitions;
+    private final long warmHits;
+    private final long waitTimeInMillis;
+    private final long resets;
+    private final long resetTimeInMillis;
+    private final long failures;
+
+    Statistics(long acquisitions, long warmHits, long waitTimeInMillis, long resets, long resetTimeInMillis,
+               long failures) {
+      this.acquisitions = acquisitions;
+      this.warmHits = warmHits;
+      this.waitTimeInMillis = waitTimeInMillis;
+      this.resets = resets;
+      this.resetTimeInMillis = resetTimeInMillis;
+      this.failures = failures;
+    }
+
+    /**
+     * @return how many brokers were handed out.
+     */
+    public long getAcquisitions() {
+      return acquisitions;
+    }
+
+    /**
+     * @return how many brokers were handed out right away, without waiting for them to start or be reset.
+     */
+    public long getWarmHits() {
+      return warmHits;
+    }
+
+    /**
+     * @return total time spent waiting for brokers to be handed out.
+     */
+    public long getWaitTimeInMillis() {
+      return waitTimeInMillis;
+    }
+
+    /**
+     * @return how many brokers were reset after being released.
+     */
+    public long getResets() {
+      return resets;
+    }
+
+    /**
+     * @return total time spent resetting brokers, in the background.
+     */
+    public long getResetTimeInMillis() {
+      return resetTimeInMillis;
+    }
+
+    /**
+     * @return how many brokers couldn't be started or reset.
+     */
+    public long getFailures() {
+      return failures;
+    }
+
+    @Override
+    public String toString() {
+      return "Statistics{"
+          + "acquisitions=" + acquisitions
+          + ", warmHits=" + warmHits
+          + ", waitTimeInMillis=" + waitTimeInMillis
+          + ", resets=" + resets
+          + ", resetTimeInMillis=" + resetTimeInMillis
+          + ", failures=" + failures
+          + '}';
+    }
+  }
+}
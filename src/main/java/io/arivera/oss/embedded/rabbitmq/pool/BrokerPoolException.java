@@ -0,0 +1,12 @@
+package io.arivera.oss.embedded.rabbitmq.pool;
+
+public class BrokerPoolException extends RuntimeException {
+
+  public BrokerPoolException(String msg) {
+    super(msg);
+  }
+
+  public BrokerPoolException(String msg, Throwable cause) {
+    super(msg, cause);
+  }
+}
@@ -0,0 +1,33 @@
+package io.arivera.oss.embedded.rabbitmq.pool;
+
+import io.arivera.oss.embedded.rabbitmq.helpers.StateResetException;
+import io.arivera.oss.embedded.rabbitmq.helpers.StateResetHelper;
+import io.arivera.oss.embedded.rabbitmq.util.ListenableFuture;
+
+/**
+ * Runs pooled brokers as {@link io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMq} instances, resetting them with a
+ * {@link StateResetHelper} through the {@link io.arivera.oss.embedded.rabbitmq.bin.ControlSession} of each broker,
+ * when it could be opened, without restarting them.
+ */
+class EmbeddedBrokerLifecycle implements BrokerLifecycle {
+
+  @Override
+  public ListenableFuture<Void> start(PooledBroker broker) {
+    return broker.getRabbitMq().startAsync();
+  }
+
+  @Override
+  public void reset(PooledBroker broker) throws BrokerPoolException {
+    try {
+      new StateResetHelper(broker.getConfig(), broker.getControlSession()).run();
+    } catch (StateResetException e) {
+      throw new BrokerPoolException("Could not reset " + broker, e);
+    }
+  }
+
+  @Override
+  public ListenableFuture<Void> stop(PooledBroker broker) {
+    broker.closeControlSession();
+    return broker.getRabbitMq().stopAsync();
+  }
+}
@@ -0,0 +1,94 @@
+package io.arivera.oss.embedded.rabbitmq.pool;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMq;
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.bin.ControlSession;
+import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCommandException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+
+/**
+ * A started RabbitMQ broker lent by a {@link BrokerPool}. Closing it gives it back to the pool.
+ */
+public class PooledBroker implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PooledBroker.class);
+
+  private final BrokerPool pool;
+  private final EmbeddedRabbitMqConfig config;
+  private final EmbeddedRabbitMq rabbitMq;
+
+  private ControlSession controlSession;
+  private boolean controlSessionFailed;
+
+  PooledBroker(BrokerPool pool, EmbeddedRabbitMqConfig config) {
+    this.pool = pool;
+    this.config = config;
+    this.rabbitMq = new EmbeddedRabbitMq(config);
+  }
+
+  /**
+   * @return configuration of this broker, which is useful to run commands against it, like
+   *     {@link io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCtl}.
+   */
+  public EmbeddedRabbitMqConfig getConfig() {
+    return config;
+  }
+
+  /**
+   * @return port to connect to this broker.
+   */
+  public int getPort() {
+    return config.getRabbitMqPort();
+  }
+
+  EmbeddedRabbitMq getRabbitMq() {
+    return rabbitMq;
+  }
+
+  /**
+   * Opens a session on first use, and keeps it until the broker is stopped. If it can't be opened, it's not tried
+   * again.
+   *
+   * @return an open session, or {@code null} if it couldn't be opened, in which case commands launch
+   *     {@code rabbitmqctl} instead.
+   */
+  synchronized ControlSession getControlSession() {
+    if (controlSession == null && !controlSessionFailed) {
+      ControlSession session = new ControlSession(config);
+      try {
+        session.open();
+        controlSession = session;
+      } catch (RabbitMqCommandException e) {
+        LOGGER.warn("Could not open control session to {}. Commands will launch rabbitmqctl instead.", this, e);
+        controlSessionFailed = true;
+      }
+    }
+    return controlSession;
+  }
+
+  synchronized void closeControlSession() {
+    if (controlSession != null) {
+      controlSession.close();
+      controlSession = null;
+    }
+  }
+
+  /**
+   * Same as {@link BrokerPool#release(PooledBroker)}.
+   */
+  @Override
+  public void close() {
+    pool.release(this);
+  }
+
+  @Override
+  public String toString() {
+    return "PooledBroker{"
+        + "port=" + getPort()
+        + '}';
+  }
+}
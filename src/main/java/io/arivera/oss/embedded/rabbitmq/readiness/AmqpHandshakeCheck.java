@@ -0,0 +1,50 @@
+package io.arivera.oss.embedded.rabbitmq.readiness;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * Considers the server ready once it answers the AMQP 0-9-1 protocol header with a {@code connection.start} method
+ * frame, which is the first thing a client receives when opening a connection.
+ * <p>
+ * If the server answers with a protocol header instead (meaning it doesn't support the version proposed), it's still
+ * considered ready, since it's accepting AMQP connections.
+ */
+class AmqpHandshakeCheck extends TcpConnectCheck {
+
+  static final byte[] PROTOCOL_HEADER = {'A', 'M', 'Q', 'P', 0, 0, 9, 1};
+  static final int FRAME_METHOD = 1;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AmqpHandshakeCheck.class);
+
+  AmqpHandshakeCheck(EmbeddedRabbitMqConfig config) {
+    super(config);
+  }
+
+  @Override
+  boolean isReady(Socket socket) throws IOException {
+    OutputStream output = socket.getOutputStream();
+    output.write(PROTOCOL_HEADER);
+    output.flush();
+
+    InputStream input = socket.getInputStream();
+    int frameType = input.read();
+    if (frameType == FRAME_METHOD || frameType == PROTOCOL_HEADER[0]) {
+      return true;
+    }
+    LOGGER.trace("Server answered AMQP protocol header with unexpected frame type {}", frameType);
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return "AMQP handshake with " + getAddress();
+  }
+}
@@ -0,0 +1,39 @@
+package io.arivera.oss.embedded.rabbitmq.readiness;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.regex.Pattern;
+
+/**
+ * Considers the server ready once it writes a line that matches a given pattern.
+ */
+class LogPatternCheck implements ReadinessCheck {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LogPatternCheck.class);
+
+  private final Pattern pattern;
+  private volatile boolean matchFound;
+
+  LogPatternCheck(String pattern) {
+    this.pattern = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
+  }
+
+  @Override
+  public void processOutputLine(String line) {
+    if (!matchFound && pattern.matcher(line).matches()) {
+      LOGGER.trace("Pattern '{}' found in line: {}", pattern, line);
+      matchFound = true;
+    }
+  }
+
+  @Override
+  public boolean isReady() {
+    return matchFound;
+  }
+
+  @Override
+  public String toString() {
+    return "log pattern '" + pattern + "'";
+  }
+}
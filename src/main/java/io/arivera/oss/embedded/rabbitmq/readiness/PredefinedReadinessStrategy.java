@@ -0,0 +1,48 @@
+package io.arivera.oss.embedded.rabbitmq.readiness;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.helpers.StartupHelper;
+
+/**
+ * A list of the readiness strategies provided by this library.
+ *
+ * @see EmbeddedRabbitMqConfig.Builder#readinessStrategy(ReadinessStrategy)
+ */
+public enum PredefinedReadinessStrategy implements ReadinessStrategy {
+
+  /**
+   * Waits for the server to log that its startup completed. The exact message varies across RabbitMQ versions and, in
+   * some of them, is logged before the listeners accept connections.
+   *
+   * @see StartupHelper#BROKER_STARTUP_COMPLETED
+   */
+  LOG_PATTERN {
+    @Override
+    public ReadinessCheck newCheck(EmbeddedRabbitMqConfig config) {
+      return new LogPatternCheck(StartupHelper.BROKER_STARTUP_COMPLETED);
+    }
+  },
+
+  /**
+   * Waits until a TCP connection to the {@link EmbeddedRabbitMqConfig#getRabbitMqPort() AMQP port} succeeds.
+   */
+  TCP_CONNECT {
+    @Override
+    public ReadinessCheck newCheck(EmbeddedRabbitMqConfig config) {
+      return new TcpConnectCheck(config);
+    }
+  },
+
+  /**
+   * Waits until the server answers the AMQP protocol header sent to the
+   * {@link EmbeddedRabbitMqConfig#getRabbitMqPort() AMQP port}, which means clients can open connections.
+   */
+  AMQP_HANDSHAKE {
+    @Override
+    public ReadinessCheck newCheck(EmbeddedRabbitMqConfig config) {
+      return new AmqpHandshakeCheck(config);
+    }
+  },
+  ;
+
+}
@@ -0,0 +1,24 @@
+package io.arivera.oss.embedded.rabbitmq.readiness;
+
+/**
+ * Checks whether the server being started is ready, for the duration of a single startup.
+ * <p>
+ * The check is polled until it succeeds or the initialization timeout expires, waiting longer between consecutive
+ * polls as defined by the configured backoff. Every line written by the server is handed to the check as well, and
+ * causes it to be polled again right away.
+ *
+ * @see ReadinessStrategy
+ */
+public interface ReadinessCheck {
+
+  /**
+   * Receives a line written by the server to its output.
+   */
+  void processOutputLine(String line);
+
+  /**
+   * @return {@code true} if the server is ready to be used.
+   */
+  boolean isReady();
+
+}
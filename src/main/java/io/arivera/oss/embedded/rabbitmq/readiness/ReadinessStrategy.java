@@ -0,0 +1,18 @@
+package io.arivera.oss.embedded.rabbitmq.readiness;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+
+/**
+ * Determines when a starting RabbitMQ Server is ready to be used.
+ *
+ * @see PredefinedReadinessStrategy
+ * @see EmbeddedRabbitMqConfig.Builder#readinessStrategy(ReadinessStrategy)
+ */
+public interface ReadinessStrategy {
+
+  /**
+   * @return a new check used for a single startup of the server described by the given configuration.
+   */
+  ReadinessCheck newCheck(EmbeddedRabbitMqConfig config);
+
+}
@@ -0,0 +1,71 @@
+package io.arivera.oss.embedded.rabbitmq.readiness;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Considers the server ready once a TCP connection to its AMQP port succeeds.
+ */
+class TcpConnectCheck implements ReadinessCheck {
+
+  static final int SOCKET_TIMEOUT_IN_MILLIS = 1000;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TcpConnectCheck.class);
+
+  private final InetSocketAddress address;
+
+  TcpConnectCheck(EmbeddedRabbitMqConfig config) {
+    this.address = new InetSocketAddress(getHost(config), config.getRabbitMqPort());
+  }
+
+  /**
+   * @return {@code localhost} unless the server is bound to a specific IP address.
+   */
+  private static String getHost(EmbeddedRabbitMqConfig config) {
+    String ipAddress = config.getEnvVars().get(RabbitMqEnvVar.NODE_IP_ADDRESS.getEnvVarName());
+    if (ipAddress == null || ipAddress.trim().isEmpty() || "0.0.0.0".equals(ipAddress) || "::".equals(ipAddress)) {
+      return "localhost";
+    }
+    return ipAddress.trim();
+  }
+
+  @Override
+  public void processOutputLine(String line) {
+    // output is irrelevant
+  }
+
+  @Override
+  public boolean isReady() {
+    try (Socket socket = new Socket()) {
+      socket.connect(address, SOCKET_TIMEOUT_IN_MILLIS);
+      socket.setSoTimeout(SOCKET_TIMEOUT_IN_MILLIS);
+      return isReady(socket);
+    } catch (IOException e) {
+      LOGGER.trace("Server is not ready yet at {}: {}", address, e.toString());
+      return false;
+    }
+  }
+
+  /**
+   * Completes the check over an established connection.
+   */
+  boolean isReady(Socket socket) throws IOException {
+    return true;
+  }
+
+  InetSocketAddress getAddress() {
+    return address;
+  }
+
+  @Override
+  public String toString() {
+    return "TCP connection to " + address;
+  }
+}
@@ -0,0 +1,78 @@
+package io.arivera.oss.embedded.rabbitmq.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors shared by all the asynchronous operations of this JVM, so their number of threads doesn't grow with the
+ * number of brokers being started or stopped.
+ * <p>
+ * All their threads are daemon threads, created when needed and discarded after a while without work.
+ */
+public class AsyncExecutors {
+
+  static final int BLOCKING_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+  private static final long KEEP_ALIVE_SECONDS = 30;
+
+  /**
+   * @return a bounded executor meant for work that blocks on I/O, like downloading artifacts or polling readiness checks.
+   */
+  public static ExecutorService blockingTasks() {
+    return BlockingTasksHolder.INSTANCE;
+  }
+
+  /**
+   * @return a single threaded executor meant for short tasks, like scheduling readiness polls and enforcing timeouts.
+   */
+  public static ScheduledExecutorService scheduler() {
+    return SchedulerHolder.INSTANCE;
+  }
+
+  private static class BlockingTasksHolder {
+
+    private static final ExecutorService INSTANCE = newBlockingTasksExecutor();
+
+    private static ExecutorService newBlockingTasksExecutor() {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(BLOCKING_THREADS, BLOCKING_THREADS,
+          KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("Async"));
+      executor.allowCoreThreadTimeOut(true);
+      return executor;
+    }
+  }
+
+  private static class SchedulerHolder {
+
+    private static final ScheduledExecutorService INSTANCE = newScheduler();
+
+    private static ScheduledExecutorService newScheduler() {
+      ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("Scheduler"));
+      executor.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+      executor.allowCoreThreadTimeOut(true);
+      executor.setRemoveOnCancelPolicy(true);
+      return executor;
+    }
+  }
+
+  private static class DaemonThreadFactory implements ThreadFactory {
+
+    private final String name;
+    private final AtomicInteger count = new AtomicInteger();
+
+    DaemonThreadFactory(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "RabbitMQ-" + name + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
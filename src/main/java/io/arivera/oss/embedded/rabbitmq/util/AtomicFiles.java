@@ -0,0 +1,32 @@
+package io.arivera.oss.embedded.rabbitmq.util;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+public class AtomicFiles {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * Writes the contents, encoded as UTF-8, to a temporary file next to the given one, and then moves it into place,
+   * so that no process ever reads a partially written file.
+   */
+  public static void write(Path file, String contents) throws IOException {
+    Path temporaryFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      Files.write(temporaryFile, contents.getBytes(UTF_8));
+      try {
+        Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+  }
+
+}
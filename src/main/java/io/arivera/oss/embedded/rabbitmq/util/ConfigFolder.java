@@ -0,0 +1,55 @@
+package io.arivera.oss.embedded.rabbitmq.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+/**
+ * The {@code etc/rabbitmq} folder of a broker, where the files it reads as it boots are written beforehand.
+ * <p>
+ * Files are named after the digest of what they hold, so brokers sharing the same folder can't overwrite each other's
+ * files, and identical files are written only once.
+ */
+public class ConfigFolder {
+
+  private static final String PATH = "etc" + File.separator + "rabbitmq";
+  private static final int DIGEST_LENGTH = 16;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private ConfigFolder() {
+  }
+
+  /**
+   * @param sha256Hex digest of what the file holds, of which only the beginning is used.
+   * @return file in the config folder of the given app folder, named with the given prefix followed by the digest.
+   */
+  public static File getFile(File appFolder, String prefix, String sha256Hex) {
+    return new File(new File(appFolder, PATH), prefix + sha256Hex.substring(0, DIGEST_LENGTH));
+  }
+
+  /**
+   * @return hex-encoded SHA-256 digest of the given contents, encoded as UTF-8.
+   */
+  public static String digest(String contents) {
+    return DigestUtils.toHex(DigestUtils.newSha256().digest(contents.getBytes(UTF_8)));
+  }
+
+  /**
+   * Writes the file, along with any missing parent folder, unless it already exists: since it's named after its
+   * contents, it has the same ones.
+   */
+  public static void writeOnce(File file, String contents) throws IOException {
+    if (!Files.isRegularFile(file.toPath())) {
+      write(file, contents);
+    }
+  }
+
+  /**
+   * Writes the file {@link AtomicFiles atomically}, along with any missing parent folder.
+   */
+  public static void write(File file, String contents) throws IOException {
+    Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+    AtomicFiles.write(file.getAbsoluteFile().toPath(), contents);
+  }
+}
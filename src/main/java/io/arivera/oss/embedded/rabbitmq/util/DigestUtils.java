@@ -0,0 +1,56 @@
+package io.arivera.oss.embedded.rabbitmq.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class DigestUtils {
+
+  private static final String SHA_256 = "SHA-256";
+  private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+  /**
+   * @return a new SHA-256 message digest, which every JVM is required to support.
+   */
+  public static MessageDigest newSha256() {
+    try {
+      return MessageDigest.getInstance(SHA_256);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("JVM does not support " + SHA_256, e);
+    }
+  }
+
+  /**
+   * Reads the whole file to calculate its SHA-256 digest.
+   *
+   * @return the digest as a lower case hexadecimal String.
+   */
+  public static String sha256Hex(File file) throws IOException {
+    MessageDigest digest = newSha256();
+    byte[] buffer = new byte[64 * 1024];
+    try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+      int read;
+      while ((read = input.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  /**
+   * @return a lower case hexadecimal String representing the given bytes.
+   */
+  public static String toHex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i * 2] = HEX_CHARS[(bytes[i] >> 4) & 0xF];
+      chars[i * 2 + 1] = HEX_CHARS[bytes[i] & 0xF];
+    }
+    return new String(chars);
+  }
+
+}
@@ -0,0 +1,156 @@
+package io.arivera.oss.embedded.rabbitmq.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An exclusive lock over a file or folder shared by all threads and processes using it, so that only one of them at a
+ * time downloads or extracts it.
+ * <p>
+ * The lock is held on a hidden lock file next to the locked file. Since the OS grants file locks to whole processes,
+ * threads of the same JVM are first coordinated through an in-memory lock.
+ */
+public final class InterProcessLock implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(InterProcessLock.class);
+
+  private static final ConcurrentMap<String, ReentrantLock> JVM_LOCKS = new ConcurrentHashMap<>();
+
+  private final File lockFile;
+  private final ReentrantLock jvmLock;
+  private final RandomAccessFile file;
+  private final FileLock fileLock;
+
+  private InterProcessLock(File lockFile, ReentrantLock jvmLock, RandomAccessFile file, FileLock fileLock) {
+    this.lockFile = lockFile;
+    this.jvmLock = jvmLock;
+    this.file = file;
+    this.fileLock = fileLock;
+  }
+
+  /**
+   * @return a hidden file, next to the given one, used to lock it.
+   */
+  public static File lockFileFor(File lockedFile) {
+    File absoluteFile = lockedFile.getAbsoluteFile();
+    return new File(absoluteFile.getParentFile(), "." + absoluteFile.getName() + ".lock");
+  }
+
+  /**
+   * Blocks until no other thread or process holds the lock over the given file.
+   *
+   * @throws IOException if the lock file can't be created or locked.
+   */
+  public static InterProcessLock acquire(File lockedFile) throws IOException {
+    File lockFile = lockFileFor(lockedFile);
+    ReentrantLock jvmLock = getJvmLock(lockFile);
+    if (jvmLock.isHeldByCurrentThread()) {
+      throw new IllegalStateException("Lock over '" + lockedFile + "' is already held by the current thread");
+    }
+    if (!jvmLock.tryLock()) {
+      LOGGER.info("Waiting for another thread to finish with '{}'...", lockedFile);
+      jvmLock.lock();
+    }
+
+    RandomAccessFile file = null;
+    try {
+      File parent = lockFile.getParentFile();
+      if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+        throw new IOException("Could not create folder for lock file '" + lockFile + "'");
+      }
+      file = new RandomAccessFile(lockFile, "rw");
+      FileChannel channel = file.getChannel();
+      FileLock fileLock = channel.tryLock();
+      if (fileLock == null) {
+        LOGGER.info("Waiting for another process to finish with '{}'...", lockedFile);
+        fileLock = channel.lock();
+      }
+      LOGGER.trace("Acquired lock '{}'", lockFile);
+      return new InterProcessLock(lockFile, jvmLock, file, fileLock);
+    } catch (IOException | RuntimeException e) {
+      closeQuietly(file);
+      jvmLock.unlock();
+      throw e;
+    }
+  }
+
+  /**
+   * Acquires the lock over the given file only if no other thread or process holds it.
+   *
+   * @return the acquired lock or {@code null} if it's held by someone else.
+   * @throws IOException if the lock file can't be created or locked.
+   */
+  public static InterProcessLock tryAcquire(File lockedFile) throws IOException {
+    File lockFile = lockFileFor(lockedFile);
+    ReentrantLock jvmLock = getJvmLock(lockFile);
+    if (jvmLock.isHeldByCurrentThread() || !jvmLock.tryLock()) {
+      return null;
+    }
+
+    RandomAccessFile file = null;
+    try {
+      file = new RandomAccessFile(lockFile, "rw");
+      FileLock fileLock = file.getChannel().tryLock();
+      if (fileLock == null) {
+        closeQuietly(file);
+        jvmLock.unlock();
+        return null;
+      }
+      return new InterProcessLock(lockFile, jvmLock, file, fileLock);
+    } catch (IOException | RuntimeException e) {
+      closeQuietly(file);
+      jvmLock.unlock();
+      throw e;
+    }
+  }
+
+  private static ReentrantLock getJvmLock(File lockFile) throws IOException {
+    String key = lockFile.getCanonicalPath();
+    ReentrantLock lock = JVM_LOCKS.get(key);
+    if (lock == null) {
+      ReentrantLock newLock = new ReentrantLock();
+      lock = JVM_LOCKS.putIfAbsent(key, newLock);
+      if (lock == null) {
+        lock = newLock;
+      }
+    }
+    return lock;
+  }
+
+  /**
+   * Releases the lock. The lock file is left in place, since removing it could let two processes lock different files.
+   */
+  @Override
+  public void close() {
+    try {
+      fileLock.release();
+    } catch (IOException e) {
+      LOGGER.warn("Could not release lock '{}'", lockFile, e);
+    } finally {
+      closeQuietly(file);
+      jvmLock.unlock();
+      LOGGER.trace("Released lock '{}'", lockFile);
+    }
+  }
+
+  private static void closeQuietly(RandomAccessFile file) {
+    if (file == null) {
+      return;
+    }
+    try {
+      file.close();
+    } catch (IOException e) {
+      LOGGER.trace("Could not close lock file", e);
+    }
+  }
+}
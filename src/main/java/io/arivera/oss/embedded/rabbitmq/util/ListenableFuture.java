@@ -0,0 +1,29 @@
+package io.arivera.oss.embedded.rabbitmq.util;
+
+import java.util.concurrent.Future;
+
+/**
+ * A {@link Future} that notifies callbacks once it completes, so nobody has to block a thread waiting for it.
+ */
+public interface ListenableFuture<V> extends Future<V> {
+
+  /**
+   * Registers a callback to be notified once this future completes, successfully or not (which includes being
+   * cancelled).
+   * <p>
+   * The callback is executed by the thread that completes the future, or by the calling thread if the future is already
+   * completed. Hence, callbacks are expected to be quick and to hand off any blocking work to other threads.
+   */
+  void addCallback(Callback<? super V> callback);
+
+  interface Callback<V> {
+
+    void onSuccess(V result);
+
+    /**
+     * @param failure the cause of the failure, or a {@link java.util.concurrent.CancellationException} if the future
+     *                was cancelled.
+     */
+    void onFailure(Throwable failure);
+  }
+}
@@ -0,0 +1,116 @@
+package io.arivera.oss.embedded.rabbitmq.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.net.ServerSocketFactory;
+
+/**
+ * Reserves ports for brokers started concurrently, so that no two brokers get the same port and no other process
+ * takes it before the broker binds it.
+ * <p>
+ * Unlike {@link RandomPortSupplier}, which closes the socket it opened to find a free port right away, every port is
+ * held by a placeholder socket until the broker is about to be spawned. On top of that, every port handed out is
+ * tracked by this JVM until freed, so it isn't handed out again while the broker is starting, after its placeholder
+ * was released.
+ *
+ * @see PortBlock
+ */
+public class PortAllocator {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PortAllocator.class);
+
+  private static final int MAX_ATTEMPTS_PER_PORT = 10;
+
+  private final ServerSocketFactory serverSocketFactory;
+  private final Set<Integer> allocated;
+
+  PortAllocator(ServerSocketFactory serverSocketFactory) {
+    this.serverSocketFactory = serverSocketFactory;
+    this.allocated = new HashSet<>();
+  }
+
+  /**
+   * @return allocator shared by all brokers of this JVM.
+   */
+  public static PortAllocator getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  /**
+   * Reserves the ports of one broker, held by placeholder sockets until {@link PortBlock#releasePlaceholders()}.
+   *
+   * @throws IllegalStateException if the ports can't be reserved.
+   */
+  public PortBlock reserveBlock() throws IllegalStateException {
+    return new PortBlock(this, reserve(PortBlock.SIZE));
+  }
+
+  /**
+   * @return number of ports handed out and not freed yet.
+   */
+  public synchronized int getAllocatedCount() {
+    return allocated.size();
+  }
+
+  /**
+   * Ports still tracked by this JVM, which the OS may hand out again once their broker stopped, are skipped. Their
+   * sockets are kept open until the end, so the OS doesn't hand them out again right away.
+   */
+  synchronized List<ServerSocket> reserve(int count) throws IllegalStateException {
+    List<ServerSocket> placeholders = new ArrayList<>(count);
+    List<ServerSocket> skipped = new ArrayList<>();
+    try {
+      for (int attempt = 0; placeholders.size() < count; attempt++) {
+        if (attempt == count * MAX_ATTEMPTS_PER_PORT) {
+          throw new IllegalStateException("Could not find " + count + " available ports after " + attempt
+              + " attempts");
+        }
+        ServerSocket socket = serverSocketFactory.createServerSocket(0);
+        if (allocated.contains(socket.getLocalPort())) {
+          skipped.add(socket);
+        } else {
+          placeholders.add(socket);
+        }
+      }
+    } catch (IOException e) {
+      closeQuietly(placeholders);
+      throw new IllegalStateException("Could not reserve available ports", e);
+    } catch (RuntimeException e) {
+      closeQuietly(placeholders);
+      throw e;
+    } finally {
+      closeQuietly(skipped);
+    }
+    for (ServerSocket placeholder : placeholders) {
+      allocated.add(placeholder.getLocalPort());
+    }
+    return placeholders;
+  }
+
+  synchronized void free(Collection<Integer> ports) {
+    allocated.removeAll(ports);
+  }
+
+  static void closeQuietly(Collection<ServerSocket> sockets) {
+    for (ServerSocket socket : sockets) {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        LOGGER.debug("Couldn't close socket that held port {}", socket.getLocalPort(), e);
+      }
+    }
+  }
+
+  private static class Holder {
+
+    private static final PortAllocator INSTANCE = new PortAllocator(ServerSocketFactory.getDefault());
+  }
+}
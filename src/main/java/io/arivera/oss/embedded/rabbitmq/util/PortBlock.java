@@ -0,0 +1,112 @@
+package io.arivera.oss.embedded.rabbitmq.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The AMQP, distribution and management ports of one broker, reserved by a {@link PortAllocator}.
+ * <p>
+ * Until the broker is about to be spawned, the ports are held by placeholder sockets, so no other process can take
+ * them. If the broker still finds one of them taken, {@link #renew()} moves it to a new block.
+ */
+public class PortBlock implements Closeable {
+
+  static final int SIZE = 3;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PortBlock.class);
+
+  private static final int AMQP = 0;
+  private static final int DISTRIBUTION = 1;
+  private static final int MANAGEMENT = 2;
+
+  private final PortAllocator allocator;
+  private List<Integer> ports;
+  private List<ServerSocket> placeholders;
+  private boolean closed;
+
+  PortBlock(PortAllocator allocator, List<ServerSocket> placeholders) {
+    this.allocator = allocator;
+    hold(placeholders);
+  }
+
+  public synchronized int getAmqpPort() {
+    return ports.get(AMQP);
+  }
+
+  public synchronized int getDistributionPort() {
+    return ports.get(DISTRIBUTION);
+  }
+
+  public synchronized int getManagementPort() {
+    return ports.get(MANAGEMENT);
+  }
+
+  /**
+   * @return {@code true} until {@link #releasePlaceholders()} is called.
+   */
+  public synchronized boolean isHeld() {
+    return !placeholders.isEmpty();
+  }
+
+  /**
+   * Closes the placeholder sockets so the broker can bind the ports, which remain tracked by the allocator.
+   */
+  public synchronized void releasePlaceholders() {
+    PortAllocator.closeQuietly(placeholders);
+    placeholders = Collections.emptyList();
+  }
+
+  /**
+   * Replaces the ports with a new block, held by placeholder sockets again, and frees the previous ones.
+   *
+   * @throws IllegalStateException if the new ports can't be reserved, or if the block was closed.
+   */
+  public synchronized void renew() throws IllegalStateException {
+    if (closed) {
+      throw new IllegalStateException("Ports " + ports + " were already freed");
+    }
+    List<Integer> previous = ports;
+    List<ServerSocket> newPlaceholders = allocator.reserve(SIZE);
+    releasePlaceholders();
+    allocator.free(previous);
+    hold(newPlaceholders);
+    LOGGER.debug("Ports {} were replaced by {}", previous, ports);
+  }
+
+  /**
+   * Releases the placeholder sockets, if still held, and frees the ports so the allocator may hand them out again.
+   * Meant to be called once the broker is stopped.
+   */
+  @Override
+  public synchronized void close() {
+    if (!closed) {
+      closed = true;
+      releasePlaceholders();
+      allocator.free(ports);
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "PortBlock{"
+        + "amqp=" + ports.get(AMQP)
+        + ", distribution=" + ports.get(DISTRIBUTION)
+        + ", management=" + ports.get(MANAGEMENT)
+        + '}';
+  }
+
+  private void hold(List<ServerSocket> placeholders) {
+    List<Integer> ports = new ArrayList<>(placeholders.size());
+    for (ServerSocket placeholder : placeholders) {
+      ports.add(placeholder.getLocalPort());
+    }
+    this.ports = Collections.unmodifiableList(ports);
+    this.placeholders = new ArrayList<>(placeholders);
+  }
+}
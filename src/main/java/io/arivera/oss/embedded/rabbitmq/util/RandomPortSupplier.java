@@ -7,6 +7,12 @@ import java.io.IOException;
 import java.net.ServerSocket;
 import javax.net.ServerSocketFactory;
 
+/**
+ * Finds a port that's available at the time of the call.
+ * <p>
+ * The port isn't held, so by the time a broker binds it, another one may have taken it. Use a {@link PortAllocator} to
+ * reserve ports for brokers started concurrently.
+ */
 public class RandomPortSupplier {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(RandomPortSupplier.class);
@@ -0,0 +1,140 @@
+package io.arivera.oss.embedded.rabbitmq.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link ListenableFuture} completed by whoever holds it, through {@link #set(Object)} or
+ * {@link #setException(Throwable)}.
+ * <p>
+ * Only the first completion counts, later attempts are ignored. Cancelling the future completes it as well, but
+ * doesn't stop any work in progress by itself: those doing the work can register a callback to find out.
+ */
+public class SettableFuture<V> implements ListenableFuture<V> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SettableFuture.class);
+
+  private final CountDownLatch completion;
+  private final List<Callback<? super V>> callbacks;
+  private boolean completed;
+  private boolean cancelled;
+  private V value;
+  private Throwable failure;
+
+  public SettableFuture() {
+    this.completion = new CountDownLatch(1);
+    this.callbacks = new ArrayList<>();
+  }
+
+  /**
+   * @return {@code true} if the future was completed with the given value, or {@code false} if it was already
+   *     completed.
+   */
+  public boolean set(V value) {
+    return complete(value, null, false);
+  }
+
+  /**
+   * @return {@code true} if the future was completed with the given failure, or {@code false} if it was already
+   *     completed.
+   */
+  public boolean setException(Throwable failure) {
+    return complete(null, failure, false);
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    return complete(null, new CancellationException("Future was cancelled"), true);
+  }
+
+  @Override
+  public void addCallback(Callback<? super V> callback) {
+    synchronized (this) {
+      if (!completed) {
+        callbacks.add(callback);
+        return;
+      }
+    }
+    notify(callback);
+  }
+
+  @Override
+  public synchronized boolean isCancelled() {
+    return cancelled;
+  }
+
+  @Override
+  public synchronized boolean isDone() {
+    return completed;
+  }
+
+  @Override
+  public V get() throws InterruptedException, ExecutionException {
+    completion.await();
+    return getResult();
+  }
+
+  @Override
+  public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+    if (!completion.await(timeout, unit)) {
+      throw new TimeoutException("Future was not completed within " + timeout + " " + unit);
+    }
+    return getResult();
+  }
+
+  private boolean complete(V value, Throwable failure, boolean cancelled) {
+    List<Callback<? super V>> callbacksToNotify;
+    synchronized (this) {
+      if (completed) {
+        return false;
+      }
+      this.completed = true;
+      this.cancelled = cancelled;
+      this.value = value;
+      this.failure = failure;
+      callbacksToNotify = new ArrayList<>(callbacks);
+      callbacks.clear();
+    }
+    completion.countDown();
+    for (Callback<? super V> callback : callbacksToNotify) {
+      notify(callback);
+    }
+    return true;
+  }
+
+  private synchronized V getResult() throws ExecutionException {
+    if (cancelled) {
+      throw (CancellationException) new CancellationException("Future was cancelled").initCause(failure);
+    }
+    if (failure != null) {
+      throw new ExecutionException(failure);
+    }
+    return value;
+  }
+
+  private void notify(Callback<? super V> callback) {
+    Throwable failure;
+    V value;
+    synchronized (this) {
+      failure = this.failure;
+      value = this.value;
+    }
+    try {
+      if (failure == null) {
+        callback.onSuccess(value);
+      } else {
+        callback.onFailure(failure);
+      }
+    } catch (RuntimeException e) {
+      LOGGER.warn("Future callback {} failed. Ignoring it.", callback, e);
+    }
+  }
+}
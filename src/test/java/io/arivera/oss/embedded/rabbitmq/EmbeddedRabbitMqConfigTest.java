@@ -0,0 +1,105 @@
+package io.arivera.oss.embedded.rabbitmq;
+
+import io.arivera.oss.embedded.rabbitmq.util.PortBlock;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class EmbeddedRabbitMqConfigTest {
+
+  @Test
+  public void portClosesReservedBlock() {
+    EmbeddedRabbitMqConfig.Builder builder = new EmbeddedRabbitMqConfig.Builder().randomPort();
+    PortBlock ports = builder.build().getPorts();
+
+    EmbeddedRabbitMqConfig config = builder.port(5673).build();
+
+    assertFalse(ports.isHeld());
+    assertThat(config.getPorts(), is(nullValue()));
+    assertThat(config.getRabbitMqPort(), is(5673));
+  }
+
+  @Test
+  public void nodePortVariableClosesReservedBlock() {
+    EmbeddedRabbitMqConfig.Builder builder = new EmbeddedRabbitMqConfig.Builder().randomPort();
+    PortBlock ports = builder.build().getPorts();
+
+    EmbeddedRabbitMqConfig config = builder.envVar(RabbitMqEnvVar.NODE_PORT, "5673").build();
+
+    assertFalse(ports.isHeld());
+    assertThat(config.getRabbitMqPort(), is(5673));
+  }
+
+  @Test
+  public void newBlockClosesPreviousOne() {
+    EmbeddedRabbitMqConfig.Builder builder = new EmbeddedRabbitMqConfig.Builder().port(5673).randomPort();
+    PortBlock first = builder.build().getPorts();
+
+    EmbeddedRabbitMqConfig config = builder.randomPort().build();
+
+    try {
+      assertFalse(first.isHeld());
+      assertTrue(config.getPorts().isHeld());
+      assertThat(config.getRabbitMqPort(), is(config.getPorts().getAmqpPort()));
+    } finally {
+      config.getPorts().close();
+    }
+  }
+
+  @Test
+  public void copyLeavesReservedBlockBehind() {
+    EmbeddedRabbitMqConfig.Builder builder = new EmbeddedRabbitMqConfig.Builder()
+        .randomPort()
+        .clusterJoinTimeoutInMillis(5000)
+        .envVar(RabbitMqEnvVar.NODENAME, "rabbit-copy");
+    PortBlock ports = builder.build().getPorts();
+
+    EmbeddedRabbitMqConfig copy = builder.copy().port(5673).build();
+
+    try {
+      assertTrue(ports.isHeld());
+      assertThat(copy.getRabbitMqPort(), is(5673));
+      assertThat(copy.getEnvVars().get(RabbitMqEnvVar.NODENAME.getEnvVarName()), equalTo("rabbit-copy"));
+      assertThat(copy.getClusterJoinTimeoutInMillis(), is(5000L));
+      assertThat(builder.build().getPorts(), is(ports));
+    } finally {
+      ports.close();
+    }
+  }
+
+  @Test
+  public void managementListenerPrecedesUserArguments() {
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .randomPort()
+        .envVar(RabbitMqEnvVar.SERVER_ADDITIONAL_ERL_ARGS, "+S 1")
+        .build();
+
+    try {
+      assertThat(config.getEnvVars().get(RabbitMqEnvVar.SERVER_ADDITIONAL_ERL_ARGS.getEnvVarName()), equalTo(
+          "-rabbitmq_management listener [{port," + config.getPorts().getManagementPort() + "}] +S 1"));
+    } finally {
+      config.getPorts().close();
+    }
+  }
+
+  @Test
+  public void userManagementListenerIsKept() {
+    String userArgs = "-rabbitmq_management listener [{port,15000}]";
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .randomPort()
+        .envVar(RabbitMqEnvVar.SERVER_ADDITIONAL_ERL_ARGS, userArgs)
+        .build();
+
+    try {
+      assertThat(config.getEnvVars().get(RabbitMqEnvVar.SERVER_ADDITIONAL_ERL_ARGS.getEnvVarName()), equalTo(userArgs));
+    } finally {
+      config.getPorts().close();
+    }
+  }
+}
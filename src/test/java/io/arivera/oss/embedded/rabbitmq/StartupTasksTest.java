@@ -0,0 +1,182 @@
+package io.arivera.oss.embedded.rabbitmq;
+
+import io.arivera.oss.embedded.rabbitmq.util.ListenableFuture;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StartupTasksTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void concurrentBranchesOverlap() throws Exception {
+    StartupTasks tasks = new StartupTasks()
+        .add(sleeping(200))
+        .add(sleeping(200));
+
+    long start = System.nanoTime();
+    tasks.runConcurrently();
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertTrue(elapsed < 390);
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(tasks.getSerialTimeInNanos()) >= 400);
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(tasks.getCriticalPathTimeInNanos()) >= 200);
+    assertTrue(tasks.getCriticalPathTimeInNanos() < tasks.getSerialTimeInNanos());
+  }
+
+  @Test
+  public void serialBranchesAddUp() throws Exception {
+    StartupTasks tasks = new StartupTasks()
+        .add(sleeping(50))
+        .add(sleeping(50));
+
+    tasks.runSerially();
+
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(tasks.getSerialTimeInNanos()) >= 100);
+  }
+
+  @Test
+  public void failureCancelsOtherBranches() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final AtomicBoolean interrupted = new AtomicBoolean();
+    final CountDownLatch finished = new CountDownLatch(1);
+    StartupTasks tasks = new StartupTasks()
+        .add(new Runnable() {
+          @Override
+          public void run() {
+            started.countDown();
+            try {
+              Thread.sleep(10000);
+            } catch (InterruptedException e) {
+              interrupted.set(true);
+            }
+            finished.countDown();
+          }
+        })
+        .add(new Runnable() {
+          @Override
+          public void run() {
+            awaitQuietly(started);
+            throw new IllegalStateException("Erlang missing");
+          }
+        });
+
+    try {
+      thrown.expect(IllegalStateException.class);
+      thrown.expectMessage("Erlang missing");
+      tasks.runConcurrently();
+    } finally {
+      assertTrue(finished.await(5, TimeUnit.SECONDS));
+      assertTrue(interrupted.get());
+    }
+  }
+
+  @Test
+  public void asyncBranchesRunWithoutBlockingCaller() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      StartupTasks tasks = new StartupTasks()
+          .add(sleeping(200))
+          .add(sleeping(200));
+
+      long start = System.nanoTime();
+      ListenableFuture<Void> completion = tasks.runAsync(executor, true);
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 150);
+      assertThat(completion.isDone(), is(false));
+
+      completion.get(5, TimeUnit.SECONDS);
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 390);
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(tasks.getSerialTimeInNanos()) >= 400);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void asyncSerialBranchesAddUp() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      StartupTasks tasks = new StartupTasks()
+          .add(sleeping(50))
+          .add(sleeping(50));
+
+      tasks.runAsync(executor, false).get(5, TimeUnit.SECONDS);
+
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(tasks.getSerialTimeInNanos()) >= 100);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void asyncFailureCompletesFutureAndCancelsOtherBranches() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    try {
+      StartupTasks tasks = new StartupTasks()
+          .add(new Runnable() {
+            @Override
+            public void run() {
+              try {
+                Thread.sleep(10000);
+              } catch (InterruptedException e) {
+                interrupted.countDown();
+              }
+            }
+          })
+          .add(new Runnable() {
+            @Override
+            public void run() {
+              throw new IllegalStateException("Erlang missing");
+            }
+          });
+
+      try {
+        tasks.runAsync(executor, true).get(5, TimeUnit.SECONDS);
+        fail("Failure expected");
+      } catch (ExecutionException e) {
+        assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+      }
+      assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static Runnable sleeping(final long millis) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(millis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
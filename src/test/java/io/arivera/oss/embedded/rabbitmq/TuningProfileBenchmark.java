@@ -0,0 +1,109 @@
+package io.arivera.oss.embedded.rabbitmq;
+
+import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCtl;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the boot time, resident memory and message throughput of a broker started with each {@link TuningProfile},
+ * and with none. Requires Erlang, so it isn't run as part of the tests.
+ * <p>
+ * Arguments (optional): number of messages, 100000 by default, and their size in bytes, 1024 by default.
+ */
+public class TuningProfileBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int messages = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    int messageSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+
+    List<TuningProfile> profiles = new ArrayList<>();
+    profiles.add(null);
+    profiles.addAll(Arrays.asList(TuningProfile.values()));
+    for (TuningProfile profile : profiles) {
+      EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+          .randomPort()
+          .tuningProfile(profile)
+          .defaultRabbitMqCtlTimeoutInMillis(TimeUnit.SECONDS.toMillis(30))
+          .rabbitMqServerInitializationTimeoutInMillis(TimeUnit.SECONDS.toMillis(30))
+          .build();
+      EmbeddedRabbitMq rabbitMq = new EmbeddedRabbitMq(config);
+      long start = System.nanoTime();
+      rabbitMq.start();
+      try {
+        long boot = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long throughput = measureThroughput(config, messages, messageSize);
+        long rss = residentKilobytes(config);
+        System.out.println(String.format("%-13s boot: %5dms, RSS: %7dkB, throughput: %7d msg/s",
+            profile == null ? "(none)" : profile, boot, rss, throughput));
+      } finally {
+        rabbitMq.stop();
+      }
+    }
+  }
+
+  /**
+   * Publishes with confirms while consuming, and counts messages per second until the last one is consumed.
+   */
+  private static long measureThroughput(EmbeddedRabbitMqConfig config, int messages, int messageSize)
+      throws Exception {
+    ConnectionFactory connectionFactory = new ConnectionFactory();
+    connectionFactory.setPort(config.getRabbitMqPort());
+    try (Connection connection = connectionFactory.newConnection()) {
+      Channel consumerChannel = connection.createChannel();
+      String queue = consumerChannel.queueDeclare().getQueue();
+      final CountDownLatch consumed = new CountDownLatch(messages);
+      consumerChannel.basicConsume(queue, true, new DefaultConsumer(consumerChannel) {
+        @Override
+        public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties,
+                                   byte[] body) {
+          consumed.countDown();
+        }
+      });
+
+      Channel publisherChannel = connection.createChannel();
+      publisherChannel.confirmSelect();
+      byte[] body = new byte[messageSize];
+      long start = System.nanoTime();
+      for (int i = 0; i < messages; i++) {
+        publisherChannel.basicPublish("", queue, null, body);
+      }
+      publisherChannel.waitForConfirmsOrDie(TimeUnit.MINUTES.toMillis(5));
+      if (!consumed.await(5, TimeUnit.MINUTES)) {
+        throw new IllegalStateException("Only " + (messages - consumed.getCount()) + " messages were consumed");
+      }
+      long elapsed = System.nanoTime() - start;
+      return messages * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+  }
+
+  /**
+   * Asks the broker for the PID of its Erlang VM and then the operating system for its resident set size.
+   */
+  private static long residentKilobytes(EmbeddedRabbitMqConfig config) throws Exception {
+    String pid = new RabbitMqCtl(config).eval("os:getpid().").get().outputUTF8().trim()
+        .replace("\"", "");     // "12345" -> 12345
+    Process ps = new ProcessBuilder("ps", "-o", "rss=", "-p", pid).start();
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(ps.getInputStream(), Charset.forName("UTF-8")))) {
+      String line = reader.readLine();
+      if (ps.waitFor() != 0 || line == null) {
+        throw new IllegalStateException("Could not find the resident set size of process " + pid);
+      }
+      return Long.parseLong(line.trim());
+    }
+  }
+}
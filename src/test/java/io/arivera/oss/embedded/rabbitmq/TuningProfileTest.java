@@ -0,0 +1,57 @@
+package io.arivera.oss.embedded.rabbitmq;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+public class TuningProfileTest {
+
+  private static final String ERL_ARGS = RabbitMqEnvVar.SERVER_ADDITIONAL_ERL_ARGS.getEnvVarName();
+
+  @Test
+  public void flagsComeBeforeApplicationSettings() {
+    assertThat(TuningProfile.LOW_FOOTPRINT.toErlArgs(),
+        equalTo("+S 1:1 +A 4 +P 65536 +t 262144 +sbwt none -rabbit background_gc_enabled true"));
+    assertThat(TuningProfile.LATENCY.toErlArgs(), equalTo("+sbwt very_long +swt very_low +A 64"));
+  }
+
+  @Test
+  public void profileIsAddedToAdditionalErlArgs() {
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .tuningProfile(TuningProfile.THROUGHPUT)
+        .build();
+
+    assertThat(config.getTuningProfile(), equalTo(TuningProfile.THROUGHPUT));
+    assertThat(config.getEnvVars().get(ERL_ARGS), equalTo(TuningProfile.THROUGHPUT.toErlArgs()));
+  }
+
+  @Test
+  public void definedArgsTakePrecedenceOverProfile() {
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .envVar(RabbitMqEnvVar.SERVER_ADDITIONAL_ERL_ARGS, "+A 16")
+        .tuningProfile(TuningProfile.LOW_FOOTPRINT)
+        .randomPort()
+        .build();
+
+    try {
+      String erlArgs = config.getEnvVars().get(ERL_ARGS);
+      assertThat(erlArgs, startsWith("-rabbitmq_management listener [{port," + config.getPorts().getManagementPort() + "}] "));
+      assertThat(erlArgs, endsWith(TuningProfile.LOW_FOOTPRINT.toErlArgs() + " +A 16"));
+    } finally {
+      config.getPorts().close();
+    }
+  }
+
+  @Test
+  public void nothingIsAddedWithoutProfile() {
+    Map<String, String> envVars = new EmbeddedRabbitMqConfig.Builder().build().getEnvVars();
+
+    assertThat(envVars.get(ERL_ARGS), nullValue());
+  }
+}
@@ -0,0 +1,159 @@
+package io.arivera.oss.embedded.rabbitmq.bin;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.util.OperatingSystem;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.zeroturnaround.exec.ProcessExecutor;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeThat;
+
+public class CachedErlangShellTest {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private EmbeddedRabbitMqConfig config;
+  private File installation;
+  private File erl;
+  private File cacheFile;
+
+  @Before
+  public void setUp() throws Exception {
+    assumeThat(OperatingSystem.detect(), not(equalTo(OperatingSystem.WINDOWS)));
+    config = new EmbeddedRabbitMqConfig.Builder().build();
+    installation = tempFolder.newFolder("erlang");
+    erl = new File(installation, "bin/erl");
+    cacheFile = new File(tempFolder.getRoot(), "versions.properties");
+    writeErl("exit 1");
+    CachedErlangShell.forgetResolvedVersions();
+  }
+
+  @Test
+  public void versionIsReleaseWithOtpVersionFile() throws Exception {
+    write(new File(installation, "releases/22/OTP_VERSION"), "22.3.4\n");
+
+    assertThat(newShell(erl.getParent()).getErlangVersion(), equalTo("22"));
+  }
+
+  @Test
+  public void symbolicLinksAreFollowed() throws Exception {
+    write(new File(installation, "releases/22/OTP_VERSION"), "22.3.4.1**\n");
+    File bin = tempFolder.newFolder("usr-bin");
+    Files.createSymbolicLink(new File(bin, "erl").toPath(), erl.toPath());
+
+    assertThat(newShell(bin.getPath()).getErlangVersion(), equalTo("22"));
+  }
+
+  @Test
+  public void releaseIsChosenFromStartErlData() throws Exception {
+    write(new File(installation, "releases/21/OTP_VERSION"), "21.3\n");
+    write(new File(installation, "releases/22/OTP_VERSION"), "22.3.4\n");
+    write(new File(installation, "releases/start_erl.data"), "10.7 22\n");
+
+    assertThat(newShell(erl.getParent()).getErlangVersion(), equalTo("22"));
+  }
+
+  @Test
+  public void versionHasTheFormReportedByErl() throws Exception {
+    writeErl("echo '\"22\"'");
+    File launched = tempFolder.newFolder("launched");
+    assertThat(newShell(erl.getParent()).getErlangVersion(), equalTo("22"));
+
+    write(new File(installation, "releases/22/OTP_VERSION"), "22.3.4\n");
+    CachedErlangShell.forgetResolvedVersions();
+    assertThat(new CachedErlangShell(config, erl.getParent(), new File(launched, "versions.properties"))
+        .getErlangVersion(), equalTo("22"));
+  }
+
+  @Test
+  public void pathIsTakenFromEnvironmentOfCommands() throws Exception {
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .envVar("PATH", erl.getParent())
+        .build();
+
+    assertThat(CachedErlangShell.getPath(config), equalTo(erl.getParent()));
+  }
+
+  @Test
+  public void pathIsTakenFromProcessExecutorsUnlessDefined() throws Exception {
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .processExecutorFactory(new RabbitMqCommand.ProcessExecutorFactory() {
+          @Override
+          public ProcessExecutor createInstance() {
+            return new ProcessExecutor().environment("PATH", "/opt/erlang/bin");
+          }
+        })
+        .build();
+
+    assertThat(CachedErlangShell.getPath(config), equalTo("/opt/erlang/bin"));
+  }
+
+  @Test
+  public void erlIsLaunchedWhenOtpVersionIsMissing() throws Exception {
+    writeErl("echo '\"R16B03\"'");
+
+    assertThat(newShell(erl.getParent()).getErlangVersion(), equalTo("R16B03"));
+  }
+
+  @Test
+  public void versionIsRecordedAcrossProcesses() throws Exception {
+    writeErl("echo '\"19\"'");
+    long lastModified = erl.lastModified();
+    assertThat(newShell(erl.getParent()).getErlangVersion(), equalTo("19"));
+
+    CachedErlangShell.forgetResolvedVersions();
+    writeErl("exit 1");
+    assertTrue(erl.setLastModified(lastModified));
+
+    assertThat(newShell(erl.getParent()).getErlangVersion(), equalTo("19"));
+  }
+
+  @Test
+  public void changedInstallationIsResolvedAgain() throws Exception {
+    writeErl("echo '\"19\"'");
+    assertThat(newShell(erl.getParent()).getErlangVersion(), equalTo("19"));
+
+    writeErl("echo '\"20\"'");
+    assertTrue(erl.setLastModified(erl.lastModified() + 2000));
+
+    assertThat(newShell(erl.getParent()).getErlangVersion(), equalTo("20"));
+  }
+
+  @Test
+  public void failureIsReportedWhenVersionCannotBeDetermined() throws Exception {
+    thrown.expect(ErlangShellException.class);
+
+    newShell(erl.getParent()).getErlangVersion();
+  }
+
+  private CachedErlangShell newShell(String path) {
+    return new CachedErlangShell(config, path, cacheFile);
+  }
+
+  private void writeErl(String command) throws Exception {
+    write(erl, "#!/bin/sh\n" + command + "\n");
+    assertTrue(erl.setExecutable(true));
+  }
+
+  private static void write(File file, String content) throws Exception {
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.write(file.toPath(), content.getBytes(UTF_8));
+  }
+}
@@ -0,0 +1,137 @@
+package io.arivera.oss.embedded.rabbitmq.bin;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar;
+import io.arivera.oss.embedded.rabbitmq.util.OperatingSystem;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ControlSessionTest {
+
+  /**
+   * Replies to every request with the request itself as output, and exits when told to stop.
+   */
+  private static final String ECHOING_ERL = ""
+      + "#!/bin/sh\n"
+      + "echo '" + ControlSession.READY + "'\n"
+      + "while IFS= read -r line; do\n"
+      + "  if [ \"$line\" = 'stop.' ]; then echo '$ 0'; exit 0; fi\n"
+      + "  printf '. %s\\n' \"$line\"\n"
+      + "  echo 'this is not part of any reply'\n"
+      + "  echo '$ 3'\n"
+      + "done\n";
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private EmbeddedRabbitMqConfig config;
+  private ControlSession session;
+
+  @Before
+  public void setUp() throws Exception {
+    Assume.assumeTrue(OperatingSystem.detect() != OperatingSystem.WINDOWS);
+    config = new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.getRoot())
+        .defaultRabbitMqCtlTimeoutInMillis(TimeUnit.SECONDS.toMillis(10))
+        .build();
+  }
+
+  @After
+  public void tearDown() {
+    if (session != null) {
+      session.close();
+    }
+  }
+
+  @Test
+  public void commandsAreSentAsErlangTermsAndRepliedToInOrder() throws Exception {
+    session = openSession(ECHOING_ERL);
+
+    Future<ProcessResult> eval = session.eval("io:format(\"~s\\n\", [\"é\"]).");
+    Future<ProcessResult> call = session.call("rabbit_mnesia", "reset");
+
+    ProcessResult evalResult = eval.get(10, TimeUnit.SECONDS);
+    assertThat(evalResult.getExitValue(), equalTo(3));
+    assertThat(evalResult.outputUTF8(), equalTo("{eval, \"io:format(\\\"~s\\\\n\\\", [\\\"\\x{e9}\\\"]).\"}.\n"));
+    assertThat(call.get(10, TimeUnit.SECONDS).outputUTF8(), equalTo("{call, 'rabbit_mnesia', 'reset'}.\n"));
+  }
+
+  @Test
+  public void rabbitMqCtlRoutesCommandsThroughOpenSession() throws Exception {
+    session = openSession(ECHOING_ERL);
+    RabbitMqCtl rabbitMqCtl = new RabbitMqCtl(config, session);
+
+    assertThat(rabbitMqCtl.stopApp().get(10, TimeUnit.SECONDS).outputUTF8(), equalTo("{call, 'rabbit', 'stop'}.\n"));
+    assertThat(rabbitMqCtl.eval("node().").get(10, TimeUnit.SECONDS).outputUTF8(),
+        equalTo("{eval, \"node().\"}.\n"));
+  }
+
+  @Test
+  public void pendingCommandsFailWhenSessionEnds() throws Exception {
+    session = openSession(ECHOING_ERL);
+
+    session.stop().get(10, TimeUnit.SECONDS);
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (session.isOpen() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertFalse(session.isOpen());
+
+    thrown.expect(ExecutionException.class);
+    session.eval("node().").get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void sessionThatCannotConnectFailsToOpen() throws Exception {
+    thrown.expect(RabbitMqCommandException.class);
+    thrown.expectMessage("could not connect");
+    openSession("#!/bin/sh\necho '! nodedown'\nexit 69\n");
+  }
+
+  @Test
+  public void hiddenNodeTargetsConfiguredNodeName() {
+    config = new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.getRoot())
+        .envVar(RabbitMqEnvVar.NODENAME, "rabbit-test@localhost")
+        .envVar(RabbitMqEnvVar.USE_LONGNAME, "true")
+        .build();
+
+    List<String> command = new ControlSession(config, "erl").getCommand();
+
+    assertThat(command.subList(0, 4), equalTo(Arrays.asList("erl", "-noshell", "-hidden", "-name")));
+    assertTrue(command.get(6).startsWith("Name = \"rabbit-test@localhost\", "));
+    assertTrue(command.get(6).endsWith("."));
+  }
+
+  private ControlSession openSession(String script) throws Exception {
+    File erl = tempFolder.newFile("erl");
+    Files.write(erl.toPath(), script.getBytes(Charset.forName("UTF-8")));
+    assertTrue("Fake erl couldn't be made executable!", erl.setExecutable(true));
+    ControlSession controlSession = new ControlSession(config, erl.getAbsolutePath());
+    controlSession.open();
+    return controlSession;
+  }
+}
@@ -0,0 +1,168 @@
+package io.arivera.oss.embedded.rabbitmq.bin;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.PredefinedVersion;
+import io.arivera.oss.embedded.rabbitmq.util.OperatingSystem;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.ProcessOutput;
+import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.StartedProcess;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RabbitMqCtlBatchTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Mock
+  private RabbitMqCommand.ProcessExecutorFactory factory;
+  @Mock
+  private StartedProcess startedProcess;
+  @Mock
+  private Future<ProcessResult> futureResult;
+
+  private ProcessExecutor processExecutor;
+  private RabbitMqCtl rabbitMqCtl;
+
+  @Before
+  public void setUp() throws Exception {
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.getRoot())
+        .processExecutorFactory(factory)
+        .build();
+
+    processExecutor = Mockito.mock(ProcessExecutor.class, new Answer() {
+      @Override
+      public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+        if (invocationOnMock.getMethod().getName().equals("start")) {
+          return startedProcess;
+        }
+        return invocationOnMock.getMock();
+      }
+    });
+    when(factory.createInstance()).thenReturn(processExecutor);
+    when(startedProcess.getFuture()).thenReturn(futureResult);
+
+    File executableFilesFolder = tempFolder.newFolder(PredefinedVersion.LATEST.getExtractionFolder(), "sbin");
+    String extension = OperatingSystem.detect() == OperatingSystem.WINDOWS ? ".bat" : "";
+    File executableFile = new File(executableFilesFolder, RabbitMqCtl.COMMAND + extension);
+    assertTrue("Fake executable file couldn't be created!", executableFile.createNewFile());
+
+    rabbitMqCtl = new RabbitMqCtl(config);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void operationsAreSubmittedInSingleEval() throws Exception {
+    RabbitMqCtlBatch batch = rabbitMqCtl.batch()
+        .addVhost("orders")
+        .addUser("orders-service", "s3cr\"t")
+        .setPermissions("orders", "orders-service", ".*", ".*", ".*");
+    returnOutput(0, "\"" + hex("ok\nok\nok\n") + "\"\n");
+
+    batch.submit();
+
+    ArgumentCaptor<List> command = ArgumentCaptor.forClass(List.class);
+    verify(processExecutor).command(command.capture());
+    List<String> arguments = command.getValue();
+    assertThat(arguments.size(), equalTo(3));
+    assertThat(arguments.get(1), equalTo("eval"));
+    String expression = arguments.get(2);
+    assertThat(expression, equalTo(batch.toExpression()));
+    assertTrue(expression.endsWith("."));
+    int addVhost = expression.indexOf("Call(rabbit_vhost, add, [unicode:characters_to_binary(\"orders\")])");
+    int addUser = expression.indexOf("Call(rabbit_auth_backend_internal, add_user, "
+        + "[unicode:characters_to_binary(\"orders-service\"), unicode:characters_to_binary(\"s3cr\\\"t\")])");
+    int setPermissions = expression.indexOf("Call(rabbit_auth_backend_internal, set_permissions, ");
+    assertTrue(0 < addVhost && addVhost < addUser && addUser < setPermissions);
+  }
+
+  @Test
+  public void everyOperationGetsItsResult() throws Exception {
+    String report = hex("ok\nerror {exit, {user_already_exists, <<\"orders-service\">>}}\nok\n");
+    int half = report.length() / 2;
+    returnOutput(0, "\"" + report.substring(0, half) + "\"\n  \"" + report.substring(half) + "\"\n");
+
+    RabbitMqCtlBatch.Result result = rabbitMqCtl.batch()
+        .addVhost("orders")
+        .addUser("orders-service", "secret")
+        .setUserTags("orders-service", "management")
+        .submit()
+        .get(1, TimeUnit.SECONDS);
+
+    assertFalse(result.isSuccessful());
+    List<RabbitMqCtlBatch.OperationResult> operations = result.getOperations();
+    assertThat(operations.size(), equalTo(3));
+    assertThat(operations.get(0).getError(), nullValue());
+    assertThat(operations.get(1).getDescription(), equalTo("add_user orders-service"));
+    assertThat(operations.get(1).getError(), equalTo("{exit, {user_already_exists, <<\"orders-service\">>}}"));
+    assertTrue(operations.get(2).isSuccessful());
+  }
+
+  @Test
+  public void batchThatCannotBeEvaluatedFails() throws Exception {
+    returnOutput(69, "Error: unable to connect to node rabbit@localhost: nodedown\n");
+
+    try {
+      rabbitMqCtl.batch().deleteVhost("orders").submit().get(1, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(RabbitMqCommandException.class));
+      assertTrue(e.getCause().getMessage().contains("exit value 69"));
+      return;
+    }
+    throw new AssertionError("Batch should have failed");
+  }
+
+  @Test
+  public void emptyBatchCannotBeSubmitted() throws Exception {
+    thrown.expect(IllegalStateException.class);
+    rabbitMqCtl.batch().submit();
+  }
+
+  private void returnOutput(int exitValue, String output) throws Exception {
+    ProcessResult result = new ProcessResult(exitValue, new ProcessOutput(output.getBytes(Charset.forName("UTF-8"))));
+    when(futureResult.get()).thenReturn(result);
+    when(futureResult.get(anyLong(), any(TimeUnit.class))).thenReturn(result);
+  }
+
+  private static String hex(String text) {
+    StringBuilder hex = new StringBuilder();
+    for (byte b : text.getBytes(Charset.forName("UTF-8"))) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+}
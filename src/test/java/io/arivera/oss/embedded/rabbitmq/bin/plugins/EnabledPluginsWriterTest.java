@@ -0,0 +1,77 @@
+package io.arivera.oss.embedded.rabbitmq.bin.plugins;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+
+public class EnabledPluginsWriterTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void pluginsAreListedInFileOfTheirOwn() throws Exception {
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.getRoot())
+        .enabledPlugins("rabbitmq_management", "rabbitmq_shovel")
+        .enabledPlugins("rabbitmq_management")
+        .build();
+
+    new EnabledPluginsWriter(config).run();
+
+    File file = new File(config.getEnvVars().get(RabbitMqEnvVar.ENABLED_PLUGINS_FILE.getEnvVarName()));
+    assertThat(file, equalTo(EnabledPluginsWriter.getEnabledPluginsFile(config.getAppFolder(),
+        Arrays.asList("rabbitmq_management", "rabbitmq_shovel"))));
+    assertThat(read(file), equalTo("['rabbitmq_management','rabbitmq_shovel'].\n"));
+  }
+
+  @Test
+  public void differentPluginsGetDifferentFiles() {
+    File folder = tempFolder.getRoot();
+    assertThat(EnabledPluginsWriter.getEnabledPluginsFile(folder, Arrays.asList("rabbitmq_management")),
+        not(equalTo(EnabledPluginsWriter.getEnabledPluginsFile(folder, Arrays.asList("rabbitmq_shovel")))));
+  }
+
+  @Test
+  public void definedFileIsOverwritten() throws Exception {
+    File file = tempFolder.newFile("enabled_plugins");
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.getRoot())
+        .envVar(RabbitMqEnvVar.ENABLED_PLUGINS_FILE, file.getPath())
+        .enabledPlugins("rabbitmq_federation")
+        .build();
+
+    new EnabledPluginsWriter(config).run();
+
+    assertThat(read(file), equalTo("['rabbitmq_federation'].\n"));
+  }
+
+  @Test
+  public void nothingIsWrittenWithoutPlugins() {
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.getRoot())
+        .build();
+
+    new EnabledPluginsWriter(config).run();
+
+    assertThat(tempFolder.getRoot().list().length, equalTo(0));
+    assertFalse(config.getEnvVars().containsKey(RabbitMqEnvVar.ENABLED_PLUGINS_FILE.getEnvVarName()));
+  }
+
+  private static String read(File file) throws Exception {
+    return new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+  }
+}
@@ -0,0 +1,149 @@
+package io.arivera.oss.embedded.rabbitmq.cache;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.PredefinedVersion;
+import io.arivera.oss.embedded.rabbitmq.util.InterProcessLock;
+import io.arivera.oss.embedded.rabbitmq.util.OperatingSystem;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ArtifactCacheTest {
+
+  private static final String SHA_A = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+  private static final String SHA_B = "bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb";
+  private static final String SHA_C = "cccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccc";
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private URL url;
+  private File root;
+
+  @Before
+  public void setUp() throws Exception {
+    url = new URL("http://localhost/rabbitmq-server-generic-unix-0.0.1.tar.gz");
+    root = tempFolder.newFolder();
+  }
+
+  @Test
+  public void archivesAreKeyedByDigestWhenKnown() throws Exception {
+    ArtifactCache cache = new ArtifactCache(root, 1000);
+
+    assertThat(cache.getArchiveFolder(url, SHA_A).getName(), equalTo(SHA_A));
+    assertThat(cache.getArchiveFolder(url, null), equalTo(cache.getArchiveFolder(url, null)));
+    assertThat(cache.getArchiveFolder(url, null),
+        not(equalTo(cache.getArchiveFolder(new URL("http://localhost/other.tar.gz"), null))));
+  }
+
+  @Test
+  public void treesAreKeyedByVersionAndOperatingSystem() throws Exception {
+    ArtifactCache cache = new ArtifactCache(root, 1000);
+
+    File unix = cache.getTreeFolder(PredefinedVersion.V3_6_9, OperatingSystem.UNIX);
+    File mac = cache.getTreeFolder(PredefinedVersion.V3_6_9, OperatingSystem.MAC_OS);
+
+    assertThat(unix, not(equalTo(mac)));
+    assertThat(unix.getParentFile().getParentFile(), equalTo(root.getAbsoluteFile()));
+  }
+
+  @Test
+  public void accessesAreCountedAsHitsOrMisses() throws Exception {
+    ArtifactCache cache = new ArtifactCache(root, 1000);
+    File archive = newArchive(cache, SHA_A, 10);
+
+    assertTrue(cache.accessArchive(archive));
+    assertFalse(cache.accessArchive(new File(cache.getArchiveFolder(url, SHA_B), "artifact.tar.gz")));
+    assertFalse(cache.accessTree(new File(cache.getTreeFolder(PredefinedVersion.V3_6_9, OperatingSystem.UNIX),
+        PredefinedVersion.V3_6_9.getExtractionFolder())));
+
+    ArtifactCache.Statistics statistics = cache.getStatistics();
+    assertThat(statistics.getHits(), equalTo(1L));
+    assertThat(statistics.getMisses(), equalTo(2L));
+  }
+
+  @Test
+  public void leastRecentlyUsedEntriesAreEvicted() throws Exception {
+    File oldest = newArchive(new ArtifactCache(root, 1000), SHA_A, 400);
+    File newest = newArchive(new ArtifactCache(root, 1000), SHA_B, 400);
+    new ArtifactCache(root, 1000).accessArchive(oldest);
+    Thread.sleep(5);
+    new ArtifactCache(root, 1000).accessArchive(newest);
+
+    ArtifactCache cache = new ArtifactCache(root, 1000);
+    File current = newArchive(cache, SHA_C, 400);
+    cache.accessArchive(current);
+    cache.evict();
+
+    assertFalse(oldest.exists());
+    assertTrue(newest.exists());
+    assertTrue(current.exists());
+    assertThat(cache.getStatistics().getEvictions(), equalTo(1L));
+    assertThat(cache.getStatistics().getBytesEvicted(), equalTo(400L));
+  }
+
+  @Test
+  public void entriesInUseAreNotEvicted() throws Exception {
+    ArtifactCache cache = new ArtifactCache(root, 100);
+    File used = newArchive(cache, SHA_A, 400);
+    cache.accessArchive(used);
+    File locked = newArchive(cache, SHA_B, 400);
+
+    try (InterProcessLock ignored = InterProcessLock.acquire(locked)) {
+      runInOtherThread(cache);
+    }
+
+    assertTrue(used.exists());
+    assertTrue(locked.exists());
+    assertThat(cache.getStatistics().getEvictions(), equalTo(0L));
+  }
+
+  @Test
+  public void cacheReplacesDownloadAndExtractionFolders() throws Exception {
+    ArtifactCache cache = new ArtifactCache(root, 1000);
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .version(PredefinedVersion.V3_6_9)
+        .downloadChecksum(SHA_A)
+        .artifactCache(cache)
+        .build();
+
+    assertThat(config.getArtifactCache(), equalTo(cache));
+    assertThat(config.getDownloadTarget().getParentFile(), equalTo(cache.getArchiveFolder(url, SHA_A)));
+    assertThat(config.getExtractionFolder(),
+        equalTo(cache.getTreeFolder(PredefinedVersion.V3_6_9, OperatingSystem.detect())));
+  }
+
+  private File newArchive(ArtifactCache cache, String sha256, int size) throws Exception {
+    File folder = cache.getArchiveFolder(url, sha256);
+    Files.createDirectories(folder.toPath());
+    File archive = new File(folder, "artifact.tar.gz");
+    Files.write(archive.toPath(), new byte[size]);
+    return archive;
+  }
+
+  /**
+   * Locks are re-entrant within a thread, so eviction must happen elsewhere to see them as held.
+   */
+  private static void runInOtherThread(final ArtifactCache cache) throws InterruptedException {
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        cache.evict();
+      }
+    });
+    thread.start();
+    thread.join();
+  }
+}
@@ -0,0 +1,187 @@
+package io.arivera.oss.embedded.rabbitmq.cluster;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar;
+import io.arivera.oss.embedded.rabbitmq.util.ListenableFuture;
+import io.arivera.oss.embedded.rabbitmq.util.PortAllocator;
+import io.arivera.oss.embedded.rabbitmq.util.SettableFuture;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class EmbeddedRabbitMqClusterTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final FakeLifecycle lifecycle = new FakeLifecycle();
+
+  @Test
+  public void nodesRunOnTheirOwnPortsNodeNameAndFolders() throws Exception {
+    EmbeddedRabbitMqCluster cluster = newCluster(2);
+
+    Map<String, String> first = cluster.getNodes().get(0).getConfig().getEnvVars();
+    Map<String, String> second = cluster.getNodes().get(1).getConfig().getEnvVars();
+
+    assertThat(cluster.getNodes().get(0).getPort(), not(equalTo(cluster.getNodes().get(1).getPort())));
+    for (RabbitMqEnvVar envVar : Arrays.asList(RabbitMqEnvVar.DIST_PORT, RabbitMqEnvVar.NODENAME,
+        RabbitMqEnvVar.MNESIA_BASE, RabbitMqEnvVar.LOG_BASE)) {
+      assertThat(first.get(envVar.getEnvVarName()), not(equalTo(second.get(envVar.getEnvVarName()))));
+    }
+    assertThat(cluster.getNodes().get(0).getConfig().getTemplateFolder(),
+        equalTo(cluster.getNodes().get(1).getConfig().getTemplateFolder()));
+  }
+
+  @Test
+  public void nodesKeepTheirDataInMemoryIfConfigured() throws Exception {
+    File fileSystem = tempFolder.newFolder("shm");
+    EmbeddedRabbitMqConfig.Builder builder = new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.getRoot())
+        .ramDataFolder(fileSystem, 1);
+
+    EmbeddedRabbitMqCluster cluster = new EmbeddedRabbitMqCluster(builder, 2, lifecycle, PortAllocator.getInstance());
+
+    EmbeddedRabbitMqConfig first = cluster.getNodes().get(0).getConfig();
+    EmbeddedRabbitMqConfig second = cluster.getNodes().get(1).getConfig();
+    assertThat(first.getRamDataFolder(), not(equalTo(second.getRamDataFolder())));
+    for (EmbeddedRabbitMqConfig config : Arrays.asList(first, second)) {
+      assertThat(config.getRamDataFolder().getParentFile(), equalTo(fileSystem.getAbsoluteFile()));
+      assertThat(config.getEnvVars().get(RabbitMqEnvVar.MNESIA_BASE.getEnvVarName()),
+          equalTo(new File(config.getRamDataFolder(), "mnesia").getPath()));
+      assertThat(config.getEnvVars().get(RabbitMqEnvVar.LOG_BASE.getEnvVarName()),
+          equalTo(new File(config.getRamDataFolder(), "log").getPath()));
+    }
+  }
+
+  @Test
+  public void builderIsLeftAsItWas() throws Exception {
+    EmbeddedRabbitMqConfig.Builder builder = new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.getRoot())
+        .port(5673);
+
+    EmbeddedRabbitMqCluster cluster = new EmbeddedRabbitMqCluster(builder, 2, lifecycle, PortAllocator.getInstance());
+
+    EmbeddedRabbitMqConfig config = builder.build();
+    assertThat(config.getPorts(), is(nullValue()));
+    assertThat(config.getRabbitMqPort(), is(5673));
+    assertFalse(config.getEnvVars().containsKey(RabbitMqEnvVar.NODENAME.getEnvVarName()));
+    assertFalse(config.getEnvVars().containsKey(RabbitMqEnvVar.MNESIA_BASE.getEnvVarName()));
+    assertThat(cluster.getNodes().get(0).getConfig().getAppFolder(), equalTo(config.getAppFolder()));
+  }
+
+  @Test
+  public void nodesJoinTheFirstNodeOnceAllStarted() throws Exception {
+    EmbeddedRabbitMqCluster cluster = newCluster(3);
+
+    cluster.start();
+
+    assertTrue(cluster.isReady());
+    ClusterNode seed = cluster.getNodes().get(0);
+    assertThat(lifecycle.started.size(), is(3));
+    assertThat(lifecycle.joined, equalTo(Arrays.asList(
+        cluster.getNodes().get(1).getPort() + " -> " + seed.getNodeName(),
+        cluster.getNodes().get(2).getPort() + " -> " + seed.getNodeName())));
+    assertThat(seed.getJoinTimeInMillis(), is(0L));
+    for (ClusterNode node : cluster.getNodes()) {
+      assertThat(node.getNodeName(), equalTo(FakeLifecycle.nodeName(node)));
+      assertTrue(node.getBootTimeInMillis() >= 0);
+      assertTrue(node.getJoinTimeInMillis() >= 0);
+      assertTrue(node.getFormationTimeInMillis() >= node.getBootTimeInMillis());
+    }
+  }
+
+  @Test
+  public void clusterIsNotReadyWhenANodeCannotJoin() throws Exception {
+    EmbeddedRabbitMqCluster cluster = newCluster(2);
+    lifecycle.failJoins = true;
+
+    try {
+      thrown.expect(ClusterException.class);
+      thrown.expectMessage("join_cluster failed");
+      cluster.start();
+    } finally {
+      assertFalse(cluster.isReady());
+    }
+  }
+
+  @Test
+  public void stopStopsEveryStartedNode() throws Exception {
+    EmbeddedRabbitMqCluster cluster = newCluster(2);
+    cluster.start();
+
+    cluster.stop();
+    cluster.stop();
+
+    assertFalse(cluster.isReady());
+    assertThat(lifecycle.stopped.size(), is(2));
+    assertThat(new HashSet<>(lifecycle.stopped), equalTo(new HashSet<>(lifecycle.started)));
+  }
+
+  private EmbeddedRabbitMqCluster newCluster(int size) {
+    EmbeddedRabbitMqConfig.Builder builder = new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.getRoot());
+    return new EmbeddedRabbitMqCluster(builder, size, lifecycle, PortAllocator.getInstance());
+  }
+
+  private static class FakeLifecycle implements ClusterLifecycle {
+
+    private final List<ClusterNode> started = Collections.synchronizedList(new ArrayList<ClusterNode>());
+    private final List<String> joined = Collections.synchronizedList(new ArrayList<String>());
+    private final List<ClusterNode> stopped = Collections.synchronizedList(new ArrayList<ClusterNode>());
+    private volatile boolean failJoins;
+
+    static String nodeName(ClusterNode node) {
+      return node.getConfig().getEnvVars().get(RabbitMqEnvVar.NODENAME.getEnvVarName()) + "@localhost";
+    }
+
+    @Override
+    public ListenableFuture<Void> start(ClusterNode node) {
+      started.add(node);
+      SettableFuture<Void> future = new SettableFuture<>();
+      future.set(null);
+      return future;
+    }
+
+    @Override
+    public String getNodeName(ClusterNode node) {
+      return nodeName(node);
+    }
+
+    @Override
+    public void join(ClusterNode node, String clusterNodeName) {
+      if (failJoins) {
+        throw new ClusterException("rabbitmqctl join_cluster failed");
+      }
+      joined.add(node.getPort() + " -> " + clusterNodeName);
+    }
+
+    @Override
+    public ListenableFuture<Void> stop(ClusterNode node) {
+      stopped.add(node);
+      SettableFuture<Void> future = new SettableFuture<>();
+      future.set(null);
+      return future;
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package io.arivera.oss.embedded.rabbitmq.conf;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class RabbitMqConfTest {
+
+  private final RabbitMqConf conf = new RabbitMqConf.Builder()
+      .vmMemoryHighWatermark(0.0001)
+      .diskFreeLimitInBytes(50000000)
+      .channelMax(64)
+      .queueIndexEmbedMsgsBelow(0)
+      .build();
+
+  @Test
+  public void settingsAreRenderedAsNewStyle() {
+    assertThat(conf.toNewStyle(), equalTo(""
+        + "vm_memory_high_watermark.relative = 0.0001\n"
+        + "disk_free_limit.absolute = 50000000\n"
+        + "channel_max = 64\n"
+        + "queue_index_embed_msgs_below = 0\n"));
+  }
+
+  @Test
+  public void settingsAreRenderedAsClassic() {
+    assertThat(conf.toClassic(), equalTo("[\n"
+        + "  {rabbit, [\n"
+        + "    {vm_memory_high_watermark, 0.0001},\n"
+        + "    {disk_free_limit, 50000000},\n"
+        + "    {channel_max, 64},\n"
+        + "    {queue_index_embed_msgs_below, 0}\n"
+        + "  ]}\n"
+        + "].\n"));
+  }
+
+  @Test
+  public void laterSettingOfSameKeyWins() {
+    RabbitMqConf conf = new RabbitMqConf.Builder()
+        .vmMemoryHighWatermark(0.6)
+        .diskFreeLimitInBytes(1)
+        .vmMemoryHighWatermarkInBytes(1073741824)
+        .diskFreeLimitRelativeToMemory(1)
+        .build();
+
+    assertThat(conf.toNewStyle(), equalTo(""
+        + "vm_memory_high_watermark.absolute = 1073741824\n"
+        + "disk_free_limit.relative = 1.0\n"));
+    assertThat(conf.getClassicTerms().toString(),
+        equalTo("[{vm_memory_high_watermark, {absolute, 1073741824}}, {disk_free_limit, {mem_relative, 1.0}}]"));
+  }
+
+  @Test
+  public void backlogKeepsOtherListenOptions() {
+    RabbitMqConf conf = new RabbitMqConf.Builder().tcpListenBacklog(4096).build();
+
+    assertThat(conf.getClassicTerms().toString(), equalTo("[{tcp_listen_options, "
+        + "[{backlog, 4096}, {nodelay, true}, {linger, {true, 0}}, {exit_on_close, false}]}]"));
+    assertThat(conf.toNewStyle(), equalTo(""
+        + "tcp_listen_options.backlog = 4096\n"
+        + "tcp_listen_options.nodelay = true\n"
+        + "tcp_listen_options.linger.on = true\n"
+        + "tcp_listen_options.linger.timeout = 0\n"
+        + "tcp_listen_options.exit_on_close = false\n"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void channelMaxOutOfRangeIsRejected() {
+    new RabbitMqConf.Builder().channelMax(65536);
+  }
+}
@@ -0,0 +1,129 @@
+package io.arivera.oss.embedded.rabbitmq.conf;
+
+import io.arivera.oss.embedded.rabbitmq.BaseVersion;
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.PredefinedVersion;
+import io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar;
+import io.arivera.oss.embedded.rabbitmq.definitions.Definitions;
+import io.arivera.oss.embedded.rabbitmq.definitions.DefinitionsInstaller;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RabbitMqConfWriterTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private final RabbitMqConf conf = new RabbitMqConf.Builder()
+      .channelMax(64)
+      .build();
+
+  @Test
+  public void newStyleFileIsWrittenForRecentVersions() throws Exception {
+    EmbeddedRabbitMqConfig config = newBuilder()
+        .version(PredefinedVersion.V3_8_0)
+        .build();
+
+    new RabbitMqConfWriter(config).run();
+
+    File base = new File(config.getEnvVars().get(RabbitMqEnvVar.CONFIG_FILE.getEnvVarName()));
+    assertThat(base.getParentFile(), equalTo(new File(config.getAppFolder(), "etc" + File.separator + "rabbitmq")));
+    assertThat(read(new File(base.getPath() + RabbitMqConfWriter.NEW_STYLE_EXTENSION)), equalTo(conf.toNewStyle()));
+    assertThat(base.getParentFile().list().length, equalTo(1));
+  }
+
+  @Test
+  public void classicFileIsWrittenForOlderVersions() throws Exception {
+    EmbeddedRabbitMqConfig config = newBuilder()
+        .version(PredefinedVersion.V3_6_16)
+        .build();
+
+    new RabbitMqConfWriter(config).run();
+
+    File base = new File(config.getEnvVars().get(RabbitMqEnvVar.CONFIG_FILE.getEnvVarName()));
+    assertThat(read(new File(base.getPath() + RabbitMqConfWriter.CLASSIC_EXTENSION)), equalTo(conf.toClassic()));
+  }
+
+  @Test
+  public void definitionsAreLoadedBySameClassicFile() throws Exception {
+    Definitions definitions = new Definitions.Builder().vhost("/").build();
+    EmbeddedRabbitMqConfig config = newBuilder()
+        .version(PredefinedVersion.V3_8_0)
+        .definitions(definitions)
+        .build();
+
+    new DefinitionsInstaller(config).run();
+    new RabbitMqConfWriter(config).run();
+
+    File base = new File(config.getEnvVars().get(RabbitMqEnvVar.CONFIG_FILE.getEnvVarName()));
+    File json = DefinitionsInstaller.getDefinitionsFile(config.getAppFolder(), definitions);
+    String path = DefinitionsInstaller.toErlangString(json);
+    assertThat(read(new File(base.getPath() + RabbitMqConfWriter.CLASSIC_EXTENSION)), equalTo("[\n"
+        + "  {rabbit, [\n"
+        + "    {channel_max, 64},\n"
+        + "    {load_definitions, " + path + "}\n"
+        + "  ]},\n"
+        + "  {rabbitmq_management, [{load_definitions, " + path + "}]}\n"
+        + "].\n"));
+    assertThat(read(json), equalTo(definitions.toJson()));
+    assertThat(base.getParentFile().list().length, equalTo(2));
+  }
+
+  @Test
+  public void identicalSettingsShareTheirFile() {
+    File folder = tempFolder.getRoot();
+    RabbitMqConf same = new RabbitMqConf.Builder().channelMax(64).build();
+    RabbitMqConf other = new RabbitMqConf.Builder().channelMax(128).build();
+
+    assertThat(RabbitMqConfWriter.getConfigFileBase(folder, PredefinedVersion.V3_8_0, conf, null),
+        equalTo(RabbitMqConfWriter.getConfigFileBase(folder, PredefinedVersion.V3_8_0, same, null)));
+    assertThat(RabbitMqConfWriter.getConfigFileBase(folder, PredefinedVersion.V3_8_0, conf, null),
+        not(equalTo(RabbitMqConfWriter.getConfigFileBase(folder, PredefinedVersion.V3_8_0, other, null))));
+  }
+
+  @Test
+  public void newStyleIsOnlyUsedForKnownVersionsSince37() throws Exception {
+    EmbeddedRabbitMqConfig customDownload = new EmbeddedRabbitMqConfig.Builder()
+        .downloadFrom(new URL("http://localhost/rabbitmq-server-3.8.0.tar.xz"), "rabbitmq_server-3.8.0")
+        .build();
+
+    assertTrue(RabbitMqConfWriter.supportsNewStyle(new BaseVersion("3.7.0")));
+    assertFalse(RabbitMqConfWriter.supportsNewStyle(new BaseVersion("3.6.16")));
+    assertFalse(RabbitMqConfWriter.supportsNewStyle(customDownload.getVersion()));
+  }
+
+  @Test
+  public void settingsCannotBeCombinedWithConfigFile() {
+    EmbeddedRabbitMqConfig.Builder builder = newBuilder()
+        .envVar(RabbitMqEnvVar.CONFIG_FILE, "/etc/rabbitmq/rabbitmq");
+
+    thrown.expect(IllegalStateException.class);
+    builder.build();
+  }
+
+  private EmbeddedRabbitMqConfig.Builder newBuilder() {
+    return new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.getRoot())
+        .rabbitMqConf(conf);
+  }
+
+  private static String read(File file) throws Exception {
+    return new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+  }
+}
@@ -0,0 +1,94 @@
+package io.arivera.oss.embedded.rabbitmq.definitions;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class DefinitionsInstallerTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private final Definitions definitions = new Definitions.Builder()
+      .vhost("/")
+      .user("guest", "guest", "administrator")
+      .permissions("/", "guest", ".*", ".*", ".*")
+      .build();
+
+  @Test
+  public void brokerIsConfiguredToLoadDefinitions() throws Exception {
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.getRoot())
+        .definitions(definitions)
+        .build();
+
+    new DefinitionsInstaller(config).run();
+
+    File base = new File(config.getEnvVars().get(RabbitMqEnvVar.CONFIG_FILE.getEnvVarName()));
+    assertThat(base.getParentFile(), equalTo(new File(config.getAppFolder(), "etc" + File.separator + "rabbitmq")));
+    File json = new File(base.getPath() + DefinitionsInstaller.JSON_EXTENSION);
+    File configFile = new File(base.getPath() + DefinitionsInstaller.CONFIG_EXTENSION);
+    assertThat(read(json), equalTo(definitions.toJson()));
+    assertThat(read(configFile), equalTo(DefinitionsInstaller.toErlangConfig(json)));
+    assertTrue(read(configFile).contains("{rabbit, [{load_definitions, \""
+        + json.getAbsolutePath().replace('\\', '/') + "\"}]}"));
+    assertThat(base.getParentFile().list().length, equalTo(2));
+  }
+
+  @Test
+  public void writingSameDefinitionsAgainLeavesFilesAsTheyAre() throws Exception {
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.getRoot())
+        .definitions(definitions)
+        .build();
+    new DefinitionsInstaller(config).run();
+    File base = DefinitionsInstaller.getConfigFileBase(config.getAppFolder(), definitions);
+    File json = new File(base.getPath() + DefinitionsInstaller.JSON_EXTENSION);
+    assertTrue(json.setLastModified(1000));
+
+    new DefinitionsInstaller(config).run();
+
+    assertThat(json.lastModified(), equalTo(1000L));
+  }
+
+  @Test
+  public void nothingIsWrittenWithoutDefinitions() {
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.getRoot())
+        .build();
+
+    new DefinitionsInstaller(config).run();
+
+    assertThat(tempFolder.getRoot().list().length, equalTo(0));
+    assertTrue(!config.getEnvVars().containsKey(RabbitMqEnvVar.CONFIG_FILE.getEnvVarName()));
+  }
+
+  @Test
+  public void definitionsCannotBeCombinedWithConfigFile() {
+    EmbeddedRabbitMqConfig.Builder builder = new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.getRoot())
+        .envVar(RabbitMqEnvVar.CONFIG_FILE, "/etc/rabbitmq/rabbitmq")
+        .definitions(definitions);
+
+    thrown.expect(IllegalStateException.class);
+    builder.build();
+  }
+
+  private static String read(File file) throws Exception {
+    return new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+  }
+}
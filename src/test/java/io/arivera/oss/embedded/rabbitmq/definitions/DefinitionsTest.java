@@ -0,0 +1,73 @@
+package io.arivera.oss.embedded.rabbitmq.definitions;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class DefinitionsTest {
+
+  @Test
+  public void definitionsAreWrittenInImportFormat() {
+    Map<String, Object> policy = new LinkedHashMap<>();
+    policy.put("max-length", 10);
+    policy.put("overflow", "reject-publish");
+
+    Definitions definitions = new Definitions.Builder()
+        .vhost("orders")
+        .user("orders-service", "secret", "management", "monitoring")
+        .permissions("orders", "orders-service", ".*", "", "^orders\\.")
+        .exchange("orders", "events", "topic")
+        .queue("orders", "created", true, false, Collections.singletonMap("x-queue-mode", "lazy"))
+        .binding("orders", "events", "created", "order.created")
+        .exchangeBinding("orders", "events", "audit", "#")
+        .policy("orders", "bounded", "^created$", "queues", 1, policy)
+        .build();
+
+    assertThat(definitions.toJson(), equalTo("{"
+        + "\"users\":[{\"name\":\"orders-service\",\"password\":\"secret\",\"tags\":\"management,monitoring\"}],"
+        + "\"vhosts\":[{\"name\":\"orders\"}],"
+        + "\"permissions\":[{\"user\":\"orders-service\",\"vhost\":\"orders\",\"configure\":\".*\",\"write\":\"\","
+        + "\"read\":\"^orders\\\\.\"}],"
+        + "\"policies\":[{\"vhost\":\"orders\",\"name\":\"bounded\",\"pattern\":\"^created$\",\"apply-to\":\"queues\","
+        + "\"definition\":{\"max-length\":10,\"overflow\":\"reject-publish\"},\"priority\":1}],"
+        + "\"queues\":[{\"name\":\"created\",\"vhost\":\"orders\",\"durable\":true,\"auto_delete\":false,"
+        + "\"arguments\":{\"x-queue-mode\":\"lazy\"}}],"
+        + "\"exchanges\":[{\"name\":\"events\",\"vhost\":\"orders\",\"type\":\"topic\",\"durable\":true,"
+        + "\"auto_delete\":false,\"internal\":false,\"arguments\":{}}],"
+        + "\"bindings\":["
+        + "{\"source\":\"events\",\"vhost\":\"orders\",\"destination\":\"created\",\"destination_type\":\"queue\","
+        + "\"routing_key\":\"order.created\",\"arguments\":{}},"
+        + "{\"source\":\"events\",\"vhost\":\"orders\",\"destination\":\"audit\",\"destination_type\":\"exchange\","
+        + "\"routing_key\":\"#\",\"arguments\":{}}]"
+        + "}"));
+    assertThat(definitions.size(), equalTo(8));
+  }
+
+  @Test
+  public void stringsAreEscaped() {
+    assertThat(JsonWriter.write(Arrays.asList("quote\" backslash\\ tab\t bell\u0007 é", null, 1.5, false)),
+        equalTo("[\"quote\\\" backslash\\\\ tab\\t bell\\u0007 é\",null,1.5,false]"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unsupportedValuesAreRejected() {
+    JsonWriter.write(Collections.singletonMap("key", new Object()));
+  }
+
+  @Test
+  public void digestDependsOnContents() {
+    Definitions first = new Definitions.Builder().vhost("first").build();
+    Definitions same = new Definitions.Builder().vhost("first").build();
+    Definitions second = new Definitions.Builder().vhost("second").build();
+
+    assertThat(first.getSha256Hex(), equalTo(same.getSha256Hex()));
+    assertThat(first.getSha256Hex(), not(equalTo(second.getSha256Hex())));
+  }
+}
@@ -0,0 +1,75 @@
+package io.arivera.oss.embedded.rabbitmq.download;
+
+import io.arivera.oss.embedded.rabbitmq.util.DigestUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ArtifactChecksumTest {
+
+  private static final byte[] CONTENT = "rabbitmq".getBytes(Charset.forName("UTF-8"));
+  private static final String OTHER_DIGEST = "0000000000000000000000000000000000000000000000000000000000000000";
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File artifact;
+  private String digest;
+
+  @Before
+  public void setUp() throws Exception {
+    artifact = tempFolder.newFile("rabbitmq-server-generic-unix-0.0.1.tar.gz");
+    Files.write(artifact.toPath(), CONTENT);
+    digest = DigestUtils.sha256Hex(artifact);
+  }
+
+  @Test
+  public void digestIsCalculatedWhileReading() throws Exception {
+    ArtifactChecksum checksum = new ArtifactChecksum(digest);
+    try (InputStream input = checksum.wrap(new ByteArrayInputStream(CONTENT))) {
+      while (input.read() != -1) {
+        // just reading
+      }
+    }
+
+    assertThat(checksum.verify(new URL("http://localhost/")), equalTo(digest));
+  }
+
+  @Test(expected = DownloadException.class)
+  public void unexpectedDigestIsRejected() throws Exception {
+    ArtifactChecksum checksum = new ArtifactChecksum(OTHER_DIGEST);
+    checksum.update(artifact);
+
+    checksum.verify(new URL("http://localhost/"));
+  }
+
+  @Test
+  public void recordedDigestIsTrustedWhileArtifactIsUnchanged() throws Exception {
+    ArtifactChecksum.record(artifact, OTHER_DIGEST);
+
+    assertTrue(ArtifactChecksum.matches(artifact, OTHER_DIGEST));
+  }
+
+  @Test
+  public void modifiedArtifactIsHashedAgain() throws Exception {
+    ArtifactChecksum.record(artifact, OTHER_DIGEST);
+    assertTrue(artifact.setLastModified(artifact.lastModified() - 10000));
+
+    assertFalse(ArtifactChecksum.matches(artifact, OTHER_DIGEST));
+    assertTrue(ArtifactChecksum.matches(artifact, digest));
+  }
+}
@@ -24,6 +24,7 @@ public class DownloaderFactoryTest {
     Downloader downloader = downloaderFactory.getNewInstance();
 
     assertTrue(downloader.getClass().equals(CachedDownloader.class));
+    assertTrue(((CachedDownloader) downloader).innerDownloader.getClass().equals(ResumableDownloader.class));
   }
 
   @Test
@@ -35,4 +36,35 @@ public class DownloaderFactoryTest {
 
     assertTrue(downloader.getClass().equals(BasicDownloader.class));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void pipelinedDownloaderWithCaching() throws Exception {
+    configBuilder.useCachedDownload(true).extractWhileDownloading(true);
+
+    DownloaderFactory downloaderFactory = new DownloaderFactory(configBuilder.build());
+    Downloader downloader = downloaderFactory.getNewInstance();
+
+    assertTrue(downloader.getClass().equals(CachedDownloader.class));
+    assertTrue(((CachedDownloader) downloader).innerDownloader.getClass().equals(PipelinedDownloader.class));
+  }
+
+  @Test
+  public void pipelinedDownloaderRequiresCaching() throws Exception {
+    configBuilder.useCachedDownload(false).extractWhileDownloading(true);
+
+    DownloaderFactory downloaderFactory = new DownloaderFactory(configBuilder.build());
+    Downloader downloader = downloaderFactory.getNewInstance();
+
+    assertTrue(downloader.getClass().equals(BasicDownloader.class));
+  }
+
+  @Test
+  public void rangedDownloaderWithSeveralConnections() throws Exception {
+    configBuilder.useCachedDownload(false).downloadConnections(4);
+
+    DownloaderFactory downloaderFactory = new DownloaderFactory(configBuilder.build());
+    Downloader downloader = downloaderFactory.getNewInstance();
+
+    assertTrue(downloader.getClass().equals(RangedDownloader.class));
+  }
+}
@@ -0,0 +1,130 @@
+package io.arivera.oss.embedded.rabbitmq.download;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.extract.ExtractionMetrics;
+import io.arivera.oss.embedded.rabbitmq.extract.ExtractionOutcome;
+import io.arivera.oss.embedded.rabbitmq.extract.ExtractorFactory;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PipelinedDownloaderTest {
+
+  private static final String APP_FOLDER = "rabbitmq_server-0.0.1";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File remoteArchive;
+  private EmbeddedRabbitMqConfig config;
+
+  @Before
+  public void setUp() throws Exception {
+    remoteArchive = new File(tempFolder.newFolder("remote"), "rabbitmq-server-generic-unix-0.0.1.tar.gz");
+    writeArchive(remoteArchive);
+
+    config = new EmbeddedRabbitMqConfig.Builder()
+        .downloadFrom(remoteArchive.toURI().toURL(), APP_FOLDER)
+        .downloadFolder(tempFolder.newFolder("download"))
+        .extractionFolder(tempFolder.newFolder("extracted"))
+        .extractWhileDownloading(true)
+        .build();
+  }
+
+  @Test
+  public void archiveIsExtractedWhileDownloading() throws Exception {
+    long fullExtractions = ExtractionMetrics.getCount(ExtractionOutcome.FULL_EXTRACTION);
+
+    new DownloaderFactory(config).getNewInstance().run();
+
+    assertThat(ExtractionMetrics.getCount(ExtractionOutcome.FULL_EXTRACTION), equalTo(fullExtractions + 1));
+    assertArrayEquals(Files.readAllBytes(remoteArchive.toPath()), Files.readAllBytes(config.getDownloadTarget().toPath()));
+    assertThat(read("etc/rabbitmq/rabbitmq-env.conf"), equalTo("NODENAME=rabbit"));
+    assertTrue(new File(config.getAppFolder(), "sbin/rabbitmq-server").canExecute());
+  }
+
+  @Test
+  public void extractionAfterDownloadIsSkipped() throws Exception {
+    new DownloaderFactory(config).getNewInstance().run();
+
+    new ExtractorFactory(config).getNewInstance().run();
+
+    assertThat(ExtractionMetrics.getLastOutcome(), equalTo(ExtractionOutcome.CACHE_HIT));
+  }
+
+  @Test
+  public void manifestRecognizesDownloadedArchiveWithoutUpdates() throws Exception {
+    new DownloaderFactory(config).getNewInstance().run();
+    File appFolder = config.getTemplateFolder();
+    File manifest = new File(appFolder.getParentFile(), "." + appFolder.getName() + ".manifest");
+    assertTrue(manifest.setLastModified(1000L));
+
+    new ExtractorFactory(config).getNewInstance().run();
+
+    assertThat(ExtractionMetrics.getLastOutcome(), equalTo(ExtractionOutcome.CACHE_HIT));
+    assertThat(manifest.lastModified(), equalTo(1000L));
+  }
+
+  @Test
+  public void corruptedArchiveIsRemoved() throws Exception {
+    Files.write(remoteArchive.toPath(), "not an archive".getBytes(UTF_8));
+
+    try {
+      new DownloaderFactory(config).getNewInstance().run();
+      fail("Expected " + DownloadException.class.getSimpleName());
+    } catch (DownloadException e) {
+      assertFalse(config.getDownloadTarget().exists());
+    }
+  }
+
+  private String read(String path) throws IOException {
+    return new String(Files.readAllBytes(new File(config.getAppFolder(), path).toPath()), UTF_8);
+  }
+
+  private static void writeArchive(File archive) throws IOException {
+    try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(new FileOutputStream(archive)))) {
+      addDirectory(tar, APP_FOLDER + "/");
+      addDirectory(tar, APP_FOLDER + "/sbin/");
+      addFile(tar, APP_FOLDER + "/sbin/rabbitmq-server", "#!/bin/sh", 0755);
+      addDirectory(tar, APP_FOLDER + "/etc/");
+      addDirectory(tar, APP_FOLDER + "/etc/rabbitmq/");
+      addFile(tar, APP_FOLDER + "/etc/rabbitmq/rabbitmq-env.conf", "NODENAME=rabbit", 0600);
+    }
+  }
+
+  private static void addDirectory(TarArchiveOutputStream tar, String name) throws IOException {
+    TarArchiveEntry entry = new TarArchiveEntry(name);
+    entry.setMode(0755 | TarArchiveEntry.DEFAULT_DIR_MODE);
+    tar.putArchiveEntry(entry);
+    tar.closeArchiveEntry();
+  }
+
+  private static void addFile(TarArchiveOutputStream tar, String name, String content, int mode) throws IOException {
+    byte[] bytes = content.getBytes(UTF_8);
+    TarArchiveEntry entry = new TarArchiveEntry(name);
+    entry.setMode(mode);
+    entry.setSize(bytes.length);
+    tar.putArchiveEntry(entry);
+    tar.write(bytes);
+    tar.closeArchiveEntry();
+  }
+}
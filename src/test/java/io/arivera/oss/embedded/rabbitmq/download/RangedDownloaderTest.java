@@ -0,0 +1,140 @@
+package io.arivera.oss.embedded.rabbitmq.download;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+public class RangedDownloaderTest {
+
+  private static final byte[] CONTENT = new byte[(int) (4 * RangedDownloader.MIN_RANGE_SIZE + 123)];
+
+  static {
+    new Random(42).nextBytes(CONTENT);
+  }
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private HttpServer server;
+  private ArtifactHandler handler;
+  private EmbeddedRabbitMqConfig config;
+
+  @Before
+  public void setUp() throws Exception {
+    handler = new ArtifactHandler();
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", handler);
+    server.start();
+
+    URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/rabbitmq-server-generic-unix-0.0.1.tar.gz");
+    config = new EmbeddedRabbitMqConfig.Builder()
+        .downloadFrom(url, "rabbitmq_server-0.0.1")
+        .downloadFolder(tempFolder.newFolder())
+        .downloadConnections(4)
+        .build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.stop(0);
+  }
+
+  @Test
+  public void rangesAreDownloadedConcurrently() throws Exception {
+    new RangedDownloader(config).run();
+
+    assertArrayEquals(CONTENT, Files.readAllBytes(config.getDownloadTarget().toPath()));
+    assertThat(handler.ranges.size(), equalTo(4));
+    assertThat(handler.ranges, hasItem("bytes=0-" + (CONTENT.length / 4 - 1)));
+    assertThat(handler.ranges, hasItem("bytes=" + (CONTENT.length / 4 * 3) + "-" + (CONTENT.length - 1)));
+  }
+
+  @Test
+  public void singleConnectionIsUsedWhenRangesAreUnsupported() throws Exception {
+    handler.acceptRanges = false;
+
+    new RangedDownloader(config).run();
+
+    assertArrayEquals(CONTENT, Files.readAllBytes(config.getDownloadTarget().toPath()));
+    assertThat(handler.ranges, equalTo(Arrays.asList((String) null)));
+  }
+
+  @Test
+  public void ignoredRangesFailTheDownload() throws Exception {
+    handler.ignoreRanges = true;
+
+    thrown.expect(DownloadException.class);
+    new RangedDownloader(config).run();
+  }
+
+  @Test
+  public void smallArtifactsAreNotSplit() throws Exception {
+    assertThat(RangedDownloader.countRanges(RangedDownloader.MIN_RANGE_SIZE - 1, 4), equalTo(1));
+    assertThat(RangedDownloader.countRanges(RangedDownloader.MIN_RANGE_SIZE * 2, 4), equalTo(2));
+    assertThat(RangedDownloader.countRanges(RangedDownloader.MIN_RANGE_SIZE * 10, 4), equalTo(4));
+  }
+
+  private static class ArtifactHandler implements HttpHandler {
+
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private volatile boolean acceptRanges = true;
+    private volatile boolean ignoreRanges = false;
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      if (acceptRanges) {
+        exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().add("ETag", "\"v1\"");
+      }
+      if ("HEAD".equals(exchange.getRequestMethod())) {
+        exchange.getResponseHeaders().add("Content-Length", String.valueOf(CONTENT.length));
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+        return;
+      }
+
+      String range = exchange.getRequestHeaders().getFirst("Range");
+      ranges.add(range);
+      int first = 0;
+      int last = CONTENT.length - 1;
+      int status = 200;
+      if (range != null && acceptRanges && !ignoreRanges) {
+        String[] bounds = range.substring("bytes=".length()).split("-");
+        first = Integer.parseInt(bounds[0]);
+        last = Integer.parseInt(bounds[1]);
+        status = 206;
+        exchange.getResponseHeaders().add("Content-Range", "bytes " + first + "-" + last + "/" + CONTENT.length);
+      }
+      exchange.sendResponseHeaders(status, last - first + 1);
+      try (OutputStream body = exchange.getResponseBody()) {
+        body.write(CONTENT, first, last - first + 1);
+      }
+    }
+  }
+}
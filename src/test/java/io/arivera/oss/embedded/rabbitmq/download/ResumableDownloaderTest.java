@@ -0,0 +1,181 @@
+package io.arivera.oss.embedded.rabbitmq.download;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.util.DigestUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResumableDownloaderTest {
+
+  private static final byte[] CONTENT = new byte[100 * 1024];
+
+  static {
+    new Random(7).nextBytes(CONTENT);
+  }
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private HttpServer server;
+  private ArtifactHandler handler;
+  private EmbeddedRabbitMqConfig config;
+  private File partFile;
+
+  @Before
+  public void setUp() throws Exception {
+    handler = new ArtifactHandler();
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", handler);
+    server.start();
+
+    URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/rabbitmq-server-generic-unix-0.0.1.tar.gz");
+    config = new EmbeddedRabbitMqConfig.Builder()
+        .downloadFrom(url, "rabbitmq_server-0.0.1")
+        .downloadFolder(tempFolder.newFolder())
+        .build();
+    partFile = new File(config.getDownloadTarget().getParentFile(), config.getDownloadTarget().getName() + ".part");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.stop(0);
+  }
+
+  @Test
+  public void completeDownloadIsMovedToTarget() throws Exception {
+    new ResumableDownloader(config).run();
+
+    assertArrayEquals(CONTENT, Files.readAllBytes(config.getDownloadTarget().toPath()));
+    assertFalse(partFile.exists());
+  }
+
+  @Test
+  public void interruptedDownloadIsKeptApartFromTarget() throws Exception {
+    handler.bytesBeforeFailure = CONTENT.length / 2;
+
+    downloadExpectingFailure();
+
+    assertFalse(config.getDownloadTarget().exists());
+    assertTrue(partFile.exists());
+  }
+
+  @Test
+  public void interruptedDownloadIsResumed() throws Exception {
+    handler.bytesBeforeFailure = CONTENT.length / 2;
+    downloadExpectingFailure();
+    long downloaded = partFile.length();
+
+    handler.bytesBeforeFailure = -1;
+    new ResumableDownloader(config).run();
+
+    assertArrayEquals(CONTENT, Files.readAllBytes(config.getDownloadTarget().toPath()));
+    assertThat(handler.ranges, equalTo(Arrays.asList(null, "bytes=" + downloaded + "-")));
+  }
+
+  @Test
+  public void changedArtifactIsDownloadedAgain() throws Exception {
+    handler.bytesBeforeFailure = CONTENT.length / 2;
+    downloadExpectingFailure();
+
+    handler.bytesBeforeFailure = -1;
+    handler.etag = "\"v2\"";
+    new ResumableDownloader(config).run();
+
+    assertArrayEquals(CONTENT, Files.readAllBytes(config.getDownloadTarget().toPath()));
+    assertThat(handler.ranges.size(), equalTo(2));
+  }
+
+  @Test
+  public void expectedChecksumIsVerified() throws Exception {
+    config = newConfigBuilder().downloadChecksum(DigestUtils.toHex(DigestUtils.newSha256().digest(CONTENT))).build();
+
+    new ResumableDownloader(config).run();
+
+    assertArrayEquals(CONTENT, Files.readAllBytes(config.getDownloadTarget().toPath()));
+  }
+
+  @Test
+  public void unexpectedChecksumDiscardsDownload() throws Exception {
+    config = newConfigBuilder().downloadChecksum(
+        "0000000000000000000000000000000000000000000000000000000000000000").build();
+
+    downloadExpectingFailure();
+
+    assertFalse(config.getDownloadTarget().exists());
+    assertFalse(partFile.exists());
+  }
+
+  private EmbeddedRabbitMqConfig.Builder newConfigBuilder() {
+    return new EmbeddedRabbitMqConfig.Builder()
+        .downloadFrom(config.getDownloadSource(), "rabbitmq_server-0.0.1")
+        .downloadFolder(config.getDownloadTarget().getParentFile());
+  }
+
+  private void downloadExpectingFailure() {
+    try {
+      new ResumableDownloader(config).run();
+      fail("Expected " + DownloadException.class.getSimpleName());
+    } catch (DownloadException e) {
+      // expected
+    }
+  }
+
+  private static class ArtifactHandler implements HttpHandler {
+
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private volatile String etag = "\"v1\"";
+    private volatile int bytesBeforeFailure = -1;
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      String range = exchange.getRequestHeaders().getFirst("Range");
+      ranges.add(range);
+      exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+      exchange.getResponseHeaders().add("ETag", etag);
+
+      int first = 0;
+      int status = 200;
+      if (range != null && etag.equals(exchange.getRequestHeaders().getFirst("If-Range"))) {
+        first = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+        status = 206;
+        exchange.getResponseHeaders().add("Content-Range",
+            "bytes " + first + "-" + (CONTENT.length - 1) + "/" + CONTENT.length);
+      }
+      exchange.sendResponseHeaders(status, CONTENT.length - first);
+      OutputStream body = exchange.getResponseBody();
+      if (bytesBeforeFailure >= 0) {
+        body.write(CONTENT, first, bytesBeforeFailure);
+        body.flush();
+        exchange.close();
+        return;
+      }
+      body.write(CONTENT, first, CONTENT.length - first);
+      body.close();
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package io.arivera.oss.embedded.rabbitmq.download;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.extract.ExtractionMetrics;
+import io.arivera.oss.embedded.rabbitmq.extract.ExtractorFactory;
+
+import java.io.File;
+import java.net.URL;
+
+/**
+ * Downloads and extracts an artifact into shared folders, launched as a separate JVM by {@link SharedCacheStressTest}.
+ * <p>
+ * Arguments: download URL, download folder and extraction folder.
+ */
+public class SharedCacheProcess {
+
+  public static void main(String[] args) throws Exception {
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .downloadFrom(new URL(args[0]), "rabbitmq_server-0.0.1")
+        .downloadFolder(new File(args[1]))
+        .extractionFolder(new File(args[2]))
+        .build();
+
+    new DownloaderFactory(config).getNewInstance().run();
+    new ExtractorFactory(config).getNewInstance().run();
+
+    System.out.println("Extraction outcome: " + ExtractionMetrics.getLastOutcome());
+  }
+}
@@ -0,0 +1,150 @@
+package io.arivera.oss.embedded.rabbitmq.download;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Launches several JVMs at once that share the same download and extraction folders.
+ */
+public class SharedCacheStressTest {
+
+  private static final int PROCESSES = 4;
+  private static final String APP_FOLDER = "rabbitmq_server-0.0.1";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private HttpServer server;
+  private AtomicInteger downloads;
+
+  @Before
+  public void setUp() throws Exception {
+    final byte[] archive = createArchive();
+    downloads = new AtomicInteger();
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        downloads.incrementAndGet();
+        try {
+          Thread.sleep(500);      // gives the other processes time to pile up behind the lock
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        exchange.sendResponseHeaders(200, archive.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+          body.write(archive);
+        }
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.stop(0);
+  }
+
+  @Test
+  public void artifactIsDownloadedOnceByConcurrentProcesses() throws Exception {
+    String url = "http://localhost:" + server.getAddress().getPort() + "/rabbitmq-server-generic-unix-0.0.1.tar.gz";
+    File downloadFolder = tempFolder.newFolder("download");
+    File extractionFolder = tempFolder.newFolder("extracted");
+
+    List<Process> processes = new ArrayList<>();
+    for (int i = 0; i < PROCESSES; i++) {
+      processes.add(new ProcessBuilder(javaExecutable(), "-cp", testClassPath(), SharedCacheProcess.class.getName(),
+          url, downloadFolder.toString(), extractionFolder.toString())
+          .redirectErrorStream(true)
+          .redirectOutput(tempFolder.newFile("process-" + i + ".log"))
+          .start());
+    }
+
+    for (int i = 0; i < PROCESSES; i++) {
+      Process process = processes.get(i);
+      assertTrue("Process " + i + " timed out", waitFor(process, 60));
+      assertThat("Process " + i + " failed: " + readLog(i), process.exitValue(), equalTo(0));
+    }
+    assertThat(downloads.get(), equalTo(1));
+    File extractedFile = new File(extractionFolder, APP_FOLDER + "/etc/rabbitmq/rabbitmq-env.conf");
+    assertThat(new String(Files.readAllBytes(extractedFile.toPath()), UTF_8), equalTo("NODENAME=rabbit"));
+  }
+
+  private static boolean waitFor(Process process, int seconds) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+    while (System.nanoTime() < deadline) {
+      try {
+        process.exitValue();
+        return true;
+      } catch (IllegalThreadStateException e) {
+        Thread.sleep(50);
+      }
+    }
+    process.destroy();
+    return false;
+  }
+
+  private String readLog(int process) throws IOException {
+    return new String(Files.readAllBytes(new File(tempFolder.getRoot(), "process-" + process + ".log").toPath()), UTF_8);
+  }
+
+  private static String javaExecutable() {
+    return new File(new File(System.getProperty("java.home"), "bin"), "java").toString();
+  }
+
+  private static String testClassPath() {
+    String surefireClassPath = System.getProperty("surefire.test.class.path");
+    return surefireClassPath != null ? surefireClassPath : System.getProperty("java.class.path");
+  }
+
+  private static byte[] createArchive() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(bytes))) {
+      addEntry(tar, APP_FOLDER + "/", null);
+      addEntry(tar, APP_FOLDER + "/etc/", null);
+      addEntry(tar, APP_FOLDER + "/etc/rabbitmq/", null);
+      addEntry(tar, APP_FOLDER + "/etc/rabbitmq/rabbitmq-env.conf", "NODENAME=rabbit");
+    }
+    return bytes.toByteArray();
+  }
+
+  private static void addEntry(TarArchiveOutputStream tar, String name, String content) throws IOException {
+    TarArchiveEntry entry = new TarArchiveEntry(name);
+    if (content == null) {
+      tar.putArchiveEntry(entry);
+    } else {
+      byte[] data = content.getBytes(UTF_8);
+      entry.setMode(0644);
+      entry.setSize(data.length);
+      tar.putArchiveEntry(entry);
+      tar.write(data);
+    }
+    tar.closeArchiveEntry();
+  }
+}
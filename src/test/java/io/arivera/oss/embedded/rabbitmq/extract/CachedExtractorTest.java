@@ -0,0 +1,158 @@
+package io.arivera.oss.embedded.rabbitmq.extract;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class CachedExtractorTest {
+
+  private static final String APP_FOLDER = "rabbitmq_server-0.0.1";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private EmbeddedRabbitMqConfig config;
+  private File extractionFolder;
+
+  @Before
+  public void setUp() throws Exception {
+    File downloadFolder = tempFolder.newFolder("download");
+    extractionFolder = tempFolder.newFolder("extracted");
+
+    config = new EmbeddedRabbitMqConfig.Builder()
+        .downloadFrom(new URL("http://localhost/rabbitmq-server-generic-unix-0.0.1.tar.gz"), APP_FOLDER)
+        .downloadFolder(downloadFolder)
+        .extractionFolder(extractionFolder)
+        .build();
+    writeArchive(config.getDownloadTarget());
+  }
+
+  @Test
+  public void firstExtractionWritesManifest() throws Exception {
+    new ExtractorFactory(config).getNewInstance().run();
+
+    assertThat(ExtractionMetrics.getLastOutcome(), equalTo(ExtractionOutcome.FULL_EXTRACTION));
+    assertTrue(ExtractionManifest.locationFor(config.getAppFolder()).isFile());
+    assertThat(read("sbin/rabbitmq-server"), equalTo("#!/bin/sh"));
+    assertThat(new File(config.getAppFolder(), "sbin/rabbitmq-server").canExecute(), is(true));
+  }
+
+  @Test
+  public void extractedFilesAreMeasured() throws Exception {
+    long files = ExtractionMetrics.getFilesExtracted();
+    long bytes = ExtractionMetrics.getBytesExtracted();
+    ExtractionCounter counter = new ExtractionCounter();
+
+    new ExtractorFactory(config, counter).getNewInstance().run();
+
+    long expectedBytes = ("#!/bin/sh" + "NODENAME=rabbit").length();
+    assertThat(counter.getFilesExtracted(), equalTo(2L));
+    assertThat(counter.getBytesExtracted(), equalTo(expectedBytes));
+    assertThat(ExtractionMetrics.getFilesExtracted() - files, equalTo(2L));
+    assertThat(ExtractionMetrics.getBytesExtracted() - bytes, equalTo(expectedBytes));
+  }
+
+  @Test
+  public void countersOnlySeeTheirOwnExtractions() throws Exception {
+    ExtractionCounter counter = new ExtractionCounter();
+    new ExtractorFactory(config, counter).getNewInstance().run();
+    new File(config.getAppFolder(), "sbin/rabbitmq-server").delete();
+
+    new ExtractorFactory(config).getNewInstance().run();
+
+    assertThat(counter.getFilesExtracted(), equalTo(2L));
+  }
+
+  @Test
+  public void intactExtractionIsReused() throws Exception {
+    new ExtractorFactory(config).getNewInstance().run();
+    long hits = ExtractionMetrics.getCount(ExtractionOutcome.CACHE_HIT);
+
+    File extractedFile = new File(config.getAppFolder(), "etc/rabbitmq/rabbitmq-env.conf");
+    long lastModified = extractedFile.lastModified();
+    new ExtractorFactory(config).getNewInstance().run();
+
+    assertThat(ExtractionMetrics.getLastOutcome(), equalTo(ExtractionOutcome.CACHE_HIT));
+    assertThat(ExtractionMetrics.getCount(ExtractionOutcome.CACHE_HIT), equalTo(hits + 1));
+    assertThat(extractedFile.lastModified(), equalTo(lastModified));
+  }
+
+  @Test
+  public void damagedFilesAreRepaired() throws Exception {
+    new ExtractorFactory(config).getNewInstance().run();
+    assertTrue(new File(config.getAppFolder(), "sbin/rabbitmq-server").delete());
+    Files.write(new File(config.getAppFolder(), "etc/rabbitmq/rabbitmq-env.conf").toPath(), "X".getBytes(UTF_8));
+
+    new ExtractorFactory(config).getNewInstance().run();
+
+    assertThat(ExtractionMetrics.getLastOutcome(), equalTo(ExtractionOutcome.PARTIAL_REPAIR));
+    assertThat(read("sbin/rabbitmq-server"), equalTo("#!/bin/sh"));
+    assertThat(read("etc/rabbitmq/rabbitmq-env.conf"), equalTo("NODENAME=rabbit"));
+  }
+
+  @Test
+  public void modifiedArchiveIsExtractedAgain() throws Exception {
+    new ExtractorFactory(config).getNewInstance().run();
+    writeArchive(config.getDownloadTarget(), "NODENAME=other");
+
+    new ExtractorFactory(config).getNewInstance().run();
+
+    assertThat(ExtractionMetrics.getLastOutcome(), equalTo(ExtractionOutcome.FULL_EXTRACTION));
+    assertThat(read("etc/rabbitmq/rabbitmq-env.conf"), equalTo("NODENAME=other"));
+  }
+
+  private String read(String path) throws IOException {
+    return new String(Files.readAllBytes(new File(config.getAppFolder(), path).toPath()), UTF_8);
+  }
+
+  private static void writeArchive(File archive) throws IOException {
+    writeArchive(archive, "NODENAME=rabbit");
+  }
+
+  private static void writeArchive(File archive, String envFileContent) throws IOException {
+    try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(new FileOutputStream(archive)))) {
+      addDirectory(tar, APP_FOLDER + "/");
+      addDirectory(tar, APP_FOLDER + "/sbin/");
+      addFile(tar, APP_FOLDER + "/sbin/rabbitmq-server", "#!/bin/sh", 0755);
+      addDirectory(tar, APP_FOLDER + "/etc/");
+      addDirectory(tar, APP_FOLDER + "/etc/rabbitmq/");
+      addFile(tar, APP_FOLDER + "/etc/rabbitmq/rabbitmq-env.conf", envFileContent, 0600);
+    }
+  }
+
+  private static void addDirectory(TarArchiveOutputStream tar, String name) throws IOException {
+    TarArchiveEntry entry = new TarArchiveEntry(name);
+    entry.setMode(0755 | TarArchiveEntry.DEFAULT_DIR_MODE);
+    tar.putArchiveEntry(entry);
+    tar.closeArchiveEntry();
+  }
+
+  private static void addFile(TarArchiveOutputStream tar, String name, String content, int mode) throws IOException {
+    byte[] bytes = content.getBytes(UTF_8);
+    TarArchiveEntry entry = new TarArchiveEntry(name);
+    entry.setMode(mode);
+    entry.setSize(bytes.length);
+    tar.putArchiveEntry(entry);
+    tar.write(bytes);
+    tar.closeArchiveEntry();
+  }
+}
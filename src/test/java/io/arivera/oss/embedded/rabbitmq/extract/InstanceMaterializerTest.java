@@ -0,0 +1,104 @@
+package io.arivera.oss.embedded.rabbitmq.extract;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class InstanceMaterializerTest {
+
+  private static final String APP_FOLDER = "rabbitmq_server-0.0.1";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private EmbeddedRabbitMqConfig config;
+
+  @Before
+  public void setUp() throws Exception {
+    config = new EmbeddedRabbitMqConfig.Builder()
+        .downloadFrom(new URL("http://localhost/rabbitmq-server-generic-unix-0.0.1.tar.gz"), APP_FOLDER)
+        .downloadFolder(tempFolder.newFolder("download"))
+        .extractionFolder(tempFolder.newFolder("extracted"))
+        .instanceFolder(tempFolder.newFolder("instance"))
+        .build();
+
+    write(config.getTemplateFolder(), "sbin/rabbitmq-server", "#!/bin/sh");
+    write(config.getTemplateFolder(), "etc/rabbitmq/rabbitmq-env.conf", "CONFIG");
+  }
+
+  @Test
+  public void appFolderIsTheInstanceFolder() throws Exception {
+    assertTrue(config.shouldUseBrokerInstance());
+    assertThat(config.getAppFolder(), not(equalTo(config.getTemplateFolder())));
+    assertThat(config.getAppFolder().getName(), equalTo(APP_FOLDER));
+  }
+
+  @Test
+  public void sharedFilesAreLinked() throws Exception {
+    new InstanceMaterializer(config).run();
+
+    File instanceFile = new File(config.getAppFolder(), "sbin/rabbitmq-server");
+    assertThat(read(instanceFile), equalTo("#!/bin/sh"));
+    assertTrue(Files.isSameFile(instanceFile.toPath(),
+        new File(config.getTemplateFolder(), "sbin/rabbitmq-server").toPath()));
+  }
+
+  @Test
+  public void privateFoldersAreCopied() throws Exception {
+    new InstanceMaterializer(config).run();
+    write(config.getAppFolder(), "etc/rabbitmq/rabbitmq-env.conf", "CHANGED");
+
+    assertThat(read(new File(config.getTemplateFolder(), "etc/rabbitmq/rabbitmq-env.conf")), equalTo("CONFIG"));
+  }
+
+  @Test
+  public void privateFoldersAreKeptAcrossRuns() throws Exception {
+    new InstanceMaterializer(config).run();
+    write(config.getAppFolder(), "var/lib/rabbitmq/state", "STATE");
+    write(config.getAppFolder(), "sbin/leftover", "OLD");
+
+    new InstanceMaterializer(config).run();
+
+    assertThat(read(new File(config.getAppFolder(), "var/lib/rabbitmq/state")), equalTo("STATE"));
+    assertFalse(new File(config.getAppFolder(), "sbin/leftover").exists());
+    assertTrue(new File(config.getAppFolder(), "sbin/rabbitmq-server").exists());
+  }
+
+  @Test
+  public void nothingIsDoneWithoutInstanceFolder() throws Exception {
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .downloadFrom(new URL("http://localhost/rabbitmq-server-generic-unix-0.0.1.tar.gz"), APP_FOLDER)
+        .downloadFolder(this.config.getDownloadTarget().getParentFile())
+        .extractionFolder(this.config.getExtractionFolder())
+        .build();
+
+    assertFalse(config.shouldUseBrokerInstance());
+    new InstanceMaterializer(config).run();
+    assertFalse(this.config.getAppFolder().exists());
+  }
+
+  private static void write(File folder, String path, String content) throws Exception {
+    File file = new File(folder, path);
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.write(file.toPath(), content.getBytes(UTF_8));
+  }
+
+  private static String read(File file) throws Exception {
+    return new String(Files.readAllBytes(file.toPath()), UTF_8);
+  }
+}
@@ -0,0 +1,120 @@
+package io.arivera.oss.embedded.rabbitmq.extract;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class PluginsExpanderTest {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private EmbeddedRabbitMqConfig config;
+  private File plugins;
+
+  @Before
+  public void setUp() throws Exception {
+    config = new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.newFolder("extracted"))
+        .preExpandPlugins(true)
+        .build();
+
+    plugins = new File(config.getTemplateFolder(), "plugins");
+    archive("rabbit_common-0.0.1.ez", "rabbit_common-0.0.1/ebin/rabbit_common.app", "COMMON");
+    write(new File(plugins, "rabbitmq_management-0.0.1/ebin/rabbitmq_management.app"), "MANAGEMENT");
+  }
+
+  @Test
+  public void pluginsAreExpandedIntoSharedFolder() throws Exception {
+    new PluginsExpander(config).run();
+
+    File expanded = PluginsExpander.getExpandedPluginsFolder(config.getTemplateFolder());
+    assertThat(config.getEnvVars().get(RabbitMqEnvVar.PLUGINS_DIR.getEnvVarName()), equalTo(expanded.getPath()));
+    assertThat(read(new File(expanded, "rabbit_common-0.0.1/ebin/rabbit_common.app")), equalTo("COMMON"));
+    assertThat(read(new File(expanded, "rabbitmq_management-0.0.1/ebin/rabbitmq_management.app")),
+        equalTo("MANAGEMENT"));
+    assertFalse(new File(expanded, "rabbit_common-0.0.1.ez").exists());
+  }
+
+  @Test
+  public void expansionIsReusedWhileArchivesAreUnchanged() throws Exception {
+    new PluginsExpander(config).run();
+    File marker = new File(PluginsExpander.getExpandedPluginsFolder(config.getTemplateFolder()), "marker");
+    write(marker, "");
+
+    new PluginsExpander(config).run();
+
+    assertTrue(marker.exists());
+  }
+
+  @Test
+  public void staleExpansionIsRebuilt() throws Exception {
+    new PluginsExpander(config).run();
+    File expanded = PluginsExpander.getExpandedPluginsFolder(config.getTemplateFolder());
+    File marker = new File(expanded, "marker");
+    write(marker, "");
+
+    archive("rabbit_common-0.0.1.ez", "rabbit_common-0.0.1/ebin/rabbit_common.app", "COMMON, PATCHED");
+    new PluginsExpander(config).run();
+
+    assertFalse(marker.exists());
+    assertThat(read(new File(expanded, "rabbit_common-0.0.1/ebin/rabbit_common.app")), equalTo("COMMON, PATCHED"));
+  }
+
+  @Test(expected = ExtractionException.class)
+  public void entriesOutsideOfTheArchiveAreRejected() throws Exception {
+    archive("evil-0.0.1.ez", "../../evil", "EVIL");
+
+    new PluginsExpander(config).run();
+  }
+
+  @Test
+  public void nothingIsExpandedUnlessEnabled() throws Exception {
+    config = new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(config.getExtractionFolder())
+        .build();
+
+    new PluginsExpander(config).run();
+
+    assertFalse(PluginsExpander.getExpandedPluginsFolder(config.getTemplateFolder()).exists());
+    assertFalse(config.getEnvVars().containsKey(RabbitMqEnvVar.PLUGINS_DIR.getEnvVarName()));
+  }
+
+  private void archive(String name, String entry, String contents) throws Exception {
+    File archive = new File(plugins, name);
+    Files.createDirectories(plugins.toPath());
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+      zip.putNextEntry(new ZipEntry(entry));
+      zip.write(contents.getBytes(UTF_8));
+      zip.closeEntry();
+    }
+    archive.setLastModified(archive.lastModified() + 2000);
+  }
+
+  private static void write(File file, String contents) throws Exception {
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.write(file.toPath(), contents.getBytes(UTF_8));
+  }
+
+  private static String read(File file) throws Exception {
+    return new String(Files.readAllBytes(file.toPath()), UTF_8);
+  }
+}
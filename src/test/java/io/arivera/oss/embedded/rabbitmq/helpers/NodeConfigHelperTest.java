@@ -0,0 +1,48 @@
+package io.arivera.oss.embedded.rabbitmq.helpers;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar;
+import io.arivera.oss.embedded.rabbitmq.util.PortAllocator;
+import io.arivera.oss.embedded.rabbitmq.util.SettableFuture;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class NodeConfigHelperTest {
+
+  @Test
+  public void nodeIsNamedAfterItsPort() {
+    EmbeddedRabbitMqConfig config = NodeConfigHelper.newConfig(new EmbeddedRabbitMqConfig.Builder(),
+        PortAllocator.getInstance(), "rabbit-test-", new File("data"));
+
+    try {
+      String nodeName = "rabbit-test-" + config.getPorts().getAmqpPort();
+      Map<String, String> envVars = config.getEnvVars();
+      assertThat(envVars.get(RabbitMqEnvVar.NODENAME.getEnvVarName()), equalTo(nodeName));
+      assertThat(envVars.get(RabbitMqEnvVar.MNESIA_BASE.getEnvVarName()),
+          equalTo(new File(new File("data", nodeName), "mnesia").getPath()));
+    } finally {
+      config.getPorts().close();
+    }
+  }
+
+  @Test
+  public void portsAreFreedOnceStopped() {
+    EmbeddedRabbitMqConfig config = NodeConfigHelper.newConfig(new EmbeddedRabbitMqConfig.Builder(),
+        PortAllocator.getInstance(), "rabbit-test-", null);
+    SettableFuture<Void> stop = new SettableFuture<>();
+
+    NodeConfigHelper.freePortsWhenStopped(stop, config);
+    assertTrue(config.getPorts().isHeld());
+    stop.setException(new IllegalStateException("Could not stop"));
+
+    assertFalse(config.getPorts().isHeld());
+  }
+}
@@ -0,0 +1,84 @@
+package io.arivera.oss.embedded.rabbitmq.helpers;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMq;
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.MessageProperties;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a broker keeping its data on disk with one keeping it in a {@link RamDataFolder}: how long they take to boot,
+ * how many persistent messages they take per second, and how long each one takes to be confirmed. Requires Erlang and
+ * {@code /dev/shm}, so it isn't run as part of the tests.
+ * <p>
+ * Arguments (optional): number of messages, 50000 by default, and their size in bytes, 1024 by default.
+ */
+public class RamDataFolderBenchmark {
+
+  private static final long REQUIRED_FREE_SPACE_IN_BYTES = 512 * 1024 * 1024;
+
+  public static void main(String[] args) throws Exception {
+    int messages = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+    int messageSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+
+    for (boolean inMemory : new boolean[] {false, true}) {
+      EmbeddedRabbitMqConfig.Builder builder = new EmbeddedRabbitMqConfig.Builder()
+          .randomPort()
+          .defaultRabbitMqCtlTimeoutInMillis(TimeUnit.SECONDS.toMillis(30))
+          .rabbitMqServerInitializationTimeoutInMillis(TimeUnit.SECONDS.toMillis(30));
+      if (inMemory) {
+        builder.ramDataFolder(REQUIRED_FREE_SPACE_IN_BYTES);
+      }
+      EmbeddedRabbitMqConfig config = builder.build();
+      EmbeddedRabbitMq rabbitMq = new EmbeddedRabbitMq(config);
+      long start = System.nanoTime();
+      rabbitMq.start();
+      try {
+        long boot = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        ConnectionFactory connectionFactory = new ConnectionFactory();
+        connectionFactory.setPort(config.getRabbitMqPort());
+        try (Connection connection = connectionFactory.newConnection()) {
+          Channel channel = connection.createChannel();
+          channel.confirmSelect();
+          String queue = channel.queueDeclare("ram-data-benchmark", true, false, false, null).getQueue();
+          byte[] body = new byte[messageSize];
+          long throughput = measureThroughput(channel, queue, body, messages);
+          long latency = measureLatency(channel, queue, body, Math.max(1, messages / 10));
+          channel.queueDelete(queue);
+          System.out.println(String.format("%-6s boot: %5dms, throughput: %6d msg/s, confirmed in: %5dus",
+              inMemory ? "memory" : "disk", boot, throughput, latency));
+        }
+      } finally {
+        rabbitMq.stop();
+      }
+    }
+  }
+
+  /**
+   * Publishes persistent messages and waits for all of them to be confirmed at once.
+   */
+  private static long measureThroughput(Channel channel, String queue, byte[] body, int messages) throws Exception {
+    long start = System.nanoTime();
+    for (int i = 0; i < messages; i++) {
+      channel.basicPublish("", queue, MessageProperties.PERSISTENT_BASIC, body);
+    }
+    channel.waitForConfirmsOrDie(TimeUnit.MINUTES.toMillis(5));
+    return messages * TimeUnit.SECONDS.toNanos(1) / (System.nanoTime() - start);
+  }
+
+  /**
+   * Publishes persistent messages one at a time, waiting for each one to be confirmed.
+   */
+  private static long measureLatency(Channel channel, String queue, byte[] body, int messages) throws Exception {
+    long start = System.nanoTime();
+    for (int i = 0; i < messages; i++) {
+      channel.basicPublish("", queue, MessageProperties.PERSISTENT_BASIC, body);
+      channel.waitForConfirmsOrDie(TimeUnit.MINUTES.toMillis(1));
+    }
+    return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / messages;
+  }
+}
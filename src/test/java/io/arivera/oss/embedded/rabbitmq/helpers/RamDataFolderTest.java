@@ -0,0 +1,99 @@
+package io.arivera.oss.embedded.rabbitmq.helpers;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RamDataFolderTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void dataAndLogsAreKeptInFolderOfTheirOwn() throws Exception {
+    File fileSystem = tempFolder.newFolder("shm");
+    EmbeddedRabbitMqConfig.Builder builder = newBuilder().ramDataFolder(fileSystem, 1);
+    EmbeddedRabbitMqConfig config = builder.build();
+
+    new RamDataFolder(config).create();
+
+    File folder = config.getRamDataFolder();
+    Map<String, String> envVars = config.getEnvVars();
+    assertTrue(folder.isDirectory());
+    assertThat(folder.getParentFile(), equalTo(fileSystem.getAbsoluteFile()));
+    assertThat(envVars.get(RabbitMqEnvVar.MNESIA_BASE.getEnvVarName()), equalTo(new File(folder, "mnesia").getPath()));
+    assertThat(envVars.get(RabbitMqEnvVar.LOG_BASE.getEnvVarName()), equalTo(new File(folder, "log").getPath()));
+    assertThat(builder.build().getRamDataFolder(), not(equalTo(folder)));
+  }
+
+  @Test
+  public void folderIsDeletedWithItsContents() throws Exception {
+    EmbeddedRabbitMqConfig config = newBuilder().ramDataFolder(tempFolder.newFolder("shm"), 1).build();
+    RamDataFolder ramDataFolder = new RamDataFolder(config);
+    ramDataFolder.create();
+    File queue = new File(config.getRamDataFolder(), "mnesia/rabbit@localhost/msg_stores/queues/0.idx");
+    Files.createDirectories(queue.getParentFile().toPath());
+    Files.write(queue.toPath(), new byte[1024]);
+
+    ramDataFolder.delete();
+
+    assertFalse(config.getRamDataFolder().exists());
+  }
+
+  @Test(expected = RamDataException.class)
+  public void brokerDoesNotStartWithoutEnoughFreeSpace() throws Exception {
+    EmbeddedRabbitMqConfig config = newBuilder().ramDataFolder(tempFolder.newFolder("shm"), Long.MAX_VALUE).build();
+
+    new RamDataFolder(config).create();
+  }
+
+  @Test(expected = RamDataException.class)
+  public void brokerDoesNotStartWithoutFileSystem() {
+    EmbeddedRabbitMqConfig config = newBuilder().ramDataFolder(new File(tempFolder.getRoot(), "missing"), 1).build();
+
+    new RamDataFolder(config).create();
+  }
+
+  @Test
+  public void definedFoldersAreKept() throws Exception {
+    EmbeddedRabbitMqConfig config = newBuilder()
+        .envVar(RabbitMqEnvVar.MNESIA_BASE, "/var/lib/rabbitmq/mnesia")
+        .ramDataFolder(tempFolder.newFolder("shm"), 1)
+        .build();
+
+    assertThat(config.getEnvVars().get(RabbitMqEnvVar.MNESIA_BASE.getEnvVarName()),
+        equalTo("/var/lib/rabbitmq/mnesia"));
+    assertThat(config.getEnvVars().get(RabbitMqEnvVar.LOG_BASE.getEnvVarName()),
+        equalTo(new File(config.getRamDataFolder(), "log").getPath()));
+  }
+
+  @Test
+  public void nothingIsCreatedUnlessEnabled() {
+    EmbeddedRabbitMqConfig config = newBuilder().build();
+
+    new RamDataFolder(config).create();
+    new RamDataFolder(config).delete();
+
+    assertThat(config.getRamDataFolder(), nullValue());
+    assertFalse(config.getEnvVars().containsKey(RabbitMqEnvVar.MNESIA_BASE.getEnvVarName()));
+  }
+
+  private EmbeddedRabbitMqConfig.Builder newBuilder() {
+    return new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.getRoot());
+  }
+}
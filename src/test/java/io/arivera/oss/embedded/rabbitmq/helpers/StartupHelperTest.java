@@ -0,0 +1,250 @@
+package io.arivera.oss.embedded.rabbitmq.helpers;
+
+import io.arivera.oss.embedded.rabbitmq.readiness.ReadinessCheck;
+import io.arivera.oss.embedded.rabbitmq.util.ListenableFuture;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class StartupHelperTest {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Test
+  public void watcherPollsUntilCheckSucceeds() throws Exception {
+    CountingCheck check = new CountingCheck(3);
+    StartupHelper.ReadinessWatcher watcher = new StartupHelper.ReadinessWatcher(check);
+
+    assertThat(watcher.waitUntilReady(5000, 1, 2), is(true));
+    assertThat(check.polls.get(), is(3));
+  }
+
+  @Test
+  public void watcherGivesUpAfterTimeout() throws Exception {
+    CountingCheck check = new CountingCheck(Integer.MAX_VALUE);
+    StartupHelper.ReadinessWatcher watcher = new StartupHelper.ReadinessWatcher(check);
+
+    long start = System.currentTimeMillis();
+    assertThat(watcher.waitUntilReady(200, 10, 40), is(false));
+    assertTrue(System.currentTimeMillis() - start > 150L);
+    assertTrue(check.polls.get() < 20);
+  }
+
+  @Test
+  public void watcherStopsWhenProcessFinishes() throws Exception {
+    StartupHelper.ReadinessWatcher watcher = new StartupHelper.ReadinessWatcher(new CountingCheck(Integer.MAX_VALUE));
+    watcher.processFinished(1);
+
+    long start = System.currentTimeMillis();
+    assertThat(watcher.waitUntilReady(5000, 10, 40), is(false));
+    assertTrue(System.currentTimeMillis() - start < 1000L);
+  }
+
+  @Test
+  public void watcherStopsWhenPortIsInUse() throws Exception {
+    StartupHelper.ReadinessWatcher watcher = new StartupHelper.ReadinessWatcher(new CountingCheck(Integer.MAX_VALUE));
+    watcher.write(("{error,{could_not_start_listener,\"::\",5672,eaddrinuse}}\n").getBytes(UTF_8));
+    watcher.flush();
+
+    long start = System.currentTimeMillis();
+    assertThat(watcher.waitUntilReady(5000, 10, 40), is(false));
+    assertTrue(System.currentTimeMillis() - start < 1000L);
+    assertTrue(watcher.isAddressInUse());
+  }
+
+  @Test
+  public void outputTriggersCheckRightAway() throws Exception {
+    final StartupHelper.ReadinessWatcher watcher = new StartupHelper.ReadinessWatcher(new LineCheck("ready"));
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+          watcher.write("ready\n".getBytes(UTF_8));
+          watcher.flush();
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+    thread.start();
+
+    long start = System.currentTimeMillis();
+    assertThat(watcher.waitUntilReady(5000, 10000, 10000), is(true));
+    assertTrue(System.currentTimeMillis() - start < 2000L);
+    thread.join();
+  }
+
+  @Test
+  public void asyncWatcherPollsUntilCheckSucceeds() throws Exception {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      CountingCheck check = new CountingCheck(3);
+      StartupHelper.ReadinessWatcher watcher = new StartupHelper.ReadinessWatcher(check);
+
+      assertThat(watcher.whenReady(scheduler, scheduler, 5000, 1, 2).get(5, TimeUnit.SECONDS), is(true));
+      assertThat(check.polls.get(), is(3));
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  public void asyncWatcherGivesUpAfterTimeout() throws Exception {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      CountingCheck check = new CountingCheck(Integer.MAX_VALUE);
+      StartupHelper.ReadinessWatcher watcher = new StartupHelper.ReadinessWatcher(check);
+
+      long start = System.currentTimeMillis();
+      ListenableFuture<Boolean> ready = watcher.whenReady(scheduler, scheduler, 200, 10, 40);
+      assertThat(ready.isDone(), is(false));
+      assertThat(ready.get(5, TimeUnit.SECONDS), is(false));
+      assertTrue(System.currentTimeMillis() - start > 150L);
+      assertTrue(check.polls.get() < 20);
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  public void asyncWatcherTimesOutWhileCheckIsBlocked() throws Exception {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    ExecutorService checks = Executors.newSingleThreadExecutor();
+    final CountDownLatch release = new CountDownLatch(1);
+    try {
+      StartupHelper.ReadinessWatcher watcher = new StartupHelper.ReadinessWatcher(new BlockingCheck(release));
+
+      long start = System.currentTimeMillis();
+      ListenableFuture<Boolean> ready = watcher.whenReady(scheduler, checks, 100, 10, 10);
+      assertThat(ready.get(5, TimeUnit.SECONDS), is(false));
+      assertTrue(System.currentTimeMillis() - start < 2000L);
+    } finally {
+      release.countDown();
+      scheduler.shutdownNow();
+      checks.shutdownNow();
+    }
+  }
+
+  @Test
+  public void asyncWatcherStopsWhenProcessFinishes() throws Exception {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      StartupHelper.ReadinessWatcher watcher = new StartupHelper.ReadinessWatcher(new CountingCheck(Integer.MAX_VALUE));
+      ListenableFuture<Boolean> ready = watcher.whenReady(scheduler, scheduler, 5000, 10000, 10000);
+
+      long start = System.currentTimeMillis();
+      watcher.processFinished(1);
+      assertThat(ready.get(5, TimeUnit.SECONDS), is(false));
+      assertTrue(System.currentTimeMillis() - start < 1000L);
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  public void outputTriggersAsyncCheckRightAway() throws Exception {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      StartupHelper.ReadinessWatcher watcher = new StartupHelper.ReadinessWatcher(new LineCheck("ready"));
+      ListenableFuture<Boolean> ready = watcher.whenReady(scheduler, scheduler, 5000, 10000, 10000);
+
+      long start = System.currentTimeMillis();
+      watcher.write("ready\n".getBytes(UTF_8));
+      watcher.flush();
+      assertThat(ready.get(5, TimeUnit.SECONDS), is(true));
+      assertTrue(System.currentTimeMillis() - start < 2000L);
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  public void stoppedProcessTerminatesOnceItIsGone() throws Exception {
+    StartupHelper.PublishingProcessListener listener = new StartupHelper.PublishingProcessListener();
+    Process process = mock(Process.class);
+    assertFalse(listener.getTermination().isDone());
+
+    listener.afterStop(process);
+
+    verify(process).waitFor();
+    assertTrue(listener.getTermination().isDone());
+    assertTrue(listener.getResult().isDone());
+  }
+
+  private static class CountingCheck implements ReadinessCheck {
+
+    private final int pollsUntilReady;
+    private final AtomicInteger polls = new AtomicInteger();
+
+    CountingCheck(int pollsUntilReady) {
+      this.pollsUntilReady = pollsUntilReady;
+    }
+
+    @Override
+    public void processOutputLine(String line) {
+    }
+
+    @Override
+    public boolean isReady() {
+      return polls.incrementAndGet() >= pollsUntilReady;
+    }
+  }
+
+  private static class BlockingCheck implements ReadinessCheck {
+
+    private final CountDownLatch release;
+
+    BlockingCheck(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @Override
+    public void processOutputLine(String line) {
+    }
+
+    @Override
+    public boolean isReady() {
+      try {
+        return release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+  }
+
+  private static class LineCheck implements ReadinessCheck {
+
+    private final String expected;
+    private volatile boolean ready;
+
+    LineCheck(String expected) {
+      this.expected = expected;
+    }
+
+    @Override
+    public void processOutputLine(String line) {
+      ready = ready || expected.equals(line);
+    }
+
+    @Override
+    public boolean isReady() {
+      return ready;
+    }
+  }
+}
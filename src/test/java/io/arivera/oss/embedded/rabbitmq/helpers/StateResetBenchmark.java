@@ -0,0 +1,77 @@
+package io.arivera.oss.embedded.rabbitmq.helpers;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMq;
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCtl;
+
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares how long it takes to get a clean broker through {@link StateResetHelper} versus {@code rabbitmqctl}'s
+ * {@code stop_app}, {@code reset} and {@code start_app}. Requires Erlang, so it isn't run as part of the tests.
+ * <p>
+ * Arguments (optional): number of iterations, 10 by default.
+ */
+public class StateResetBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+    EmbeddedRabbitMqConfig config = new EmbeddedRabbitMqConfig.Builder()
+        .randomPort()
+        .defaultRabbitMqCtlTimeoutInMillis(TimeUnit.SECONDS.toMillis(30))
+        .rabbitMqServerInitializationTimeoutInMillis(TimeUnit.SECONDS.toMillis(30))
+        .build();
+    EmbeddedRabbitMq rabbitMq = new EmbeddedRabbitMq(config);
+    rabbitMq.start();
+    try {
+      final RabbitMqCtl rabbitMqCtl = new RabbitMqCtl(config);
+      long fullReset = measure(iterations, config, new Runnable() {
+        @Override
+        public void run() {
+          await(rabbitMqCtl.stopApp());
+          await(rabbitMqCtl.reset());
+          await(rabbitMqCtl.startApp());
+        }
+      });
+      final StateResetHelper stateResetHelper = new StateResetHelper(config);
+      long stateReset = measure(iterations, config, stateResetHelper);
+
+      System.out.println("stop_app + reset + start_app: " + fullReset + "ms per reset");
+      System.out.println("StateResetHelper:             " + stateReset + "ms per reset");
+    } finally {
+      rabbitMq.stop();
+    }
+  }
+
+  private static long measure(int iterations, EmbeddedRabbitMqConfig config, Runnable reset) {
+    reset.run();      // warm up
+    long total = 0;
+    for (int i = 0; i < iterations; i++) {
+      createState(config, i);
+      long start = System.nanoTime();
+      reset.run();
+      total += System.nanoTime() - start;
+    }
+    return TimeUnit.NANOSECONDS.toMillis(total) / iterations;
+  }
+
+  private static void createState(EmbeddedRabbitMqConfig config, int iteration) {
+    RabbitMqCtl rabbitMqCtl = new RabbitMqCtl(config);
+    await(rabbitMqCtl.execute("add_vhost", "benchmark-" + iteration));
+    await(rabbitMqCtl.execute("add_user", "benchmark-" + iteration, "secret"));
+  }
+
+  private static void await(Future<ProcessResult> resultFuture) {
+    try {
+      int exitValue = resultFuture.get().getExitValue();
+      if (exitValue != 0) {
+        throw new IllegalStateException("Command failed with exit value: " + exitValue);
+      }
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
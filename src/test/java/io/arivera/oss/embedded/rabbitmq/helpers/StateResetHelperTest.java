@@ -0,0 +1,126 @@
+package io.arivera.oss.embedded.rabbitmq.helpers;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.PredefinedVersion;
+import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCommand;
+import io.arivera.oss.embedded.rabbitmq.bin.RabbitMqCtl;
+import io.arivera.oss.embedded.rabbitmq.util.OperatingSystem;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.StartedProcess;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StateResetHelperTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Mock
+  private RabbitMqCommand.ProcessExecutorFactory factory;
+  @Mock
+  private StartedProcess startedProcess;
+  @Mock
+  private Future<ProcessResult> futureResult;
+  @Mock
+  private ProcessResult result;
+
+  private ProcessExecutor processExecutor;
+  private EmbeddedRabbitMqConfig config;
+
+  @Before
+  public void setUp() throws Exception {
+    config = new EmbeddedRabbitMqConfig.Builder()
+        .extractionFolder(tempFolder.getRoot())
+        .processExecutorFactory(factory)
+        .build();
+
+    processExecutor = Mockito.mock(ProcessExecutor.class, new Answer() {
+      @Override
+      public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+        if (invocationOnMock.getMethod().getName().equals("start")) {
+          return startedProcess;
+        }
+        return invocationOnMock.getMock();
+      }
+    });
+    when(factory.createInstance()).thenReturn(processExecutor);
+    when(startedProcess.getFuture()).thenReturn(futureResult);
+    when(futureResult.get(anyLong(), any(TimeUnit.class))).thenReturn(result);
+
+    File executableFilesFolder = tempFolder.newFolder(PredefinedVersion.LATEST.getExtractionFolder(), "sbin");
+    String extension = OperatingSystem.detect() == OperatingSystem.WINDOWS ? ".bat" : "";
+    File executableFile = new File(executableFilesFolder, RabbitMqCtl.COMMAND + extension);
+    assertTrue("Fake executable file couldn't be created!", executableFile.createNewFile());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void stateIsResetWithSingleEval() throws Exception {
+    when(result.getExitValue()).thenReturn(0);
+
+    new StateResetHelper(config).run();
+
+    ArgumentCaptor<List> command = ArgumentCaptor.forClass(List.class);
+    verify(processExecutor).command(command.capture());
+    List<String> arguments = command.getValue();
+    assertThat(arguments.subList(1, arguments.size()),
+        equalTo(Arrays.asList("eval", StateResetHelper.RESET_EXPRESSION)));
+  }
+
+  @Test
+  public void failedEvalIsReported() throws Exception {
+    when(result.getExitValue()).thenReturn(2);
+
+    thrown.expect(StateResetException.class);
+    thrown.expectMessage("exit value: 2");
+    new StateResetHelper(config).run();
+  }
+
+  @Test
+  public void expressionIsBalanced() {
+    String expression = StateResetHelper.RESET_EXPRESSION;
+    assertThat(count(expression, '('), equalTo(count(expression, ')')));
+    assertThat(count(expression, '['), equalTo(count(expression, ']')));
+    assertThat(count(expression, '{'), equalTo(count(expression, '}')));
+    assertTrue(expression.endsWith("."));
+  }
+
+  private static int count(String text, char character) {
+    int count = 0;
+    for (char c : text.toCharArray()) {
+      if (c == character) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,84 @@
+package io.arivera.oss.embedded.rabbitmq.lifecycle;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class LifecycleEventPublisherTest {
+
+  private RecordingListener listener;
+  private LifecycleEventPublisher publisher;
+
+  @Before
+  public void setUp() throws Exception {
+    listener = new RecordingListener();
+    publisher = new LifecycleEventPublisher(new EmbeddedRabbitMqConfig.Builder()
+        .lifecycleListener(new FailingListener())
+        .lifecycleListener(listener)
+        .build());
+  }
+
+  @Test
+  public void successfulPhaseIsPublishedWithMeasurements() throws Exception {
+    LifecycleEventPublisher.Phase phase = publisher.start(LifecyclePhase.DOWNLOAD);
+    Thread.sleep(20);
+    phase.measure(LifecycleEvent.BYTES, 1024).succeeded();
+
+    assertThat(listener.events.size(), is(1));
+    LifecycleEvent event = listener.events.get(0);
+    assertThat(event.getPhase(), is(LifecyclePhase.DOWNLOAD));
+    assertThat(event.isSuccessful(), is(true));
+    assertThat(event.getFailure(), is(nullValue()));
+    assertThat(event.getMeasurement(LifecycleEvent.BYTES), equalTo(1024L));
+    assertTrue(event.getDurationInMillis() >= 20);
+  }
+
+  @Test
+  public void failedPhaseIsPublishedWithCause() throws Exception {
+    IllegalStateException failure = new IllegalStateException("boom");
+
+    publisher.start(LifecyclePhase.READINESS).failed(failure);
+
+    LifecycleEvent event = listener.events.get(0);
+    assertThat(event.isSuccessful(), is(false));
+    assertThat(event.getFailure(), is((Throwable) failure));
+  }
+
+  @Test
+  public void phaseIsPublishedOnlyOnce() throws Exception {
+    LifecycleEventPublisher.Phase phase = publisher.start(LifecyclePhase.SHUTDOWN);
+
+    phase.succeeded();
+    phase.failed(new IllegalStateException());
+
+    assertThat(listener.events.size(), is(1));
+  }
+
+  private static class RecordingListener implements LifecycleListener {
+
+    private final List<LifecycleEvent> events = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void phaseFinished(LifecycleEvent event) {
+      events.add(event);
+    }
+  }
+
+  private static class FailingListener implements LifecycleListener {
+
+    @Override
+    public void phaseFinished(LifecycleEvent event) {
+      throw new IllegalStateException("Listener failures must not affect the broker or other listeners");
+    }
+  }
+}
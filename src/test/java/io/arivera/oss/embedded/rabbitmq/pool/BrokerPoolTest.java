@@ -0,0 +1,204 @@
+package io.arivera.oss.embedded.rabbitmq.pool;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+import io.arivera.oss.embedded.rabbitmq.RabbitMqEnvVar;
+import io.arivera.oss.embedded.rabbitmq.util.ListenableFuture;
+import io.arivera.oss.embedded.rabbitmq.util.PortAllocator;
+import io.arivera.oss.embedded.rabbitmq.util.SettableFuture;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class BrokerPoolTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private final FakeLifecycle lifecycle = new FakeLifecycle();
+  private BrokerPool pool;
+
+  @After
+  public void tearDown() {
+    if (pool != null) {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void brokersRunOnTheirOwnPortAndNodeName() throws Exception {
+    pool = newPool(2);
+
+    PooledBroker first = pool.acquire(5, TimeUnit.SECONDS);
+    PooledBroker second = pool.acquire(5, TimeUnit.SECONDS);
+
+    assertThat(first.getPort(), not(equalTo(second.getPort())));
+    assertThat(first.getConfig().getEnvVars().get(RabbitMqEnvVar.NODENAME.getEnvVarName()),
+        not(equalTo(second.getConfig().getEnvVars().get(RabbitMqEnvVar.NODENAME.getEnvVarName()))));
+    assertThat(lifecycle.started.size(), is(2));
+  }
+
+  @Test
+  public void startedBrokersAreHandedOutRightAway() throws Exception {
+    pool = newPool(1);
+    lifecycle.resetGate = new CountDownLatch(1);
+
+    pool.acquire(5, TimeUnit.SECONDS).close();
+    openOnceWaiting(lifecycle.resetGate, Thread.currentThread());
+    pool.acquire(5, TimeUnit.SECONDS);
+
+    assertThat(pool.getStatistics().getAcquisitions(), is(2L));
+    assertThat(pool.getStatistics().getWarmHits(), is(1L));
+  }
+
+  @Test
+  public void releasedBrokerIsResetBeforeBeingReused() throws Exception {
+    pool = newPool(1);
+    PooledBroker broker = pool.acquire(5, TimeUnit.SECONDS);
+
+    broker.close();
+    PooledBroker reused = pool.acquire(5, TimeUnit.SECONDS);
+
+    assertThat(reused, sameInstance(broker));
+    assertThat(lifecycle.reset, equalTo(Collections.singletonList(broker)));
+    assertThat(pool.getStatistics().getResets(), is(1L));
+  }
+
+  @Test
+  public void brokerThatCannotBeResetIsReplaced() throws Exception {
+    pool = newPool(1);
+    PooledBroker broker = pool.acquire(5, TimeUnit.SECONDS);
+    lifecycle.failResets = true;
+
+    broker.close();
+    PooledBroker replacement = pool.acquire(5, TimeUnit.SECONDS);
+
+    assertThat(replacement, not(sameInstance(broker)));
+    assertTrue(lifecycle.stopped.contains(broker));
+    assertThat(pool.getStatistics().getFailures(), is(1L));
+  }
+
+  @Test
+  public void acquireFailsWhenNoBrokerCouldBeStarted() throws Exception {
+    lifecycle.failStarts = true;
+    pool = newPool(2);
+
+    thrown.expect(BrokerPoolException.class);
+    thrown.expectMessage("could be started");
+    pool.acquire(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void acquireTimesOutWhenEveryBrokerIsInUse() throws Exception {
+    pool = newPool(1);
+    pool.acquire(5, TimeUnit.SECONDS);
+
+    thrown.expect(BrokerPoolException.class);
+    thrown.expectMessage("within 50ms");
+    pool.acquire(50, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void releasingTwiceFails() throws Exception {
+    pool = newPool(1);
+    PooledBroker broker = pool.acquire(5, TimeUnit.SECONDS);
+    broker.close();
+
+    thrown.expect(IllegalArgumentException.class);
+    broker.close();
+  }
+
+  @Test
+  public void closeStopsEveryBroker() throws Exception {
+    pool = newPool(2);
+    PooledBroker broker = pool.acquire(5, TimeUnit.SECONDS);
+
+    pool.close();
+    broker.close();
+
+    assertThat(new HashSet<>(lifecycle.stopped), equalTo((Set<PooledBroker>) new HashSet<>(lifecycle.started)));
+  }
+
+  /**
+   * Lets the reset of a released broker finish only once the given thread waits for it, so it's never a warm hit.
+   */
+  private static void openOnceWaiting(final CountDownLatch gate, final Thread acquirer) {
+    Thread opener = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        while (acquirer.getState() != Thread.State.TIMED_WAITING) {
+          Thread.yield();
+        }
+        gate.countDown();
+      }
+    });
+    opener.setDaemon(true);
+    opener.start();
+  }
+
+  private BrokerPool newPool(int size) {
+    return new BrokerPool(new EmbeddedRabbitMqConfig.Builder(), size, lifecycle, PortAllocator.getInstance());
+  }
+
+  private static class FakeLifecycle implements BrokerLifecycle {
+
+    private final List<PooledBroker> started = Collections.synchronizedList(new ArrayList<PooledBroker>());
+    private final List<PooledBroker> reset = Collections.synchronizedList(new ArrayList<PooledBroker>());
+    private final List<PooledBroker> stopped = Collections.synchronizedList(new ArrayList<PooledBroker>());
+    private volatile boolean failStarts;
+    private volatile boolean failResets;
+    private volatile CountDownLatch resetGate;
+
+    @Override
+    public ListenableFuture<Void> start(PooledBroker broker) {
+      SettableFuture<Void> future = new SettableFuture<>();
+      if (failStarts) {
+        future.setException(new IllegalStateException("Erlang missing"));
+      } else {
+        started.add(broker);
+        future.set(null);
+      }
+      return future;
+    }
+
+    @Override
+    public void reset(PooledBroker broker) {
+      CountDownLatch gate = resetGate;
+      if (gate != null) {
+        try {
+          gate.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (failResets) {
+        throw new BrokerPoolException("rabbitmqctl reset failed");
+      }
+      reset.add(broker);
+    }
+
+    @Override
+    public ListenableFuture<Void> stop(PooledBroker broker) {
+      stopped.add(broker);
+      SettableFuture<Void> future = new SettableFuture<>();
+      future.set(null);
+      return future;
+    }
+  }
+}
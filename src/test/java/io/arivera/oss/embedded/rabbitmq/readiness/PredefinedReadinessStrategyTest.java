@@ -0,0 +1,97 @@
+package io.arivera.oss.embedded.rabbitmq.readiness;
+
+import io.arivera.oss.embedded.rabbitmq.EmbeddedRabbitMqConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PredefinedReadinessStrategyTest {
+
+  private ServerSocket serverSocket;
+  private EmbeddedRabbitMqConfig config;
+
+  @Before
+  public void setUp() throws Exception {
+    serverSocket = new ServerSocket(0);
+    config = new EmbeddedRabbitMqConfig.Builder()
+        .port(serverSocket.getLocalPort())
+        .build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    serverSocket.close();
+  }
+
+  @Test
+  public void logPatternWaitsForStartupMessage() throws Exception {
+    ReadinessCheck check = PredefinedReadinessStrategy.LOG_PATTERN.newCheck(config);
+
+    check.processOutputLine("Starting broker...");
+    assertThat(check.isReady(), is(false));
+
+    check.processOutputLine(" completed with 6 plugins.");
+    assertThat(check.isReady(), is(true));
+  }
+
+  @Test
+  public void tcpConnectSucceedsWhenPortIsOpen() throws Exception {
+    ReadinessCheck check = PredefinedReadinessStrategy.TCP_CONNECT.newCheck(config);
+
+    assertThat(check.isReady(), is(true));
+  }
+
+  @Test
+  public void tcpConnectFailsWhenPortIsClosed() throws Exception {
+    ReadinessCheck check = PredefinedReadinessStrategy.TCP_CONNECT.newCheck(config);
+    serverSocket.close();
+
+    assertThat(check.isReady(), is(false));
+  }
+
+  @Test
+  public void amqpHandshakeSucceedsWhenServerStartsConnection() throws Exception {
+    ReadinessCheck check = PredefinedReadinessStrategy.AMQP_HANDSHAKE.newCheck(config);
+    Thread server = answerProtocolHeaderWith(AmqpHandshakeCheck.FRAME_METHOD);
+
+    assertThat(check.isReady(), is(true));
+    server.join();
+  }
+
+  @Test
+  public void amqpHandshakeFailsWhenServerDoesNotSpeakAmqp() throws Exception {
+    ReadinessCheck check = PredefinedReadinessStrategy.AMQP_HANDSHAKE.newCheck(config);
+    Thread server = answerProtocolHeaderWith('H');
+
+    assertThat(check.isReady(), is(false));
+    server.join();
+  }
+
+  private Thread answerProtocolHeaderWith(final int firstByte) {
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try (Socket socket = serverSocket.accept()) {
+          new DataInputStream(socket.getInputStream()).readFully(new byte[AmqpHandshakeCheck.PROTOCOL_HEADER.length]);
+          OutputStream output = socket.getOutputStream();
+          output.write(firstByte);
+          output.flush();
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+    thread.start();
+    return thread;
+  }
+}
@@ -0,0 +1,108 @@
+package io.arivera.oss.embedded.rabbitmq.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.HashSet;
+import javax.net.ServerSocketFactory;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PortAllocatorTest {
+
+  @Test
+  public void portsAreHeldUntilPlaceholdersAreReleased() throws Exception {
+    PortBlock ports = new PortAllocator(ServerSocketFactory.getDefault()).reserveBlock();
+    try {
+      assertThat(new HashSet<>(Arrays.asList(ports.getAmqpPort(), ports.getDistributionPort(),
+          ports.getManagementPort())).size(), is(3));
+      try {
+        new ServerSocket(ports.getAmqpPort()).close();
+        fail("Port " + ports.getAmqpPort() + " should be held");
+      } catch (BindException expected) {
+        assertTrue(ports.isHeld());
+      }
+
+      ports.releasePlaceholders();
+
+      assertFalse(ports.isHeld());
+      new ServerSocket(ports.getAmqpPort()).close();
+    } finally {
+      ports.close();
+    }
+  }
+
+  @Test
+  public void allocatedPortsAreNotHandedOutAgain() throws Exception {
+    ServerSocket reused = socket(1000);
+    PortAllocator allocator = new PortAllocator(factory(socket(1000), socket(1001), socket(1002),
+        reused, socket(1003), socket(1004), socket(1005)));
+    PortBlock first = allocator.reserveBlock();
+    first.releasePlaceholders();
+
+    PortBlock second = allocator.reserveBlock();
+
+    assertThat(second.getAmqpPort(), is(1003));
+    assertThat(second.getManagementPort(), is(1005));
+    assertThat(allocator.getAllocatedCount(), is(6));
+    verify(reused).close();
+  }
+
+  @Test
+  public void closedBlocksAreFreed() throws Exception {
+    PortAllocator allocator = new PortAllocator(factory(socket(1000), socket(1001), socket(1002)));
+    PortBlock ports = allocator.reserveBlock();
+
+    ports.close();
+
+    assertThat(allocator.getAllocatedCount(), is(0));
+    assertFalse(ports.isHeld());
+  }
+
+  @Test
+  public void renewedBlockGetsNewPorts() throws Exception {
+    PortAllocator allocator = new PortAllocator(factory(socket(1000), socket(1001), socket(1002),
+        socket(1003), socket(1004), socket(1005)));
+    PortBlock ports = allocator.reserveBlock();
+    ports.releasePlaceholders();
+
+    ports.renew();
+
+    assertThat(ports.getAmqpPort(), is(1003));
+    assertTrue(ports.isHeld());
+    assertThat(allocator.getAllocatedCount(), is(3));
+    assertThat(ports.toString(), equalTo("PortBlock{amqp=1003, distribution=1004, management=1005}"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void portsCantBeReserved() throws Exception {
+    ServerSocketFactory factory = mock(ServerSocketFactory.class);
+    when(factory.createServerSocket(anyInt())).thenThrow(new IOException("Fake"));
+
+    new PortAllocator(factory).reserveBlock();
+  }
+
+  private static ServerSocket socket(int port) {
+    ServerSocket socket = mock(ServerSocket.class);
+    when(socket.getLocalPort()).thenReturn(port);
+    return socket;
+  }
+
+  private static ServerSocketFactory factory(ServerSocket first, ServerSocket... others) throws IOException {
+    ServerSocketFactory factory = mock(ServerSocketFactory.class);
+    when(factory.createServerSocket(0)).thenReturn(first, others);
+    return factory;
+  }
+}
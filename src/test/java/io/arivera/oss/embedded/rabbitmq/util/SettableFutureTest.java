@@ -0,0 +1,116 @@
+package io.arivera.oss.embedded.rabbitmq.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SettableFutureTest {
+
+  @Test
+  public void callbacksAreNotifiedOnceSet() throws Exception {
+    SettableFuture<String> future = new SettableFuture<>();
+    RecordingCallback before = new RecordingCallback();
+    future.addCallback(before);
+    assertThat(before.results.isEmpty(), is(true));
+
+    assertThat(future.set("done"), is(true));
+    RecordingCallback after = new RecordingCallback();
+    future.addCallback(after);
+
+    assertThat(before.results, equalTo(Arrays.<Object>asList("done")));
+    assertThat(after.results, equalTo(before.results));
+    assertThat(future.get(), equalTo("done"));
+  }
+
+  @Test
+  public void onlyFirstCompletionCounts() throws Exception {
+    SettableFuture<String> future = new SettableFuture<>();
+    RecordingCallback callback = new RecordingCallback();
+    future.addCallback(callback);
+
+    future.setException(new IllegalStateException("failed"));
+    assertThat(future.set("done"), is(false));
+    assertThat(future.cancel(true), is(false));
+
+    assertThat(callback.results.size(), is(1));
+    assertThat(callback.results.get(0), instanceOf(IllegalStateException.class));
+    try {
+      future.get();
+      fail("Failure expected");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+    }
+  }
+
+  @Test
+  public void cancellationIsReportedAsFailure() throws Exception {
+    SettableFuture<String> future = new SettableFuture<>();
+    RecordingCallback callback = new RecordingCallback();
+    future.addCallback(callback);
+
+    assertThat(future.cancel(false), is(true));
+
+    assertThat(future.isCancelled(), is(true));
+    assertThat(future.isDone(), is(true));
+    assertThat(callback.results.get(0), instanceOf(CancellationException.class));
+    try {
+      future.get();
+      fail("Cancellation expected");
+    } catch (CancellationException e) {
+      // expected
+    }
+  }
+
+  @Test(expected = TimeoutException.class)
+  public void getTimesOutWhenNotCompleted() throws Exception {
+    new SettableFuture<String>().get(10, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void failingCallbackDoesNotPreventOthers() throws Exception {
+    SettableFuture<String> future = new SettableFuture<>();
+    future.addCallback(new ListenableFuture.Callback<String>() {
+      @Override
+      public void onSuccess(String result) {
+        throw new IllegalStateException("callback failed");
+      }
+
+      @Override
+      public void onFailure(Throwable failure) {
+      }
+    });
+    RecordingCallback callback = new RecordingCallback();
+    future.addCallback(callback);
+
+    future.set("done");
+
+    assertThat(callback.results.size(), is(1));
+  }
+
+  private static class RecordingCallback implements ListenableFuture.Callback<Object> {
+
+    private final List<Object> results = new ArrayList<>();
+
+    @Override
+    public void onSuccess(Object result) {
+      results.add(result);
+    }
+
+    @Override
+    public void onFailure(Throwable failure) {
+      results.add(failure);
+    }
+  }
+}